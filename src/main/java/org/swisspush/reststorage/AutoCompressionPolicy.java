@@ -0,0 +1,128 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonObject;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decides which resources the {@link RedisStorage} compresses without the <code>x-stored-compressed</code> header.
+ *
+ * <p>A resource is compressed when it has at least <code>autoCompressionThreshold</code> bytes and the mime type of
+ * its path is one of <code>autoCompressionMimeTypes</code>. The compressed content is only kept when it is at least
+ * <code>autoCompressionMinRatio</code> times smaller than the content, otherwise the resource is stored uncompressed.
+ * The outcome is counted per path prefix of <code>autoCompressionPrefixDepth</code> levels, so the policy can be
+ * tuned.</p>
+ */
+public class AutoCompressionPolicy {
+
+    private static final int MAX_PREFIXES = 1000;
+    private static final String OTHER_PREFIXES = "*";
+
+    private final MimeTypeResolver mimeTypeResolver = new MimeTypeResolver("application/json; charset=utf-8");
+    private final int threshold;
+    private final List<String> mimeTypes = new ArrayList<>();
+    private final double minRatio;
+    private final int prefixDepth;
+    private final Map<String, PrefixStatistics> statistics = new HashMap<>();
+
+    public AutoCompressionPolicy(ModuleConfiguration config) {
+        this.threshold = config.getAutoCompressionThreshold();
+        if (config.getAutoCompressionMimeTypes() != null) {
+            for (String mimeType : config.getAutoCompressionMimeTypes()) {
+                mimeTypes.add(mimeType.trim().toLowerCase());
+            }
+        }
+        this.minRatio = config.getAutoCompressionMinRatio();
+        this.prefixDepth = config.getAutoCompressionPrefixDepth();
+    }
+
+    /**
+     * @return <code>true</code> when the content of the resource is to be compressed
+     */
+    public boolean appliesTo(String path, int length) {
+        if (threshold <= 0 || length < threshold) {
+            return false;
+        }
+        String mimeType = mimeTypeResolver.resolveMimeType(path);
+        int parameters = mimeType.indexOf(';');
+        if (parameters >= 0) {
+            mimeType = mimeType.substring(0, parameters);
+        }
+        mimeType = mimeType.trim().toLowerCase();
+        for (String accepted : mimeTypes) {
+            if (accepted.equals(mimeType)
+                    || (accepted.endsWith("/*") && mimeType.startsWith(accepted.substring(0, accepted.length() - 1)))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Decides whether the compressed content is stored and counts the outcome for the prefix of the path.
+     *
+     * @return <code>true</code> when the compressed content is small enough to be stored instead of the content
+     */
+    public boolean keepCompressed(String path, int length, int compressedLength) {
+        boolean keep = compressedLength > 0 && (double) length / compressedLength >= minRatio;
+        PrefixStatistics prefixStatistics = statistics.get(prefixOf(path));
+        if (prefixStatistics == null) {
+            String prefix = statistics.size() < MAX_PREFIXES ? prefixOf(path) : OTHER_PREFIXES;
+            prefixStatistics = statistics.computeIfAbsent(prefix, p -> new PrefixStatistics());
+        }
+        if (keep) {
+            prefixStatistics.compressed++;
+            prefixStatistics.bytes += length;
+            prefixStatistics.compressedBytes += compressedLength;
+        } else {
+            prefixStatistics.rejected++;
+        }
+        return keep;
+    }
+
+    /**
+     * @return the counters per path prefix since the start, the bytes saved are the bytes saved by the writes, not by
+     * the resources currently stored
+     */
+    public JsonObject getStatistics() {
+        JsonObject prefixes = new JsonObject();
+        statistics.forEach((prefix, prefixStatistics) -> prefixes.put(prefix, new JsonObject()
+                .put("compressed", prefixStatistics.compressed)
+                .put("rejected", prefixStatistics.rejected)
+                .put("bytes", prefixStatistics.bytes)
+                .put("compressedBytes", prefixStatistics.compressedBytes)
+                .put("bytesSaved", prefixStatistics.bytes - prefixStatistics.compressedBytes)
+                .put("ratio", prefixStatistics.compressedBytes == 0 ? 0
+                        : (double) prefixStatistics.bytes / prefixStatistics.compressedBytes)));
+        return new JsonObject().put("prefixes", prefixes);
+    }
+
+    /**
+     * @return the first levels of the path, at most the collection of the resource
+     */
+    private String prefixOf(String path) {
+        String[] segments = path.split("/");
+        StringBuilder prefix = new StringBuilder();
+        int levels = 0;
+        // the first segment is empty for an absolute path, the last segment is the resource
+        for (int i = 0; i < segments.length - 1 && levels < prefixDepth; i++) {
+            if (segments[i].isEmpty()) {
+                continue;
+            }
+            prefix.append('/').append(segments[i]);
+            levels++;
+        }
+        return prefix.length() == 0 ? "/" : prefix.toString();
+    }
+
+    private static class PrefixStatistics {
+        private long compressed = 0;
+        private long rejected = 0;
+        private long bytes = 0;
+        private long compressedBytes = 0;
+    }
+}
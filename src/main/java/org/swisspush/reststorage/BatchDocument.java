@@ -0,0 +1,30 @@
+package org.swisspush.reststorage;
+
+import org.swisspush.reststorage.util.LockMode;
+import org.swisspush.reststorage.util.StatusCode;
+
+/**
+ * A document of a batch PUT (see {@link Storage#putBatch(String, java.util.List, io.vertx.core.Handler)}). It has
+ * the options of a single PUT, the storage sets its status.
+ */
+public class BatchDocument {
+    /** the name of the document in the collection of the batch */
+    public String name;
+    public byte[] content;
+    /** the etag of the request, the document is not modified when it has this etag already */
+    public String etag;
+    public long expire = -1;
+    public String lockOwner = "";
+    public LockMode lockMode = LockMode.SILENT;
+    public long lockExpire = 300;
+    public boolean storeCompressed = false;
+    /** the result of the PUT of the document, as a single PUT would have responded */
+    public StatusCode status;
+
+    /**
+     * @return the path of the document in the collection of the batch
+     */
+    public String path(String collectionPath) {
+        return collectionPath.endsWith("/") ? collectionPath + name : collectionPath + "/" + name;
+    }
+}
@@ -0,0 +1,93 @@
+package org.swisspush.reststorage;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+
+/**
+ * {@link ReadStream} over an in-memory byte array. Used by the storages to hand out resources
+ * which are already completely loaded into memory.
+ *
+ * <p>The content is wrapped once and handed out as slices, so no bytes are copied. All slices are emitted within
+ * a single event loop cycle unless the consumer pauses the stream, e.g. because the write queue of the HTTP
+ * response is full.</p>
+ */
+public class ByteArrayReadStream implements ReadStream<Buffer> {
+
+    private static final int SLICE_SIZE = 8192;
+
+    private final Vertx vertx;
+    private final Buffer content;
+    private int position;
+    private boolean paused;
+    private boolean readScheduled;
+    private Handler<Void> endHandler;
+    private Handler<Buffer> handler;
+
+    public ByteArrayReadStream(Vertx vertx, byte[] byteArray) {
+        this(vertx, Buffer.buffer(Unpooled.wrappedBuffer(byteArray)));
+    }
+
+    public ByteArrayReadStream(Vertx vertx, Buffer content) {
+        this.vertx = vertx;
+        this.content = content;
+    }
+
+    private void scheduleRead() {
+        if (readScheduled) {
+            return;
+        }
+        readScheduled = true;
+        vertx.runOnContext(v -> {
+            readScheduled = false;
+            doRead();
+        });
+    }
+
+    private void doRead() {
+        int size = content.length();
+        while (!paused && handler != null && position < size) {
+            int end = Math.min(position + SLICE_SIZE, size);
+            Buffer slice = content.slice(position, end);
+            position = end;
+            handler.handle(slice);
+        }
+        if (!paused && position >= size && endHandler != null) {
+            Handler<Void> handlerToCall = endHandler;
+            endHandler = null;
+            handlerToCall.handle(null);
+        }
+    }
+
+    public ByteArrayReadStream resume() {
+        paused = false;
+        scheduleRead();
+        return this;
+    }
+
+    @Override
+    public ByteArrayReadStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public ByteArrayReadStream exceptionHandler(Handler<Throwable> handler) {
+        return this;
+    }
+
+    @Override
+    public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        scheduleRead();
+        return this;
+    }
+
+    @Override
+    public ByteArrayReadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+}
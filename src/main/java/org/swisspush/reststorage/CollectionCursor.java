@@ -0,0 +1,113 @@
+package org.swisspush.reststorage;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Opaque cursor to list a collection page by page.
+ *
+ * <p>Paged by cursor, the members of a collection are listed in a stable order: the collections first, ordered by
+ * name, followed by the resources ordered by name. The cursor of a page holds the sort key of its last member, the
+ * next page starts right after it. Unlike an offset, the cursor keeps its place when members are added or removed
+ * in front of it. The names are compared by their UTF-8 bytes, like redis compares the sorted members.</p>
+ */
+final class CollectionCursor {
+
+    private static final char COLLECTION = '0';
+    private static final char RESOURCE = '1';
+
+    static final Comparator<Resource> ORDER = (a, b) -> compare(sortKey(a), sortKey(b));
+
+    private CollectionCursor() {
+    }
+
+    /**
+     * @return the sort key of the member, which is its name prefixed by the type of the member
+     */
+    static String sortKey(Resource item) {
+        return (item instanceof CollectionResource ? COLLECTION : RESOURCE) + item.name;
+    }
+
+    /**
+     * Compares by code point, which is the order of the UTF-8 bytes. {@link String#compareTo(String)} compares the
+     * UTF-16 chars instead, which orders the characters above U+FFFF before the ones from U+E000 to U+FFFF.
+     */
+    static int compare(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(j);
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+            j += Character.charCount(codePointB);
+        }
+        return Boolean.compare(i < a.length(), j < b.length());
+    }
+
+    /**
+     * @return the cursor of the page ending with the given member
+     */
+    static String encode(Resource lastItem) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sortKey(lastItem).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param cursor the cursor, <code>null</code> or empty for the first page
+     * @return the sort key of the last member of the previous page, or an empty string for the first page
+     * @throws IllegalArgumentException when the cursor was not returned by {@link #encode(Resource)}
+     */
+    static String decode(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return "";
+        }
+        String sortKey = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        if (sortKey.length() < 2 || (sortKey.charAt(0) != COLLECTION && sortKey.charAt(0) != RESOURCE)) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        return sortKey;
+    }
+
+    /**
+     * @return <code>true</code> when the cursor can be decoded
+     */
+    static boolean isValid(String cursor) {
+        try {
+            decode(cursor);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Lists the page following the cursor from all members of a collection.
+     *
+     * @param items all members of the collection, in any order
+     * @param limit the maximum amount of members of the page, -1 for all members following the cursor
+     * @return the page, with the cursor of the next page when more members follow
+     */
+    static CollectionResource page(List<Resource> items, String cursor, int limit) {
+        String after = decode(cursor);
+        List<Resource> sorted = new ArrayList<>(items);
+        sorted.sort(ORDER);
+        int from = 0;
+        if (!after.isEmpty()) {
+            while (from < sorted.size() && compare(sortKey(sorted.get(from)), after) <= 0) {
+                from++;
+            }
+        }
+        int to = limit > -1 ? Math.min(from + limit, sorted.size()) : sorted.size();
+        CollectionResource page = new CollectionResource();
+        page.items = new ArrayList<>(sorted.subList(from, to));
+        if (to < sorted.size() && !page.items.isEmpty()) {
+            page.nextCursor = encode(page.items.get(page.items.size() - 1));
+        }
+        return page;
+    }
+}
@@ -5,4 +5,6 @@ import java.util.List;
 
 public class CollectionResource extends Resource {
     public List<Resource> items;
+    /** the cursor of the next page when the collection is listed by cursor and more members follow */
+    public String nextCursor;
 }
@@ -0,0 +1,196 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import org.swisspush.reststorage.util.CompressionCodec.Compressor;
+import org.swisspush.reststorage.util.WorkerPool;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * {@link WriteStream} compressing the body of a PUT request chunk by chunk while it arrives.
+ *
+ * <p>The received buffers are compressed on the worker threads, all buffers received in the meantime at once. The
+ * write queue is full as long as more than the maximum size of buffers waits for the compression, so a body arriving
+ * faster than it is compressed pauses the request. Only the compressed body is held in memory as a whole.</p>
+ */
+public class CompressingWriteStream implements WriteStream<Buffer> {
+
+    private static final int DEFAULT_WRITE_QUEUE_MAX_SIZE = 262144;
+
+    private final WorkerPool pool;
+    private final Compressor compressor;
+
+    private List<Buffer> pending = new ArrayList<>();
+    private int pendingBytes = 0;
+    private int maxSize = DEFAULT_WRITE_QUEUE_MAX_SIZE;
+    private boolean compressing = false;
+    private boolean drainNeeded = false;
+    private Throwable failure;
+    private Handler<Void> drainHandler;
+    private Handler<Throwable> exceptionHandler;
+    private Handler<AsyncResult<byte[]>> endHandler;
+
+    public CompressingWriteStream(WorkerPool pool, Compressor compressor) {
+        this.pool = pool;
+        this.compressor = compressor;
+    }
+
+    @Override
+    public CompressingWriteStream write(Buffer data) {
+        if (failure != null || endHandler != null) {
+            return this;
+        }
+        pending.add(data);
+        pendingBytes += data.length();
+        if (writeQueueFull()) {
+            drainNeeded = true;
+        }
+        compressNext();
+        return this;
+    }
+
+    private void compressNext() {
+        if (compressing || pending.isEmpty()) {
+            return;
+        }
+        compressing = true;
+        final List<Buffer> buffers = pending;
+        pending = new ArrayList<>();
+        // the buffers of a stream are compressed one batch after the other, not ordered with other streams
+        pool.executeBlocking(future -> {
+            try {
+                for (Buffer buffer : buffers) {
+                    compressor.update(buffer.getBytes());
+                }
+                future.complete();
+            } catch (Exception ex) {
+                future.fail(ex);
+            }
+        }, event -> {
+            compressing = false;
+            for (Buffer buffer : buffers) {
+                pendingBytes -= buffer.length();
+            }
+            if (event.failed() && failure == null) {
+                failure = event.cause();
+                pending.clear();
+                pendingBytes = 0;
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(failure);
+                }
+            }
+            if (endHandler != null) {
+                checkEnded();
+                return;
+            }
+            compressNext();
+            if (drainNeeded && !writeQueueFull()) {
+                drainNeeded = false;
+                if (drainHandler != null) {
+                    drainHandler.handle(null);
+                }
+            }
+        });
+    }
+
+    /**
+     * Compresses the remaining data and notifies the handler with the compressed body as soon as it is complete.
+     *
+     * @param handler called when the stream has ended
+     */
+    public void end(Handler<AsyncResult<byte[]>> handler) {
+        if (endHandler != null) {
+            return;
+        }
+        endHandler = handler;
+        checkEnded();
+    }
+
+    /**
+     * Discards the data of an aborted request and closes the compressor, as soon as a running compression is done.
+     * Does nothing when the stream has already ended.
+     */
+    public void abort() {
+        if (endHandler != null) {
+            return;
+        }
+        for (Buffer buffer : pending) {
+            pendingBytes -= buffer.length();
+        }
+        pending.clear();
+        if (failure == null) {
+            failure = new IllegalStateException("The compression was aborted");
+        }
+        endHandler = event -> {
+            // nobody waits for an aborted stream
+        };
+        checkEnded();
+    }
+
+    private void checkEnded() {
+        compressNext();
+        if (compressing) {
+            return;
+        }
+        Handler<AsyncResult<byte[]>> handler = endHandler;
+        endHandler = event -> {
+            // already ended
+        };
+        if (failure != null) {
+            compressor.close();
+            handler.handle(Future.failedFuture(failure));
+            return;
+        }
+        pool.<byte[]>executeBlocking(future -> {
+            try {
+                future.complete(compressor.finish());
+            } catch (Exception ex) {
+                future.fail(ex);
+            } finally {
+                compressor.close();
+            }
+        }, event -> {
+            if (event.cause() instanceof RejectedExecutionException) {
+                // a rejected task never closes the compressor
+                compressor.close();
+            }
+            handler.handle(event);
+        });
+    }
+
+    @Override
+    public void end() {
+        end(event -> {
+            // nothing to do
+        });
+    }
+
+    @Override
+    public CompressingWriteStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public CompressingWriteStream setWriteQueueMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return pendingBytes >= maxSize;
+    }
+
+    @Override
+    public CompressingWriteStream drainHandler(Handler<Void> handler) {
+        this.drainHandler = handler;
+        return this;
+    }
+}
@@ -0,0 +1,122 @@
+package org.swisspush.reststorage;
+
+import io.netty.buffer.Unpooled;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.swisspush.reststorage.util.CompressionCodec.Decompressor;
+import org.swisspush.reststorage.util.WorkerPool;
+
+/**
+ * {@link ReadStream} decompressing a resource stored compressed chunk by chunk while it is read.
+ *
+ * <p>The chunks are decompressed on the worker threads one after the other. The next chunk is not decompressed before
+ * the previous one has been handed out and the stream is not paused, so at most one decompressed chunk is held in
+ * memory and the first bytes are delivered before the whole resource is decompressed.</p>
+ */
+public class DecompressingReadStream implements ReadStream<Buffer> {
+
+    private static final int CHUNK_SIZE = 65536;
+
+    private final WorkerPool pool;
+    private final Decompressor decompressor;
+
+    private boolean paused = false;
+    private boolean reading = false;
+    private boolean ended = false;
+    private boolean closed = false;
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public DecompressingReadStream(WorkerPool pool, Decompressor decompressor) {
+        this.pool = pool;
+        this.decompressor = decompressor;
+    }
+
+    private void readNext() {
+        if (paused || reading || ended || closed || handler == null) {
+            return;
+        }
+        reading = true;
+        // the chunks of a stream are decompressed one after the other, not ordered with other streams
+        pool.<byte[]>executeBlocking(future -> {
+            try {
+                future.complete(decompressor.read(CHUNK_SIZE));
+            } catch (Exception ex) {
+                future.fail(ex);
+            }
+        }, event -> {
+            reading = false;
+            if (closed) {
+                decompressor.close();
+                return;
+            }
+            if (event.failed()) {
+                ended = true;
+                close();
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(event.cause());
+                }
+                return;
+            }
+            if (event.result() == null) {
+                ended = true;
+                close();
+                if (endHandler != null) {
+                    endHandler.handle(null);
+                }
+                return;
+            }
+            if (event.result().length > 0) {
+                handler.handle(Buffer.buffer(Unpooled.wrappedBuffer(event.result())));
+            }
+            readNext();
+        });
+    }
+
+    /**
+     * Releases the decompressor, as soon as the chunk being decompressed is done.
+     */
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (!reading) {
+            decompressor.close();
+        }
+    }
+
+    @Override
+    public DecompressingReadStream handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        readNext();
+        return this;
+    }
+
+    @Override
+    public DecompressingReadStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public DecompressingReadStream resume() {
+        paused = false;
+        readNext();
+        return this;
+    }
+
+    @Override
+    public DecompressingReadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    @Override
+    public DecompressingReadStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+}
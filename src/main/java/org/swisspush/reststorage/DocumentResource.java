@@ -5,8 +5,11 @@ import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
 
 public class DocumentResource extends Resource {
-    public long length;
+    public long length; // The length of the content of the read stream, encoded with the content encoding
+    public String contentEncoding; // The content encoding of the read stream like gzip, or null for the plain content
+    public boolean encodingNegotiated; // Whether the content encoding depends on the encodings accepted by the request
     public String etag;
+    public long expirationTime = -1; // Expiration time in millis since epoch or -1 when the resource does not expire
     public ReadStream readStream;
     public WriteStream writeStream;    
     public Handler<Void> closeHandler; // Called by client to close the storage
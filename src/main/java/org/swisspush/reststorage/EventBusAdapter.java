@@ -12,6 +12,7 @@ import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.net.NetSocket;
 import io.vertx.core.net.SocketAddress;
+import org.swisspush.reststorage.util.StatusCode;
 
 import javax.net.ssl.SSLPeerUnverifiedException;
 import javax.net.ssl.SSLSession;
@@ -306,8 +307,18 @@ public class EventBusAdapter {
                         throw new UnsupportedOperationException();
                     }
 
+                    /**
+                     * The response is only sent when it ends, so a response closed because of a failure is answered
+                     * with an error instead of the incomplete content.
+                     */
                     @Override
-                    public void close() {}
+                    public void close() {
+                        statusCode = StatusCode.INTERNAL_SERVER_ERROR.getStatusCode();
+                        statusMessage = StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage();
+                        responseHeaders.clear();
+                        responsePayload = Buffer.buffer(statusMessage);
+                        end();
+                    }
 
                     @Override
                     public boolean ended() {
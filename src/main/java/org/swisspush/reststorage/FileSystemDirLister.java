@@ -2,9 +2,9 @@ package org.swisspush.reststorage;
 
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
-import io.vertx.core.Vertx;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
+import org.swisspush.reststorage.util.WorkerPool;
 
 import java.io.File;
 import java.io.IOException;
@@ -20,26 +20,38 @@ import java.util.stream.Stream;
  * This type handles listing of directories in filesystem.
  *
  * <p>Internally it makes use of worker-threads to keep eventloop-thread
- * responsive.</p>
+ * responsive. The listings run unordered on their own worker pool, so a
+ * large directory does not delay the other blocking tasks.</p>
  */
 public class FileSystemDirLister {
 
     private static final Logger log = LoggerFactory.getLogger(FileSystemDirLister.class);
-    private final Vertx vertx;
+    private final WorkerPool pool;
     private final String root;
 
-    public FileSystemDirLister(Vertx vertx, String root) {
-        this.vertx = vertx;
+    public FileSystemDirLister(WorkerPool pool, String root) {
+        this.pool = pool;
         this.root = root;
     }
 
     public void handleListingRequest(String path, final int offset, final int count, final Handler<Resource> handler) {
+        handleListingRequest(path, future -> listDirBlocking(path, offset, count, future), handler);
+    }
+
+    /**
+     * Lists the page of the directory following the cursor, in the order of {@link CollectionCursor}.
+     */
+    public void handleListingRequest(String path, final String cursor, final int count, final Handler<Resource> handler) {
+        handleListingRequest(path, future -> listPageBlocking(path, cursor, count, future), handler);
+    }
+
+    private void handleListingRequest(String path, Handler<Future<CollectionResource>> lister, Handler<Resource> handler) {
         // Delegate work to worker thread from thread pool.
         log.trace("Delegate to worker pool");
         final long startTimeMillis = System.currentTimeMillis();
-        vertx.executeBlocking(future -> {
+        pool.executeBlocking((Future<CollectionResource> future) -> {
             log.trace("Welcome on worker-thread.");
-            listDirBlocking(path, offset, count, (Future<CollectionResource>) (Future<?>) future);
+            lister.handle(future);
             log.trace("worker-thread says bye.");
         }, event -> {
             log.trace("Welcome back on eventloop-thread.");
@@ -58,7 +70,7 @@ public class FileSystemDirLister {
                 }};
                 handler.handle(erroneousResource);
             } else {
-                handler.handle((Resource) event.result());
+                handler.handle(event.result());
             }
         });
         log.trace("Work delegated.");
@@ -68,6 +80,47 @@ public class FileSystemDirLister {
         //
         // HINT: This method gets executed on a worker thread!
         //
+        final CollectionResource collection;
+        try {
+            collection = readDirBlocking(path);
+        } catch (IOException e) {
+            future.fail(e);
+            return;
+        }
+        Collections.sort(collection.items);
+        // Don't know exactly what we do here now. Seems we check 'limit' for a range request.
+        int n = count;
+        if (n == -1) {
+            n = collection.items.size();
+        }
+        // Don't know exactly what we do here. But it seems we evaluate 'start' of a range request.
+        if (offset > -1) {
+            if (offset >= collection.items.size() || (offset + n) >= collection.items.size() || (offset == 0 && n == -1)) {
+                future.complete(collection);
+            } else {
+                collection.items = collection.items.subList(offset, offset + n);
+                future.complete(collection);
+            }
+        } else {
+            // TODO: Resolve future
+            //       Previous implementation did nothing here. Why? Should we do something here?
+            //       See: "https://github.com/hiddenalpha/vertx-rest-storage/blob/v2.5.2/src/main/java/org/swisspush/reststorage/FileSystemStorage.java#L77"
+            log.warn("May we should do something here. I've no idea why old implementation did nothing.");
+        }
+    }
+
+    private void listPageBlocking(String path, String cursor, int count, Future<CollectionResource> future) {
+        //
+        // HINT: This method gets executed on a worker thread!
+        //
+        try {
+            future.complete(CollectionCursor.page(readDirBlocking(path).items, cursor, count));
+        } catch (IOException | IllegalArgumentException e) {
+            future.fail(e);
+        }
+    }
+
+    private CollectionResource readDirBlocking(String path) throws IOException {
         // Convert String to Path
         final Path searchPath = Paths.get(canonicalizeVirtualPath(path));
         // Prepare our result.
@@ -96,30 +149,8 @@ public class FileSystemDirLister {
                 resource.name = entryName;
                 collection.items.add(resource);
             });
-        } catch (IOException e) {
-            future.fail(e);
-            return;
-        }
-        Collections.sort(collection.items);
-        // Don't know exactly what we do here now. Seems we check 'limit' for a range request.
-        int n = count;
-        if (n == -1) {
-            n = collection.items.size();
-        }
-        // Don't know exactly what we do here. But it seems we evaluate 'start' of a range request.
-        if (offset > -1) {
-            if (offset >= collection.items.size() || (offset + n) >= collection.items.size() || (offset == 0 && n == -1)) {
-                future.complete(collection);
-            } else {
-                collection.items = collection.items.subList(offset, offset + n);
-                future.complete(collection);
-            }
-        } else {
-            // TODO: Resolve future
-            //       Previous implementation did nothing here. Why? Should we do something here?
-            //       See: "https://github.com/hiddenalpha/vertx-rest-storage/blob/v2.5.2/src/main/java/org/swisspush/reststorage/FileSystemStorage.java#L77"
-            log.warn("May we should do something here. I've no idea why old implementation did nothing.");
         }
+        return collection;
     }
 
     private String canonicalizeVirtualPath(String path) {
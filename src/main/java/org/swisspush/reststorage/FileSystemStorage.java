@@ -2,6 +2,8 @@ package org.swisspush.reststorage;
 
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
 import io.vertx.core.file.FileProps;
 import io.vertx.core.file.FileSystem;
 import io.vertx.core.file.FileSystemException;
@@ -9,11 +11,17 @@ import io.vertx.core.file.OpenOptions;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import org.swisspush.reststorage.util.LockMode;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+import org.swisspush.reststorage.util.StatusCode;
+import org.swisspush.reststorage.util.WorkerPool;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.DirectoryNotEmptyException;
 import java.nio.file.NoSuchFileException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -24,12 +32,22 @@ public class FileSystemStorage implements Storage {
     private final Vertx vertx;
     private final int rootLen;
     private final FileSystemDirLister fileSystemDirLister;
+    private final FileSystemTreeExpander fileSystemTreeExpander;
+    private final WorkerPool listingPool;
+    private final WorkerPool fsIoPool;
 
     private Logger log = LoggerFactory.getLogger(FileSystemStorage.class);
 
     public FileSystemStorage(Vertx vertx, String root) {
+        this(vertx, new ModuleConfiguration().root(root));
+    }
+
+    public FileSystemStorage(Vertx vertx, ModuleConfiguration config) {
+        String root = config.getRoot();
         this.vertx = vertx;
-        this.fileSystemDirLister = new FileSystemDirLister(vertx, root);
+        this.listingPool = WorkerPool.listing(vertx, config);
+        this.fsIoPool = WorkerPool.fsIo(vertx, config);
+        this.fileSystemDirLister = new FileSystemDirLister(listingPool, root);
         // Unify format for simpler work.
         String tmpRoot;
         try {
@@ -42,6 +60,7 @@ public class FileSystemStorage implements Storage {
             tmpRoot = tmpRoot.replaceAll("\\\\","/");
         }
         this.root = tmpRoot;
+        this.fileSystemTreeExpander = new FileSystemTreeExpander(vertx, fsIoPool, tmpRoot, config.getExpandMaxItems(), config.getExpandMaxBytes());
 
         // Cache string length of root without trailing slashes
         int rootLen;
@@ -49,6 +68,15 @@ public class FileSystemStorage implements Storage {
         this.rootLen = rootLen;
     }
 
+    /**
+     * @return the queued, executed and rejected tasks of the worker pools of the directory listings and the expands
+     */
+    public JsonObject getWorkerPoolStatistics() {
+        return new JsonObject()
+                .put(WorkerPool.LISTING, listingPool.getStatistics())
+                .put(WorkerPool.FS_IO, fsIoPool.getStatistics());
+    }
+
     @Override
     public Optional<Float> getCurrentMemoryUsage() {
         throw new UnsupportedOperationException("Method 'getCurrentMemoryUsage' is not yet implemented for the FileSystemStorage");
@@ -56,13 +84,49 @@ public class FileSystemStorage implements Storage {
 
     @Override
     public void get(String path, String etag, final int offset, final int count, final Handler<Resource> handler) {
+        get(path, () -> fileSystemDirLister.handleListingRequest(path, offset, count, handler), handler);
+    }
+
+    /**
+     * The files are not stored compressed, they are always delivered uncompressed.
+     */
+    @Override
+    public void get(String path, String etag, int offset, int count, boolean gzipAccepted, Handler<Resource> handler) {
+        get(path, etag, offset, count, handler);
+    }
+
+    @Override
+    public void get(String path, String etag, final String cursor, final int count, final Handler<Resource> handler) {
+        get(path, () -> fileSystemDirLister.handleListingRequest(path, cursor, count, handler), handler);
+    }
+
+    @Override
+    public void getBulk(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        Resource[] resources = new Resource[paths.size()];
+        int[] pending = {paths.size()};
+        if (pending[0] == 0) {
+            handler.handle(new ArrayList<>());
+            return;
+        }
+        for (int i = 0; i < paths.size(); i++) {
+            int index = i;
+            get(paths.get(i), etags.get(i), 0, -1, resource -> {
+                resources[index] = resource;
+                if (--pending[0] == 0) {
+                    handler.handle(Arrays.asList(resources));
+                }
+            });
+        }
+    }
+
+    private void get(String path, Runnable listDirectory, final Handler<Resource> handler) {
         final String fullPath = canonicalize(path);
         fileSystem().exists(fullPath, booleanAsyncResult -> {
             if (booleanAsyncResult.result()) {
                 fileSystem().props(fullPath, filePropsAsyncResult -> {
                     final FileProps props = filePropsAsyncResult.result();
                     if (props.isDirectory()) {
-                        fileSystemDirLister.handleListingRequest(path, offset, count, handler);
+                        listDirectory.run();
                     } else if (props.isRegularFile()) {
                         fileSystem().open(fullPath, new OpenOptions(), event1 -> {
                             DocumentResource d = new DocumentResource();
@@ -127,6 +191,44 @@ public class FileSystemStorage implements Storage {
         put(path, etag, merge, expire, "", LockMode.SILENT, 0, handler);
     }
 
+    /**
+     * Writes the documents one after the other, like single PUTs. Unlike in redis, the batch is not atomic: the
+     * documents written so far are visible while the batch is written.
+     */
+    @Override
+    public void putBatch(String path, List<BatchDocument> documents, Handler<Resource> handler) {
+        putBatch(path, documents.iterator(), handler);
+    }
+
+    private void putBatch(String path, Iterator<BatchDocument> remaining, Handler<Resource> handler) {
+        if (!remaining.hasNext()) {
+            handler.handle(new Resource());
+            return;
+        }
+        BatchDocument document = remaining.next();
+        put(document.path(path), document.etag, false, document.expire, resource -> {
+            if (resource.error) {
+                document.status = StatusCode.INTERNAL_SERVER_ERROR;
+            } else if (resource instanceof CollectionResource || !resource.exists) {
+                document.status = StatusCode.METHOD_NOT_ALLOWED;
+            } else if (resource instanceof DocumentResource) {
+                DocumentResource d = (DocumentResource) resource;
+                d.addErrorHandler(error -> {
+                    document.status = StatusCode.INTERNAL_SERVER_ERROR;
+                    putBatch(path, remaining, handler);
+                });
+                d.endHandler = event -> {
+                    document.status = StatusCode.OK;
+                    putBatch(path, remaining, handler);
+                };
+                d.writeStream.write(Buffer.buffer(document.content));
+                d.closeHandler.handle(null);
+                return;
+            }
+            putBatch(path, remaining, handler);
+        });
+    }
+
     private void putFile(final Handler<Resource> handler, final String fullPath) {
         // Delegate work to a dedicated file putter.
         final FilePutter filePutter;
@@ -169,6 +271,22 @@ public class FileSystemStorage implements Storage {
         });
     }
 
+    /**
+     * Deletes at once, a directory is removed by the file system without blocking other requests.
+     */
+    @Override
+    public void deleteAsync(String path, String jobId, String lockOwner, LockMode lockMode, long lockExpire,
+                            boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        delete(path, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+    }
+
+    @Override
+    public void getDeleteJob(String jobId, Handler<Resource> handler) {
+        Resource r = new Resource();
+        r.exists = false;
+        handler.handle(r);
+    }
+
     /**
      * Deletes all empty parent directories starting at specified directory.
      *
@@ -241,8 +359,18 @@ public class FileSystemStorage implements Storage {
         // nothing to do here
     }
 
+    @Override
+    public JsonObject getStatistics() {
+        return new JsonObject().put("workerPools", getWorkerPoolStatistics());
+    }
+
     @Override
     public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
         throw new UnsupportedOperationException("Method 'storageExpand' is not yet implemented for the FileSystemStorage");
     }
+
+    @Override
+    public void expand(String path, String etag, int depth, Handler<Resource> handler) {
+        fileSystemTreeExpander.handleExpandRequest(path, etag, depth, handler, () -> get(path, etag, 0, -1, handler));
+    }
 }
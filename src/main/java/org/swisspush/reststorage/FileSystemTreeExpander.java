@@ -0,0 +1,228 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.Json;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.swisspush.reststorage.util.WorkerPool;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+
+/**
+ * Expands a directory recursively into a single json document (see {@link Storage#expand(String, String, int, Handler)}).
+ *
+ * <p>The tree is walked on a worker-thread of the file system pool to keep eventloop-thread responsive. The etag of the expansion is derived
+ * from the depth, the paths, the modification times and the sizes of the members, so a not modified expansion is
+ * detected without reading any file.</p>
+ */
+public class FileSystemTreeExpander {
+
+    private static final Logger log = LoggerFactory.getLogger(FileSystemTreeExpander.class);
+    private final Vertx vertx;
+    private final WorkerPool pool;
+    private final String root;
+    private final int maxItems;
+    private final long maxBytes;
+
+    public FileSystemTreeExpander(Vertx vertx, WorkerPool pool, String root, int maxItems, long maxBytes) {
+        this.vertx = vertx;
+        this.pool = pool;
+        this.root = root;
+        this.maxItems = maxItems;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * @param document called instead of the handler when the path is a file
+     */
+    public void handleExpandRequest(String path, String etag, int depth, Handler<Resource> handler, Runnable document) {
+        final long startTimeMillis = System.currentTimeMillis();
+        pool.executeBlocking((Future<Resource> future) -> {
+            try {
+                future.complete(expandBlocking(path, etag, depth));
+            } catch (IOException e) {
+                future.fail(e);
+            }
+        }, event -> {
+            if (log.isDebugEnabled()) {
+                final long durationMillis = System.currentTimeMillis() - startTimeMillis;
+                log.debug("Expand directory '{}' took {}ms", path, durationMillis);
+            }
+            if (event.failed()) {
+                log.error("Directory expand failed.", event.cause());
+                Resource r = new Resource();
+                r.error = true;
+                r.errorMessage = event.cause().getMessage();
+                handler.handle(r);
+            } else if (event.result() == null) {
+                document.run();
+            } else {
+                handler.handle(event.result());
+            }
+        });
+    }
+
+    private Resource expandBlocking(String path, String etag, int depth) throws IOException {
+        //
+        // HINT: This method gets executed on a worker thread!
+        //
+        final File directory = new File(root + path).getCanonicalFile();
+        if (directory.isFile()) {
+            return null;
+        }
+        if (!directory.isDirectory()) {
+            Resource r = new Resource();
+            r.exists = false;
+            return r;
+        }
+        Expansion expansion = new Expansion(depth);
+        StringBuilder content = new StringBuilder();
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        // the name of the collection like in its listing
+        content.append('{').append(Json.encode(name.isEmpty() ? "root" : name)).append(':');
+        if (!expansion.expand(directory, "", 1, content)) {
+            Resource r = new Resource();
+            r.invalid = true;
+            r.invalidMessage = expansion.failure;
+            return r;
+        }
+        content.append('}');
+        String expansionEtag = DigestUtils.sha1Hex(expansion.digest.toString());
+        if (expansionEtag.equals(etag)) {
+            Resource r = new Resource();
+            r.modified = false;
+            return r;
+        }
+        byte[] expanded = content.toString().getBytes(StandardCharsets.UTF_8);
+        DocumentResource r = new DocumentResource();
+        r.readStream = new ByteArrayReadStream(vertx, expanded);
+        r.length = expanded.length;
+        r.etag = expansionEtag;
+        r.closeHandler = nothing -> {
+            // nothing to close
+        };
+        return r;
+    }
+
+    /**
+     * The state of a single tree walk.
+     */
+    private class Expansion {
+        private final int depth;
+        private final StringBuilder digest = new StringBuilder();
+        private int items = 0;
+        private long bytes = 0;
+        private String failure;
+
+        private Expansion(int depth) {
+            this.depth = depth;
+            digest.append(depth);
+        }
+
+        /**
+         * @return <code>false</code> when the limits are exceeded
+         */
+        private boolean expand(File directory, String relativePath, int level, StringBuilder content) throws IOException {
+            content.append('{');
+            boolean first = true;
+            for (File member : members(directory)) {
+                if (!count()) {
+                    return false;
+                }
+                String name = member.getName();
+                if (!first) {
+                    content.append(',');
+                }
+                first = false;
+                content.append(Json.encode(name)).append(':');
+                if (member.isDirectory() && level < depth) {
+                    if (!expand(member, relativePath + name + "/", level + 1, content)) {
+                        return false;
+                    }
+                } else if (member.isDirectory()) {
+                    if (!list(member, relativePath + name + "/", content)) {
+                        return false;
+                    }
+                } else {
+                    digest.append('\n').append(relativePath).append(name).append('=')
+                            .append(member.lastModified()).append(':').append(member.length());
+                    // no need to read a file which exceeds the limit anyway
+                    if (bytes + member.length() > maxBytes) {
+                        failure = tooLarge();
+                        return false;
+                    }
+                    if (!append(document(member), content)) {
+                        return false;
+                    }
+                }
+            }
+            content.append('}');
+            return true;
+        }
+
+        private boolean list(File directory, String relativePath, StringBuilder content) {
+            StringBuilder listing = new StringBuilder("[");
+            for (File member : members(directory)) {
+                if (!count()) {
+                    return false;
+                }
+                String name = member.isDirectory() ? member.getName() + "/" : member.getName();
+                digest.append('\n').append(relativePath).append(name);
+                listing.append(listing.length() == 1 ? "" : ",").append(Json.encode(name));
+            }
+            return append(listing.append(']').toString(), content);
+        }
+
+        private boolean count() {
+            items++;
+            if (items > maxItems) {
+                failure = "The subtree has more than " + maxItems + " members, use a smaller expand depth";
+                return false;
+            }
+            return true;
+        }
+
+        private boolean append(String value, StringBuilder content) {
+            bytes += value.length();
+            if (bytes > maxBytes) {
+                failure = tooLarge();
+                return false;
+            }
+            content.append(value);
+            return true;
+        }
+
+        private String tooLarge() {
+            return "The subtree has more than " + maxBytes + " bytes, use a smaller expand depth";
+        }
+
+        private File[] members(File directory) {
+            File[] members = directory.listFiles(member -> !(".tmp".equals(member.getName()) && directory.getPath().equals(root)));
+            if (members == null) {
+                return new File[0];
+            }
+            Arrays.sort(members);
+            return members;
+        }
+
+        /**
+         * @return the json objects and arrays as they are stored, other documents as json string
+         */
+        private String document(File file) throws IOException {
+            String text = new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+            String trimmed = text.trim();
+            if (trimmed.startsWith("{") || trimmed.startsWith("[")) {
+                return text;
+            }
+            return Json.encode(text);
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package org.swisspush.reststorage;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import io.vertx.core.json.Json;
+
+import java.io.IOException;
+
+/**
+ * Validates json by scanning its tokens while the content arrives, without building it.
+ * The content is valid when it is exactly one json value.
+ */
+class JsonScanner {
+
+    private final JsonParser parser;
+    private JsonToken firstToken;
+    private int depth;
+    private boolean complete;
+    private boolean valid = true;
+
+    JsonScanner() {
+        try {
+            parser = Json.mapper.getFactory().createNonBlockingByteArrayParser();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Unable to create the json parser", ex);
+        }
+    }
+
+    /**
+     * Validates the json object by scanning its tokens, without building it.
+     */
+    static boolean isJsonObject(byte[] content) {
+        JsonScanner scanner = new JsonScanner();
+        scanner.feed(content);
+        return scanner.end() && scanner.firstToken == JsonToken.START_OBJECT;
+    }
+
+    /**
+     * Scans the next part of the content.
+     */
+    void feed(byte[] content) {
+        if (!valid || content.length == 0) {
+            return;
+        }
+        try {
+            ((ByteArrayFeeder) parser.getNonBlockingInputFeeder()).feedInput(content, 0, content.length);
+        } catch (IOException ex) {
+            valid = false;
+            return;
+        }
+        scan();
+    }
+
+    /**
+     * Scans the end of the content.
+     *
+     * @return whether the whole content is valid json
+     */
+    boolean end() {
+        if (valid) {
+            parser.getNonBlockingInputFeeder().endOfInput();
+            scan();
+        }
+        try {
+            parser.close();
+        } catch (IOException ex) {
+            // nothing to release
+        }
+        return valid && complete;
+    }
+
+    private void scan() {
+        try {
+            JsonToken token;
+            while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+                if (complete) {
+                    // content after the value
+                    valid = false;
+                    return;
+                }
+                if (firstToken == null) {
+                    firstToken = token;
+                }
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+                complete = depth == 0;
+            }
+        } catch (IOException ex) {
+            valid = false;
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Holds the lua scripts of the {@link RedisStorage}.
+ *
+ * <p>Every script is composed once in two variants: without the <code>redis.log</code> output, and with it for
+ * trace logging. All variants are loaded into redis at once with {@link #load(Handler)}, which must complete before
+ * the storage is used. The variant executed is switched when the trace level of the storage log changes, which is
+ * checked periodically instead of on every request.</p>
+ *
+ * <p>When redis lost the scripts (e.g. after a restart), a command failing with <code>NOSCRIPT</code> calls
+ * {@link #reload(RedisCommand, int)}. All scripts are loaded again in one pipelined batch, and the commands waiting
+ * for the reload are replayed afterwards.</p>
+ */
+public class LuaScriptRegistry {
+
+    private Logger log = LoggerFactory.getLogger(LuaScriptRegistry.class);
+
+    static final long LOG_LEVEL_CHECK_INTERVAL_MS = 10000;
+    // a command failing with NOSCRIPT more often is aborted
+    private static final int MAX_EXECUTIONS = 10;
+    private static final String LOG_OUTPUT = "redis.log(redis.LOG_NOTICE,";
+
+    enum LuaScript {
+        GET("get.lua"), MULTI_GET("multiget.lua"), STORAGE_EXPAND("storageExpand.lua"), PUT("put.lua"), DELETE("del.lua"), CLEANUP("cleanup.lua"),
+        DELETE_SUBTREE("delete-subtree.lua"), MULTI_PUT("multiput.lua"), EXPAND("expand.lua");
+
+        private String file;
+
+        LuaScript(String file) {
+            this.file = file;
+        }
+
+        public String getFile() {
+            return file;
+        }
+    }
+
+    /**
+     * A command executing a lua script, which can be replayed after the scripts were reloaded.
+     */
+    interface RedisCommand {
+        void exec(int executionCounter);
+    }
+
+    /**
+     * A variant of a lua script.
+     */
+    static class Script {
+
+        private final String script;
+        /** the sha, over which the script can be accessed in redis */
+        private String sha;
+
+        private Script(String script) {
+            this.script = script;
+            this.sha = DigestUtils.sha1Hex(script);
+        }
+
+        public String getScript() {
+            return script;
+        }
+
+        public String getSha() {
+            return sha;
+        }
+    }
+
+    private final Vertx vertx;
+    private final RedisClientPool redisClientPool;
+    private final Logger storageLog;
+    private final Map<LuaScript, Script> scripts = new EnumMap<>(LuaScript.class);
+    private final Map<LuaScript, Script> traceScripts = new EnumMap<>(LuaScript.class);
+
+    private boolean trace;
+    private boolean loading = false;
+    private boolean loaded = false;
+    private long logLevelTimer = -1;
+    private List<Handler<AsyncResult<Void>>> loadHandlers = new ArrayList<>();
+    private List<RedisCommand> waitingCommands = new ArrayList<>();
+    private List<Integer> waitingExecutions = new ArrayList<>();
+
+    /**
+     * @param storageLog the log of the storage, the trace variants are executed when its trace level is enabled
+     */
+    public LuaScriptRegistry(Vertx vertx, RedisClientPool redisClientPool, Logger storageLog) {
+        this.vertx = vertx;
+        this.redisClientPool = redisClientPool;
+        this.storageLog = storageLog;
+        this.trace = storageLog.isTraceEnabled();
+        for (LuaScript type : LuaScript.values()) {
+            scripts.put(type, new Script(composeLuaScript(type, false)));
+            traceScripts.put(type, new Script(composeLuaScript(type, true)));
+        }
+    }
+
+    /**
+     * Loads all scripts into redis and starts to watch the log level. Commands executed meanwhile are executed when
+     * the scripts are loaded.
+     *
+     * @param handler the handler called when all scripts are loaded, or with the failure of the load
+     */
+    public void load(Handler<AsyncResult<Void>> handler) {
+        if (loaded && !loading) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        loadHandlers.add(handler);
+        if (!loading) {
+            loadAll();
+        }
+        if (logLevelTimer == -1) {
+            logLevelTimer = vertx.setPeriodic(LOG_LEVEL_CHECK_INTERVAL_MS, id -> updateLogLevel());
+        }
+    }
+
+    /**
+     * @return <code>true</code> when the scripts were loaded and no reload is in progress
+     */
+    public boolean isReady() {
+        return loaded && !loading;
+    }
+
+    /**
+     * @return the variant of the script matching the current log level
+     */
+    public Script get(LuaScript type) {
+        return trace ? traceScripts.get(type) : scripts.get(type);
+    }
+
+    /**
+     * Executes the command, or queues it while the scripts are (re)loaded.
+     */
+    public void execute(RedisCommand command) {
+        if (loading) {
+            waitingCommands.add(command);
+            waitingExecutions.add(0);
+        } else {
+            command.exec(0);
+        }
+    }
+
+    /**
+     * Reloads all scripts after the command failed with <code>NOSCRIPT</code> and replays it afterwards. Further
+     * commands failing during the reload are replayed too.
+     *
+     * @param command the command to replay
+     * @param executionCounter how many times the command was executed, to avoid an endless replay
+     * @return <code>false</code> when the command was executed too many times and is aborted
+     */
+    public boolean reload(RedisCommand command, int executionCounter) {
+        if (executionCounter > MAX_EXECUTIONS) {
+            log.error("amount the script got loaded is higher than " + MAX_EXECUTIONS + ", we abort");
+            return false;
+        }
+        waitingCommands.add(command);
+        waitingExecutions.add(executionCounter);
+        if (!loading) {
+            log.warn("lua scripts couldn't be found, reload them");
+            loadAll();
+        }
+        return true;
+    }
+
+    private void updateLogLevel() {
+        boolean traceEnabled = storageLog.isTraceEnabled();
+        if (traceEnabled != trace) {
+            log.info("switch lua scripts to logoutput: " + traceEnabled);
+            trace = traceEnabled;
+        }
+    }
+
+    /**
+     * Sends all variants to redis in one pipelined batch on a single connection.
+     */
+    private void loadAll() {
+        loading = true;
+        List<Script> all = new ArrayList<>(scripts.values());
+        all.addAll(traceScripts.values());
+        int[] pending = {all.size()};
+        Throwable[] failure = {null};
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        for (Script script : all) {
+            connection.client().scriptLoad(script.script, connection.track(event -> {
+                if (event.failed()) {
+                    failure[0] = event.cause();
+                } else if (!event.result().equals(script.sha)) {
+                    log.warn("the sha calculated by myself: " + script.sha + " doesn't match with the sha from redis: "
+                            + event.result() + ". We use the sha from redis");
+                    script.sha = event.result();
+                }
+                if (--pending[0] == 0) {
+                    loaded(failure[0]);
+                }
+            }));
+        }
+    }
+
+    private void loaded(Throwable failure) {
+        loading = false;
+        List<Handler<AsyncResult<Void>>> handlers = loadHandlers;
+        loadHandlers = new ArrayList<>();
+        List<RedisCommand> commands = waitingCommands;
+        List<Integer> executions = waitingExecutions;
+        waitingCommands = new ArrayList<>();
+        waitingExecutions = new ArrayList<>();
+        if (failure != null) {
+            log.error("Unable to load the lua scripts", failure);
+        } else {
+            loaded = true;
+            log.info("loaded " + LuaScript.values().length + " lua scripts, replay " + commands.size() + " commands");
+        }
+        // the commands are replayed even when the load failed, so that they report the failure of redis
+        for (int i = 0; i < commands.size(); i++) {
+            commands.get(i).exec(executions.get(i) + 1);
+        }
+        for (Handler<AsyncResult<Void>> handler : handlers) {
+            handler.handle(failure == null ? Future.succeededFuture() : Future.failedFuture(failure));
+        }
+    }
+
+    /**
+     * Reads the script from the classpath and removes the logging output unless logoutput is set.
+     */
+    private String composeLuaScript(LuaScript type, boolean logoutput) {
+        // It is not possible to evalsha or eval inside lua scripts,
+        // so we wrap the cleanupscript around the deletescript manually to avoid code duplication.
+        // we have to comment the return, so that the cleanup script doesn't terminate
+        if (LuaScript.CLEANUP.equals(type)) {
+            Map<String, String> values = new HashMap<>();
+            values.put("delscript", readLuaScriptFromClasspath(LuaScript.DELETE, logoutput).replaceAll("return", "--return"));
+            StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+            return sub.replace(readLuaScriptFromClasspath(LuaScript.CLEANUP, logoutput));
+        } else if (LuaScript.MULTI_GET.equals(type)) {
+            // the get script is wrapped in a function which is called for every key
+            Map<String, String> values = new HashMap<>();
+            values.put("getscript", readLuaScriptFromClasspath(LuaScript.GET, logoutput));
+            StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+            return sub.replace(readLuaScriptFromClasspath(LuaScript.MULTI_GET, logoutput));
+        } else if (LuaScript.MULTI_PUT.equals(type)) {
+            // the put script is wrapped in a function which is called for every document of a batch
+            Map<String, String> values = new HashMap<>();
+            values.put("putscript", readLuaScriptFromClasspath(LuaScript.PUT, logoutput));
+            StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+            return sub.replace(readLuaScriptFromClasspath(LuaScript.MULTI_PUT, logoutput));
+        }
+        return readLuaScriptFromClasspath(type, logoutput);
+    }
+
+    private String readLuaScriptFromClasspath(LuaScript type, boolean logoutput) {
+        StringBuilder sb = new StringBuilder();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(type.getFile()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (!logoutput && line.contains(LOG_OUTPUT)) {
+                    continue;
+                }
+                sb.append(line).append("\n");
+            }
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,77 @@
+package org.swisspush.reststorage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the listings of a collection which is spread over several redis slots or shards. Each listing holds the
+ * members stored in its slot or shard, the same member may be listed several times.
+ */
+class MergedCollection {
+
+    private final Map<String, Resource> members = new HashMap<>();
+    private Resource failure;
+
+    /**
+     * Adds the members of a listing. Listings of collections which do not exist are ignored.
+     */
+    void add(Resource listing) {
+        if (listing.error || listing.invalid) {
+            failure = listing;
+        } else if (listing instanceof CollectionResource) {
+            for (Resource item : ((CollectionResource) listing).items) {
+                members.putIfAbsent(item instanceof CollectionResource ? item.name + "/" : item.name, item);
+            }
+        }
+    }
+
+    /**
+     * Returns the sorted members, with offset and limit applied like for a single listing.
+     *
+     * @return the merged collection, a failed listing or a not existing resource when no listing had members
+     */
+    Resource result(int offset, int limit) {
+        if (failure != null) {
+            return failure;
+        }
+        if (members.isEmpty()) {
+            Resource r = new Resource();
+            r.exists = false;
+            return r;
+        }
+        List<Resource> items = new ArrayList<>(members.values());
+        Collections.sort(items);
+        int from = 0;
+        int to = items.size();
+        if (offset > -1) {
+            from = Math.min(offset, items.size());
+            if (limit > -1) {
+                to = Math.min(from + limit, items.size());
+            }
+        }
+        CollectionResource r = new CollectionResource();
+        r.items = new ArrayList<>(items.subList(from, to));
+        return r;
+    }
+
+    /**
+     * Returns the page of the members following the cursor.
+     *
+     * @return the page, a failed listing or a not existing resource when no listing had members
+     * @see CollectionCursor#page(List, String, int)
+     */
+    Resource page(String cursor, int limit) {
+        if (failure != null) {
+            return failure;
+        }
+        if (members.isEmpty()) {
+            Resource r = new Resource();
+            r.exists = false;
+            return r;
+        }
+        return CollectionCursor.page(new ArrayList<>(members.values()), cursor, limit);
+    }
+}
@@ -0,0 +1,380 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.swisspush.reststorage.util.LockMode;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * In-heap cache for documents in front of another {@link Storage}.
+ *
+ * <p>Document GETs are answered from memory as long as the cached entry is valid. Entries are dropped on local
+ * PUTs and DELETEs and whenever {@link #invalidate(String)} is called, which is used to propagate writes of other
+ * rest-storage instances. The cache is bounded by the amount of entries and by the total amount of cached bytes.
+ * The least recently used entries are evicted first.</p>
+ *
+ * <p>Like the storages themselves, an instance is meant to be used from a single verticle.</p>
+ */
+public class NearCacheStorage implements Storage {
+
+    private final Logger log = LoggerFactory.getLogger(NearCacheStorage.class);
+
+    private final Vertx vertx;
+    private final Storage storage;
+    private final int maxEntries;
+    private final long maxBytes;
+    private final int maxEntryBytes;
+    private final long ttlMs;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(128, 0.75f, true);
+    private long cachedBytes = 0;
+    // incremented on every invalidation, a load started before an invalidation must not be cached
+    private long epoch = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+    private long invalidations = 0;
+
+    public NearCacheStorage(Vertx vertx, Storage storage, ModuleConfiguration config) {
+        this.vertx = vertx;
+        this.storage = storage;
+        this.maxEntries = config.getNearCacheMaxEntries();
+        this.maxBytes = config.getNearCacheMaxBytes();
+        this.maxEntryBytes = config.getNearCacheMaxEntryBytes();
+        this.ttlMs = config.getNearCacheTtlMs();
+    }
+
+    private static class Entry {
+        private final Buffer content;
+        private final String etag;
+        private final long validUntil;
+
+        private Entry(Buffer content, String etag, long validUntil) {
+            this.content = content;
+            this.etag = etag;
+            this.validUntil = validUntil;
+        }
+    }
+
+    @Override
+    public Optional<Float> getCurrentMemoryUsage() {
+        return storage.getCurrentMemoryUsage();
+    }
+
+    @Override
+    public void get(String path, String etag, int offset, int count, Handler<Resource> handler) {
+        Entry entry = lookup(path);
+        if (entry != null) {
+            hits++;
+            handler.handle(cachedResource(entry, etag));
+            return;
+        }
+        misses++;
+        final long loadEpoch = epoch;
+        storage.get(path, etag, offset, count, resource -> load(path, resource, loadEpoch, handler));
+    }
+
+    /**
+     * The cache holds the uncompressed documents for all clients, so they are always delivered uncompressed.
+     */
+    @Override
+    public void get(String path, String etag, int offset, int count, boolean gzipAccepted, Handler<Resource> handler) {
+        get(path, etag, offset, count, handler);
+    }
+
+    /**
+     * Serves the cached documents and gets only the missed resources from the storage in a single bulk.
+     */
+    @Override
+    public void getBulk(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        Resource[] resources = new Resource[paths.size()];
+        List<Integer> missed = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            Entry entry = lookup(paths.get(i));
+            if (entry != null) {
+                hits++;
+                resources[i] = cachedResource(entry, etags.get(i));
+            } else {
+                misses++;
+                missed.add(i);
+            }
+        }
+        if (missed.isEmpty()) {
+            handler.handle(Arrays.asList(resources));
+            return;
+        }
+        List<String> missedPaths = new ArrayList<>();
+        List<String> missedEtags = new ArrayList<>();
+        for (int index : missed) {
+            missedPaths.add(paths.get(index));
+            missedEtags.add(etags.get(index));
+        }
+        final long loadEpoch = epoch;
+        storage.getBulk(missedPaths, missedEtags, loadedResources -> {
+            int[] pending = {missed.size()};
+            for (int i = 0; i < missed.size(); i++) {
+                int index = missed.get(i);
+                load(paths.get(index), loadedResources.get(i), loadEpoch, resource -> {
+                    resources[index] = resource;
+                    if (--pending[0] == 0) {
+                        handler.handle(Arrays.asList(resources));
+                    }
+                });
+            }
+        });
+    }
+
+    private Resource cachedResource(Entry entry, String etag) {
+        if (etag != null && etag.equals(entry.etag)) {
+            Resource r = new Resource();
+            r.modified = false;
+            return r;
+        }
+        return documentResource(entry);
+    }
+
+    /**
+     * Reads a document got from the storage into the cache, unless it is too large or the cache was invalidated
+     * while it was loaded.
+     */
+    private void load(String path, Resource resource, long loadEpoch, Handler<Resource> handler) {
+        if (!(resource instanceof DocumentResource) || !resource.exists || resource.error) {
+            handler.handle(resource);
+            return;
+        }
+        DocumentResource document = (DocumentResource) resource;
+        if (document.readStream == null || document.length > maxEntryBytes) {
+            handler.handle(resource);
+            return;
+        }
+        Buffer content = Buffer.buffer((int) document.length);
+        document.readStream.exceptionHandler(exception -> {
+            document.closeHandler.handle(null);
+            Resource r = new Resource();
+            r.error = true;
+            r.errorMessage = ((Throwable) exception).getMessage();
+            handler.handle(r);
+        });
+        document.readStream.handler(data -> content.appendBuffer((Buffer) data));
+        document.readStream.endHandler(nothing -> {
+            document.closeHandler.handle(null);
+            Entry loaded = new Entry(content, document.etag, validUntil(document));
+            if (loadEpoch == epoch) {
+                store(path, loaded);
+            }
+            handler.handle(documentResource(loaded));
+        });
+    }
+
+    /**
+     * Collections are not cached, the pages are listed by the storage.
+     */
+    @Override
+    public void get(String path, String etag, String cursor, int count, Handler<Resource> handler) {
+        storage.get(path, etag, cursor, count, handler);
+    }
+
+    @Override
+    public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
+        storage.storageExpand(path, etag, subResources, handler);
+    }
+
+    /**
+     * Expansions are not cached, the storage derives their etag from the members.
+     */
+    @Override
+    public void expand(String path, String etag, int depth, Handler<Resource> handler) {
+        storage.expand(path, etag, depth, handler);
+    }
+
+    @Override
+    public void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler) {
+        invalidateEntry(path);
+        storage.put(path, etag, merge, expire, invalidateOnClose(path, handler));
+    }
+
+    @Override
+    public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, Handler<Resource> handler) {
+        invalidateEntry(path);
+        storage.put(path, etag, merge, expire, lockOwner, lockMode, lockExpire, invalidateOnClose(path, handler));
+    }
+
+    @Override
+    public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, boolean storeCompressed, Handler<Resource> handler) {
+        invalidateEntry(path);
+        storage.put(path, etag, merge, expire, lockOwner, lockMode, lockExpire, storeCompressed, invalidateOnClose(path, handler));
+    }
+
+    @Override
+    public void putBatch(String path, List<BatchDocument> documents, Handler<Resource> handler) {
+        for (BatchDocument document : documents) {
+            invalidateEntry(document.path(path));
+        }
+        storage.putBatch(path, documents, resource -> {
+            for (BatchDocument document : documents) {
+                invalidateEntry(document.path(path));
+            }
+            handler.handle(resource);
+        });
+    }
+
+    @Override
+    public void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        invalidateSubtree(path);
+        storage.delete(path, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, resource -> {
+            invalidateSubtree(path);
+            handler.handle(resource);
+        });
+    }
+
+    @Override
+    public void deleteAsync(String path, String jobId, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        invalidateSubtree(path);
+        storage.deleteAsync(path, jobId, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, resource -> {
+            invalidateSubtree(path);
+            handler.handle(resource);
+        });
+    }
+
+    @Override
+    public void getDeleteJob(String jobId, Handler<Resource> handler) {
+        storage.getDeleteJob(jobId, handler);
+    }
+
+    @Override
+    public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount) {
+        storage.cleanup(handler, cleanupResourcesAmount);
+    }
+
+    /**
+     * @return the statistics of the cached storage, with the counters of this cache as <code>nearCache</code>
+     */
+    @Override
+    public JsonObject getStatistics() {
+        return storage.getStatistics().put("nearCache", getCacheStatistics());
+    }
+
+    /**
+     * Drops the cached entry of the given path. A path ending with a slash drops the whole subtree below it.
+     *
+     * @param path the path of the written or deleted resource
+     */
+    public void invalidate(String path) {
+        if (path.endsWith("/")) {
+            invalidateSubtree(path.substring(0, path.length() - 1));
+        } else {
+            invalidateEntry(path);
+        }
+    }
+
+    /**
+     * @return the current size and the counters of this cache
+     */
+    public JsonObject getCacheStatistics() {
+        return new JsonObject()
+                .put("entries", entries.size())
+                .put("bytes", cachedBytes)
+                .put("hits", hits)
+                .put("misses", misses)
+                .put("evictions", evictions)
+                .put("invalidations", invalidations);
+    }
+
+    private Handler<Resource> invalidateOnClose(String path, Handler<Resource> handler) {
+        return resource -> {
+            if (resource instanceof DocumentResource && ((DocumentResource) resource).closeHandler != null) {
+                DocumentResource document = (DocumentResource) resource;
+                Handler<Void> closeHandler = document.closeHandler;
+                document.closeHandler = event -> {
+                    // the body is complete, reads issued from now on could already see the new content
+                    invalidateEntry(path);
+                    closeHandler.handle(event);
+                };
+            }
+            handler.handle(resource);
+        };
+    }
+
+    private void invalidateEntry(String path) {
+        epoch++;
+        invalidations++;
+        remove(path);
+    }
+
+    private void invalidateSubtree(String path) {
+        epoch++;
+        invalidations++;
+        String prefix = path.endsWith("/") ? path : path + "/";
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Entry> entry = iterator.next();
+            if (entry.getKey().equals(path) || entry.getKey().startsWith(prefix)) {
+                cachedBytes -= entry.getValue().content.length();
+                iterator.remove();
+            }
+        }
+    }
+
+    private Entry lookup(String path) {
+        Entry entry = entries.get(path);
+        if (entry != null && entry.validUntil < System.currentTimeMillis()) {
+            remove(path);
+            return null;
+        }
+        return entry;
+    }
+
+    private void store(String path, Entry entry) {
+        remove(path);
+        entries.put(path, entry);
+        cachedBytes += entry.content.length();
+        Iterator<Entry> eldest = entries.values().iterator();
+        while (eldest.hasNext() && (entries.size() > maxEntries || cachedBytes > maxBytes)) {
+            cachedBytes -= eldest.next().content.length();
+            eldest.remove();
+            evictions++;
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("NearCacheStorage cached " + path + ", statistics: " + getCacheStatistics());
+        }
+    }
+
+    private void remove(String path) {
+        Entry removed = entries.remove(path);
+        if (removed != null) {
+            cachedBytes -= removed.content.length();
+        }
+    }
+
+    private long validUntil(DocumentResource document) {
+        long validUntil = ttlMs > 0 ? System.currentTimeMillis() + ttlMs : Long.MAX_VALUE;
+        if (document.expirationTime > -1) {
+            validUntil = Math.min(validUntil, document.expirationTime);
+        }
+        return validUntil;
+    }
+
+    private DocumentResource documentResource(Entry entry) {
+        DocumentResource r = new DocumentResource();
+        r.readStream = new ByteArrayReadStream(vertx, entry.content);
+        r.length = entry.content.length();
+        r.etag = entry.etag;
+        r.closeHandler = event -> {
+            // nothing to close
+        };
+        return r;
+    }
+}
@@ -0,0 +1,133 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Indexes the child collections of the existing collections of a {@link RedisStorage}.
+ *
+ * <p>The {@link RedisStorage} keeps a set of the child collections of every collection, so that a collection is
+ * listed without checking the type of every member, and the members of every collection sorted for the listing by
+ * cursor. The sets are maintained by every PUT and DELETE, the sets of the
+ * collections written before are created by this migration. It runs online, while the rest-storage instances are
+ * serving requests, once all instances maintain the sets. Every collection is indexed by a single lua script call.</p>
+ *
+ * <p>When all collections are indexed, the migration marks the storage as indexed. The instances list the collections
+ * with the child collection sets from then on.</p>
+ */
+public class RedisChildCollectionsMigration {
+
+    private Logger log = LoggerFactory.getLogger(RedisChildCollectionsMigration.class);
+
+    private static final String SCRIPT = "index-child-collections.lua";
+
+    private final RedisClient redisClient;
+    private final RedisKeyScanner scanner;
+    private final ModuleConfiguration config;
+    private final String script;
+
+    public RedisChildCollectionsMigration(RedisClient redisClient, ModuleConfiguration config) {
+        this.redisClient = redisClient;
+        this.scanner = new RedisKeyScanner(redisClient);
+        this.config = config;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(SCRIPT), StandardCharsets.UTF_8))) {
+            this.script = in.lines().collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Executes the migration.
+     *
+     * @param handler the handler receiving the amount of indexed collections and child collections
+     */
+    public void migrate(Handler<AsyncResult<JsonObject>> handler) {
+        List<String> arguments = Arrays.asList(config.getCollectionsPrefix(), config.getChildCollectionsPrefix(),
+                config.getSortedCollectionsPrefix());
+        long[] collections = {0};
+        long[] childCollections = {0};
+        scanner.scan(config.getCollectionsPrefix() + "*", (keys, done) -> {
+            if (keys.isEmpty()) {
+                done.handle(Future.succeededFuture());
+                return;
+            }
+            // the collections of a batch are indexed at the same time, every one in a call of its own
+            int[] pending = {keys.size()};
+            Throwable[] failure = {null};
+            for (String key : keys) {
+                redisClient.eval(script, Collections.singletonList(key), arguments, event -> {
+                    if (event.failed()) {
+                        failure[0] = event.cause();
+                    } else {
+                        collections[0]++;
+                        childCollections[0] += event.result().getLong(0);
+                    }
+                    if (--pending[0] == 0) {
+                        log.info("Indexed the child collections of " + collections[0] + " collections");
+                        done.handle(failure[0] == null ? Future.succeededFuture() : Future.failedFuture(failure[0]));
+                    }
+                });
+            }
+        }, indexed -> {
+            if (indexed.failed()) {
+                handler.handle(Future.failedFuture(indexed.cause()));
+                return;
+            }
+            redisClient.set(RedisStorage.childCollectionsIndexedKey(config), String.valueOf(System.currentTimeMillis()), event -> {
+                if (event.failed()) {
+                    handler.handle(Future.failedFuture(event.cause()));
+                    return;
+                }
+                handler.handle(Future.succeededFuture(new JsonObject()
+                        .put("indexedCollections", collections[0])
+                        .put("childCollections", childCollections[0])));
+            });
+        });
+    }
+
+    /**
+     * Migrates the redis configured in the given rest-storage configuration file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: RedisChildCollectionsMigration <rest-storage configuration json file>");
+            System.exit(1);
+        }
+        ModuleConfiguration config = ModuleConfiguration.fromJsonObject(
+                new JsonObject(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8)));
+        Vertx vertx = Vertx.vertx();
+        RedisClient redisClient = RedisClient.create(vertx, new RedisOptions()
+                .setHost(config.getRedisHost())
+                .setPort(config.getRedisPort())
+                .setAuth(config.getRedisAuth()));
+        new RedisChildCollectionsMigration(redisClient, config).migrate(event -> {
+            if (event.succeeded()) {
+                System.out.println(event.result().encodePrettily());
+            } else {
+                event.cause().printStackTrace();
+            }
+            vertx.close();
+        });
+    }
+}
@@ -0,0 +1,96 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+
+/**
+ * {@link ReadStream} over a resource stored in chunks by the {@link RedisStorage}.
+ *
+ * <p>The chunks are fetched one after the other. The next chunk is not fetched before the previous one has been
+ * handed out and the stream is not paused, so at most one chunk is held in memory.</p>
+ */
+public class RedisChunkReadStream implements ReadStream<Buffer> {
+
+    private final RedisClientPool redisClientPool;
+    private final String chunkKey;
+    private final int chunks;
+
+    private int nextChunk = 0;
+    private boolean paused = false;
+    private boolean reading = false;
+    private boolean ended = false;
+    private Handler<Buffer> handler;
+    private Handler<Void> endHandler;
+    private Handler<Throwable> exceptionHandler;
+
+    public RedisChunkReadStream(RedisClientPool redisClientPool, String chunkKey, int chunks) {
+        this.redisClientPool = redisClientPool;
+        this.chunkKey = chunkKey;
+        this.chunks = chunks;
+    }
+
+    private void readNext() {
+        if (paused || reading || ended || handler == null) {
+            return;
+        }
+        if (nextChunk >= chunks) {
+            ended = true;
+            if (endHandler != null) {
+                endHandler.handle(null);
+            }
+            return;
+        }
+        final int index = nextChunk++;
+        reading = true;
+        Connection connection = redisClientPool.connection(Lane.READ);
+        connection.client().getBinary(chunkKey + ":" + index, connection.track(event -> {
+            reading = false;
+            if (event.failed() || event.result() == null) {
+                ended = true;
+                Throwable cause = event.failed() ? event.cause()
+                        : new IllegalStateException("Chunk " + index + " of " + chunkKey + " does not exist anymore");
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(cause);
+                }
+                return;
+            }
+            handler.handle(event.result());
+            readNext();
+        }));
+    }
+
+    @Override
+    public RedisChunkReadStream handler(Handler<Buffer> handler) {
+        this.handler = handler;
+        readNext();
+        return this;
+    }
+
+    @Override
+    public RedisChunkReadStream pause() {
+        paused = true;
+        return this;
+    }
+
+    @Override
+    public RedisChunkReadStream resume() {
+        paused = false;
+        readNext();
+        return this;
+    }
+
+    @Override
+    public RedisChunkReadStream endHandler(Handler<Void> endHandler) {
+        this.endHandler = endHandler;
+        return this;
+    }
+
+    @Override
+    public RedisChunkReadStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+}
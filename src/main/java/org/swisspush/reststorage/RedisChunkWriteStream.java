@@ -0,0 +1,189 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.WriteStream;
+import io.vertx.redis.op.SetOptions;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link WriteStream} collecting the body of a PUT request for the {@link RedisStorage}.
+ *
+ * <p>As long as the body is not larger than the threshold, it is kept in memory. When the threshold is exceeded,
+ * the body is written to redis in chunks of a fixed size while it arrives. The chunks are stored with an
+ * expiration, so that chunks of aborted uploads disappear. They become persistent as soon as the put script
+ * references them from the resource.</p>
+ */
+public class RedisChunkWriteStream implements WriteStream<Buffer> {
+
+    private static final int MAX_PENDING_CHUNKS = 2;
+
+    private final RedisClientPool redisClientPool;
+    private final String chunkKey;
+    private final int threshold;
+    private final int chunkSize;
+    private final long uploadExpireMs;
+
+    private Buffer buffer = Buffer.buffer();
+    private boolean chunked = false;
+    private int chunks = 0;
+    private long length = 0;
+    private int pendingWrites = 0;
+    private Throwable failure;
+    private Handler<Void> drainHandler;
+    private Handler<Throwable> exceptionHandler;
+    private Handler<AsyncResult<Void>> endHandler;
+
+    public RedisChunkWriteStream(RedisClientPool redisClientPool, String chunkKey, int threshold, int chunkSize, long uploadExpireMs) {
+        this.redisClientPool = redisClientPool;
+        this.chunkKey = chunkKey;
+        this.threshold = threshold;
+        this.chunkSize = chunkSize;
+        this.uploadExpireMs = uploadExpireMs;
+    }
+
+    @Override
+    public RedisChunkWriteStream write(Buffer data) {
+        length += data.length();
+        buffer.appendBuffer(data);
+        if (!chunked && buffer.length() > threshold) {
+            chunked = true;
+        }
+        if (chunked) {
+            int position = 0;
+            while (buffer.length() - position >= chunkSize) {
+                writeChunk(buffer.slice(position, position + chunkSize));
+                position += chunkSize;
+            }
+            if (position > 0) {
+                buffer = buffer.getBuffer(position, buffer.length());
+            }
+        }
+        return this;
+    }
+
+    private void writeChunk(Buffer chunk) {
+        final int index = chunks++;
+        pendingWrites++;
+        Connection connection = redisClientPool.connection(Lane.WRITE);
+        connection.client().setBinaryWithOptions(chunkKey(index), chunk, new SetOptions().setPX(uploadExpireMs), connection.track(event -> {
+            pendingWrites--;
+            if (event.failed() && failure == null) {
+                failure = event.cause();
+                if (exceptionHandler != null) {
+                    exceptionHandler.handle(failure);
+                }
+            }
+            if (endHandler != null) {
+                checkEnded();
+            } else if (drainHandler != null && !writeQueueFull()) {
+                drainHandler.handle(null);
+            }
+        }));
+    }
+
+    /**
+     * Writes the remaining data and notifies the handler as soon as all chunks are stored.
+     *
+     * @param handler called when the stream has ended
+     */
+    public void end(Handler<AsyncResult<Void>> handler) {
+        endHandler = handler;
+        if (chunked && buffer.length() > 0) {
+            writeChunk(buffer);
+            buffer = Buffer.buffer();
+        }
+        checkEnded();
+    }
+
+    private void checkEnded() {
+        if (pendingWrites > 0) {
+            return;
+        }
+        Handler<AsyncResult<Void>> handler = endHandler;
+        endHandler = event -> {
+            // already ended
+        };
+        if (failure != null) {
+            handler.handle(Future.failedFuture(failure));
+        } else {
+            handler.handle(Future.succeededFuture());
+        }
+    }
+
+    @Override
+    public void end() {
+        end(event -> {
+            // nothing to do
+        });
+    }
+
+    @Override
+    public RedisChunkWriteStream exceptionHandler(Handler<Throwable> handler) {
+        this.exceptionHandler = handler;
+        return this;
+    }
+
+    @Override
+    public RedisChunkWriteStream setWriteQueueMaxSize(int maxSize) {
+        return this;
+    }
+
+    @Override
+    public boolean writeQueueFull() {
+        return pendingWrites >= MAX_PENDING_CHUNKS;
+    }
+
+    @Override
+    public RedisChunkWriteStream drainHandler(Handler<Void> handler) {
+        this.drainHandler = handler;
+        return this;
+    }
+
+    /**
+     * @return <code>true</code> when the body was larger than the threshold and has been written in chunks
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * @return the body when it was not written in chunks
+     */
+    public Buffer getBuffer() {
+        return buffer;
+    }
+
+    public String getChunkKey() {
+        return chunkKey;
+    }
+
+    public int getChunks() {
+        return chunks;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * @return the keys of all chunks written so far
+     */
+    public List<String> getChunkKeys() {
+        List<String> keys = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            keys.add(chunkKey(i));
+        }
+        return keys;
+    }
+
+    private String chunkKey(int index) {
+        return chunkKey + ":" + index;
+    }
+}
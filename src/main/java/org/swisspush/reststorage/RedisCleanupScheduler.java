@@ -0,0 +1,150 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+/**
+ * Removes the outdated resources of a {@link RedisStorage} continuously in the background.
+ *
+ * <p>The cleanup runs in bulks, one lua script call at a time. Redis is blocked during a call, so the bulk size is
+ * adapted to keep every call within the configured time budget: a call exceeding the budget shrinks the bulk size
+ * proportionally, a full bulk finishing within half of the budget doubles it. When the latency of the redis commands
+ * of the users exceeds the configured maximum, the cleanup pauses and continues with half the bulk size. Without
+ * outdated resources left, the cleanup pauses for the configured interval.</p>
+ */
+public class RedisCleanupScheduler {
+
+    private Logger log = LoggerFactory.getLogger(RedisCleanupScheduler.class);
+
+    static final int MIN_BULK_SIZE = 10;
+    static final int MAX_BULK_SIZE = 5000;
+    private static final int INITIAL_BULK_SIZE = 200;
+    // the backlog is counted and the rate is calculated at most once per interval
+    private static final long STATISTICS_INTERVAL_MS = 1000;
+
+    private final Vertx vertx;
+    private final RedisStorage storage;
+    private final long intervalMs;
+    private final long budgetMs;
+    private final long maxLatencyMs;
+
+    private boolean started = false;
+    private int bulkSize = INITIAL_BULK_SIZE;
+    private long batches = 0;
+    private long backoffs = 0;
+    private long cleanedTotal = 0;
+    private long lastBatchCleaned = 0;
+    private long lastBatchDurationMs = 0;
+    private long backlog = 0;
+    private double cleanedPerSecond = 0;
+    private long cleanedSinceStatistics = 0;
+    private long statisticsTime;
+
+    public RedisCleanupScheduler(Vertx vertx, RedisStorage storage, ModuleConfiguration config) {
+        this.vertx = vertx;
+        this.storage = storage;
+        this.intervalMs = config.getBackgroundCleanupIntervalMs();
+        this.budgetMs = config.getBackgroundCleanupBudgetMs();
+        this.maxLatencyMs = config.getBackgroundCleanupMaxLatencyMs();
+    }
+
+    /**
+     * Starts the cleanup. Calling it again has no effect.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        statisticsTime = System.currentTimeMillis();
+        log.info("Starting background cleanup with a budget of " + budgetMs + "ms per bulk");
+        vertx.setTimer(intervalMs, id -> runBulk());
+    }
+
+    private void runBulk() {
+        if (storage.getRequestLatencyMs() > maxLatencyMs) {
+            backoffs++;
+            bulkSize = Math.max(MIN_BULK_SIZE, bulkSize / 2);
+            if (log.isDebugEnabled()) {
+                log.debug("Background cleanup paused, the redis latency is above " + maxLatencyMs + "ms");
+            }
+            vertx.setTimer(intervalMs, id -> runBulk());
+            return;
+        }
+        final int size = bulkSize;
+        final long startTime = System.currentTimeMillis();
+        storage.cleanupNextBulk(size, cleaned -> {
+            long durationMs = System.currentTimeMillis() - startTime;
+            batches++;
+            cleanedTotal += cleaned;
+            cleanedSinceStatistics += cleaned;
+            lastBatchCleaned = cleaned;
+            lastBatchDurationMs = durationMs;
+            bulkSize = nextBulkSize(size, cleaned, durationMs, budgetMs);
+            if (log.isTraceEnabled()) {
+                log.trace("Background cleanup removed " + cleaned + " resources in " + durationMs + "ms, next bulk size " + bulkSize);
+            }
+            updateStatistics(() -> {
+                if (cleaned < size) {
+                    // no outdated resources left for now
+                    vertx.setTimer(intervalMs, id -> runBulk());
+                } else {
+                    // let the requests waiting on the event loop run in between
+                    vertx.runOnContext(event -> runBulk());
+                }
+            });
+        });
+    }
+
+    /**
+     * @return the bulk size keeping a cleanup call within the budget
+     */
+    static int nextBulkSize(int bulkSize, long cleaned, long durationMs, long budgetMs) {
+        int next = bulkSize;
+        if (durationMs > budgetMs) {
+            next = (int) (bulkSize * budgetMs / durationMs);
+        } else if (cleaned >= bulkSize && durationMs * 2 <= budgetMs) {
+            next = bulkSize * 2;
+        }
+        return Math.max(MIN_BULK_SIZE, Math.min(MAX_BULK_SIZE, next));
+    }
+
+    private void updateStatistics(Runnable next) {
+        long now = System.currentTimeMillis();
+        long elapsedMs = now - statisticsTime;
+        if (elapsedMs < STATISTICS_INTERVAL_MS) {
+            next.run();
+            return;
+        }
+        cleanedPerSecond = cleanedSinceStatistics * 1000.0 / elapsedMs;
+        if (cleanedSinceStatistics > 0) {
+            log.info("Background cleanup removed " + cleanedSinceStatistics + " resources ("
+                    + Math.round(cleanedPerSecond) + "/s), bulk size " + bulkSize);
+        }
+        cleanedSinceStatistics = 0;
+        statisticsTime = now;
+        storage.countExpiredResources(count -> {
+            backlog = count;
+            next.run();
+        });
+    }
+
+    /**
+     * @return the progress of the cleanup: the cleaned resources in total and per second, the outdated resources
+     * left, and the size and duration of the last bulk
+     */
+    public JsonObject getStatistics() {
+        return new JsonObject()
+                .put("cleanedResources", cleanedTotal)
+                .put("cleanedPerSecond", Math.round(cleanedPerSecond * 10) / 10.0)
+                .put("expiredResourcesLeft", backlog)
+                .put("batches", batches)
+                .put("backoffs", backoffs)
+                .put("bulkSize", bulkSize)
+                .put("lastBatchCleaned", lastBatchCleaned)
+                .put("lastBatchDurationMs", lastBatchDurationMs);
+    }
+}
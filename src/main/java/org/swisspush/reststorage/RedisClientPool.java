@@ -0,0 +1,225 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Pool of redis connections used by the {@link RedisStorage}.
+ *
+ * <p>The connections are grouped in lanes, so that slow maintenance commands like the cleanup never block the
+ * requests of the users. Within a lane, a command is dispatched to the connection with the least outstanding
+ * commands. A lane without connections of its own shares the connections of the {@link Lane#READ} lane. The
+ * maintenance lane counts the commands on the shared connections separately, so the maintenance commands never add
+ * to the latency of the requests of the users.</p>
+ *
+ * <p>The latency of a connection is a moving average of its commands, which decays while the connection is idle.
+ * So a past latency spike does not remain the latency of a connection without further commands.</p>
+ */
+public class RedisClientPool {
+
+    // weight of the latest measurement in the moving average of the latency
+    private static final double LATENCY_WEIGHT = 0.2;
+    // the moving average of the latency halves every interval without commands
+    static final long LATENCY_HALF_LIFE_MS = 5000;
+
+    public enum Lane {
+        /** GET and storageExpand requests */
+        READ,
+        /** PUT and DELETE requests */
+        WRITE,
+        /** cleanup, memory usage checks and script loading */
+        MAINTENANCE
+    }
+
+    private final Map<Lane, List<Connection>> lanes = new EnumMap<>(Lane.class);
+    private final Map<Lane, Integer> nextIndex = new EnumMap<>(Lane.class);
+
+    /**
+     * Creates a pool with the given number of connections per lane.
+     *
+     * @param readConnections number of connections for the read lane, at least 1
+     * @param writeConnections number of connections for the write lane, 0 to share the read connections
+     * @param maintenanceConnections number of connections for the maintenance lane, 0 to share the read connections
+     */
+    public RedisClientPool(Vertx vertx, RedisOptions options, int readConnections, int writeConnections,
+                           int maintenanceConnections) {
+        if (readConnections < 1) {
+            throw new IllegalArgumentException("At least one read connection is required");
+        }
+        lanes.put(Lane.READ, createConnections(vertx, options, Lane.READ, readConnections));
+        lanes.put(Lane.WRITE, writeConnections > 0
+                ? createConnections(vertx, options, Lane.WRITE, writeConnections) : lanes.get(Lane.READ));
+        lanes.put(Lane.MAINTENANCE, maintenanceConnections > 0
+                ? createConnections(vertx, options, Lane.MAINTENANCE, maintenanceConnections) : shared(lanes.get(Lane.READ)));
+    }
+
+    /**
+     * Creates a pool using the given client for all lanes.
+     */
+    public RedisClientPool(RedisClient redisClient) {
+        List<Connection> connections = Collections.singletonList(new Connection(Lane.READ + "-0", redisClient));
+        lanes.put(Lane.READ, connections);
+        lanes.put(Lane.WRITE, connections);
+        lanes.put(Lane.MAINTENANCE, shared(connections));
+    }
+
+    /**
+     * @return connections using the clients of the given connections, with counters of their own
+     */
+    private static List<Connection> shared(List<Connection> connections) {
+        List<Connection> shared = new ArrayList<>(connections.size());
+        for (Connection connection : connections) {
+            shared.add(new Connection(connection.name, connection.client));
+        }
+        return shared;
+    }
+
+    private static List<Connection> createConnections(Vertx vertx, RedisOptions options, Lane lane, int count) {
+        List<Connection> connections = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            connections.add(new Connection(lane + "-" + i, RedisClient.create(vertx, new RedisOptions(options))));
+        }
+        return connections;
+    }
+
+    /**
+     * Returns the connection of the lane with the least outstanding commands. Connections with the same number of
+     * outstanding commands are used in turns.
+     */
+    public Connection connection(Lane lane) {
+        List<Connection> connections = lanes.get(lane);
+        int size = connections.size();
+        if (size == 1) {
+            return connections.get(0);
+        }
+        int start = nextIndex.getOrDefault(lane, 0);
+        nextIndex.put(lane, (start + 1) % size);
+        Connection selected = null;
+        for (int i = 0; i < size; i++) {
+            Connection connection = connections.get((start + i) % size);
+            if (selected == null || connection.inFlight < selected.inFlight) {
+                selected = connection;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Shortcut for <code>connection(lane).client()</code> for commands which do not need to be tracked.
+     */
+    public RedisClient client(Lane lane) {
+        return connection(lane).client();
+    }
+
+    /**
+     * @return the highest moving average of the command latency of the connections of the lane
+     */
+    public double getLatencyMs(Lane lane) {
+        long now = System.currentTimeMillis();
+        double latencyMs = 0;
+        for (Connection connection : lanes.get(lane)) {
+            latencyMs = Math.max(latencyMs, connection.latencyMs(now));
+        }
+        return latencyMs;
+    }
+
+    /**
+     * @return the in-flight and total command counts and the latency of every connection, grouped by lane
+     */
+    public JsonObject getStatistics() {
+        JsonObject statistics = new JsonObject();
+        for (Map.Entry<Lane, List<Connection>> entry : lanes.entrySet()) {
+            JsonArray connections = new JsonArray();
+            for (Connection connection : entry.getValue()) {
+                connections.add(new JsonObject()
+                        .put("name", connection.name)
+                        .put("inFlight", connection.inFlight)
+                        .put("commands", connection.commands)
+                        .put("latencyMs", Math.round(connection.getLatencyMs() * 10) / 10.0));
+            }
+            statistics.put(entry.getKey().name().toLowerCase(), connections);
+        }
+        return statistics;
+    }
+
+    /**
+     * A single connection of the pool together with its in-flight counter and latency.
+     */
+    public static class Connection {
+
+        private final String name;
+        private final RedisClient client;
+        private int inFlight = 0;
+        private long commands = 0;
+        private double latencyMs = 0;
+        private long latencyTime = 0;
+
+        Connection(String name, RedisClient client) {
+            this.name = name;
+            this.client = client;
+        }
+
+        public RedisClient client() {
+            return client;
+        }
+
+        /**
+         * Counts a command as in-flight until the returned handler is called, and measures its latency.
+         *
+         * @param handler the result handler of the command
+         * @return the handler to pass to the redis client
+         */
+        public <T> Handler<AsyncResult<T>> track(Handler<AsyncResult<T>> handler) {
+            inFlight++;
+            commands++;
+            final long startTime = System.currentTimeMillis();
+            return event -> {
+                inFlight--;
+                long now = System.currentTimeMillis();
+                long durationMs = now - startTime;
+                double current = latencyMs(now);
+                latencyMs = latencyTime == 0 ? durationMs : current + LATENCY_WEIGHT * (durationMs - current);
+                latencyTime = now;
+                handler.handle(event);
+            };
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getInFlight() {
+            return inFlight;
+        }
+
+        public long getCommands() {
+            return commands;
+        }
+
+        public double getLatencyMs() {
+            return latencyMs(System.currentTimeMillis());
+        }
+
+        /**
+         * @return the moving average of the latency, decayed by the time since the last command completed
+         */
+        double latencyMs(long now) {
+            long idleMs = now - latencyTime;
+            if (latencyTime == 0 || idleMs <= 0) {
+                return latencyMs;
+            }
+            return latencyMs * Math.pow(0.5, idleMs / (double) LATENCY_HALF_LIFE_MS);
+        }
+    }
+}
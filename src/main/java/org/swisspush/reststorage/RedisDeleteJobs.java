@@ -0,0 +1,250 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.redis.op.SetOptions;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Runs the asynchronous deletes of collections of a {@link RedisStorage}.
+ *
+ * <p>An asynchronous delete detaches the collection in a single lua script call: the collection is removed from its
+ * parent and marked as deleted subtree, so that it is neither listed nor found anymore, and nothing can be written
+ * below it. A delete job removes the keys of the subtree afterwards, in bulks of about the configured size, one lua
+ * script call at a time. The progress of a job is kept in redis, so that it can be polled by its id.</p>
+ *
+ * <p>The instance running a job holds a lease on it, which it renews after every bulk. Every instance checks
+ * periodically for jobs without a valid lease, e.g. because the instance running them stopped, and resumes them.</p>
+ */
+public class RedisDeleteJobs {
+
+    private Logger log = LoggerFactory.getLogger(RedisDeleteJobs.class);
+
+    static final long LEASE_MS = 30_000;
+    private static final long RESUME_INTERVAL_MS = 10_000;
+    // a completed job can be polled for one day
+    private static final long COMPLETED_JOB_RETENTION_S = 86_400;
+
+    static final String STATE_RUNNING = "running";
+    static final String STATE_COMPLETED = "completed";
+
+    private final Vertx vertx;
+    private final RedisStorage storage;
+    private final RedisClientPool redisClientPool;
+    private final String deleteJobsPrefix;
+    private final int bulkSize;
+    // the owner of the leases taken by this instance
+    private final String instanceId = UUID.randomUUID().toString();
+    private final Set<String> runningJobs = new HashSet<>();
+
+    private long resumeTimer = -1;
+
+    public RedisDeleteJobs(Vertx vertx, RedisStorage storage, RedisClientPool redisClientPool, ModuleConfiguration config) {
+        this.vertx = vertx;
+        this.storage = storage;
+        this.redisClientPool = redisClientPool;
+        this.deleteJobsPrefix = config.getDeleteJobsPrefix();
+        this.bulkSize = config.getDeleteJobBulkSize();
+    }
+
+    /**
+     * Starts to resume the interrupted jobs. Calling it again has no effect.
+     */
+    public void start() {
+        if (resumeTimer != -1) {
+            return;
+        }
+        resumeTimer = vertx.setPeriodic(RESUME_INTERVAL_MS, id -> resume());
+        resume();
+    }
+
+    /**
+     * @return the hash of the subtrees detached in the slot of the hash tag, with the id of their delete job
+     */
+    String deletedSubtreesKey(String hashTag) {
+        return deleteJobsPrefix + ":subtrees" + hashTag;
+    }
+
+    /**
+     * @return the list of the collections left to delete by the job, in the slot of the hash tag
+     */
+    String pendingCollectionsKey(String jobId, String hashTag) {
+        return deleteJobsPrefix + ":" + jobId + ":collections" + hashTag;
+    }
+
+    private String jobKey(String jobId) {
+        return deleteJobsPrefix + ":" + jobId;
+    }
+
+    private String leaseKey(String jobId) {
+        return deleteJobsPrefix + ":" + jobId + ":lease";
+    }
+
+    /**
+     * Registers a job leased by this instance. The job is registered before its subtree is detached, so that it is
+     * resumed when this instance stops meanwhile.
+     *
+     * @param key the encoded path of the subtree, including its hash tag
+     */
+    void create(String jobId, String path, String hashTag, String key, Handler<AsyncResult<Void>> handler) {
+        JsonObject job = new JsonObject()
+                .put("path", path)
+                .put("hashTag", hashTag)
+                .put("key", key)
+                .put("state", STATE_RUNNING)
+                .put("deletedResources", "0")
+                .put("deletedCollections", "0")
+                .put("created", String.valueOf(System.currentTimeMillis()));
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().setWithOptions(leaseKey(jobId), instanceId, new SetOptions().setNX(true).setPX(LEASE_MS), connection.track(leased -> {
+            if (leased.failed() || leased.result() == null) {
+                handler.handle(Future.failedFuture(leased.failed() ? leased.cause() : new IllegalStateException("Delete job " + jobId + " exists")));
+                return;
+            }
+            connection.client().hmset(jobKey(jobId), job, connection.track(created -> {
+                if (created.failed()) {
+                    handler.handle(Future.failedFuture(created.cause()));
+                    return;
+                }
+                connection.client().sadd(deleteJobsPrefix, jobId, connection.track(added -> handler.handle(added.mapEmpty())));
+            }));
+        }));
+    }
+
+    /**
+     * Runs a job created by this instance, once its subtree is detached.
+     */
+    void run(String jobId, String hashTag, String key) {
+        runningJobs.add(jobId);
+        runBulk(jobId, hashTag, key, System.currentTimeMillis());
+    }
+
+    /**
+     * Removes a job created by this instance, when nothing was detached.
+     */
+    void discard(String jobId) {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().srem(deleteJobsPrefix, jobId, connection.track(removed -> {}));
+        connection.client().del(jobKey(jobId), connection.track(deleted -> {}));
+        connection.client().del(leaseKey(jobId), connection.track(deleted -> {}));
+    }
+
+    /**
+     * @param handler the handler receiving the progress of the job, or <code>null</code> when the job is unknown
+     */
+    void get(String jobId, Handler<AsyncResult<JsonObject>> handler) {
+        Connection connection = redisClientPool.connection(Lane.READ);
+        connection.client().hgetall(jobKey(jobId), connection.track(event -> {
+            if (event.failed()) {
+                handler.handle(Future.failedFuture(event.cause()));
+                return;
+            }
+            JsonObject job = event.result();
+            if (job == null || job.isEmpty()) {
+                handler.handle(Future.succeededFuture());
+                return;
+            }
+            JsonObject progress = new JsonObject()
+                    .put("id", jobId)
+                    .put("path", job.getString("path"))
+                    .put("state", job.getString("state"))
+                    .put("deletedResources", Long.parseLong(job.getString("deletedResources")))
+                    .put("deletedCollections", Long.parseLong(job.getString("deletedCollections")))
+                    .put("created", Long.parseLong(job.getString("created")));
+            if (job.getString("completed") != null) {
+                progress.put("completed", Long.parseLong(job.getString("completed")));
+            }
+            handler.handle(Future.succeededFuture(progress));
+        }));
+    }
+
+    private void resume() {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().smembers(deleteJobsPrefix, connection.track(event -> {
+            if (event.failed()) {
+                log.error("Unable to read the delete jobs: " + event.cause().getMessage());
+                return;
+            }
+            for (Object member : event.result()) {
+                String jobId = (String) member;
+                if (!runningJobs.contains(jobId)) {
+                    claim(jobId);
+                }
+            }
+        }));
+    }
+
+    private void claim(String jobId) {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().setWithOptions(leaseKey(jobId), instanceId, new SetOptions().setNX(true).setPX(LEASE_MS), connection.track(leased -> {
+            if (leased.failed() || leased.result() == null || runningJobs.contains(jobId)) {
+                // the job runs on another instance
+                return;
+            }
+            connection.client().hgetall(jobKey(jobId), connection.track(event -> {
+                if (event.failed()) {
+                    log.error("Unable to read the delete job " + jobId + ": " + event.cause().getMessage());
+                    return;
+                }
+                JsonObject job = event.result();
+                if (job == null || job.isEmpty() || STATE_COMPLETED.equals(job.getString("state"))) {
+                    connection.client().srem(deleteJobsPrefix, jobId, connection.track(removed -> {}));
+                    return;
+                }
+                log.info("Resuming the delete job " + jobId + " of " + job.getString("path"));
+                run(jobId, job.getString("hashTag"), job.getString("key"));
+            }));
+        }));
+    }
+
+    private void runBulk(String jobId, String hashTag, String key, long startTime) {
+        storage.deleteSubtreeBulk(pendingCollectionsKey(jobId, hashTag), hashTag, key, bulkSize, event -> {
+            if (event.failed()) {
+                // the job is resumed when its lease expired
+                log.error("Delete job " + jobId + " failed: " + event.cause().getMessage());
+                runningJobs.remove(jobId);
+                return;
+            }
+            JsonArray result = event.result();
+            long resources = result.getLong(0);
+            long collections = result.getLong(1);
+            long remaining = result.getLong(2);
+            Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+            connection.client().hincrby(jobKey(jobId), "deletedResources", resources, connection.track(counted -> {}));
+            connection.client().hincrby(jobKey(jobId), "deletedCollections", collections, connection.track(counted -> {}));
+            if (remaining > 0) {
+                connection.client().pexpire(leaseKey(jobId), LEASE_MS, connection.track(renewed -> {}));
+                // let the requests waiting on the event loop run in between
+                vertx.runOnContext(nothing -> runBulk(jobId, hashTag, key, startTime));
+                return;
+            }
+            complete(jobId, startTime);
+        });
+    }
+
+    private void complete(String jobId, long startTime) {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        JsonObject completed = new JsonObject()
+                .put("state", STATE_COMPLETED)
+                .put("completed", String.valueOf(System.currentTimeMillis()));
+        connection.client().hmset(jobKey(jobId), completed, connection.track(event -> {
+            connection.client().expire(jobKey(jobId), COMPLETED_JOB_RETENTION_S, connection.track(expiring -> {}));
+            connection.client().srem(deleteJobsPrefix, jobId, connection.track(removed -> {}));
+            connection.client().del(leaseKey(jobId), connection.track(deleted -> {}));
+            runningJobs.remove(jobId);
+            log.info("Delete job " + jobId + " completed in " + (System.currentTimeMillis() - startTime) + "ms");
+        }));
+    }
+}
@@ -0,0 +1,239 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Migrates the data of a {@link RedisStorage} to the hash tag key layout configured with <code>redisHashTagDepth</code>.
+ *
+ * <p>The migration runs in place on a standalone redis and must be executed while no rest-storage instance is
+ * running. The resources with their locks, deltas and chunks are renamed to the keys of their hash tag, the expirable
+ * entries are moved to the expirable set of the hash tag, and the collections above every resource are copied into
+ * the slot of its hash tag together with their child collection sets. Afterwards, the collections of the former
+ * layout are removed.</p>
+ *
+ * <p>Resources above the hash tag depth cannot be stored with hash tags. When such resources exist, nothing is
+ * migrated and the resources are reported.</p>
+ */
+public class RedisHashTagMigration {
+
+    private Logger log = LoggerFactory.getLogger(RedisHashTagMigration.class);
+
+    // set to very high value = Sat Nov 20 2286 17:46:39
+    private static final String MAX_EXPIRE_IN_MILLIS = "9999999999999";
+    private static final String SCRIPT = "migrate-hashtags.lua";
+    private static final int MAX_REPORTED_RESOURCES = 100;
+
+    private final RedisClient redisClient;
+    private final RedisKeyScanner scanner;
+    private final ModuleConfiguration config;
+    private final String script;
+
+    public RedisHashTagMigration(RedisClient redisClient, ModuleConfiguration config) {
+        if (config.getRedisHashTagDepth() <= 0) {
+            throw new IllegalArgumentException("The redisHashTagDepth must be configured to migrate to hash tags");
+        }
+        this.redisClient = redisClient;
+        this.scanner = new RedisKeyScanner(redisClient);
+        this.config = config;
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(SCRIPT), StandardCharsets.UTF_8))) {
+            this.script = in.lines().collect(Collectors.joining("\n"));
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Executes the migration.
+     *
+     * @param handler the handler receiving the amount of migrated resources and removed collections, or the
+     * resources above the hash tag depth when the migration was not possible
+     */
+    public void migrate(Handler<AsyncResult<JsonObject>> handler) {
+        List<String> tooShallow = new ArrayList<>();
+        long[] shallowCount = {0};
+        scanner.scan(resourcePattern(), (keys, done) -> {
+            for (String key : keys) {
+                if (RedisStorage.hashTagOf(encodedPath(key), config.getRedisHashTagDepth()) == null) {
+                    shallowCount[0]++;
+                    if (tooShallow.size() < MAX_REPORTED_RESOURCES) {
+                        tooShallow.add(key);
+                    }
+                }
+            }
+            done.handle(Future.succeededFuture());
+        }, checked -> {
+            if (checked.failed()) {
+                handler.handle(Future.failedFuture(checked.cause()));
+                return;
+            }
+            if (shallowCount[0] > 0) {
+                handler.handle(Future.succeededFuture(new JsonObject()
+                        .put("migratedResources", 0)
+                        .put("resourcesAboveHashTagDepth", shallowCount[0])
+                        .put("examples", new JsonArray(new ArrayList<Object>(tooShallow)))));
+                return;
+            }
+            migrateResources(handler);
+        });
+    }
+
+    private void migrateResources(Handler<AsyncResult<JsonObject>> handler) {
+        long[] migrated = {0};
+        scanner.scan(resourcePattern(), (keys, done) -> {
+            List<String> paths = new ArrayList<>(keys.size());
+            List<String> arguments = new ArrayList<>(Arrays.asList(
+                    config.getResourcesPrefix(),
+                    config.getCollectionsPrefix(),
+                    config.getDeltaResourcesPrefix(),
+                    config.getDeltaEtagsPrefix(),
+                    config.getExpirablePrefix(),
+                    config.getLockPrefix(),
+                    config.getChunksPrefix(),
+                    config.getHashTagsKey(),
+                    MAX_EXPIRE_IN_MILLIS,
+                    config.getChildCollectionsPrefix(),
+                    config.getSortedCollectionsPrefix()
+            ));
+            for (String key : keys) {
+                String path = encodedPath(key);
+                paths.add(path);
+                arguments.add(RedisStorage.hashTagOf(path, config.getRedisHashTagDepth()));
+            }
+            redisClient.eval(script, paths, arguments, event -> {
+                if (event.failed()) {
+                    done.handle(Future.failedFuture(event.cause()));
+                    return;
+                }
+                migrated[0] += event.result().getLong(0);
+                log.info("Migrated " + migrated[0] + " resources to hash tags");
+                done.handle(Future.succeededFuture());
+            });
+        }, resourcesMigrated -> {
+            if (resourcesMigrated.failed()) {
+                handler.handle(Future.failedFuture(resourcesMigrated.cause()));
+                return;
+            }
+            removeFormerCollections(migrated[0], handler);
+        });
+    }
+
+    private void removeFormerCollections(long migrated, Handler<AsyncResult<JsonObject>> handler) {
+        removeFormerKeys(config.getCollectionsPrefix(), collectionsRemoved -> {
+            if (collectionsRemoved.failed()) {
+                handler.handle(Future.failedFuture(collectionsRemoved.cause()));
+                return;
+            }
+            removeFormerKeys(config.getChildCollectionsPrefix(), childCollectionsRemoved -> {
+                if (childCollectionsRemoved.failed()) {
+                    handler.handle(Future.failedFuture(childCollectionsRemoved.cause()));
+                    return;
+                }
+                removeFormerKeys(config.getSortedCollectionsPrefix(), sortedCollectionsRemoved -> {
+                    if (sortedCollectionsRemoved.failed()) {
+                        handler.handle(Future.failedFuture(sortedCollectionsRemoved.cause()));
+                        return;
+                    }
+                    // entries of resources which do not exist anymore are left in the former expirable set
+                    redisClient.del(config.getExpirablePrefix(), event -> {
+                        if (event.failed()) {
+                            handler.handle(Future.failedFuture(event.cause()));
+                            return;
+                        }
+                        handler.handle(Future.succeededFuture(new JsonObject()
+                                .put("migratedResources", migrated)
+                                .put("removedCollections", collectionsRemoved.result())));
+                    });
+                });
+            });
+        });
+    }
+
+    /**
+     * Removes the keys of the former layout with the given prefix. The keys of the hash tags start with a brace.
+     */
+    private void removeFormerKeys(String prefix, Handler<AsyncResult<Long>> handler) {
+        long[] removed = {0};
+        scanner.scan(prefix + "*", (keys, done) -> {
+            List<String> formerKeys = new ArrayList<>();
+            for (String key : keys) {
+                if (key.equals(prefix) || key.startsWith(prefix + ":")) {
+                    formerKeys.add(key);
+                }
+            }
+            if (formerKeys.isEmpty()) {
+                done.handle(Future.succeededFuture());
+                return;
+            }
+            redisClient.delMany(formerKeys, event -> {
+                if (event.failed()) {
+                    done.handle(Future.failedFuture(event.cause()));
+                    return;
+                }
+                removed[0] += event.result();
+                done.handle(Future.succeededFuture());
+            });
+        }, keysRemoved -> {
+            if (keysRemoved.failed()) {
+                handler.handle(Future.failedFuture(keysRemoved.cause()));
+            } else {
+                handler.handle(Future.succeededFuture(removed[0]));
+            }
+        });
+    }
+
+    private String resourcePattern() {
+        // the resources of the hash tags start with a brace and are not matched
+        return config.getResourcesPrefix() + ":*";
+    }
+
+    private String encodedPath(String key) {
+        return key.substring(config.getResourcesPrefix().length());
+    }
+
+    /**
+     * Migrates the redis configured in the given rest-storage configuration file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.err.println("Usage: RedisHashTagMigration <rest-storage configuration json file>");
+            System.exit(1);
+        }
+        ModuleConfiguration config = ModuleConfiguration.fromJsonObject(
+                new JsonObject(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8)));
+        Vertx vertx = Vertx.vertx();
+        RedisClient redisClient = RedisClient.create(vertx, new RedisOptions()
+                .setHost(config.getRedisHost())
+                .setPort(config.getRedisPort())
+                .setAuth(config.getRedisAuth()));
+        new RedisHashTagMigration(redisClient, config).migrate(event -> {
+            if (event.succeeded()) {
+                System.out.println(event.result().encodePrettily());
+            } else {
+                event.cause().printStackTrace();
+            }
+            vertx.close();
+        });
+    }
+}
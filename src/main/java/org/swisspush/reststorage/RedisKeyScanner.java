@@ -0,0 +1,59 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.op.ScanOptions;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Iterates over the keys matching a pattern with <code>SCAN</code>, used by the migrations of the redis data.
+ * The next batch is scanned after the previous one was processed.
+ */
+class RedisKeyScanner {
+
+    private static final int SCAN_COUNT = 500;
+
+    /**
+     * Processes a batch of scanned keys.
+     */
+    interface BatchProcessor {
+        void process(List<String> keys, Handler<AsyncResult<Void>> done);
+    }
+
+    private final RedisClient redisClient;
+
+    RedisKeyScanner(RedisClient redisClient) {
+        this.redisClient = redisClient;
+    }
+
+    void scan(String pattern, BatchProcessor processor, Handler<AsyncResult<Void>> handler) {
+        scan("0", pattern, processor, handler);
+    }
+
+    private void scan(String cursor, String pattern, BatchProcessor processor, Handler<AsyncResult<Void>> handler) {
+        redisClient.scan(cursor, new ScanOptions().setMatch(pattern).setCount(SCAN_COUNT), event -> {
+            if (event.failed()) {
+                handler.handle(Future.failedFuture(event.cause()));
+                return;
+            }
+            String nextCursor = event.result().getString(0);
+            List<String> keys = new ArrayList<>();
+            for (Object key : event.result().getJsonArray(1)) {
+                keys.add((String) key);
+            }
+            processor.process(keys, processed -> {
+                if (processed.failed()) {
+                    handler.handle(processed);
+                } else if ("0".equals(nextCursor)) {
+                    handler.handle(Future.succeededFuture());
+                } else {
+                    scan(nextCursor, pattern, processor, handler);
+                }
+            });
+        });
+    }
+}
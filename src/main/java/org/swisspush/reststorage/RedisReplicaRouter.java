@@ -0,0 +1,277 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+import org.swisspush.reststorage.util.ModuleConfiguration.ReplicaRouting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Executes the read-only lua scripts of the {@link RedisStorage} on the redis read replicas.
+ *
+ * <p>A replica is selected in turns or by the lowest observed latency. When the replica fails, the script is executed
+ * on the primary. With a hedged read budget, the script is additionally sent to the primary when the replica did not
+ * reply within the budget. The first successful reply is used.</p>
+ *
+ * <p>The replicas are updated asynchronously. With a read after write window, all scripts are executed on the primary
+ * during this window after a write of this instance, so its own writes are not read back outdated.</p>
+ *
+ * <p>Without replicas, the scripts are executed on the read lane of the primary.</p>
+ */
+public class RedisReplicaRouter {
+
+    private Logger log = LoggerFactory.getLogger(RedisReplicaRouter.class);
+
+    // weight of the latest measurement in the moving average of the latency
+    private static final double LATENCY_WEIGHT = 0.2;
+    // latency added for a failed read, so that the replica is avoided for a while
+    private static final double FAILURE_PENALTY_MS = 1000.0;
+    // with latency based routing, every n-th read is routed in turns to refresh the latency of all replicas
+    private static final int PROBE_INTERVAL = 50;
+
+    private final Vertx vertx;
+    private final RedisClientPool primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ReplicaRouting routing;
+    private final long hedgedReadMs;
+    private final long readAfterWriteMs;
+
+    private int next = 0;
+    private long fallbacks = 0;
+    private long hedgedReads = 0;
+    private long readsAfterWrite = 0;
+    private long lastWrite = 0;
+
+    public RedisReplicaRouter(Vertx vertx, RedisClientPool primary, RedisOptions options, List<String> replicaEndpoints,
+                              ReplicaRouting routing, long hedgedReadMs, long readAfterWriteMs) {
+        this.vertx = vertx;
+        this.primary = primary;
+        this.routing = routing;
+        this.hedgedReadMs = hedgedReadMs;
+        this.readAfterWriteMs = readAfterWriteMs;
+        if (replicaEndpoints != null) {
+            for (String endpoint : replicaEndpoints) {
+                int separator = endpoint.lastIndexOf(':');
+                RedisOptions replicaOptions = new RedisOptions(options);
+                if (separator > 0) {
+                    replicaOptions.setHost(endpoint.substring(0, separator))
+                            .setPort(Integer.parseInt(endpoint.substring(separator + 1)));
+                } else {
+                    replicaOptions.setHost(endpoint);
+                }
+                replicas.add(new Replica(endpoint, RedisClient.create(vertx, replicaOptions)));
+            }
+        }
+    }
+
+    /**
+     * Creates a router without replicas, executing all scripts on the primary.
+     */
+    public RedisReplicaRouter(Vertx vertx, RedisClientPool primary) {
+        this(vertx, primary, null, null, ReplicaRouting.roundRobin, 0, 0);
+    }
+
+    /**
+     * Starts the read after write window, called for every write of this instance.
+     */
+    public void written() {
+        if (readAfterWriteMs > 0) {
+            lastWrite = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Executes a read-only lua script.
+     *
+     * @param sha the sha of the script
+     * @param script the script, loaded into a replica which does not know the sha yet
+     * @param keys the keys passed to the script
+     * @param arguments the arguments passed to the script
+     * @param handler the handler receiving the first successful reply, or the failure of the primary
+     */
+    public void evalsha(String sha, String script, List<String> keys, List<String> arguments,
+                        Handler<AsyncResult<JsonArray>> handler) {
+        if (replicas.isEmpty()) {
+            evalshaOnPrimary(sha, keys, arguments, handler);
+            return;
+        }
+        if (readAfterWriteMs > 0 && System.currentTimeMillis() - lastWrite < readAfterWriteMs) {
+            readsAfterWrite++;
+            evalshaOnPrimary(sha, keys, arguments, handler);
+            return;
+        }
+        new HedgedRead(sha, script, keys, arguments, handler).start(selectReplica());
+    }
+
+    private void evalshaOnPrimary(String sha, List<String> keys, List<String> arguments,
+                                  Handler<AsyncResult<JsonArray>> handler) {
+        Connection connection = primary.connection(Lane.READ);
+        connection.client().evalsha(sha, keys, arguments, connection.track(handler));
+    }
+
+    private Replica selectReplica() {
+        int size = replicas.size();
+        int start = next;
+        next = (next + 1) % size;
+        if (size == 1 || routing == ReplicaRouting.roundRobin || start % PROBE_INTERVAL == 0) {
+            return replicas.get(start);
+        }
+        Replica selected = null;
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (selected == null || replica.score() < selected.score()) {
+                selected = replica;
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * @return the reads, failures and latency of every replica, and the amount of reads executed on the primary
+     * instead of a replica, because a replica failed, was too slow or a write was too recent
+     */
+    public JsonObject getStatistics() {
+        JsonArray replicaStatistics = new JsonArray();
+        for (Replica replica : replicas) {
+            replicaStatistics.add(new JsonObject()
+                    .put("endpoint", replica.endpoint)
+                    .put("inFlight", replica.connection.getInFlight())
+                    .put("reads", replica.connection.getCommands())
+                    .put("failures", replica.failures)
+                    .put("latencyMs", Math.round(replica.latencyMs * 10) / 10.0));
+        }
+        return new JsonObject()
+                .put("replicas", replicaStatistics)
+                .put("fallbacks", fallbacks)
+                .put("hedgedReads", hedgedReads)
+                .put("readsAfterWrite", readsAfterWrite);
+    }
+
+    private static class Replica {
+
+        private final String endpoint;
+        private final Connection connection;
+        private double latencyMs = 0;
+        private long failures = 0;
+
+        Replica(String endpoint, RedisClient client) {
+            this.endpoint = endpoint;
+            this.connection = new Connection(endpoint, client);
+        }
+
+        double score() {
+            return latencyMs * (connection.getInFlight() + 1);
+        }
+
+        void succeeded(long durationMs) {
+            latencyMs = latencyMs == 0 ? durationMs : latencyMs + LATENCY_WEIGHT * (durationMs - latencyMs);
+        }
+
+        void failed() {
+            failures++;
+            latencyMs += FAILURE_PENALTY_MS;
+        }
+    }
+
+    /**
+     * A read sent to a replica, and to the primary when the replica fails or is too slow.
+     */
+    private class HedgedRead {
+
+        private final String sha;
+        private final String script;
+        private final List<String> keys;
+        private final List<String> arguments;
+        private final Handler<AsyncResult<JsonArray>> handler;
+
+        private boolean completed = false;
+        private boolean primarySent = false;
+        private boolean replicaPending = true;
+        private AsyncResult<JsonArray> primaryFailure;
+        private long timerId = -1;
+
+        HedgedRead(String sha, String script, List<String> keys, List<String> arguments,
+                   Handler<AsyncResult<JsonArray>> handler) {
+            this.sha = sha;
+            this.script = script;
+            this.keys = keys;
+            this.arguments = arguments;
+            this.handler = handler;
+        }
+
+        void start(Replica replica) {
+            final long startTime = System.currentTimeMillis();
+            replica.connection.client().evalsha(sha, keys, arguments, replica.connection.track(event -> {
+                replicaPending = false;
+                if (event.succeeded()) {
+                    replica.succeeded(System.currentTimeMillis() - startTime);
+                    complete(event);
+                    return;
+                }
+                replica.failed();
+                String message = event.cause().getMessage();
+                if (message != null && message.startsWith("NOSCRIPT")) {
+                    loadScript(replica);
+                } else {
+                    log.warn("Read on replica " + replica.endpoint + " failed, using the primary: " + message);
+                }
+                if (!primarySent) {
+                    fallbacks++;
+                    sendToPrimary();
+                } else if (primaryFailure != null) {
+                    complete(primaryFailure);
+                }
+            }));
+            if (hedgedReadMs > 0) {
+                timerId = vertx.setTimer(hedgedReadMs, id -> {
+                    timerId = -1;
+                    if (!completed && !primarySent) {
+                        hedgedReads++;
+                        sendToPrimary();
+                    }
+                });
+            }
+        }
+
+        private void loadScript(Replica replica) {
+            replica.connection.client().scriptLoad(script, event -> {
+                if (event.failed()) {
+                    log.error("Unable to load lua script into replica " + replica.endpoint, event.cause());
+                }
+            });
+        }
+
+        private void sendToPrimary() {
+            primarySent = true;
+            evalshaOnPrimary(sha, keys, arguments, event -> {
+                // a failure of the primary is only reported when the replica failed too
+                if (event.succeeded() || !replicaPending) {
+                    complete(event);
+                } else {
+                    primaryFailure = event;
+                }
+            });
+        }
+
+        private void complete(AsyncResult<JsonArray> event) {
+            if (completed) {
+                return;
+            }
+            completed = true;
+            if (timerId != -1) {
+                vertx.cancelTimer(timerId);
+            }
+            handler.handle(event);
+        }
+    }
+}
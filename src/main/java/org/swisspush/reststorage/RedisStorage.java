@@ -1,30 +1,49 @@
 package org.swisspush.reststorage;
 
+import io.vertx.core.AsyncResult;
 import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.json.DecodeException;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
-import io.vertx.core.streams.ReadStream;
 import io.vertx.core.streams.WriteStream;
 import io.vertx.redis.RedisClient;
 import io.vertx.redis.RedisOptions;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
-import org.apache.commons.lang.text.StrSubstitutor;
+import org.swisspush.reststorage.LuaScriptRegistry.LuaScript;
+import org.swisspush.reststorage.LuaScriptRegistry.RedisCommand;
+import org.swisspush.reststorage.LuaScriptRegistry.Script;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+import org.swisspush.reststorage.util.CompressionCodec;
+import org.swisspush.reststorage.util.CompressionCodec.Compressor;
+import org.swisspush.reststorage.util.CompressionCodec.Decompressor;
+import org.swisspush.reststorage.util.CompressionCodecs;
 import org.swisspush.reststorage.util.GZIPUtil;
 import org.swisspush.reststorage.util.LockMode;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 import org.swisspush.reststorage.util.ResourceNameUtil;
+import org.swisspush.reststorage.util.StatusCode;
+import org.swisspush.reststorage.util.WorkerPool;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.*;
-
+import java.util.function.BiConsumer;
+
+/**
+ * Stores the resources in redis.
+ *
+ * <p>The storage and its helpers, like the {@link RedisClientPool}, the {@link LuaScriptRegistry}, the
+ * {@link RedisReplicaRouter}, the {@link RedisCleanupScheduler} and the {@link RedisDeleteJobs}, are not thread safe.
+ * They must only be used from the event loop of the verticle which created the storage.</p>
+ */
 public class RedisStorage implements Storage {
 
     private Logger log = LoggerFactory.getLogger(RedisStorage.class);
@@ -32,68 +51,107 @@ public class RedisStorage implements Storage {
     // set to very high value = Sat Nov 20 2286 17:46:39
     private static final String MAX_EXPIRE_IN_MILLIS = "9999999999999";
     private final String EMPTY = "";
+    private static final String EMPTY_HASH_TAG = "";
     private static final float MAX_PERCENTAGE = 100.0f;
     private static final float MIN_PERCENTAGE = 0.0f;
     private static final int CLEANUP_BULK_SIZE = 200;
+    // chunks of uploads which did not complete within this time are removed by redis
+    private static final long CHUNK_UPLOAD_EXPIRE_MS = 3_600_000;
+    // how often an instance checks whether the child collections were indexed by the migration
+    private static final long CHILD_COLLECTIONS_CHECK_INTERVAL_MS = 10_000;
+    private static final String CHILD_COLLECTIONS_INDEXED_SUFFIX = "-indexed";
+    // how often the merge of a compressed resource is repeated when the resource is modified concurrently
+    private static final int MAX_MERGE_ATTEMPTS = 3;
 
     private String redisResourcesPrefix;
     private String redisCollectionsPrefix;
+    private String childCollectionsPrefix;
+    private String sortedCollectionsPrefix;
+    private boolean childCollectionsIndexed = false;
     private String redisDeltaResourcesPrefix;
     private String redisDeltaEtagsPrefix;
     private String expirableSet;
     private long cleanupResourcesAmount;
     private String redisLockPrefix;
+    private String chunksPrefix;
+    private int largeObjectThreshold;
+    private int largeObjectChunkSize;
+    private long largeObjectGracePeriodMs;
+    private int hashTagDepth;
+    private String hashTagsKey;
+    private String invalidationChannel;
+    private RedisOptions redisOptions;
+    private int getBatchSize;
+    private int expandMaxItems;
+    private long expandMaxBytes;
+    private int expandDecompressConcurrency;
+    private CompressionCodec compressionCodec;
+    private AutoCompressionPolicy autoCompression;
+    private WorkerPool codecPool;
+    private long getBatchWindowMs;
+    private List<PendingGet> pendingGets = new ArrayList<>();
+    private Iterator<String> nextCleanupHashTags = Collections.emptyIterator();
+    private RedisCleanupScheduler cleanupScheduler;
+    private RedisDeleteJobs deleteJobs;
     private Vertx vertx;
-    private RedisClient redisClient;
-    private Map<LuaScript,LuaScriptState> luaScripts = new HashMap<>();
+    private RedisClientPool redisClientPool;
+    private RedisReplicaRouter readRouter;
+    private LuaScriptRegistry luaScripts;
     private DecimalFormat decimalFormat;
 
     private Optional<Float> currentMemoryUsageOptional = Optional.empty();
 
     public RedisStorage(Vertx vertx, ModuleConfiguration config) {
-        this(vertx, config, RedisClient.create(vertx, new RedisOptions()
-                        .setHost(config.getRedisHost())
-                        .setPort(config.getRedisPort())
-                        .setAuth(config.getRedisAuth())
-                )
-        );
+        this(vertx, config, new RedisClientPool(vertx, redisOptions(config), config.getRedisReadConnections(),
+                config.getRedisWriteConnections(), config.getRedisMaintenanceConnections()));
     }
 
     public RedisStorage(Vertx vertx, ModuleConfiguration config, RedisClient redisClient) {
+        this(vertx, config, new RedisClientPool(redisClient));
+    }
+
+    public RedisStorage(Vertx vertx, ModuleConfiguration config, RedisClientPool redisClientPool) {
         this.expirableSet = config.getExpirablePrefix();
         this.redisResourcesPrefix = config.getResourcesPrefix();
         this.redisCollectionsPrefix = config.getCollectionsPrefix();
+        this.childCollectionsPrefix = config.getChildCollectionsPrefix();
+        this.sortedCollectionsPrefix = config.getSortedCollectionsPrefix();
         this.redisDeltaResourcesPrefix = config.getDeltaResourcesPrefix();
         this.redisDeltaEtagsPrefix = config.getDeltaEtagsPrefix();
         this.cleanupResourcesAmount = config.getResourceCleanupAmount();
         this.redisLockPrefix = config.getLockPrefix();
+        this.chunksPrefix = config.getChunksPrefix();
+        this.largeObjectThreshold = config.getLargeObjectThreshold();
+        this.largeObjectChunkSize = config.getLargeObjectChunkSize();
+        this.largeObjectGracePeriodMs = config.getLargeObjectGracePeriodMs();
+        this.hashTagDepth = config.getRedisHashTagDepth();
+        this.hashTagsKey = config.getHashTagsKey();
+        if (config.isNearCacheEnabled()) {
+            this.invalidationChannel = config.getNearCacheInvalidationChannel();
+        }
+        this.redisOptions = redisOptions(config);
+        this.getBatchSize = config.getRedisGetBatchSize();
+        this.getBatchWindowMs = config.getRedisGetBatchWindowMs();
+        this.expandMaxItems = config.getExpandMaxItems();
+        this.expandMaxBytes = config.getExpandMaxBytes();
+        this.expandDecompressConcurrency = config.getExpandDecompressConcurrency();
+        this.compressionCodec = CompressionCodecs.forName(config.getCompressionCodec(), config.getCompressionLevel());
+        this.autoCompression = new AutoCompressionPolicy(config);
+        this.codecPool = WorkerPool.codec(vertx, config);
 
         this.vertx = vertx;
-        this.redisClient = redisClient;
+        this.redisClientPool = redisClientPool;
+        this.readRouter = new RedisReplicaRouter(vertx, redisClientPool, redisOptions, config.getRedisReplicas(),
+                config.getRedisReplicaRouting(), config.getRedisHedgedReadMs(), config.getRedisReplicaReadAfterWriteMs());
 
         this.decimalFormat = new DecimalFormat();
         this.decimalFormat.setMaximumFractionDigits(1);
 
-        // load all the lua scripts
-        LuaScriptState luaGetScriptState = new LuaScriptState(LuaScript.GET, false);
-        luaGetScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.GET, luaGetScriptState);
-
-        LuaScriptState luaStorageExpandScriptState = new LuaScriptState(LuaScript.STORAGE_EXPAND, false);
-        luaStorageExpandScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.STORAGE_EXPAND, luaStorageExpandScriptState);
-
-        LuaScriptState luaPutScriptState = new LuaScriptState(LuaScript.PUT, false);
-        luaPutScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.PUT, luaPutScriptState);
-
-        LuaScriptState luaDeleteScriptState = new LuaScriptState(LuaScript.DELETE, false);
-        luaDeleteScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.DELETE, luaDeleteScriptState);
-
-        LuaScriptState luaCleanupScriptState = new LuaScriptState(LuaScript.CLEANUP, false);
-        luaCleanupScriptState.loadLuaScript(new RedisCommandDoNothing(), 0);
-        luaScripts.put(LuaScript.CLEANUP, luaCleanupScriptState);
+        this.luaScripts = new LuaScriptRegistry(vertx, redisClientPool, log);
+        if (config.isBackgroundCleanupEnabled()) {
+            this.cleanupScheduler = new RedisCleanupScheduler(vertx, this, config);
+        }
+        this.deleteJobs = new RedisDeleteJobs(vertx, this, redisClientPool, config);
 
         if(config.isRejectStorageWriteOnLowMemory()){
             calculateCurrentMemoryUsage().setHandler(optionalAsyncResult -> {
@@ -103,6 +161,205 @@ public class RedisStorage implements Storage {
         }
     }
 
+    private static RedisOptions redisOptions(ModuleConfiguration config) {
+        return new RedisOptions()
+                .setHost(config.getRedisHost())
+                .setPort(config.getRedisPort())
+                .setAuth(config.getRedisAuth());
+    }
+
+    /**
+     * Subscribes to the invalidation channel of the near cache. The handler is called with the path of every
+     * resource written or deleted by any rest-storage instance connected to the same redis. Paths ending with a
+     * slash denote a deleted subtree.
+     *
+     * @param handler the handler receiving the invalidated paths
+     */
+    public void subscribeInvalidations(Handler<String> handler) {
+        if (invalidationChannel == null) {
+            throw new IllegalStateException("Invalidations are only published when the near cache is enabled");
+        }
+        // the subscriber gets its own event bus address, messages would be load balanced between the
+        // instances otherwise
+        String address = "rest-storage-invalidations-" + UUID.randomUUID().toString();
+        RedisClient subscriber = RedisClient.create(vertx, new RedisOptions(redisOptions).setAddress(address));
+        vertx.eventBus().<JsonObject>consumer(address + "." + invalidationChannel, message -> {
+            JsonObject value = message.body().getJsonObject("value");
+            if (value != null && value.getString("message") != null) {
+                handler.handle(value.getString("message"));
+            }
+        });
+        subscriber.subscribe(invalidationChannel, event -> {
+            if (event.failed()) {
+                log.error("Unable to subscribe to invalidation channel " + invalidationChannel, event.cause());
+            }
+        });
+    }
+
+    /**
+     * Loads the lua scripts into redis. The storage must not be used before the scripts are loaded, requests issued
+     * meanwhile are executed afterwards. The background cleanup starts and the interrupted delete jobs are resumed
+     * when the scripts are loaded. Collections are
+     * listed with their child collection sets as soon as the existing collections are indexed.
+     *
+     * @param handler the handler called when the scripts are loaded, or with the failure of the load
+     */
+    public void loadScripts(Handler<AsyncResult<Void>> handler) {
+        luaScripts.load(loaded -> {
+            if (loaded.failed()) {
+                handler.handle(loaded);
+                return;
+            }
+            if (cleanupScheduler != null) {
+                cleanupScheduler.start();
+            }
+            deleteJobs.start();
+            checkChildCollectionsIndexed(indexed -> {
+                if (!indexed) {
+                    log.warn("The child collections are not indexed yet, collections are listed by checking the type"
+                            + " of every member. Run the RedisChildCollectionsMigration to index them");
+                    vertx.setPeriodic(CHILD_COLLECTIONS_CHECK_INTERVAL_MS, timerId -> checkChildCollectionsIndexed(done -> {
+                        if (done) {
+                            vertx.cancelTimer(timerId);
+                        }
+                    }));
+                }
+                handler.handle(loaded);
+            });
+        });
+    }
+
+    /**
+     * @return the key marking the child collections of all collections as indexed
+     */
+    static String childCollectionsIndexedKey(ModuleConfiguration config) {
+        return config.getChildCollectionsPrefix() + CHILD_COLLECTIONS_INDEXED_SUFFIX;
+    }
+
+    /**
+     * Checks whether the child collections of the existing collections were indexed. A storage without any
+     * collection is indexed from the start.
+     */
+    private void checkChildCollectionsIndexed(Handler<Boolean> handler) {
+        String indexedKey = childCollectionsPrefix + CHILD_COLLECTIONS_INDEXED_SUFFIX;
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().exists(indexedKey, connection.track(exists -> {
+            if (exists.failed()) {
+                log.error("Unable to check whether the child collections are indexed: " + exists.cause().getMessage());
+                handler.handle(false);
+                return;
+            }
+            if (exists.result() == 1) {
+                indexed(handler);
+                return;
+            }
+            Handler<AsyncResult<Long>> collectionsFound = found -> {
+                if (found.failed() || found.result() != 0) {
+                    handler.handle(false);
+                    return;
+                }
+                Connection setConnection = redisClientPool.connection(Lane.MAINTENANCE);
+                setConnection.client().set(indexedKey, String.valueOf(System.currentTimeMillis()), setConnection.track(set -> {
+                    if (set.failed()) {
+                        handler.handle(false);
+                    } else {
+                        indexed(handler);
+                    }
+                }));
+            };
+            Connection existsConnection = redisClientPool.connection(Lane.MAINTENANCE);
+            if (hashTagDepth > 0) {
+                existsConnection.client().scard(hashTagsKey, existsConnection.track(collectionsFound));
+            } else {
+                existsConnection.client().exists(redisCollectionsPrefix, existsConnection.track(collectionsFound));
+            }
+        }));
+    }
+
+    private void indexed(Handler<Boolean> handler) {
+        if (!childCollectionsIndexed) {
+            log.info("The child collections are indexed, collections are listed without checking their members");
+            childCollectionsIndexed = true;
+        }
+        handler.handle(true);
+    }
+
+    /**
+     * @return the prefix of the child collection sets used to list collections, or an empty string when the
+     * collections must be listed by checking the type of every member
+     */
+    private String listedChildCollectionsPrefix() {
+        return childCollectionsIndexed ? childCollectionsPrefix : EMPTY;
+    }
+
+    /**
+     * @return the prefix of the sorted members used to list collections by cursor, or an empty string when all
+     * members must be sorted
+     */
+    private String listedSortedCollectionsPrefix() {
+        return childCollectionsIndexed ? sortedCollectionsPrefix : EMPTY;
+    }
+
+    /**
+     * @return the hash of the subtrees detached by asynchronous deletes in the slot of the hash tag
+     */
+    private String deletedSubtreesKey(String hashTag) {
+        return deleteJobs.deletedSubtreesKey(hashTag);
+    }
+
+    /**
+     * @return the in-flight and total command counts of the redis connections, grouped by lane
+     */
+    public JsonObject getConnectionStatistics() {
+        return redisClientPool.getStatistics();
+    }
+
+    /**
+     * @return the reads, failures and latency of the redis read replicas
+     */
+    public JsonObject getReplicaStatistics() {
+        return readRouter.getStatistics();
+    }
+
+    /**
+     * @return the resources compressed by the automatic compression policy and the bytes saved, per path prefix
+     */
+    public JsonObject getCompressionStatistics() {
+        return autoCompression.getStatistics();
+    }
+
+    /**
+     * @return the queued, executed and rejected tasks of the worker pool compressing and decompressing the resources
+     */
+    public JsonObject getWorkerPoolStatistics() {
+        return codecPool.getStatistics();
+    }
+
+    @Override
+    public JsonObject getStatistics() {
+        JsonObject statistics = new JsonObject()
+                .put("connections", getConnectionStatistics())
+                .put("replicas", getReplicaStatistics())
+                .put("compression", getCompressionStatistics())
+                .put("workerPools", new JsonObject().put(WorkerPool.CODEC, getWorkerPoolStatistics()));
+        if (cleanupScheduler != null) {
+            statistics.put("cleanup", getCleanupStatistics());
+        }
+        return statistics;
+    }
+
+    private void publishInvalidation(String path) {
+        if (invalidationChannel == null) {
+            return;
+        }
+        Connection connection = redisClientPool.connection(Lane.WRITE);
+        connection.client().publish(invalidationChannel, path, connection.track(event -> {
+            if (event.failed()) {
+                log.warn("Unable to publish invalidation of " + path + ": " + event.cause().getMessage());
+            }
+        }));
+    }
+
     private void startPeriodicMemoryUsageUpdate(long intervalMs){
         vertx.setPeriodic(intervalMs, updateMemoryUsage ->{
             calculateCurrentMemoryUsage().setHandler(optionalAsyncResult -> {
@@ -113,7 +370,8 @@ public class RedisStorage implements Storage {
 
     public Future<Optional<Float>> calculateCurrentMemoryUsage(){
         Future<Optional<Float>> future = Future.future();
-        redisClient.infoSection("memory", memoryInfo -> {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().infoSection("memory", connection.track(memoryInfo -> {
             if (memoryInfo.failed()) {
                 log.error("Unable to get memory information from redis", memoryInfo.cause());
                 future.complete(Optional.empty());
@@ -158,7 +416,7 @@ public class RedisStorage implements Storage {
             }
             log.info("Current memory usage is " + decimalFormat.format(currentMemoryUsagePercentage) + "%");
             future.complete(Optional.of(currentMemoryUsagePercentage));
-        });
+        }));
         return future;
     }
 
@@ -166,354 +424,379 @@ public class RedisStorage implements Storage {
         log.warn("No or invalid '"+property+"' value received from redis. Unable to calculate the current memory usage. Exception: " + ex.toString());
     }
 
-    private enum LuaScript {
-        GET("get.lua"), STORAGE_EXPAND("storageExpand.lua"), PUT("put.lua"), DELETE("del.lua"), CLEANUP("cleanup.lua");
+    @Override
+    public Optional<Float> getCurrentMemoryUsage() {
+        return currentMemoryUsageOptional;
+    }
 
-        private String file;
+    @Override
+    public void get(String path, String etag, int offset, int limit, final Handler<Resource> handler) {
+        get(path, etag, offset, limit, false, handler);
+    }
 
-        LuaScript(String file) {
-            this.file = file;
+    @Override
+    public void get(String path, String etag, int offset, int limit, boolean gzipAccepted, final Handler<Resource> handler) {
+        final String key = encodePath(path);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            getAcrossHashTags(key, null, offset, limit, handler);
+            return;
         }
-
-        public String getFile() {
-            return file;
+        if (getBatchSize > 1) {
+            enqueueGet(new PendingGet(hashTag + key, etag, offset, limit, gzipAccepted, handler));
+            return;
         }
+        List<String> keys = Collections.singletonList(hashTag + key);
+        List<String> arguments = Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet + hashTag,
+                String.valueOf(System.currentTimeMillis()),
+                MAX_EXPIRE_IN_MILLIS,
+                String.valueOf(offset),
+                String.valueOf(limit),
+                etag == null ? EMPTY : etag,
+                listedChildCollectionsPrefix(),
+                EMPTY,
+                EMPTY,
+                deletedSubtreesKey(hashTag)
+        );
+        luaScripts.execute(new Get(keys, arguments, offset == 0 && limit == -1, gzipAccepted, handler));
     }
 
     /**
-     * Holds the state of a lua script.
+     * Lists the page of a collection by cursor from the sorted members, resuming right after the last member of the
+     * previous page. Until the collections are indexed, all members are sorted by the lua script instead.
      */
-    private class LuaScriptState {
-
-        private LuaScript luaScriptType;
-        /** the script itself */
-        private String script;
-        /** if the script logs to the redis log */
-        private boolean logoutput = false;
-        /** the sha, over which the script can be accessed in redis */
-        private String sha;
-
-        private LuaScriptState(LuaScript luaScriptType, boolean logoutput) {
-            this.luaScriptType = luaScriptType;
-            this.logoutput = logoutput;
-            this.composeLuaScript(luaScriptType);
-            this.loadLuaScript(new RedisCommandDoNothing(), 0);
+    @Override
+    public void get(String path, String etag, String cursor, int limit, final Handler<Resource> handler) {
+        final String after;
+        try {
+            after = CollectionCursor.decode(cursor);
+        } catch (IllegalArgumentException e) {
+            invalid(handler, e.getMessage());
+            return;
         }
-
-        /**
-         * Reads the script from the classpath and removes logging output if logoutput is false.
-         * The script is stored in the class member script.
-         * @param luaScriptType
-         */
-        private void composeLuaScript(LuaScript luaScriptType) {
-            log.info("read the lua script for script type: " + luaScriptType + " with logoutput: " + logoutput);
-
-            // It is not possible to evalsha or eval inside lua scripts,
-            // so we wrap the cleanupscript around the deletescript manually to avoid code duplication.
-            // we have to comment the return, so that the cleanup script doesn't terminate
-            if(LuaScript.CLEANUP.equals(luaScriptType)) {
-                Map<String, String> values = new HashMap<>();
-                values.put("delscript", readLuaScriptFromClasspath(LuaScript.DELETE).replaceAll("return", "--return"));
-                StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
-                this.script = sub.replace(readLuaScriptFromClasspath(LuaScript.CLEANUP));
-            } else {
-                this.script = readLuaScriptFromClasspath(luaScriptType);
-            }
-            this.sha = DigestUtils.sha1Hex(this.script);
+        final String key = encodePath(path);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            getAcrossHashTags(key, cursor, 0, limit, handler);
+            return;
         }
+        List<String> keys = Collections.singletonList(hashTag + key);
+        List<String> arguments = Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet + hashTag,
+                String.valueOf(System.currentTimeMillis()),
+                MAX_EXPIRE_IN_MILLIS,
+                "0",
+                String.valueOf(limit),
+                etag == null ? EMPTY : etag,
+                listedChildCollectionsPrefix(),
+                after.isEmpty() ? "-" : "(" + after,
+                listedSortedCollectionsPrefix(),
+                deletedSubtreesKey(hashTag)
+        );
+        luaScripts.execute(new Get(keys, arguments, after.isEmpty() && limit == -1, handler));
+    }
 
-        private String readLuaScriptFromClasspath(LuaScript luaScriptType) {
-            BufferedReader in = new BufferedReader(new InputStreamReader(this.getClass().getClassLoader().getResourceAsStream(luaScriptType.getFile())));
-            StringBuilder sb;
-            try {
-                sb = new StringBuilder();
-                String line;
-                while ((line = in.readLine()) != null) {
-                    if (!logoutput && line.contains("redis.log(redis.LOG_NOTICE,")) {
-                        continue;
+    /**
+     * Lists a collection above the hash tag depth. Its members are spread over the slots of the hash tags below it,
+     * so the listings of all these slots are merged.
+     *
+     * @param cursor the cursor of the page, or <code>null</code> to list by offset
+     */
+    private void getAcrossHashTags(String key, String cursor, int offset, int limit, Handler<Resource> handler) {
+        hashTagsBelow(key, handler, hashTags -> {
+            if (hashTags.isEmpty()) {
+                notFound(handler);
+                return;
+            }
+            // the same collection exists in the slots of all hash tags below it
+            MergedCollection merged = new MergedCollection();
+            int[] pending = {hashTags.size()};
+            for (String hashTag : hashTags) {
+                List<String> keys = Collections.singletonList(hashTag + key);
+                List<String> arguments = Arrays.asList(
+                        redisResourcesPrefix,
+                        redisCollectionsPrefix,
+                        expirableSet + hashTag,
+                        String.valueOf(System.currentTimeMillis()),
+                        MAX_EXPIRE_IN_MILLIS,
+                        "0",
+                        "-1",
+                        EMPTY,
+                        listedChildCollectionsPrefix(),
+                        EMPTY,
+                        EMPTY,
+                        deletedSubtreesKey(hashTag)
+                );
+                luaScripts.execute(new Get(keys, arguments, true, resource -> {
+                    merged.add(resource);
+                    if (--pending[0] == 0) {
+                        handler.handle(cursor == null ? merged.result(offset, limit) : merged.page(cursor, limit));
                     }
-                    sb.append(line).append("\n");
-                }
-
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            } finally {
-                try {
-                    in.close();
-                } catch (IOException e) {
-                    // Ignore
-                }
+                }));
             }
-            return sb.toString();
-        }
+        });
+    }
 
-        /**
-         * Rereads the lua script, eg. if the loglevel changed.
-         */
-        public void recomposeLuaScript() {
-            this.composeLuaScript(luaScriptType);
+    /**
+     * The Get Command Execution.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     * To avoid an endless replay, the executions are limited.
+     */
+    private class Get implements RedisCommand {
+
+        private List<String> keys;
+        private List<String> arguments;
+        private boolean allMembers;
+        private boolean gzipAccepted;
+        private Handler<Resource> handler;
+
+        public Get(List<String> keys, List<String> arguments, boolean allMembers, final Handler<Resource> handler) {
+            this(keys, arguments, allMembers, false, handler);
         }
 
         /**
-         * Load the get script into redis and store the sha in the class member sha.
-         * @param redisCommand the redis command that should be executed, after the script is loaded.
-         * @param executionCounter a counter to control recursion depth
+         * @param allMembers <code>true</code> when the first page lists all members, a collection without members is
+         *                   not found then
          */
-        public void loadLuaScript(final RedisCommand redisCommand, int executionCounter) {
-            final int executionCounterIncr = ++executionCounter;
+        public Get(List<String> keys, List<String> arguments, boolean allMembers, boolean gzipAccepted, final Handler<Resource> handler) {
+            this.keys = keys;
+            this.arguments = arguments;
+            this.allMembers = allMembers;
+            this.gzipAccepted = gzipAccepted;
+            this.handler = handler;
+        }
 
-            // check first if the lua script already exists in the store
-            redisClient.scriptExists(this.sha, resultArray -> {
-                if(resultArray.failed()){
-                    log.error("Error checking whether lua script exists", resultArray.cause());
-                    return;
-                }
-                Long exists = resultArray.result().getLong(0);
-                // if script already
-                if(Long.valueOf(1).equals(exists)) {
-                    log.debug("RedisStorage script already exists in redis cache: " + luaScriptType);
-                    redisCommand.exec(executionCounterIncr);
+        public void exec(final int executionCounter) {
+            Script state = luaScripts.get(LuaScript.GET);
+            readRouter.evalsha(state.getSha(), state.getScript(), keys, arguments, event -> {
+                if(event.succeeded()){
+                    JsonArray values = event.result();
+                    if (log.isTraceEnabled()) {
+                        log.trace("RedisStorage get result: " + values);
+                    }
+                    handleGetValues(values, handler, allMembers, gzipAccepted);
                 } else {
-                    log.info("load lua script for script type: " + luaScriptType + " logutput: " + logoutput);
-                    redisClient.scriptLoad(script, stringAsyncResult -> {
-                        String newSha = stringAsyncResult.result();
-                        log.info("got sha from redis for lua script: " + luaScriptType + ": " + newSha);
-                        if(!newSha.equals(sha)) {
-                            log.warn("the sha calculated by myself: " + sha + " doesn't match with the sha from redis: " + newSha + ". We use the sha from redis");
+                    String message = event.cause().getMessage();
+                    if(message != null && message.startsWith("NOSCRIPT")) {
+                        log.warn("get script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(new Get(keys, arguments, allMembers, gzipAccepted, handler), executionCounter)) {
+                            return;
                         }
-                        sha = newSha;
-                        log.info("execute redis command for script type: " + luaScriptType + " with new sha: " + sha);
-                        redisCommand.exec(executionCounterIncr);
-                    });
+                    }
+                    log.error("GET request failed with message: " + message);
+                    error(handler, message);
                 }
             });
         }
-
-        public String getScript() {
-            return script;
-        }
-
-        public void setScript(String script) {
-            this.script = script;
-        }
-
-        public boolean getLogoutput() {
-            return logoutput;
-        }
-
-        public void setLogoutput(boolean logoutput) {
-            this.logoutput = logoutput;
-        }
-
-        public String getSha() {
-            return sha;
-        }
-
-        public void setSha(String sha) {
-            this.sha = sha;
-        }
     }
 
     /**
-     * The interface for a redis command.
+     * A GET waiting to be executed together with other GETs in a single multi-key call.
      */
-    private interface RedisCommand {
-        void exec(int executionCounter);
-    }
+    private static class PendingGet {
 
-    /**
-     * A dummy that can be passed if no RedisCommand should be executed.
-     */
-    private class RedisCommandDoNothing implements RedisCommand {
+        private final String key;
+        private final String etag;
+        private final int offset;
+        private final int limit;
+        private final boolean gzipAccepted;
+        private final Handler<Resource> handler;
+
+        private PendingGet(String key, String etag, int offset, int limit, boolean gzipAccepted, Handler<Resource> handler) {
+            this.key = key;
+            this.etag = etag;
+            this.offset = offset;
+            this.limit = limit;
+            this.gzipAccepted = gzipAccepted;
+            this.handler = handler;
+        }
 
-        @Override public void exec(int executionCounter) {
-            // do nothing here
+        private boolean allowEmptyReturn() {
+            return offset == 0 && limit == -1;
         }
     }
 
     /**
-     * If the loglevel is trace and the logoutput in luaScriptState is false, then reload the script with logoutput and execute the RedisCommand.
-     * If the loglevel is not trace and the logoutput in luaScriptState is true, then reload the script without logoutput and execute the RedisCommand.
-     * If the loglevel is matching the luaScriptState, just execute the RedisCommand.
-     *
-     * @param luaScript the type of lua script
-     * @param redisCommand the redis command to execute
+     * Collects the GETs issued within the configured window (or the current event loop tick when no window
+     * is configured) and executes them at once when the window has elapsed or the batch is full.
      */
-    private void reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript luaScript, RedisCommand redisCommand, int executionCounter) {
-        boolean logoutput = log.isTraceEnabled();
-        LuaScriptState luaScriptState = luaScripts.get(luaScript);
-        // if the loglevel didn't change, execute the command and return
-        if(logoutput == luaScriptState.getLogoutput()) {
-            redisCommand.exec(executionCounter);
-            return;
-            // if the loglevel changed, set the new loglevel into the luaScriptState, recompose the script and provide the redisCommand as parameter to execute
-        } else if(logoutput && ! luaScriptState.getLogoutput()) {
-            luaScriptState.setLogoutput(true);
-            luaScriptState.recomposeLuaScript();
-
-        } else if(! logoutput && luaScriptState.getLogoutput()) {
-            luaScriptState.setLogoutput(false);
-            luaScriptState.recomposeLuaScript();
+    private void enqueueGet(PendingGet pendingGet) {
+        pendingGets.add(pendingGet);
+        if (pendingGets.size() >= getBatchSize) {
+            flushGets();
+        } else if (pendingGets.size() == 1) {
+            if (getBatchWindowMs > 0) {
+                vertx.setTimer(getBatchWindowMs, timerId -> flushGets());
+            } else {
+                vertx.runOnContext(event -> flushGets());
+            }
         }
-        luaScriptState.loadLuaScript(redisCommand, executionCounter);
     }
 
-    public class ByteArrayReadStream implements ReadStream<Buffer> {
-
-        ByteArrayInputStream content;
-        int size;
-        boolean paused;
-        int position;
-        Handler<Void> endHandler;
-        Handler<Buffer> handler;
-
-        public ByteArrayReadStream(byte[] byteArray) {
-            size = byteArray.length;
-            content = new ByteArrayInputStream(byteArray);
-        }
-
-        private void doRead() {
-            vertx.runOnContext(v -> {
-                if (!paused) {
-                    if (position < size) {
-                        int toRead = 8192;
-                        if (position + toRead > size) {
-                            toRead = size - position;
-                        }
-                        byte[] bytes = new byte[toRead];
-                        content.read(bytes, 0, toRead);
-                        handler.handle(Buffer.buffer(bytes));
-                        position += toRead;
-                        doRead();
-                    } else {
-                        endHandler.handle(null);
-                    }
-                }
-            });
-        }
-
-        public ByteArrayReadStream resume() {
-            paused = false;
-            doRead();
-            return this;
+    private void flushGets() {
+        if (pendingGets.isEmpty()) {
+            return;
         }
+        List<PendingGet> batch = pendingGets;
+        pendingGets = new ArrayList<>();
 
-        @Override
-        public ByteArrayReadStream pause() {
-            paused = true;
-            return this;
+        // with hash tags, a single call may only contain the keys of one slot
+        Map<String, List<PendingGet>> batchesByHashTag = new LinkedHashMap<>();
+        for (PendingGet pendingGet : batch) {
+            batchesByHashTag.computeIfAbsent(hashTagOfTaggedKey(pendingGet.key), hashTag -> new ArrayList<>()).add(pendingGet);
         }
-
-        @Override
-        public ByteArrayReadStream exceptionHandler(Handler<Throwable> handler) {
-            return this;
+        for (Map.Entry<String, List<PendingGet>> entry : batchesByHashTag.entrySet()) {
+            executeGets(entry.getKey(), entry.getValue());
         }
+    }
 
-        @Override
-        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
-            this.handler = handler;
-            doRead();
-            return this;
+    private void executeGets(String hashTag, List<PendingGet> batch) {
+        List<String> keys = new ArrayList<>(batch.size());
+        List<String> arguments = new ArrayList<>(7 + batch.size() * 3);
+        arguments.add(redisResourcesPrefix);
+        arguments.add(redisCollectionsPrefix);
+        arguments.add(expirableSet + hashTag);
+        arguments.add(String.valueOf(System.currentTimeMillis()));
+        arguments.add(MAX_EXPIRE_IN_MILLIS);
+        arguments.add(listedChildCollectionsPrefix());
+        arguments.add(deletedSubtreesKey(hashTag));
+        for (PendingGet pendingGet : batch) {
+            keys.add(pendingGet.key);
+            arguments.add(String.valueOf(pendingGet.offset));
+            arguments.add(String.valueOf(pendingGet.limit));
+            arguments.add(pendingGet.etag == null ? EMPTY : pendingGet.etag);
         }
-
-        @Override
-        public ByteArrayReadStream endHandler(Handler<Void> endHandler) {
-            this.endHandler = endHandler;
-            return this;
+        if (log.isTraceEnabled()) {
+            log.trace("RedisStorage execute " + batch.size() + " coalesced GETs");
         }
-    }
-
-    @Override
-    public Optional<Float> getCurrentMemoryUsage() {
-        return currentMemoryUsageOptional;
-    }
-
-    @Override
-    public void get(String path, String etag, int offset, int limit, final Handler<Resource> handler) {
-        final String key = encodePath(path);
-        List<String> keys = Collections.singletonList(key);
-        List<String> arguments = Arrays.asList(
-                redisResourcesPrefix,
-                redisCollectionsPrefix,
-                expirableSet,
-                String.valueOf(System.currentTimeMillis()),
-                MAX_EXPIRE_IN_MILLIS,
-                String.valueOf(offset),
-                String.valueOf(limit),
-                etag
-        );
-        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.GET, new Get(keys, arguments, handler), 0);
+        luaScripts.execute(new MultiGet(keys, arguments, batch));
     }
 
     /**
-     * The Get Command Execution.
-     * If the get script cannot be found under the sha in luaScriptState, reload the script.
-     * To avoid infinite recursion, we limit the recursion.
+     * The MultiGet Command Execution.
+     * Executes the get script for multiple keys and hands each result to the handler of its GET.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     * To avoid an endless replay, the executions are limited.
      */
-    private class Get implements RedisCommand {
+    private class MultiGet implements RedisCommand {
 
         private List<String> keys;
         private List<String> arguments;
-        private Handler<Resource> handler;
+        private List<PendingGet> batch;
 
-        public Get(List<String> keys, List<String> arguments, final Handler<Resource> handler) {
+        public MultiGet(List<String> keys, List<String> arguments, List<PendingGet> batch) {
             this.keys = keys;
             this.arguments = arguments;
-            this.handler = handler;
+            this.batch = batch;
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.GET).getSha(), keys, arguments, event -> {
+            Script state = luaScripts.get(LuaScript.MULTI_GET);
+            readRouter.evalsha(state.getSha(), state.getScript(), keys, arguments, event -> {
                 if(event.succeeded()){
-                    JsonArray values = event.result();
+                    JsonArray results = event.result();
                     if (log.isTraceEnabled()) {
-                        log.trace("RedisStorage get result: " + values);
+                        log.trace("RedisStorage multiget result: " + results);
                     }
-                    if("notModified".equals(values.getString(0))){
-                        notModified(handler);
-                    } else if ("notFound".equals(values.getString(0))) {
-                        notFound(handler);
-                    } else {
-                        handleJsonArrayValues(values, handler, "0".equals(arguments.get(5)) && "-1".equals(arguments.get(6)));
+                    for (int i = 0; i < batch.size(); i++) {
+                        PendingGet pendingGet = batch.get(i);
+                        Object result = results.getValue(i);
+                        JsonArray values = result instanceof JsonArray ? (JsonArray) result : new JsonArray().add(result);
+                        handleGetValues(values, pendingGet.handler, pendingGet.allowEmptyReturn(), pendingGet.gzipAccepted);
                     }
                 } else {
                     String message = event.cause().getMessage();
                     if(message != null && message.startsWith("NOSCRIPT")) {
-                        log.warn("get script couldn't be found, reload it");
-                        log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
-                        if(executionCounter > 10) {
-                            log.error("amount the script got loaded is higher than 10, we abort");
-                        } else {
-                            luaScripts.get(LuaScript.GET).loadLuaScript(new Get(keys, arguments, handler), executionCounter);
+                        log.warn("multiget script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(new MultiGet(keys, arguments, batch), executionCounter)) {
+                            return;
                         }
-                    } else {
-                        log.error("GET request failed with message: " + message);
+                    }
+                    log.error("GET request of " + batch.size() + " coalesced resources failed with message: " + message);
+                    for (PendingGet pendingGet : batch) {
+                        error(pendingGet.handler, message);
                     }
                 }
             });
         }
     }
 
+    /**
+     * Gets the resources of a hash tag with a single call of the multiget script, regardless of the coalescing of
+     * GETs. Collections above the hash tag depth are merged from all hash tags.
+     */
+    @Override
+    public void getBulk(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        if (paths.isEmpty()) {
+            handler.handle(new ArrayList<>());
+            return;
+        }
+        Resource[] resources = new Resource[paths.size()];
+        int[] pending = {paths.size()};
+        Map<String, List<PendingGet>> batchesByHashTag = new LinkedHashMap<>();
+        for (int i = 0; i < paths.size(); i++) {
+            int index = i;
+            Handler<Resource> collect = resource -> {
+                resources[index] = resource;
+                if (--pending[0] == 0) {
+                    handler.handle(Arrays.asList(resources));
+                }
+            };
+            String key = encodePath(paths.get(i));
+            String hashTag = hashTagOf(key);
+            if (hashTag == null) {
+                getAcrossHashTags(key, null, 0, -1, collect);
+            } else {
+                batchesByHashTag.computeIfAbsent(hashTag, tag -> new ArrayList<>())
+                        .add(new PendingGet(hashTag + key, etags.get(i), 0, -1, false, collect));
+            }
+        }
+        batchesByHashTag.forEach(this::executeGets);
+    }
+
+    private void handleGetValues(JsonArray values, Handler<Resource> handler, boolean allowEmptyReturn, boolean gzipAccepted) {
+        if("notModified".equals(values.getString(0))){
+            notModified(handler);
+        } else if ("notFound".equals(values.getString(0))) {
+            notFound(handler);
+        } else {
+            handleJsonArrayValues(values, handler, allowEmptyReturn, gzipAccepted);
+        }
+    }
+
     @Override
     public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
         final String key = encodePath(path);
-        List<String> keys = Collections.singletonList(key);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            error(handler, "Collections above the redis hash tag depth are not supported in storage expand");
+            return;
+        }
+        List<String> keys = Collections.singletonList(hashTag + key);
         List<String> arguments = Arrays.asList(
                 redisResourcesPrefix,
                 redisCollectionsPrefix,
-                expirableSet,
+                expirableSet + hashTag,
                 String.valueOf(System.currentTimeMillis()),
                 MAX_EXPIRE_IN_MILLIS,
                 StringUtils.join(subResources, ";"),
-                String.valueOf(subResources.size())
+                String.valueOf(subResources.size()),
+                listedChildCollectionsPrefix(),
+                deletedSubtreesKey(hashTag),
+                etag == null ? EMPTY : etag
         );
-        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.STORAGE_EXPAND, new StorageExpand(keys, arguments, handler, etag), 0);
+        luaScripts.execute(new StorageExpand(keys, arguments, handler, etag));
     }
 
     /**
      * The StorageExpand Command Execution.
-     * If the get script cannot be found under the sha in luaScriptState, reload the script.
-     * To avoid infinite recursion, we limit the recursion.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     * To avoid an endless replay, the executions are limited.
      */
     private class StorageExpand implements RedisCommand {
 
@@ -530,103 +813,339 @@ public class RedisStorage implements Storage {
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.STORAGE_EXPAND).getSha(), keys, arguments, event -> {
+            Script state = luaScripts.get(LuaScript.STORAGE_EXPAND);
+            readRouter.evalsha(state.getSha(), state.getScript(), keys, arguments, event -> {
                 if(event.succeeded()){
-                    Object value = event.result().getValue(0);
+                    JsonArray values = event.result();
                     if (log.isTraceEnabled()) {
-                        log.trace("RedisStorage get result: " + value);
+                        log.trace("RedisStorage get result: " + values);
                     }
-                    if("compressionNotSupported".equalsIgnoreCase((String) value)){
-                        error(handler, "Collections having compressed resources are not supported in storage expand");
+                    String value = values.size() == 1 ? values.getString(0) : null;
+                    if("chunkedNotSupported".equalsIgnoreCase(value)){
+                        error(handler, "Collections having resources stored in chunks are not supported in storage expand");
                         return;
                     }
-                    if("notFound".equalsIgnoreCase((String) value)){
+                    if("notFound".equalsIgnoreCase(value)){
                         notFound(handler);
                         return;
                     }
-                    JsonObject expandResult = new JsonObject();
-
-                    JsonArray resultArr = new JsonArray((String) value);
+                    // the script derives the etag from the etags of the members and does not read any content then
+                    if("notModified".equalsIgnoreCase(value)){
+                        notModified(handler);
+                        return;
+                    }
 
-                    for (Object resultEntry : resultArr) {
-                        JsonArray entries = (JsonArray) resultEntry;
-                        String subResourceName = ResourceNameUtil.resetReplacedColonsAndSemiColons(entries.getString(0));
-                        String subResourceValue = entries.getString(1);
-                        if(subResourceValue.startsWith("[") && subResourceValue.endsWith("]")){
-                            expandResult.put(subResourceName, extractSortedJsonArray(subResourceValue));
-                        } else {
+                    String expandEtag = values.getString(0);
+                    List<ExpandedMember> members = new ArrayList<>(values.size() / 2);
+                    for (int i = 1; i < values.size(); i += 2) {
+                        String name = values.getString(i);
+                        boolean collection = name.endsWith("/");
+                        // the names of compressed resources are followed by the id of their codec
+                        int codecSeparator = name.lastIndexOf(';');
+                        CompressionCodec codec = null;
+                        if (collection) {
+                            name = name.substring(0, name.length() - 1);
+                        } else if (codecSeparator >= 0) {
                             try {
-                                expandResult.put(subResourceName, new JsonObject(subResourceValue));
-                            }catch (DecodeException ex){
-                                invalid(handler, "Error decoding invalid json resource '" + subResourceName + "'");
+                                codec = CompressionCodecs.forId(name.substring(codecSeparator + 1));
+                            } catch (IOException ex) {
+                                error(handler, "Error during decompression of resource: " + ex.getMessage());
                                 return;
                             }
+                            name = name.substring(0, codecSeparator);
                         }
+                        name = ResourceNameUtil.resetReplacedColonsAndSemiColons(name);
+                        members.add(new ExpandedMember(name, collection, codec, decodeBinary(values.getString(i + 1))));
                     }
 
-                    byte[] finalExpandedContent = decodeBinary(expandResult.encode());
-                    String calcDigest = DigestUtils.sha1Hex(finalExpandedContent);
+                    decompressMembers(members, decompressed -> {
+                        if (decompressed.failed()) {
+                            error(handler, "Error during decompression of resource: " + decompressed.cause().getMessage());
+                            return;
+                        }
+                        // the stored values are spliced into the result as they are, the resources are only validated
+                        Buffer expanded = Buffer.buffer();
+                        expanded.appendString("{");
+                        for (ExpandedMember member : members) {
+                            if (!member.collection && !JsonScanner.isJsonObject(member.content)) {
+                                invalid(handler, "Error decoding invalid json resource '" + member.name + "'");
+                                return;
+                            }
+                            expanded.appendString(expanded.length() == 1 ? "" : ",").appendString(Json.encode(member.name))
+                                    .appendString(":").appendBytes(member.content);
+                        }
+                        expanded.appendString("}");
 
-                    if(calcDigest.equals(etag)){
-                        notModified(handler);
-                    } else {
                         DocumentResource r = new DocumentResource();
-                        r.readStream = new ByteArrayReadStream(finalExpandedContent);
-                        r.length = finalExpandedContent.length;
-                        r.etag = calcDigest;
+                        r.readStream = new ByteArrayReadStream(vertx, expanded);
+                        r.length = expanded.length();
+                        r.etag = expandEtag;
                         r.closeHandler = event1 -> {
                             // nothing to close
                         };
                         handler.handle(r);
-                    }
+                    });
                 } else {
                     String message = event.cause().getMessage();
                     if(message != null && message.startsWith("NOSCRIPT")) {
-                        log.warn("storageExpand script couldn't be found, reload it");
-                        log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
-                        if(executionCounter > 10) {
-                            log.error("amount the script got loaded is higher than 10, we abort");
-                        } else {
-                            luaScripts.get(LuaScript.STORAGE_EXPAND).loadLuaScript(new StorageExpand(keys, arguments, handler, etag), executionCounter);
+                        log.warn("storageExpand script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(new StorageExpand(keys, arguments, handler, etag), executionCounter)) {
+                            return;
                         }
-                    } else {
-                        log.error("StorageExpand request failed with message: " + message);
                     }
+                    log.error("StorageExpand request failed with message: " + message);
+                    error(handler, message);
                 }
             });
         }
     }
 
-    private JsonArray extractSortedJsonArray(String arrayString){
-        String arrayContent = arrayString.replaceAll("\\[", EMPTY).replaceAll("\\]", EMPTY).replaceAll("\"", EMPTY).replaceAll("\\\\", EMPTY);
-        String[] splitted = StringUtils.split(arrayContent, ",");
-        List<String> resources = new ArrayList<>();
-        List<String> collections = new ArrayList<>();
-        for (String split : splitted) {
-            if (split.endsWith("/")) {
-                collections.add(split);
-            } else {
-                resources.add(split);
+    /**
+     * A member of a storage expand, its content is decompressed before it is spliced into the result.
+     */
+    private static class ExpandedMember {
+
+        private final String name;
+        private final boolean collection;
+        private final CompressionCodec codec;
+        private byte[] content;
+        private long decompressedLength;
+
+        private ExpandedMember(String name, boolean collection, CompressionCodec codec, byte[] content) {
+            this.name = name;
+            this.collection = collection;
+            this.codec = codec;
+            this.content = content;
+        }
+    }
+
+    /**
+     * Decompresses the compressed members on the worker threads, at most <code>expandDecompressConcurrency</code> of
+     * them at once. The decompression fails before any member is decompressed when the stored uncompressed lengths of
+     * the members exceed <code>expandMaxBytes</code>, so a storage expand never holds more decompressed content in
+     * memory, however many members are decompressed at once.
+     */
+    private void decompressMembers(List<ExpandedMember> members, Handler<AsyncResult<Void>> handler) {
+        Deque<ExpandedMember> compressed = new ArrayDeque<>();
+        long bytes = 0;
+        for (ExpandedMember member : members) {
+            if (member.codec != null) {
+                try {
+                    member.decompressedLength = member.codec.decompressedLength(member.content);
+                } catch (IOException ex) {
+                    handler.handle(Future.failedFuture(ex));
+                    return;
+                }
+                bytes += member.decompressedLength;
+                if (member.decompressedLength < 0 || bytes > expandMaxBytes) {
+                    handler.handle(Future.failedFuture("Decompressed resources exceed " + expandMaxBytes + " bytes"));
+                    return;
+                }
+                compressed.add(member);
             }
         }
-        Collections.sort(collections);
-        collections.addAll(resources);
-        return new JsonArray(new ArrayList<Object>(collections));
+        if (compressed.isEmpty()) {
+            handler.handle(Future.succeededFuture());
+            return;
+        }
+        int[] running = {0};
+        boolean[] failed = {false};
+        Runnable[] next = new Runnable[1];
+        next[0] = () -> {
+            while (running[0] < expandDecompressConcurrency && !compressed.isEmpty()) {
+                ExpandedMember member = compressed.poll();
+                running[0]++;
+                // the budget of every member is reserved by its stored length, the decompression fails beyond it
+                GZIPUtil.decompressResource(codecPool, log, member.codec, member.content, member.decompressedLength, decompressedResult -> {
+                    running[0]--;
+                    if (failed[0]) {
+                        return;
+                    }
+                    if (decompressedResult.failed()) {
+                        failed[0] = true;
+                        handler.handle(Future.failedFuture(decompressedResult.cause()));
+                        return;
+                    }
+                    member.content = decompressedResult.result();
+                    if (compressed.isEmpty() && running[0] == 0) {
+                        handler.handle(Future.succeededFuture());
+                    } else {
+                        next[0].run();
+                    }
+                });
+            }
+        };
+        next[0].run();
+    }
+
+    /**
+     * Expands the subtree with a single call of the expand script, which also derives the etag from the members.
+     */
+    @Override
+    public void expand(String path, String etag, int depth, Handler<Resource> handler) {
+        final String key = encodePath(path);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            error(handler, "Collections above the redis hash tag depth are not supported in expand");
+            return;
+        }
+        List<String> keys = Collections.singletonList(hashTag + key);
+        List<String> arguments = Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet + hashTag,
+                String.valueOf(System.currentTimeMillis()),
+                MAX_EXPIRE_IN_MILLIS,
+                String.valueOf(depth),
+                String.valueOf(expandMaxItems),
+                String.valueOf(expandMaxBytes),
+                listedChildCollectionsPrefix(),
+                deletedSubtreesKey(hashTag),
+                etag == null ? EMPTY : etag
+        );
+        luaScripts.execute(new Expand(path, etag, depth, keys, arguments, handler));
     }
 
-    private void handleJsonArrayValues(JsonArray values, Handler<Resource> handler, boolean allowEmptyReturn){
+    /**
+     * The Expand Command Execution.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     * To avoid an endless replay, the executions are limited.
+     */
+    private class Expand implements RedisCommand {
+
+        private String path;
+        private String etag;
+        private int depth;
+        private List<String> keys;
+        private List<String> arguments;
+        private Handler<Resource> handler;
+
+        private Expand(String path, String etag, int depth, List<String> keys, List<String> arguments, Handler<Resource> handler) {
+            this.path = path;
+            this.etag = etag;
+            this.depth = depth;
+            this.keys = keys;
+            this.arguments = arguments;
+            this.handler = handler;
+        }
+
+        public void exec(final int executionCounter) {
+            Script state = luaScripts.get(LuaScript.EXPAND);
+            readRouter.evalsha(state.getSha(), state.getScript(), keys, arguments, event -> {
+                if (event.failed()) {
+                    String message = event.cause().getMessage();
+                    if (message != null && message.startsWith("NOSCRIPT")) {
+                        log.warn("expand script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(new Expand(path, etag, depth, keys, arguments, handler), executionCounter)) {
+                            return;
+                        }
+                    }
+                    log.error("Expand request failed with message: " + message);
+                    error(handler, message);
+                    return;
+                }
+                JsonArray values = event.result();
+                if (values.size() == 2) {
+                    handler.handle(expandedDocument(path, values.getString(0), values.getString(1)));
+                    return;
+                }
+                String value = values.getString(0);
+                if ("notModified".equals(value)) {
+                    notModified(handler);
+                } else if ("notFound".equals(value)) {
+                    notFound(handler);
+                } else if ("document".equals(value)) {
+                    get(path, etag, 0, -1, handler);
+                } else if ("tooManyItems".equals(value)) {
+                    invalid(handler, "The subtree has more than " + expandMaxItems + " members, use a smaller expand depth");
+                } else if ("tooLarge".equals(value)) {
+                    invalid(handler, "The subtree has more than " + expandMaxBytes + " bytes, use a smaller expand depth");
+                } else if ("compressionNotSupported".equals(value)) {
+                    error(handler, "Collections having compressed resources are not supported in expand");
+                } else if ("chunkedNotSupported".equals(value)) {
+                    error(handler, "Collections having resources stored in chunks are not supported in expand");
+                } else {
+                    error(handler, "Unexpected result of the expand script: " + value);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the expanded content as value of the collection name, like the listing of a collection
+     */
+    private DocumentResource expandedDocument(String path, String etag, String content) {
+        String name = path.substring(path.lastIndexOf('/') + 1);
+        Buffer expanded = Buffer.buffer(content.length() + name.length() + 8)
+                .appendString("{" + Json.encode(name) + ":")
+                .appendBytes(decodeBinary(content))
+                .appendString("}");
+        DocumentResource r = new DocumentResource();
+        r.readStream = new ByteArrayReadStream(vertx, expanded);
+        r.length = expanded.length();
+        r.etag = etag;
+        r.closeHandler = event -> {
+            // nothing to close
+        };
+        return r;
+    }
+
+    /**
+     * @param gzipAccepted whether a document stored compressed with gzip is delivered as it is stored
+     */
+    private void handleJsonArrayValues(JsonArray values, Handler<Resource> handler, boolean allowEmptyReturn, boolean gzipAccepted){
         String type = values.getString(0);
         if("TYPE_RESOURCE".equals(type)){
             String valueStr = values.getString(1);
             DocumentResource r = new DocumentResource();
             byte[] content = decodeBinary(valueStr);
             if(!values.hasNull(3)){
-                // data is compressed
-                GZIPUtil.decompressResource(vertx, log, content, decompressedResult -> {
+                // data is compressed, with the codec of the stored id
+                CompressionCodec codec;
+                try {
+                    codec = CompressionCodecs.forId(values.getString(3));
+                } catch (IOException ex) {
+                    error(handler, "Error during decompression of resource: " + ex.getMessage());
+                    return;
+                }
+                // the representation depends on the accepted encodings, even when it is delivered decompressed
+                r.encodingNegotiated = "gzip".equals(codec.contentEncoding());
+                if (gzipAccepted && r.encodingNegotiated) {
+                    r.readStream = new ByteArrayReadStream(vertx, content);
+                    r.length = content.length;
+                    r.contentEncoding = codec.contentEncoding();
+                    r.etag = values.getString(2);
+                    r.expirationTime = expirationTime(values);
+                    r.closeHandler = event -> {
+                        // nothing to close
+                    };
+                    handler.handle(r);
+                    return;
+                }
+                // the content is decompressed while it is read, unless the codec decompresses the whole content at once only
+                Decompressor decompressor;
+                try {
+                    decompressor = codec.decompressor(content, Integer.MAX_VALUE);
+                } catch (IOException ex) {
+                    error(handler, "Error during decompression of resource: " + ex.getMessage());
+                    return;
+                }
+                if (decompressor != null) {
+                    DecompressingReadStream stream = new DecompressingReadStream(codecPool, decompressor);
+                    r.readStream = stream;
+                    r.length = decompressor.length();
+                    r.etag = values.getString(2);
+                    r.expirationTime = expirationTime(values);
+                    r.closeHandler = event -> stream.close();
+                    handler.handle(r);
+                    return;
+                }
+                GZIPUtil.decompressResource(codecPool, log, codec, content, decompressedResult -> {
                     if(decompressedResult.succeeded()) {
-                        r.readStream = new ByteArrayReadStream(decompressedResult.result());
+                        r.readStream = new ByteArrayReadStream(vertx, decompressedResult.result());
                         r.length = decompressedResult.result().length;
                         r.etag = values.getString(2);
+                        r.expirationTime = expirationTime(values);
                         r.closeHandler = event -> {
                             // nothing to close
                         };
@@ -636,36 +1155,51 @@ public class RedisStorage implements Storage {
                     }
                 });
             } else {
-                r.readStream = new ByteArrayReadStream(content);
+                r.readStream = new ByteArrayReadStream(vertx, content);
                 r.length = content.length;
                 r.etag = values.getString(2);
+                r.expirationTime = expirationTime(values);
                 r.closeHandler = event -> {
                     // nothing to close
                 };
                 handler.handle(r);
             }
+        } else if("TYPE_CHUNKED_RESOURCE".equals(type)) {
+            DocumentResource r = new DocumentResource();
+            r.readStream = new RedisChunkReadStream(redisClientPool, values.getString(1), values.getInteger(3));
+            r.length = values.getLong(4);
+            r.etag = values.getString(2);
+            r.expirationTime = values.size() > 5 ? values.getLong(5) : -1;
+            r.closeHandler = event -> {
+                // nothing to close
+            };
+            handler.handle(r);
+        } else if("TYPE_COLLECTION_PAGE".equals(type)) {
+            // the members are sorted already, the second value tells whether more members follow
+            CollectionResource r = new CollectionResource();
+            r.items = new ArrayList<>(values.size() - 2);
+            for (int i = 2; i < values.size(); i++) {
+                r.items.add(collectionMember(values.getString(i)));
+            }
+            if (allowEmptyReturn && r.items.isEmpty()) {
+                notFound(handler);
+                return;
+            }
+            if ("1".equals(values.getString(1)) && !r.items.isEmpty()) {
+                r.nextCursor = CollectionCursor.encode(r.items.get(r.items.size() - 1));
+            }
+            handler.handle(r);
         } else if("TYPE_COLLECTION".equals(type)) {
             CollectionResource r = new CollectionResource();
-            Set<Resource> items = new HashSet<>();
-            for (Object value : values) {
-                String member = (String) value;
-                if (!"TYPE_COLLECTION".equals(member)) {
-                    if (member.endsWith(":")) {
-                        member = member.replaceAll(":$", "");
-                        CollectionResource c = new CollectionResource();
-                        c.name = member;
-                        items.add(c);
-                    } else {
-                        DocumentResource d = new DocumentResource();
-                        d.name = member;
-                        items.add(d);
-                    }
-                }
+            // the members of a collection are unique
+            List<Resource> items = new ArrayList<>(values.size());
+            for (int i = 1; i < values.size(); i++) {
+                items.add(collectionMember(values.getString(i)));
             }
             if(allowEmptyReturn && items.size()==0) {
                 notFound(handler);
             } else {
-                r.items = new ArrayList<>(items);
+                r.items = items;
                 Collections.sort(r.items);
                 handler.handle(r);
             }
@@ -674,12 +1208,39 @@ public class RedisStorage implements Storage {
         }
     }
 
+    private static Resource collectionMember(String member) {
+        Resource item;
+        if (member.endsWith(":")) {
+            item = new CollectionResource();
+            item.name = member.substring(0, member.length() - 1);
+        } else {
+            item = new DocumentResource();
+            item.name = member;
+        }
+        return item;
+    }
+
+    private long expirationTime(JsonArray values) {
+        if (values.size() > 4 && values.getValue(4) instanceof Number) {
+            return values.getLong(4);
+        }
+        return -1;
+    }
+
     class ByteArrayWriteStream implements WriteStream<Buffer> {
 
-        private ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        // the received buffers are kept and copied only once, into the final byte array
+        private final List<Buffer> buffers = new ArrayList<>();
+        private int length = 0;
 
         public byte[] getBytes() {
-            return bos.toByteArray();
+            byte[] bytes = new byte[length];
+            int position = 0;
+            for (Buffer buffer : buffers) {
+                buffer.getBytes(bytes, position);
+                position += buffer.length();
+            }
+            return bytes;
         }
 
         @Override
@@ -704,21 +1265,14 @@ public class RedisStorage implements Storage {
 
         @Override
         public WriteStream<Buffer> write(Buffer data) {
-            try {
-                bos.write(data.getBytes());
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            buffers.add(data);
+            length += data.length();
             return this;
         }
 
         @Override
         public void end() {
-            try {
-                bos.close();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
-            }
+            // nothing to close
         }
     }
 
@@ -743,93 +1297,479 @@ public class RedisStorage implements Storage {
     @Override
     public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, boolean storeCompressed, Handler<Resource> handler) {
         final String key = encodePath(path);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            error(handler, "Resources must be stored at least " + hashTagDepth + " levels deep when redis hash tags are used");
+            return;
+        }
         final DocumentResource d = new DocumentResource();
+        final String etagValue = initEtagValue(etag);
+        if (largeObjectThreshold > 0 && !merge && !storeCompressed) {
+            putChunked(path, hashTag, key, d, etagValue, expire, lockOwner, lockMode, lockExpire, handler);
+            return;
+        }
         final ByteArrayWriteStream stream = new ByteArrayWriteStream();
+        // the body is compressed while it arrives, unless the codec compresses the whole body at once only
+        final Compressor compressor = storeCompressed ? compressionCodec.compressor() : null;
+        final CompressingWriteStream compressingStream = compressor != null ? new CompressingWriteStream(codecPool, compressor) : null;
+
+        d.writeStream = compressingStream != null ? compressingStream : stream;
+        if (compressingStream != null) {
+            // an aborted request never ends the stream
+            d.addErrorHandler(error -> compressingStream.abort());
+        }
+        d.closeHandler = event -> {
+            String expireInMillis = MAX_EXPIRE_IN_MILLIS;
+            if (expire > -1) {
+                expireInMillis = String.valueOf(System.currentTimeMillis() + (expire * 1000));
+            }
 
-        final String etagValue = initEtagValue(etag);
+            String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
+
+            List<String> keys = Collections.singletonList(hashTag + key);
+
+            if (storeCompressed) {
+                String finalExpireInMillis = expireInMillis;
+                Handler<AsyncResult<byte[]>> compressedHandler = compressResourceResult -> {
+                    if(compressResourceResult.succeeded()) {
+                        List<String> arg = putArguments(hashTag, merge, finalExpireInMillis, compressResourceResult.result(),
+                                etagValue, lockOwner, lockMode, lockExpireInMillis, compressionCodec.id());
+                        luaScripts.execute(new Put(path, d, keys, arg, handler));
+                    } else {
+                        error(handler, "Error during compression of resource");
+                    }
+                };
+                if (compressingStream != null) {
+                    compressingStream.end(compressedHandler);
+                } else {
+                    GZIPUtil.compressResource(codecPool, log, compressionCodec, stream.getBytes(), compressedHandler);
+                }
+            } else {
+                String finalExpireInMillis = expireInMillis;
+                autoCompress(path, merge, stream.getBytes(), (content, codecId) -> {
+                    List<String> arguments = putArguments(hashTag, merge, finalExpireInMillis, content, etagValue,
+                            lockOwner, lockMode, lockExpireInMillis, codecId);
+                    luaScripts.execute(new Put(path, d, keys, arguments, handler));
+                });
+            }
+        };
+        handler.handle(d);
+    }
+
+    /**
+     * @return the arguments of the put script for a resource stored inline
+     */
+    private List<String> putArguments(String hashTag, boolean merge, String expireInMillis, byte[] content, String etagValue,
+                                      String lockOwner, LockMode lockMode, String lockExpireInMillis, String codecId) {
+        return Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                expirableSet + hashTag,
+                merge ? "true" : "false",
+                expireInMillis,
+                MAX_EXPIRE_IN_MILLIS,
+                encodeBinary(content),
+                etagValue,
+                redisLockPrefix,
+                lockOwner,
+                lockMode.text(),
+                lockExpireInMillis,
+                codecId,
+                EMPTY,
+                EMPTY,
+                EMPTY,
+                childCollectionsPrefix,
+                sortedCollectionsPrefix,
+                deletedSubtreesKey(hashTag),
+                EMPTY,
+                String.valueOf(largeObjectGracePeriodMs)
+        );
+    }
+
+    /**
+     * Compresses the content on the worker threads when the automatic compression policy applies to it. The handler
+     * gets the content to store and the id of its codec, <code>"0"</code> when it is stored uncompressed. A merge is
+     * never compressed, the put script merges the uncompressed content.
+     */
+    private void autoCompress(String path, boolean merge, byte[] content, BiConsumer<byte[], String> handler) {
+        if (merge || !autoCompression.appliesTo(path, content.length)) {
+            handler.accept(content, "0");
+            return;
+        }
+        GZIPUtil.compressResource(codecPool, log, compressionCodec, content, compressed -> {
+            if (compressed.failed()) {
+                log.warn("Unable to compress " + path + ", it is stored uncompressed: " + compressed.cause().getMessage());
+                handler.accept(content, "0");
+            } else if (autoCompression.keepCompressed(path, content.length, compressed.result().length)) {
+                handler.accept(compressed.result(), compressionCodec.id());
+            } else {
+                handler.accept(content, "0");
+            }
+        });
+    }
+
+    /**
+     * Writes the body in chunks to redis while it arrives, as soon as it gets larger than the large object threshold.
+     * Smaller bodies are stored like any other resource.
+     */
+    private void putChunked(String path, String hashTag, String key, DocumentResource d, String etagValue, long expire,
+                            String lockOwner, LockMode lockMode, long lockExpire, Handler<Resource> handler) {
+        final RedisChunkWriteStream stream = new RedisChunkWriteStream(redisClientPool, chunksPrefix + hashTag + ":" + UUID.randomUUID(),
+                largeObjectThreshold, largeObjectChunkSize, CHUNK_UPLOAD_EXPIRE_MS);
         d.writeStream = stream;
-        d.closeHandler = event -> {
+        d.closeHandler = event -> stream.end(endResult -> {
+            if (endResult.failed()) {
+                log.error("Upload of the chunks of " + path + " failed", endResult.cause());
+                discardChunks(stream.getChunkKeys());
+                error(handler, "Error during upload of resource chunks: " + endResult.cause().getMessage());
+                return;
+            }
             String expireInMillis = MAX_EXPIRE_IN_MILLIS;
             if (expire > -1) {
                 expireInMillis = String.valueOf(System.currentTimeMillis() + (expire * 1000));
             }
 
-            String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
+            String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
+
+            List<String> keys = Collections.singletonList(hashTag + key);
+            if (!stream.isChunked()) {
+                // a body below the large object threshold is stored like any other resource
+                String finalExpireInMillis = expireInMillis;
+                autoCompress(path, false, stream.getBuffer().getBytes(), (content, codecId) -> {
+                    List<String> arguments = putArguments(hashTag, false, finalExpireInMillis, content, etagValue,
+                            lockOwner, lockMode, lockExpireInMillis, codecId);
+                    luaScripts.execute(new Put(path, d, keys, arguments, handler));
+                });
+                return;
+            }
+            List<String> arguments = Arrays.asList(
+                    redisResourcesPrefix,
+                    redisCollectionsPrefix,
+                    expirableSet + hashTag,
+                    "false",
+                    expireInMillis,
+                    MAX_EXPIRE_IN_MILLIS,
+                    EMPTY,
+                    etagValue,
+                    redisLockPrefix,
+                    lockOwner,
+                    lockMode.text(),
+                    lockExpireInMillis,
+                    "0",
+                    stream.getChunkKey(),
+                    String.valueOf(stream.getChunks()),
+                    String.valueOf(stream.getLength()),
+                    childCollectionsPrefix,
+                    sortedCollectionsPrefix,
+                    deletedSubtreesKey(hashTag),
+                    EMPTY,
+                    String.valueOf(largeObjectGracePeriodMs)
+            );
+            luaScripts.execute(new Put(path, d, keys, arguments, handler, stream.getChunkKeys()));
+        });
+        handler.handle(d);
+    }
+
+    /**
+     * Removes uploaded chunks which are not referenced by a resource.
+     */
+    private void discardChunks(List<String> chunkKeys) {
+        if (chunkKeys.isEmpty()) {
+            return;
+        }
+        Connection connection = redisClientPool.connection(Lane.WRITE);
+        connection.client().delMany(chunkKeys, connection.track(event -> {
+            if (event.failed()) {
+                log.warn("Unable to remove unused chunks. They will expire. Cause: " + event.cause().getMessage());
+            }
+        }));
+    }
+
+    /**
+     * Stores the documents of a hash tag in a single call of the multiput script, which puts them one after the
+     * other like single PUTs. The documents are stored inline, regardless of the large object threshold.
+     */
+    @Override
+    public void putBatch(String path, List<BatchDocument> documents, Handler<Resource> handler) {
+        Map<String, List<BatchDocument>> documentsByHashTag = new LinkedHashMap<>();
+        Map<BatchDocument, String> keys = new HashMap<>();
+        for (BatchDocument document : documents) {
+            String key = encodePath(document.path(path));
+            String hashTag = hashTagOf(key);
+            if (hashTag == null) {
+                error(handler, "Resources must be stored at least " + hashTagDepth + " levels deep when redis hash tags are used");
+                return;
+            }
+            keys.put(document, hashTag + key);
+            documentsByHashTag.computeIfAbsent(hashTag, tag -> new ArrayList<>()).add(document);
+        }
+        if (documents.isEmpty()) {
+            handler.handle(new Resource());
+            return;
+        }
+        Set<BatchDocument> storedCompressed = new HashSet<>();
+        compressBatch(path, documents, storedCompressed, compressed -> {
+            if (compressed.failed()) {
+                error(handler, "Error during compression of resource");
+                return;
+            }
+            Map<BatchDocument, byte[]> contents = compressed.result();
+            int[] pending = {documentsByHashTag.size()};
+            boolean[] failed = {false};
+            documentsByHashTag.forEach((hashTag, batch) -> {
+                List<String> batchKeys = new ArrayList<>(batch.size());
+                List<String> arguments = new ArrayList<>(9 + batch.size() * 7);
+                arguments.add(redisResourcesPrefix);
+                arguments.add(redisCollectionsPrefix);
+                arguments.add(expirableSet + hashTag);
+                arguments.add(MAX_EXPIRE_IN_MILLIS);
+                arguments.add(redisLockPrefix);
+                arguments.add(childCollectionsPrefix);
+                arguments.add(sortedCollectionsPrefix);
+                arguments.add(deletedSubtreesKey(hashTag));
+                arguments.add(String.valueOf(largeObjectGracePeriodMs));
+                long now = System.currentTimeMillis();
+                for (BatchDocument document : batch) {
+                    batchKeys.add(keys.get(document));
+                    arguments.add(document.expire > -1 ? String.valueOf(now + (document.expire * 1000)) : MAX_EXPIRE_IN_MILLIS);
+                    arguments.add(encodeBinary(contents.get(document)));
+                    arguments.add(initEtagValue(document.etag));
+                    arguments.add(document.lockOwner);
+                    arguments.add(document.lockMode.text());
+                    arguments.add(String.valueOf(now + (document.lockExpire * 1000)));
+                    arguments.add(storedCompressed.contains(document) ? compressionCodec.id() : "0");
+                }
+                luaScripts.execute(new MultiPut(path, batch, batchKeys, arguments, event -> {
+                    if (event.failed()) {
+                        failed[0] = true;
+                        log.error("Batch PUT request failed with message: " + event.cause().getMessage());
+                    }
+                    if (--pending[0] == 0) {
+                        if (failed[0]) {
+                            error(handler, "Error during batch PUT of " + path);
+                        } else {
+                            handler.handle(new Resource());
+                        }
+                    }
+                }));
+            });
+        });
+    }
+
+    /**
+     * Compresses the contents of the documents stored compressed and of the documents the automatic compression
+     * policy applies to on the worker threads.
+     *
+     * @param storedCompressed receives the documents whose content is stored compressed
+     * @param handler receives the content to store of every document
+     */
+    private void compressBatch(String path, List<BatchDocument> documents, Set<BatchDocument> storedCompressed,
+                               Handler<AsyncResult<Map<BatchDocument, byte[]>>> handler) {
+        Map<BatchDocument, byte[]> contents = new HashMap<>();
+        int[] pending = {1};
+        boolean[] failed = {false};
+        Handler<AsyncResult<Void>> countDown = event -> {
+            if (event.failed() && !failed[0]) {
+                failed[0] = true;
+                handler.handle(Future.failedFuture(event.cause()));
+            } else if (--pending[0] == 0 && !failed[0]) {
+                handler.handle(Future.succeededFuture(contents));
+            }
+        };
+        for (BatchDocument document : documents) {
+            if (document.storeCompressed) {
+                pending[0]++;
+                GZIPUtil.compressResource(codecPool, log, compressionCodec, document.content, compressResult -> {
+                    if (compressResult.succeeded()) {
+                        contents.put(document, compressResult.result());
+                        storedCompressed.add(document);
+                    }
+                    countDown.handle(compressResult.mapEmpty());
+                });
+            } else {
+                pending[0]++;
+                autoCompress(document.path(path), false, document.content, (content, codecId) -> {
+                    contents.put(document, content);
+                    if (!"0".equals(codecId)) {
+                        storedCompressed.add(document);
+                    }
+                    countDown.handle(Future.succeededFuture());
+                });
+            }
+        }
+        countDown.handle(Future.succeededFuture());
+    }
+
+    /**
+     * The execution of the multiput script for the documents of a hash tag. Sets the status of every document, as
+     * the result of a single PUT would have been responded.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     */
+    private class MultiPut implements RedisCommand {
 
-            List<String> keys = Collections.singletonList(key);
+        private final String path;
+        private final List<BatchDocument> documents;
+        private final List<String> keys;
+        private final List<String> arguments;
+        private final Handler<AsyncResult<Void>> handler;
 
-            if (storeCompressed) {
-                String finalExpireInMillis = expireInMillis;
-                GZIPUtil.compressResource(vertx, log, stream.getBytes(), compressResourceResult -> {
-                    if(compressResourceResult.succeeded()) {
-                        List<String> arg = Arrays.asList(
-                                redisResourcesPrefix,
-                                redisCollectionsPrefix,
-                                expirableSet,
-                                merge ? "true" : "false",
-                                finalExpireInMillis,
-                                MAX_EXPIRE_IN_MILLIS,
-                                encodeBinary(compressResourceResult.result()),
-                                etagValue,
-                                redisLockPrefix,
-                                lockOwner,
-                                lockMode.text(),
-                                lockExpireInMillis,
-                                storeCompressed ? "1" : "0"
-                        );
-                        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arg, handler), 0);
+        MultiPut(String path, List<BatchDocument> documents, List<String> keys, List<String> arguments, Handler<AsyncResult<Void>> handler) {
+            this.path = path;
+            this.documents = documents;
+            this.keys = keys;
+            this.arguments = arguments;
+            this.handler = handler;
+        }
+
+        public void exec(final int executionCounter) {
+            readRouter.written();
+            Connection connection = redisClientPool.connection(Lane.WRITE);
+            connection.client().evalsha(luaScripts.get(LuaScript.MULTI_PUT).getSha(), keys, arguments, connection.track(event -> {
+                if (event.failed()) {
+                    String message = event.cause().getMessage();
+                    if (message != null && message.startsWith("NOSCRIPT")) {
+                        log.warn("multiput script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(this, executionCounter)) {
+                            return;
+                        }
+                    }
+                    handler.handle(Future.failedFuture(event.cause()));
+                    return;
+                }
+                JsonArray results = event.result();
+                boolean stored = false;
+                for (int i = 0; i < documents.size(); i++) {
+                    BatchDocument document = documents.get(i);
+                    String result = results.getString(i);
+                    if (result != null && (result.startsWith("existingCollection") || result.startsWith("existingResource"))) {
+                        document.status = StatusCode.METHOD_NOT_ALLOWED;
+                    } else if ("notModified".equals(result)) {
+                        document.status = StatusCode.NOT_MODIFIED;
+                    } else if (LockMode.REJECT.text().equals(result) || "deleting".equals(result)) {
+                        document.status = StatusCode.CONFLICT;
                     } else {
-                        error(handler, "Error during compression of resource");
+                        document.status = StatusCode.OK;
+                        publishInvalidation(document.path(path));
+                        stored = true;
                     }
-                });
-            } else {
-                List<String> arguments = Arrays.asList(
-                        redisResourcesPrefix,
-                        redisCollectionsPrefix,
-                        expirableSet,
-                        merge ? "true" : "false",
-                        expireInMillis,
-                        MAX_EXPIRE_IN_MILLIS,
-                        encodeBinary(stream.getBytes()),
-                        etagValue,
-                        redisLockPrefix,
-                        lockOwner,
-                        lockMode.text(),
-                        lockExpireInMillis,
-                        storeCompressed ? "1" : "0"
-                );
-                reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.PUT, new Put(d, keys, arguments, handler), 0);
+                }
+                if (stored) {
+                    registerHashTag(hashTagOfTaggedKey(keys.get(0)), registered -> handler.handle(Future.succeededFuture()));
+                } else {
+                    handler.handle(Future.succeededFuture());
+                }
+            }));
+        }
+    }
+
+    /**
+     * Merges the body into a resource stored compressed, which the put script cannot decode. The resource is
+     * decompressed and merged like the put script merges, then stored as a whole with the policy of an uncompressed
+     * PUT. It is only written when its etag has not changed meanwhile, otherwise the merge is repeated.
+     *
+     * @param mergeArguments the arguments of the put script for the merge
+     */
+    private void mergeCompressed(String path, DocumentResource d, List<String> keys, List<String> mergeArguments,
+                                 Handler<Resource> handler, int mergeAttempt) {
+        readRouter.written();
+        Connection connection = redisClientPool.connection(Lane.WRITE);
+        connection.client().hmget(redisResourcesPrefix + keys.get(0), Arrays.asList("resource", "etag", "compressed"), connection.track(event -> {
+            if (event.failed()) {
+                error(handler, "Error during merge of resource: " + event.cause().getMessage());
+                return;
             }
-        };
-        handler.handle(d);
+            JsonArray fields = event.result();
+            CompressionCodec codec;
+            try {
+                codec = CompressionCodecs.forId(fields.hasNull(2) ? EMPTY : fields.getString(2));
+            } catch (IOException ex) {
+                // the resource has been modified meanwhile, the put script merges it if it is not compressed anymore
+                luaScripts.execute(new Put(path, d, keys, mergeArguments, handler, Collections.emptyList(), mergeArguments, mergeAttempt));
+                return;
+            }
+            String etag = fields.getString(1);
+            GZIPUtil.decompressResource(codecPool, log, codec, decodeBinary(fields.getString(0)), decompressed -> {
+                if (decompressed.failed()) {
+                    error(handler, "Error during decompression of resource: " + decompressed.cause().getMessage());
+                    return;
+                }
+                byte[] merged;
+                try {
+                    JsonObject resource = new JsonObject(new String(decompressed.result(), StandardCharsets.UTF_8));
+                    JsonObject patch = new JsonObject(new String(decodeBinary(mergeArguments.get(6)), StandardCharsets.UTF_8));
+                    for (String name : patch.fieldNames()) {
+                        if (patch.getValue(name) == null) {
+                            resource.remove(name);
+                        } else {
+                            resource.put(name, patch.getValue(name));
+                        }
+                    }
+                    merged = resource.encode().getBytes(StandardCharsets.UTF_8);
+                } catch (DecodeException ex) {
+                    error(handler, "Error during merge of resource: " + ex.getMessage());
+                    return;
+                }
+                autoCompress(path, false, merged, (content, codecId) -> {
+                    List<String> arguments = new ArrayList<>(mergeArguments);
+                    arguments.set(3, "false");
+                    arguments.set(6, encodeBinary(content));
+                    arguments.set(12, codecId);
+                    arguments.set(19, etag != null ? etag : EMPTY);
+                    luaScripts.execute(new Put(path, d, keys, arguments, handler, Collections.emptyList(), mergeArguments, mergeAttempt));
+                });
+            });
+        }));
     }
 
     /**
      * The Put Command Execution.
-     * If the get script cannot be found under the sha in luaScriptState, reload the script.
-     * To avoid infinite recursion, we limit the recursion.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     * To avoid an endless replay, the executions are limited.
      */
     private class Put implements RedisCommand {
 
+        private String path;
         private DocumentResource d;
         private List<String> keys;
         private List<String> arguments;
         private Handler<Resource> handler;
+        private List<String> chunkKeys;
+        // the arguments of the merge and the attempt to merge a compressed resource
+        private List<String> mergeArguments;
+        private int mergeAttempt;
+
+        public Put(String path, DocumentResource d, List<String> keys, List<String> arguments, Handler<Resource> handler) {
+            this(path, d, keys, arguments, handler, Collections.emptyList());
+        }
+
+        public Put(String path, DocumentResource d, List<String> keys, List<String> arguments, Handler<Resource> handler, List<String> chunkKeys) {
+            this(path, d, keys, arguments, handler, chunkKeys, arguments, 0);
+        }
 
-        public Put(DocumentResource d, List<String> keys, List<String> arguments, Handler<Resource> handler) {
+        private Put(String path, DocumentResource d, List<String> keys, List<String> arguments, Handler<Resource> handler,
+                    List<String> chunkKeys, List<String> mergeArguments, int mergeAttempt) {
+            this.path = path;
             this.d = d;
             this.keys = keys;
             this.arguments = arguments;
             this.handler = handler;
+            this.chunkKeys = chunkKeys;
+            this.mergeArguments = mergeArguments;
+            this.mergeAttempt = mergeAttempt;
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.PUT).getSha(), keys, arguments, event -> {
+            readRouter.written();
+            Connection connection = redisClientPool.connection(Lane.WRITE);
+            connection.client().evalsha(luaScripts.get(LuaScript.PUT).getSha(), keys, arguments, connection.track(event -> {
                 if(event.succeeded()){
                     String result = event.result().getString(0);
                     if (log.isTraceEnabled()) {
                         log.trace("RedisStorage successfull put. Result: " + result);
                     }
+                    if(!"OK".equals(result)) {
+                        discardChunks(chunkKeys);
+                    }
                     if(result != null && result.startsWith("existingCollection")){
                         CollectionResource c = new CollectionResource();
                         handler.handle(c);
@@ -841,26 +1781,41 @@ public class RedisStorage implements Storage {
                         notModified(handler);
                     } else if(LockMode.REJECT.text().equals(result)) {
                         rejected(handler);
+                    } else if("deleting".equals(result)) {
+                        rejected(handler);
+                    } else if("mergeNotSupported".equals(result)) {
+                        error(handler, "Resources stored in chunks cannot be merged");
+                    } else if("mergeCompressed".equals(result)) {
+                        mergeCompressed(path, d, keys, mergeArguments, handler, mergeAttempt + 1);
+                    } else if("mergeConflict".equals(result)) {
+                        if (mergeAttempt >= MAX_MERGE_ATTEMPTS) {
+                            error(handler, "The compressed resource has been modified concurrently during the merge");
+                        } else {
+                            // the resource has been modified meanwhile, it may not even be compressed anymore
+                            luaScripts.execute(new Put(path, d, keys, mergeArguments, handler, chunkKeys, mergeArguments, mergeAttempt));
+                        }
                     }
                     else {
-                        d.endHandler.handle(null);
+                        publishInvalidation(path);
+                        registerHashTag(hashTagOfTaggedKey(keys.get(0)), registered -> d.endHandler.handle(null));
                     }
                 } else {
                     String message = event.cause().getMessage();
                     if(message != null && message.startsWith("NOSCRIPT")) {
-                        log.warn("put script couldn't be found, reload it");
-                        log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
-                        if(executionCounter > 10) {
-                            log.error("amount the script got loaded is higher than 10, we abort");
-                        } else {
-                            luaScripts.get(LuaScript.PUT).loadLuaScript(new Put(d, keys, arguments, handler), executionCounter);
+                        log.warn("put script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(new Put(path, d, keys, arguments, handler, chunkKeys, mergeArguments, mergeAttempt), executionCounter)) {
+                            return;
                         }
-                    } else if (message != null && d.errorHandler != null){
-                        log.error("PUT request failed with message: " + message);
+                    }
+                    discardChunks(chunkKeys);
+                    log.error("PUT request failed with message: " + message);
+                    if (d.errorHandler != null) {
                         d.errorHandler.handle(event.cause());
+                    } else {
+                        error(handler, message);
                     }
                 }
-            });
+            }));
         }
     }
 
@@ -868,16 +1823,117 @@ public class RedisStorage implements Storage {
     public void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete,
                        boolean deleteRecursive, final Handler<Resource> handler ) {
         final String key = encodePath(path);
-        List<String> keys = Collections.singletonList(key);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            deleteAcrossHashTags(path, key, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+            return;
+        }
+        List<String> keys = Collections.singletonList(hashTag + key);
+        List<String> arguments = deleteArguments(hashTag, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, EMPTY);
+        luaScripts.execute(new Delete(path, keys, arguments, handler));
+    }
 
-        String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
+    /**
+     * Deletes a collection asynchronously. The collection is detached at once, so that it is not found anymore, and
+     * its keys are removed in bulks by a delete job afterwards (see {@link RedisDeleteJobs}). A resource is deleted
+     * at once.
+     */
+    @Override
+    public void deleteAsync(String path, String jobId, String lockOwner, LockMode lockMode, long lockExpire,
+                            boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        final String key = encodePath(path);
+        final String hashTag = hashTagOf(key);
+        if (hashTag == null) {
+            error(handler, "Collections above the redis hash tag depth cannot be deleted asynchronously");
+            return;
+        }
+        deleteJobs.create(jobId, path, hashTag, hashTag + key, created -> {
+            if (created.failed()) {
+                log.error("Unable to create the delete job of " + path + ": " + created.cause().getMessage());
+                error(handler, "Unable to create the delete job");
+                return;
+            }
+            List<String> keys = Collections.singletonList(hashTag + key);
+            List<String> arguments = deleteArguments(hashTag, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, jobId);
+            luaScripts.execute(new Delete(path, keys, arguments, resource -> {
+                if (resource instanceof CollectionResource) {
+                    deleteJobs.run(jobId, hashTag, hashTag + key);
+                } else {
+                    deleteJobs.discard(jobId);
+                }
+                handler.handle(resource);
+            }));
+        });
+    }
+
+    @Override
+    public void getDeleteJob(String jobId, Handler<Resource> handler) {
+        deleteJobs.get(jobId, event -> {
+            if (event.failed()) {
+                log.error("Unable to read the delete job " + jobId + ": " + event.cause().getMessage());
+                error(handler, "Unable to read the delete job");
+            } else if (event.result() == null) {
+                notFound(handler);
+            } else {
+                handler.handle(jsonDocument(vertx, event.result()));
+            }
+        });
+    }
 
+    /**
+     * Removes a bulk of a subtree detached by an asynchronous delete, used by the {@link RedisDeleteJobs}.
+     *
+     * @param pendingCollectionsKey the list of the collections of the subtree left to delete
+     * @param key the encoded path of the subtree, including its hash tag
+     * @param bulkSize the amount of keys to remove, about
+     * @param handler the handler receiving the amount of removed resources and collections, and the amount of
+     *                collections left
+     */
+    void deleteSubtreeBulk(String pendingCollectionsKey, String hashTag, String key, int bulkSize,
+                           Handler<AsyncResult<JsonArray>> handler) {
+        List<String> keys = Collections.singletonList(pendingCollectionsKey);
         List<String> arguments = Arrays.asList(
                 redisResourcesPrefix,
                 redisCollectionsPrefix,
                 redisDeltaResourcesPrefix,
                 redisDeltaEtagsPrefix,
-                expirableSet,
+                expirableSet + hashTag,
+                redisLockPrefix,
+                childCollectionsPrefix,
+                sortedCollectionsPrefix,
+                deletedSubtreesKey(hashTag),
+                key,
+                String.valueOf(bulkSize)
+        );
+        luaScripts.execute(new RedisCommand() {
+            @Override
+            public void exec(int executionCounter) {
+                RedisCommand command = this;
+                Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+                connection.client().evalsha(luaScripts.get(LuaScript.DELETE_SUBTREE).getSha(), keys, arguments, connection.track(event -> {
+                    if (event.failed() && event.cause().getMessage() != null && event.cause().getMessage().startsWith("NOSCRIPT")) {
+                        log.warn("delete subtree script couldn't be found, reload the scripts");
+                        if (!luaScripts.reload(command, executionCounter)) {
+                            handler.handle(Future.failedFuture(event.cause()));
+                        }
+                        return;
+                    }
+                    handler.handle(event);
+                }));
+            }
+        });
+    }
+
+    private List<String> deleteArguments(String hashTag, String lockOwner, LockMode lockMode, long lockExpire,
+                                         boolean confirmCollectionDelete, boolean deleteRecursive, String deleteJobId) {
+        String lockExpireInMillis = String.valueOf(System.currentTimeMillis() + (lockExpire * 1000));
+
+        return Arrays.asList(
+                redisResourcesPrefix,
+                redisCollectionsPrefix,
+                redisDeltaResourcesPrefix,
+                redisDeltaEtagsPrefix,
+                expirableSet + hashTag,
                 String.valueOf(System.currentTimeMillis()),
                 MAX_EXPIRE_IN_MILLIS,
                 confirmCollectionDelete ? "true" : "false",
@@ -885,38 +1941,90 @@ public class RedisStorage implements Storage {
                 redisLockPrefix,
                 lockOwner,
                 lockMode.text(),
-                lockExpireInMillis
+                lockExpireInMillis,
+                childCollectionsPrefix,
+                sortedCollectionsPrefix,
+                deletedSubtreesKey(hashTag),
+                deleteJobId.isEmpty() ? EMPTY : deleteJobs.pendingCollectionsKey(deleteJobId, hashTag),
+                deleteJobId
         );
-        reloadScriptIfLoglevelChangedAndExecuteRedisCommand(LuaScript.DELETE, new Delete(keys, arguments, handler), 0);
+    }
+
+    /**
+     * Deletes a collection above the hash tag depth by deleting it in the slots of all hash tags below it.
+     */
+    private void deleteAcrossHashTags(String path, String key, String lockOwner, LockMode lockMode, long lockExpire,
+                                      boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        hashTagsBelow(key, handler, hashTags -> {
+            if (hashTags.isEmpty()) {
+                notFound(handler);
+                return;
+            }
+            List<Resource> results = new ArrayList<>();
+            for (String hashTag : hashTags) {
+                List<String> keys = Collections.singletonList(hashTag + key);
+                List<String> arguments = deleteArguments(hashTag, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, EMPTY);
+                luaScripts.execute(new Delete(path, keys, arguments, resource -> {
+                    results.add(resource);
+                    if (results.size() == hashTags.size()) {
+                        handler.handle(mergeDeleteResults(results));
+                    }
+                }));
+            }
+        });
+    }
+
+    /**
+     * A rejected or failed delete in any slot is reported first. Otherwise the collection is deleted when it existed
+     * in any slot.
+     */
+    static Resource mergeDeleteResults(List<Resource> results) {
+        for (Resource result : results) {
+            if (result.rejected || result.error) {
+                return result;
+            }
+        }
+        for (Resource result : results) {
+            if (result.exists) {
+                return result;
+            }
+        }
+        return results.get(0);
     }
 
     /**
      * The Delete Command Execution.
-     * If the get script cannot be found under the sha in luaScriptState, reload the script.
-     * To avoid infinite recursion, we limit the recursion.
+     * If redis lost the scripts, they are reloaded and the command is replayed.
+     * To avoid an endless replay, the executions are limited.
      */
     private class Delete implements RedisCommand {
 
+        private String path;
         private List<String> keys;
         private List<String> arguments;
         private Handler<Resource> handler;
 
-        public Delete(List<String> keys, List<String> arguments, final Handler<Resource> handler) {
+        public Delete(String path, List<String> keys, List<String> arguments, final Handler<Resource> handler) {
+            this.path = path;
             this.keys = keys;
             this.arguments = arguments;
             this.handler = handler;
         }
 
         public void exec(final int executionCounter) {
-            redisClient.evalsha(luaScripts.get(LuaScript.DELETE).getSha(), keys, arguments, event -> {
-                if(event.cause() != null && event.cause().getMessage().startsWith("NOSCRIPT")) {
-                    log.warn("delete script couldn't be found, reload it");
-                    log.warn("amount the script got loaded: " + String.valueOf(executionCounter));
-                    if(executionCounter > 10) {
-                        log.error("amount the script got loaded is higher than 10, we abort");
-                    } else {
-                        luaScripts.get(LuaScript.DELETE).loadLuaScript(new Delete(keys, arguments, handler), executionCounter);
+            readRouter.written();
+            Connection connection = redisClientPool.connection(Lane.WRITE);
+            connection.client().evalsha(luaScripts.get(LuaScript.DELETE).getSha(), keys, arguments, connection.track(event -> {
+                if (event.failed()) {
+                    String message = event.cause().getMessage();
+                    if (message != null && message.startsWith("NOSCRIPT")) {
+                        log.warn("delete script couldn't be found, reload the scripts");
+                        if (luaScripts.reload(new Delete(path, keys, arguments, handler), executionCounter)) {
+                            return;
+                        }
                     }
+                    log.error("DELETE request failed with message: " + message);
+                    error(handler, message);
                     return;
                 }
 
@@ -939,15 +2047,19 @@ public class RedisStorage implements Storage {
                     rejected(handler);
                     return;
                 }
-                Resource r = new Resource();
+                if ("deleted".equals(result) || "detached".equals(result)) {
+                    publishInvalidation(path.endsWith("/") ? path : path + "/");
+                }
+                // a detached collection is deleted by its delete job
+                Resource r = "detached".equals(result) ? new CollectionResource() : new Resource();
                 handler.handle(r);
-            });
+            }));
         }
     }
 
     /**
      * Cleans up the outdated resources recursive.
-     * If the script which is refered over the luaScriptState.sha, the execution is aborted and the script is reloaded.
+     * If redis lost the scripts, they are reloaded and the current bulk is replayed.
      *
      * @param handler the handler to execute
      * @param cleanedLastRun how many resources were cleaned in the last run
@@ -955,6 +2067,25 @@ public class RedisStorage implements Storage {
      * @param bulkSize how many resources should be cleaned in one run
      */
     public void cleanupRecursive(final Handler<DocumentResource> handler, final long cleanedLastRun, final long maxdel, final int bulkSize) {
+        cleanupExpirableSet(expirableSet, cleanedLastRun, maxdel, bulkSize, cleaned ->
+                countExpiredResources(expirableSet, resToCleanLeft ->
+                        handler.handle(jsonDocument(vertx, cleanupResult(cleaned, resToCleanLeft)))));
+    }
+
+    /**
+     * Cleans up the outdated resources of a single expirable set in bulks, until no outdated resources are left or
+     * maxdel resources are cleaned.
+     *
+     * @param cleanedHandler the handler receiving the amount of cleaned resources, including cleanedLastRun
+     */
+    private void cleanupExpirableSet(final String expirableSet, final long cleanedLastRun, final long maxdel,
+                                     final int bulkSize, final Handler<Long> cleanedHandler) {
+        luaScripts.execute(executionCounter ->
+                executeCleanupBulk(expirableSet, cleanedLastRun, maxdel, bulkSize, cleanedHandler, executionCounter));
+    }
+
+    private void executeCleanupBulk(final String expirableSet, final long cleanedLastRun, final long maxdel,
+                             final int bulkSize, final Handler<Long> cleanedHandler, final int executionCounter) {
         List<String> arguments = Arrays.asList(
                 redisResourcesPrefix,
                 redisCollectionsPrefix,
@@ -966,17 +2097,26 @@ public class RedisStorage implements Storage {
                 "false",
                 "true",
                 String.valueOf(System.currentTimeMillis()),
-                String.valueOf(bulkSize)
+                String.valueOf(bulkSize),
+                childCollectionsPrefix,
+                sortedCollectionsPrefix,
+                deletedSubtreesKey(expirableSet.substring(this.expirableSet.length()))
         );
 
-        redisClient.evalsha(luaScripts.get(LuaScript.CLEANUP).getSha(), Collections.emptyList(), arguments, event -> {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        List<String> keys = Collections.singletonList(expirableSet);
+        connection.client().evalsha(luaScripts.get(LuaScript.CLEANUP).getSha(), keys, arguments, connection.track(event -> {
             if (log.isTraceEnabled()) {
                 log.trace("RedisStorage cleanup resources succeeded: " + event.succeeded());
             }
 
             if(event.failed() && event.cause() != null && event.cause().getMessage().startsWith("NOSCRIPT")) {
-                log.warn("the cleanup script is not loaded. Load it and exit. The Cleanup will success the next time");
-                luaScripts.get(LuaScript.CLEANUP).loadLuaScript(new RedisCommandDoNothing(), 0);
+                log.warn("cleanup script couldn't be found, reload the scripts");
+                boolean replayed = luaScripts.reload(counter ->
+                        executeCleanupBulk(expirableSet, cleanedLastRun, maxdel, bulkSize, cleanedHandler, counter), executionCounter);
+                if (!replayed) {
+                    cleanedHandler.handle(cleanedLastRun);
+                }
                 return;
             }
 
@@ -992,31 +2132,278 @@ public class RedisStorage implements Storage {
                 if (log.isTraceEnabled()) {
                     log.trace("RedisStorage cleanup resources call recursive next bulk");
                 }
-                cleanupRecursive(handler, cleaned, maxdel, bulkSize);
+                cleanupExpirableSet(expirableSet, cleaned, maxdel, bulkSize, cleanedHandler);
             } else {
-                redisClient.zcount(expirableSet, 0, System.currentTimeMillis(), longAsyncResult -> {
-                    Long result = longAsyncResult.result();
-                    if (log.isTraceEnabled()) {
-                        log.trace("RedisStorage cleanup resources zcount on expirable set: " + result);
-                    }
-                    int resToCleanLeft = 0;
-                    if (result != null && result.intValue() >= 0) {
-                        resToCleanLeft = result.intValue();
+                cleanedHandler.handle(cleaned);
+            }
+        }));
+    }
+
+    /**
+     * Executes a single cleanup bulk, used by the {@link RedisCleanupScheduler}. With hash tags, the expirable sets of
+     * the hash tags are cleaned in turns, and the hash tag is pruned when its set has no outdated resources left.
+     *
+     * @param bulkSize the maximum amount of resources to clean
+     * @param handler the handler receiving the amount of cleaned resources
+     */
+    public void cleanupNextBulk(int bulkSize, Handler<Long> handler) {
+        if (hashTagDepth <= 0) {
+            luaScripts.execute(executionCounter ->
+                    executeCleanupBulk(expirableSet, 0, 0, bulkSize, handler, executionCounter));
+            return;
+        }
+        if (!nextCleanupHashTags.hasNext()) {
+            Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+            connection.client().smembers(hashTagsKey, connection.track(event -> {
+                if (event.failed()) {
+                    log.error("Unable to read the hash tags to clean up: " + event.cause().getMessage());
+                    handler.handle(0L);
+                    return;
+                }
+                List<String> hashTags = new ArrayList<>();
+                for (Object hashTag : event.result()) {
+                    hashTags.add((String) hashTag);
+                }
+                if (hashTags.isEmpty()) {
+                    handler.handle(0L);
+                    return;
+                }
+                nextCleanupHashTags = hashTags.iterator();
+                cleanupNextBulk(bulkSize, handler);
+            }));
+            return;
+        }
+        String hashTag = nextCleanupHashTags.next();
+        luaScripts.execute(executionCounter -> executeCleanupBulk(expirableSet + hashTag, 0, 0, bulkSize, cleaned -> {
+            if (cleaned < bulkSize) {
+                pruneHashTag(hashTag, pruned -> handler.handle(cleaned));
+            } else {
+                handler.handle(cleaned);
+            }
+        }, executionCounter));
+    }
+
+    /**
+     * Counts the outdated resources waiting for the cleanup, in the expirable sets of all hash tags when hash tags
+     * are used.
+     */
+    public void countExpiredResources(Handler<Long> handler) {
+        if (hashTagDepth <= 0) {
+            countExpiredResources(expirableSet, handler);
+            return;
+        }
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().smembers(hashTagsKey, connection.track(event -> {
+            if (event.failed() || event.result().isEmpty()) {
+                handler.handle(0L);
+                return;
+            }
+            long[] total = {0};
+            int[] pending = {event.result().size()};
+            for (Object hashTag : event.result()) {
+                countExpiredResources(expirableSet + hashTag, count -> {
+                    total[0] += count;
+                    if (--pending[0] == 0) {
+                        handler.handle(total[0]);
                     }
-                    JsonObject retObj = new JsonObject();
-                    retObj.put("cleanedResources", cleaned);
-                    retObj.put("expiredResourcesLeft", resToCleanLeft);
-                    DocumentResource r = new DocumentResource();
-                    byte[] content = decodeBinary(retObj.toString());
-                    r.readStream = new ByteArrayReadStream(content);
-                    r.length = content.length;
-                    r.closeHandler = event1 -> {
-                        // nothing to close
-                    };
-                    handler.handle(r);
                 });
             }
-        });
+        }));
+    }
+
+    /**
+     * @return the latency of the redis commands of the users, used to pause the background cleanup under load
+     */
+    public double getRequestLatencyMs() {
+        return Math.max(redisClientPool.getLatencyMs(Lane.READ), redisClientPool.getLatencyMs(Lane.WRITE));
+    }
+
+    /**
+     * @return the progress of the background cleanup, or <code>null</code> when it is not enabled
+     */
+    public JsonObject getCleanupStatistics() {
+        return cleanupScheduler == null ? null : cleanupScheduler.getStatistics();
+    }
+
+    private void countExpiredResources(String expirableSet, Handler<Long> handler) {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().zcount(expirableSet, 0, System.currentTimeMillis(), connection.track(longAsyncResult -> {
+            Long result = longAsyncResult.result();
+            if (log.isTraceEnabled()) {
+                log.trace("RedisStorage cleanup resources zcount on expirable set: " + result);
+            }
+            long resToCleanLeft = 0;
+            if (result != null && result >= 0) {
+                resToCleanLeft = result;
+            }
+            handler.handle(resToCleanLeft);
+        }));
+    }
+
+    private JsonObject cleanupResult(long cleaned, long resToCleanLeft) {
+        JsonObject retObj = new JsonObject();
+        retObj.put("cleanedResources", cleaned);
+        retObj.put("expiredResourcesLeft", resToCleanLeft);
+        return retObj;
+    }
+
+    static DocumentResource jsonDocument(Vertx vertx, JsonObject cleanupResult) {
+        DocumentResource r = new DocumentResource();
+        byte[] content = cleanupResult.toString().getBytes(StandardCharsets.ISO_8859_1);
+        r.readStream = new ByteArrayReadStream(vertx, content);
+        r.length = content.length;
+        r.closeHandler = event1 -> {
+            // nothing to close
+        };
+        return r;
+    }
+
+    /**
+     * Cleans up the outdated resources of the expirable sets of all hash tags one after the other. The hash tags of
+     * slots without any collection left are removed from the registry.
+     */
+    private void cleanupHashTags(Handler<JsonObject> handler, long maxdel, int bulkSize) {
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().smembers(hashTagsKey, connection.track(event -> {
+            if (event.failed()) {
+                log.error("Unable to read the hash tags to clean up: " + event.cause().getMessage());
+                handler.handle(cleanupResult(0, 0));
+                return;
+            }
+            List<String> hashTags = new ArrayList<>();
+            for (Object hashTag : event.result()) {
+                hashTags.add((String) hashTag);
+            }
+            cleanupHashTags(handler, hashTags.iterator(), 0, 0, maxdel, bulkSize);
+        }));
+    }
+
+    private void cleanupHashTags(Handler<JsonObject> handler, Iterator<String> hashTags, long cleaned,
+                                 long resToCleanLeft, long maxdel, int bulkSize) {
+        if (!hashTags.hasNext()) {
+            handler.handle(cleanupResult(cleaned, resToCleanLeft));
+            return;
+        }
+        String hashTag = hashTags.next();
+        String hashTagExpirableSet = expirableSet + hashTag;
+        Handler<Long> next = cleanedTotal -> countExpiredResources(hashTagExpirableSet, left ->
+                pruneHashTag(hashTag, pruned ->
+                        cleanupHashTags(handler, hashTags, cleanedTotal, resToCleanLeft + left, maxdel, bulkSize)));
+        if (cleaned < maxdel) {
+            cleanupExpirableSet(hashTagExpirableSet, cleaned, maxdel, bulkSize, next);
+        } else {
+            next.handle(cleaned);
+        }
+    }
+
+    /**
+     * Adds the hash tag to the registry of the hash tags in use. The tag is registered after the resource was
+     * written, so that {@link #pruneHashTag(String, Handler)} never removes the tag of a slot holding resources.
+     */
+    private void registerHashTag(String hashTag, Handler<Void> handler) {
+        if (hashTag.isEmpty()) {
+            handler.handle(null);
+            return;
+        }
+        Connection connection = redisClientPool.connection(Lane.WRITE);
+        connection.client().sadd(hashTagsKey, hashTag, connection.track(event -> {
+            if (event.failed()) {
+                log.error("Unable to register hash tag " + hashTag + ". Its resources are not listed in the collections"
+                        + " above it until it is written again: " + event.cause().getMessage());
+            }
+            handler.handle(null);
+        }));
+    }
+
+    /**
+     * Removes the hash tag from the registry when the root collection of its slot is gone. When a resource was written
+     * to the slot meanwhile, the root collection exists again after the removal and the tag is added back.
+     */
+    private void pruneHashTag(String hashTag, Handler<Void> handler) {
+        String rootCollection = redisCollectionsPrefix + hashTag;
+        Connection connection = redisClientPool.connection(Lane.MAINTENANCE);
+        connection.client().exists(rootCollection, connection.track(exists -> {
+            if (exists.failed() || exists.result() != 0) {
+                handler.handle(null);
+                return;
+            }
+            Connection sremConnection = redisClientPool.connection(Lane.MAINTENANCE);
+            sremConnection.client().srem(hashTagsKey, hashTag, sremConnection.track(removed -> {
+                Connection recheckConnection = redisClientPool.connection(Lane.MAINTENANCE);
+                recheckConnection.client().exists(rootCollection, recheckConnection.track(existsAgain -> {
+                    if (existsAgain.succeeded() && existsAgain.result() == 0) {
+                        log.info("Removed hash tag " + hashTag + " without any resources left");
+                        handler.handle(null);
+                    } else {
+                        registerHashTag(hashTag, handler);
+                    }
+                }));
+            }));
+        }));
+    }
+
+    /**
+     * Returns the hash tag of an encoded path. All keys of a resource are put in the redis cluster slot of this tag by
+     * prefixing the encoded path with it. The tag consists of the first path segments up to the hash tag depth.
+     *
+     * @return an empty string when no hash tags are used, or <code>null</code> when the path is above the hash tag
+     * depth and therefore spread over the slots of several hash tags
+     */
+    private String hashTagOf(String key) {
+        return hashTagOf(key, hashTagDepth);
+    }
+
+    static String hashTagOf(String key, int hashTagDepth) {
+        if (hashTagDepth <= 0) {
+            return EMPTY_HASH_TAG;
+        }
+        String[] segments = hashTagSegments(key);
+        if (segments.length < hashTagDepth) {
+            return null;
+        }
+        return "{" + StringUtils.join(segments, '/', 0, hashTagDepth) + "}";
+    }
+
+    private static String[] hashTagSegments(String key) {
+        if (key.isEmpty()) {
+            return new String[0];
+        }
+        // braces would end the hash tag early. Different segments may end up in the same tag, this only affects
+        // the distribution over the slots
+        String segments = key.replace('{', '_').replace('}', '_');
+        return StringUtils.splitPreserveAllTokens(segments.startsWith(":") ? segments.substring(1) : segments, ':');
+    }
+
+    private String hashTagOfTaggedKey(String taggedKey) {
+        return taggedKey.startsWith("{") ? taggedKey.substring(0, taggedKey.indexOf('}') + 1) : EMPTY;
+    }
+
+    /**
+     * Resolves the hash tags of the slots holding resources below an encoded path above the hash tag depth.
+     */
+    private void hashTagsBelow(String key, Handler<Resource> handler, Handler<List<String>> hashTagsHandler) {
+        String[] segments = hashTagSegments(key);
+        Connection connection = redisClientPool.connection(Lane.READ);
+        connection.client().smembers(hashTagsKey, connection.track(event -> {
+            if (event.failed()) {
+                log.error("Unable to read the hash tags: " + event.cause().getMessage());
+                error(handler, "Unable to read the hash tags");
+                return;
+            }
+            List<String> hashTags = new ArrayList<>();
+            for (Object member : event.result()) {
+                String hashTag = (String) member;
+                String[] hashTagSegments = StringUtils.splitPreserveAllTokens(hashTag.substring(1, hashTag.length() - 1), '/');
+                boolean below = hashTagSegments.length >= segments.length;
+                for (int i = 0; below && i < segments.length; i++) {
+                    below = segments[i].equals(hashTagSegments[i]);
+                }
+                if (below) {
+                    hashTags.add(hashTag);
+                }
+            }
+            hashTagsHandler.handle(hashTags);
+        }));
     }
 
     private String encodePath(String path) {
@@ -1083,6 +2470,16 @@ public class RedisStorage implements Storage {
 
     @Override
     public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmountStr) {
+        cleanupResources(cleanupResourcesAmountStr, result -> handler.handle(jsonDocument(vertx, result)));
+    }
+
+    /**
+     * Cleans up the outdated resources.
+     *
+     * @param cleanupResourcesAmountStr the maximum amount of resources to clean, the configured amount if not a number
+     * @param handler the handler receiving the amount of cleaned resources and of outdated resources left
+     */
+    public void cleanupResources(String cleanupResourcesAmountStr, Handler<JsonObject> handler) {
         long cleanupResourcesAmountUsed = cleanupResourcesAmount;
         if (log.isTraceEnabled()) {
             log.trace("RedisStorage cleanup resources,  cleanupResourcesAmount: " + cleanupResourcesAmountUsed);
@@ -1092,7 +2489,12 @@ public class RedisStorage implements Storage {
         } catch (Exception e) {
             // do nothing
         }
-        cleanupRecursive(handler, 0, cleanupResourcesAmountUsed, CLEANUP_BULK_SIZE);
+        if (hashTagDepth > 0) {
+            cleanupHashTags(handler, cleanupResourcesAmountUsed, CLEANUP_BULK_SIZE);
+        } else {
+            cleanupExpirableSet(expirableSet, 0, cleanupResourcesAmountUsed, CLEANUP_BULK_SIZE, cleaned ->
+                    countExpiredResources(expirableSet, resToCleanLeft -> handler.handle(cleanupResult(cleaned, resToCleanLeft))));
+        }
     }
 
     private boolean isEmpty(CharSequence cs) {
@@ -5,6 +5,7 @@ import io.vertx.core.MultiMap;
 import io.vertx.core.Vertx;
 import io.vertx.core.buffer.Buffer;
 import io.vertx.core.http.HttpServerRequest;
+import io.vertx.core.json.Json;
 import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.core.logging.Logger;
@@ -16,6 +17,7 @@ import org.swisspush.reststorage.util.ModuleConfiguration;
 import org.swisspush.reststorage.util.ResourceNameUtil;
 import org.swisspush.reststorage.util.StatusCode;
 
+import java.nio.charset.StandardCharsets;
 import java.text.DecimalFormat;
 import java.util.*;
 
@@ -25,6 +27,13 @@ import static org.swisspush.reststorage.util.HttpRequestParam.getString;
 
 public class RestStorageHandler implements Handler<HttpServerRequest> {
 
+    // the progress of the asynchronous deletes
+    private static final String DELETE_JOBS_PATH = "/_deletejobs/";
+    // the counters of the storage
+    private static final String STATISTICS_PATH = "/_statistics";
+    // distinguishes the etag of the gzip encoded representation from the one of the decompressed representation
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
     private final Logger log;
     private final Router router;
     private final Storage storage;
@@ -61,8 +70,16 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
 
         router.postWithRegex(".*_cleanup").handler(this::cleanup);
 
+        router.postWithRegex(prefixFixed + ".*").handler(this::putBatch);
+
+        router.postWithRegex(prefixFixed + ".*").handler(this::getBulk);
+
         router.postWithRegex(prefixFixed + ".*").handler(this::storageExpand);
 
+        router.getWithRegex(prefixFixed + DELETE_JOBS_PATH + "[^/]+").handler(this::getDeleteJob);
+
+        router.getWithRegex(prefixFixed + STATISTICS_PATH).handler(this::getStatistics);
+
         router.getWithRegex(prefixFixed + ".*").handler(this::getResource);
 
         router.putWithRegex(prefixFixed + ".*").handler(this::putResource);
@@ -107,6 +124,37 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
         }, ctx.request().params().get("cleanupResourcesAmount"));
     }
 
+    private void getDeleteJob(RoutingContext ctx) {
+        String path = ctx.request().path();
+        String jobId = path.substring(path.lastIndexOf('/') + 1);
+        storage.getDeleteJob(jobId, resource -> {
+            if (resource.error) {
+                ctx.response().setStatusCode(StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
+                ctx.response().end(resource.errorMessage);
+            } else if (!resource.exists) {
+                ctx.response().setStatusCode(StatusCode.NOT_FOUND.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.NOT_FOUND.getStatusMessage());
+                ctx.response().end(StatusCode.NOT_FOUND.toString());
+            } else {
+                DocumentResource documentResource = (DocumentResource) resource;
+                ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
+                ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+                final Pump pump = Pump.pump(documentResource.readStream, ctx.response());
+                documentResource.readStream.endHandler(nothing -> {
+                    documentResource.closeHandler.handle(null);
+                    ctx.response().end();
+                });
+                pump.start();
+            }
+        });
+    }
+
+    private void getStatistics(RoutingContext ctx) {
+        ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+        ctx.response().end(storage.getStatistics().encode());
+    }
+
     private void getResourceNotFound(RoutingContext ctx) {
         if (log.isTraceEnabled()) {
             log.trace("RestStorageHandler resource not found: " + ctx.request().uri());
@@ -126,7 +174,18 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
         String offsetFromUrl = getString(params, OFFSET_PARAMETER);
         String limitFromUrl = getString(params, LIMIT_PARAMETER);
         OffsetLimit offsetLimit = UrlParser.offsetLimit(offsetFromUrl, limitFromUrl);
-        storage.get(path, etag, offsetLimit.offset, offsetLimit.limit, new Handler<Resource>() {
+        String cursor = getString(params, CURSOR_PARAMETER);
+        if (cursor != null && !CollectionCursor.isValid(cursor)) {
+            ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
+            ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
+            ctx.response().end("Invalid " + CURSOR_PARAMETER.getName() + " parameter: " + cursor);
+            return;
+        }
+        if (containsParam(params, EXPAND_PARAMETER)) {
+            expandResource(ctx, path, etag, getString(params, EXPAND_PARAMETER));
+            return;
+        }
+        Handler<Resource> resourceHandler = new Handler<Resource>() {
             public void handle(Resource resource) {
                 if (log.isTraceEnabled()) {
                     log.trace("RestStorageHandler resource exists: " + resource.exists);
@@ -161,6 +220,9 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                         }
                         CollectionResource collection = (CollectionResource) resource;
                         String collectionName = collectionName(path);
+                        if (collection.nextCursor != null) {
+                            ctx.response().headers().add(NEXT_CURSOR_HEADER.getName(), collection.nextCursor);
+                        }
                         if (html && !ctx.request().uri().endsWith("/")) {
                             if (log.isTraceEnabled()) {
                                 log.trace("RestStorageHandler accept contains text/html and ends with /");
@@ -257,17 +319,32 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
 
                             final DocumentResource documentResource = (DocumentResource) resource;
                             if (documentResource.etag != null && !documentResource.etag.isEmpty()) {
-                                ctx.response().headers().add(ETAG_HEADER.getName(), documentResource.etag);
+                                String responseEtag = documentResource.etag;
+                                if ("gzip".equals(documentResource.contentEncoding)) {
+                                    responseEtag += GZIP_ETAG_SUFFIX;
+                                }
+                                ctx.response().headers().add(ETAG_HEADER.getName(), responseEtag);
                             }
                             ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
                             ctx.response().headers().add(CONTENT_TYPE.getName(), mimeType);
+                            if (documentResource.contentEncoding != null) {
+                                ctx.response().headers().add(CONTENT_ENCODING.getName(), documentResource.contentEncoding);
+                            }
+                            if (documentResource.contentEncoding != null || documentResource.encodingNegotiated) {
+                                ctx.response().headers().add("Vary", ACCEPT_ENCODING.getName());
+                            }
                             final Pump pump = Pump.pump(documentResource.readStream, ctx.response());
                             documentResource.readStream.endHandler(nothing -> {
                                 documentResource.closeHandler.handle(null);
                                 ctx.response().end();
                             });
+                            documentResource.readStream.exceptionHandler(exception -> {
+                                // the headers are already sent, the client recognizes the incomplete body
+                                log.error("RestStorageHandler failed to read resource " + path, (Throwable) exception);
+                                documentResource.closeHandler.handle(null);
+                                ctx.response().close();
+                            });
                             pump.start();
-                            // TODO: exception handlers
                         }
                     }
                 } else {
@@ -279,30 +356,220 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                     ctx.response().end(StatusCode.NOT_FOUND.toString());
                 }
             }
+        };
+        if (cursor != null) {
+            storage.get(path, etag, cursor, offsetLimit.limit, resourceHandler);
+        } else {
+            // a resource stored gzip compressed is delivered as it is stored when the client accepts it
+            boolean gzipAccepted = acceptsEncoding(ctx.request().headers(), "gzip");
+            String storageEtag = etag;
+            if (gzipAccepted && etag != null && etag.endsWith(GZIP_ETAG_SUFFIX)) {
+                storageEtag = etag.substring(0, etag.length() - GZIP_ETAG_SUFFIX.length());
+            }
+            storage.get(path, storageEtag, offsetLimit.offset, offsetLimit.limit, gzipAccepted, resourceHandler);
+        }
+    }
+
+    /**
+     * Responds the subtree of a collection as a single json document. The expansion of a document is the document.
+     */
+    private void expandResource(RoutingContext ctx, String path, String etag, String depthFromUrl) {
+        int depth;
+        try {
+            depth = Integer.parseInt(depthFromUrl);
+        } catch (NumberFormatException ex) {
+            depth = 0;
+        }
+        if (depth < 1) {
+            ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
+            ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
+            ctx.response().end("Invalid " + EXPAND_PARAMETER.getName() + " parameter: " + depthFromUrl);
+            return;
+        }
+        storage.expand(path, etag, depth, resource -> {
+            if (resource.error) {
+                ctx.response().setStatusCode(StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
+                ctx.response().end(resource.errorMessage != null ? resource.errorMessage : StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
+                return;
+            }
+            if (resource.invalid) {
+                respondWithBadRequest(ctx.request(), resource.invalidMessage);
+                return;
+            }
+            if (!resource.modified) {
+                ctx.response().setStatusCode(StatusCode.NOT_MODIFIED.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.NOT_MODIFIED.getStatusMessage());
+                ctx.response().headers().set(ETAG_HEADER.getName(), etag);
+                ctx.response().headers().add(CONTENT_LENGTH.getName(), "0");
+                ctx.response().end();
+                return;
+            }
+            if (!resource.exists) {
+                getResourceNotFound(ctx);
+                return;
+            }
+            final DocumentResource documentResource = (DocumentResource) resource;
+            if (documentResource.etag != null && !documentResource.etag.isEmpty()) {
+                ctx.response().headers().add(ETAG_HEADER.getName(), documentResource.etag);
+            }
+            ctx.response().headers().add(CONTENT_LENGTH.getName(), "" + documentResource.length);
+            ctx.response().headers().add(CONTENT_TYPE.getName(), mimeTypeResolver.resolveMimeType(path));
+            final Pump pump = Pump.pump(documentResource.readStream, ctx.response());
+            documentResource.readStream.endHandler(nothing -> {
+                documentResource.closeHandler.handle(null);
+                ctx.response().end();
+            });
+            documentResource.readStream.exceptionHandler(exception -> {
+                // the headers are already sent, the client recognizes the incomplete body
+                log.error("RestStorageHandler failed to read resource " + path, (Throwable) exception);
+                documentResource.closeHandler.handle(null);
+                ctx.response().close();
+            });
+            pump.start();
+        });
+    }
+
+    private List<String> sortedNames(CollectionResource collection) {
+        List<String> collections = new ArrayList<>();
+        List<String> documents = new ArrayList<>();
+        for (Resource r : collection.items) {
+            String name = r.name;
+            if (r instanceof CollectionResource) {
+                collections.add(name + "/");
+            } else {
+                documents.add(name);
+            }
+        }
+        collections.addAll(documents);
+        return collections;
+    }
 
-            private List<String> sortedNames(CollectionResource collection) {
-                List<String> collections = new ArrayList<>();
-                List<String> documents = new ArrayList<>();
-                for (Resource r : collection.items) {
-                    String name = r.name;
-                    if (r instanceof CollectionResource) {
-                        collections.add(name + "/");
-                    } else {
-                        documents.add(name);
+    /**
+     * Gets the resources of the paths in the body at once. The response is streamed: the resources are written one
+     * after the other, each with its status and etag. Json documents are embedded as they are stored when they are
+     * valid json, other documents as string. Only the document being written is held in memory, and the next one is
+     * read when the response has drained.
+     */
+    private void getBulk(RoutingContext ctx) {
+        if (!containsParam(ctx.request().params(), BULK_GET_PARAMETER)) {
+            ctx.next();
+            return;
+        }
+        ctx.request().bodyHandler(body -> {
+            List<String> requestedPaths = new ArrayList<>();
+            List<String> paths = new ArrayList<>();
+            List<String> etags = new ArrayList<>();
+            try {
+                JsonArray resources = new JsonObject(body.toString()).getJsonArray("resources");
+                if (resources == null) {
+                    respondWithBadRequest(ctx.request(), "Bad Request: Expected array field 'resources' with the paths of the resources");
+                    return;
+                }
+                for (int i = 0; i < resources.size(); i++) {
+                    JsonObject resource = resources.getJsonObject(i);
+                    String path = resource.getString("path");
+                    if (path == null || !path.startsWith(prefixFixed + "/")) {
+                        respondWithBadRequest(ctx.request(), "Bad Request: Invalid path " + path);
+                        return;
                     }
+                    requestedPaths.add(path);
+                    paths.add(cleanPath(path.substring(prefixFixed.length())));
+                    etags.add(resource.getString("etag"));
                 }
-                collections.addAll(documents);
-                return collections;
+            } catch (RuntimeException ex) {
+                respondWithBadRequest(ctx.request(), "Bad Request: Unable to parse body of bulk GET request");
+                return;
+            }
+
+            if (log.isTraceEnabled()) {
+                log.trace("RestStorageHandler get bulk of " + paths.size() + " resources");
             }
+
+            storage.getBulk(paths, etags, resources -> {
+                ctx.response().setChunked(true);
+                ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json; charset=utf-8");
+                ctx.response().write("{\"resources\":[");
+                writeBulkResource(ctx, requestedPaths, paths, resources, 0);
+            });
         });
     }
 
-    private void putResource(RoutingContext ctx) {
-        ctx.request().pause();
-        final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+    private void writeBulkResource(RoutingContext ctx, List<String> requestedPaths, List<String> paths, List<Resource> resources, int index) {
+        if (index == resources.size()) {
+            ctx.response().end("]}");
+            return;
+        }
+        if (ctx.response().writeQueueFull()) {
+            ctx.response().drainHandler(nothing -> {
+                ctx.response().drainHandler(null);
+                writeBulkResource(ctx, requestedPaths, paths, resources, index);
+            });
+            return;
+        }
+        Resource resource = resources.get(index);
+        JsonObject result = new JsonObject().put("path", requestedPaths.get(index));
+        String separator = index == 0 ? "" : ",";
+        if (resource.error) {
+            result.put("status", StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+        } else if (resource.invalid) {
+            result.put("status", StatusCode.BAD_REQUEST.getStatusCode());
+        } else if (!resource.modified) {
+            result.put("status", StatusCode.NOT_MODIFIED.getStatusCode());
+        } else if (!resource.exists) {
+            result.put("status", StatusCode.NOT_FOUND.getStatusCode());
+        } else if (resource instanceof CollectionResource) {
+            List<String> sortedNames = sortedNames((CollectionResource) resource);
+            ResourceNameUtil.resetReplacedColonsAndSemiColonsInList(sortedNames);
+            result.put("status", StatusCode.OK.getStatusCode()).put("content", new JsonArray(sortedNames));
+        } else if (resource instanceof DocumentResource) {
+            DocumentResource documentResource = (DocumentResource) resource;
+            result.put("status", StatusCode.OK.getStatusCode());
+            if (documentResource.etag != null && !documentResource.etag.isEmpty()) {
+                result.put("etag", documentResource.etag);
+            }
+            boolean json = mimeTypeResolver.resolveMimeType(paths.get(index)).contains("application/json");
+            // the result without its closing brace, followed by the content
+            String encoded = result.encode();
+            ctx.response().write(separator + encoded.substring(0, encoded.length() - 1) + ",\"content\":");
+            // the content is validated while it is read, it is embedded only when the whole document is valid
+            JsonScanner scanner = json ? new JsonScanner() : null;
+            Buffer text = Buffer.buffer();
+            documentResource.readStream.handler(data -> {
+                text.appendBuffer((Buffer) data);
+                if (scanner != null) {
+                    scanner.feed(((Buffer) data).getBytes());
+                }
+            });
+            documentResource.readStream.endHandler(nothing -> {
+                documentResource.closeHandler.handle(null);
+                if (scanner != null && scanner.end()) {
+                    ctx.response().write(text.appendString("}"));
+                } else {
+                    // invalid stored json would break the whole response
+                    ctx.response().write(Json.encode(text.toString()) + "}");
+                }
+                writeBulkResource(ctx, requestedPaths, paths, resources, index + 1);
+            });
+            documentResource.readStream.exceptionHandler(exception -> {
+                // the status is already sent, the client recognizes the incomplete body
+                log.error("RestStorageHandler failed to read resource " + paths.get(index), (Throwable) exception);
+                documentResource.closeHandler.handle(null);
+                ctx.response().close();
+            });
+            return;
+        }
+        ctx.response().write(separator + result.encode());
+        writeBulkResource(ctx, requestedPaths, paths, resources, index + 1);
+    }
 
+    /**
+     * Rejects a PUT when the memory usage of the storage is higher than the importance level of the request.
+     *
+     * @return <code>true</code> when the request was rejected
+     */
+    private boolean rejectedOnLowMemory(RoutingContext ctx) {
         MultiMap headers = ctx.request().headers();
-
         Integer importanceLevel;
         if (containsHeader(headers, IMPORTANCE_LEVEL_HEADER)) {
             importanceLevel = getInteger(headers, IMPORTANCE_LEVEL_HEADER);
@@ -312,7 +579,7 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                 ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
                 ctx.response().end("Invalid " + IMPORTANCE_LEVEL_HEADER.getName() + " header: " + headers.get(IMPORTANCE_LEVEL_HEADER.getName()));
                 log.error("Rejecting PUT request to " + ctx.request().uri() + " because " + IMPORTANCE_LEVEL_HEADER.getName() + " header, has an invalid value: " + headers.get(IMPORTANCE_LEVEL_HEADER.getName()));
-                return;
+                return true;
             }
 
             if (rejectStorageWriteOnLowMemory) {
@@ -325,7 +592,7 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
                         ctx.response().end(StatusCode.INSUFFICIENT_STORAGE.getStatusMessage());
                         log.info("Rejecting PUT request to " + ctx.request().uri() + " because current memory usage of "
                                 + decimalFormat.format(currentMemoryUsage.get()) + "% is higher than provided importance level of " + importanceLevel + "%");
-                        return;
+                        return true;
                     }
                 } else {
                     log.warn("Rejecting storage writes on low memory feature disabled, because current memory usage not available");
@@ -337,6 +604,18 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
             log.info("Received PUT request to " + ctx.request().uri() + " without " + IMPORTANCE_LEVEL_HEADER.getName()
                     + " header. Going to handle this request with highest importance");
         }
+        return false;
+    }
+
+    private void putResource(RoutingContext ctx) {
+        ctx.request().pause();
+        final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+
+        MultiMap headers = ctx.request().headers();
+
+        if (rejectedOnLowMemory(ctx)) {
+            return;
+        }
 
         Long expire = -1L; // default infinit
         if (containsHeader(headers, EXPIRE_AFTER_HEADER)) {
@@ -471,6 +750,116 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
         });
     }
 
+    /**
+     * Stores the documents of the body below the collection at once. Every document has the headers of a single PUT,
+     * its status is the status a single PUT would have responded.
+     */
+    private void putBatch(RoutingContext ctx) {
+        if (!containsParam(ctx.request().params(), BATCH_PARAMETER)) {
+            ctx.next();
+            return;
+        }
+        if (rejectedOnLowMemory(ctx)) {
+            return;
+        }
+        ctx.request().bodyHandler(body -> {
+            final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
+            List<BatchDocument> documents = new ArrayList<>();
+            try {
+                JsonArray resources = new JsonObject(body.toString()).getJsonArray("resources");
+                if (resources == null) {
+                    respondWithBadRequest(ctx.request(), "Bad Request: Expected array field 'resources' with the documents");
+                    return;
+                }
+                for (int i = 0; i < resources.size(); i++) {
+                    BatchDocument document = new BatchDocument();
+                    String invalid = readBatchDocument(resources.getJsonObject(i), document);
+                    if (invalid != null) {
+                        respondWithBadRequest(ctx.request(), "Bad Request: " + invalid);
+                        return;
+                    }
+                    documents.add(document);
+                }
+            } catch (RuntimeException ex) {
+                respondWithBadRequest(ctx.request(), "Bad Request: Unable to parse body of batch PUT request");
+                return;
+            }
+
+            if (log.isTraceEnabled()) {
+                log.trace("RestStorageHandler put batch of " + documents.size() + " documents: " + ctx.request().uri());
+            }
+
+            storage.putBatch(path, documents, resource -> {
+                if (resource.error) {
+                    ctx.response().setStatusCode(StatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+                    ctx.response().setStatusMessage(StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage());
+                    String message = StatusCode.INTERNAL_SERVER_ERROR.getStatusMessage();
+                    if (resource.errorMessage != null) {
+                        message = resource.errorMessage;
+                    }
+                    ctx.response().end(message);
+                    return;
+                }
+                JsonArray results = new JsonArray();
+                for (BatchDocument document : documents) {
+                    results.add(new JsonObject().put("name", document.name).put("status", document.status.getStatusCode()));
+                }
+                ctx.response().headers().add(CONTENT_TYPE.getName(), "application/json");
+                ctx.response().end(new JsonObject().put("resources", results).encode());
+            });
+        });
+    }
+
+    /**
+     * Reads a document of a batch PUT. The headers of the document are read like the headers of a single PUT.
+     *
+     * @return the reason why the document is invalid, or <code>null</code> when it is valid
+     */
+    private String readBatchDocument(JsonObject resource, BatchDocument document) {
+        document.name = resource.getString("name");
+        if (document.name == null || document.name.isEmpty() || document.name.contains("/")) {
+            return "Invalid document name: " + document.name;
+        }
+        Object content = resource.getValue("content");
+        if (content instanceof String) {
+            document.content = ((String) content).getBytes(StandardCharsets.UTF_8);
+        } else if (content instanceof JsonObject || content instanceof JsonArray) {
+            document.content = content.toString().getBytes(StandardCharsets.UTF_8);
+        } else {
+            return "Missing content of document " + document.name;
+        }
+
+        MultiMap headers = MultiMap.caseInsensitiveMultiMap();
+        resource.getJsonObject("headers", new JsonObject()).forEach(header -> headers.add(header.getKey(), String.valueOf(header.getValue())));
+        if (containsHeader(headers, EXPIRE_AFTER_HEADER)) {
+            Long expire = getLong(headers, EXPIRE_AFTER_HEADER);
+            if (expire == null) {
+                return "Invalid " + EXPIRE_AFTER_HEADER.getName() + " header of document " + document.name;
+            }
+            document.expire = expire;
+        }
+        if (containsHeader(headers, LOCK_HEADER)) {
+            document.lockOwner = headers.get(LOCK_HEADER.getName());
+            if (containsHeader(headers, LOCK_MODE_HEADER)) {
+                try {
+                    document.lockMode = LockMode.valueOf(headers.get(LOCK_MODE_HEADER.getName()).toUpperCase());
+                } catch (IllegalArgumentException e) {
+                    return "Invalid " + LOCK_MODE_HEADER.getName() + " header of document " + document.name;
+                }
+            }
+            if (containsHeader(headers, LOCK_EXPIRE_AFTER_HEADER)) {
+                Long lockExpire = getLong(headers, LOCK_EXPIRE_AFTER_HEADER);
+                if (lockExpire == null) {
+                    return "Invalid " + LOCK_EXPIRE_AFTER_HEADER.getName() + " header of document " + document.name;
+                }
+                document.lockExpire = lockExpire;
+            }
+        }
+        document.etag = headers.get(IF_NONE_MATCH_HEADER.getName());
+        document.storeCompressed = Boolean.parseBoolean(headers.get(COMPRESS_HEADER.getName()));
+        return null;
+    }
+
     private void deleteResource(RoutingContext ctx) {
         final String path = cleanPath(ctx.request().path().substring(prefixFixed.length()));
         if (log.isTraceEnabled()) {
@@ -513,32 +902,44 @@ public class RestStorageHandler implements Handler<HttpServerRequest> {
             }
         }
 
-        storage.delete(path, lock, lockMode, lockExpire, confirmCollectionDelete, getBoolean(params, RECURSIVE_PARAMETER),
-                resource -> {
-                    if (resource.rejected) {
-                        ctx.response().setStatusCode(StatusCode.CONFLICT.getStatusCode());
-                        ctx.response().setStatusMessage(StatusCode.CONFLICT.getStatusMessage());
-                        ctx.response().end();
-                    } else if (resource.error) {
-                        ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
-                        ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
-                        String message = StatusCode.BAD_REQUEST.getStatusMessage();
-                        if (resource.errorMessage != null) {
-                            message = message + ": " + resource.errorMessage;
-                        }
-                        ctx.response().end(message);
-                    } else if (!resource.exists) {
-                        if (return200onDeleteNonExisting) {
-                            ctx.response().end(); // just say "200 OK" - ignore that the resource-to-be-deleted was not present
-                        } else {
-                            ctx.request().response().setStatusCode(StatusCode.NOT_FOUND.getStatusCode());
-                            ctx.request().response().setStatusMessage(StatusCode.NOT_FOUND.getStatusMessage());
-                            ctx.request().response().end(StatusCode.NOT_FOUND.toString());
-                        }
-                    } else {
-                        ctx.request().response().end();
-                    }
-                });
+        boolean deleteRecursive = getBoolean(params, RECURSIVE_PARAMETER);
+        String jobId = UUID.randomUUID().toString();
+        Handler<Resource> handler = resource -> {
+            if (resource.rejected) {
+                ctx.response().setStatusCode(StatusCode.CONFLICT.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.CONFLICT.getStatusMessage());
+                ctx.response().end();
+            } else if (resource.error) {
+                ctx.response().setStatusCode(StatusCode.BAD_REQUEST.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.BAD_REQUEST.getStatusMessage());
+                String message = StatusCode.BAD_REQUEST.getStatusMessage();
+                if (resource.errorMessage != null) {
+                    message = message + ": " + resource.errorMessage;
+                }
+                ctx.response().end(message);
+            } else if (!resource.exists) {
+                if (return200onDeleteNonExisting) {
+                    ctx.response().end(); // just say "200 OK" - ignore that the resource-to-be-deleted was not present
+                } else {
+                    ctx.request().response().setStatusCode(StatusCode.NOT_FOUND.getStatusCode());
+                    ctx.request().response().setStatusMessage(StatusCode.NOT_FOUND.getStatusMessage());
+                    ctx.request().response().end(StatusCode.NOT_FOUND.toString());
+                }
+            } else if (resource instanceof CollectionResource) {
+                // the collection is deleted by a delete job
+                ctx.response().setStatusCode(StatusCode.ACCEPTED.getStatusCode());
+                ctx.response().setStatusMessage(StatusCode.ACCEPTED.getStatusMessage());
+                ctx.response().headers().add(LOCATION_HEADER.getName(), prefixFixed + DELETE_JOBS_PATH + jobId);
+                ctx.response().end();
+            } else {
+                ctx.request().response().end();
+            }
+        };
+        if (getBoolean(params, ASYNC_PARAMETER)) {
+            storage.deleteAsync(path, jobId, lock, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+        } else {
+            storage.delete(path, lock, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+        }
     }
 
     private void storageExpand(RoutingContext ctx) {
@@ -9,6 +9,8 @@ import io.vertx.core.logging.Logger;
 import io.vertx.core.logging.LoggerFactory;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 
+import java.util.function.Consumer;
+
 public class RestStorageMod extends AbstractVerticle {
 
     private Logger log = LoggerFactory.getLogger(RestStorageMod.class);
@@ -18,17 +20,38 @@ public class RestStorageMod extends AbstractVerticle {
         ModuleConfiguration modConfig = ModuleConfiguration.fromJsonObject(config());
         log.info("Starting RestStorageMod with configuration: " + modConfig);
         Storage storage;
+        // the verticle is not ready before the lua scripts are loaded into redis
+        Future<Void> scriptsLoaded = Future.future();
         switch (modConfig.getStorageType()) {
             case filesystem:
-                storage = new FileSystemStorage(vertx, modConfig.getRoot());
+                storage = new FileSystemStorage(vertx, modConfig);
+                scriptsLoaded.complete();
                 break;
             case redis:
-                storage = new RedisStorage(vertx, modConfig);
+                if (modConfig.getRedisShards() != null && !modConfig.getRedisShards().isEmpty()) {
+                    ShardedRedisStorage shardedStorage = new ShardedRedisStorage(vertx, modConfig);
+                    shardedStorage.loadScripts(scriptsLoaded.completer());
+                    storage = withNearCache(shardedStorage, shardedStorage::subscribeInvalidations, modConfig);
+                } else {
+                    RedisStorage redisStorage = new RedisStorage(vertx, modConfig);
+                    redisStorage.loadScripts(scriptsLoaded.completer());
+                    storage = withNearCache(redisStorage, redisStorage::subscribeInvalidations, modConfig);
+                }
                 break;
             default:
                 throw new RuntimeException("Storage not supported: " + modConfig.getStorageType());
         }
 
+        scriptsLoaded.setHandler(loaded -> {
+            if (loaded.failed()) {
+                fut.fail(loaded.cause());
+                return;
+            }
+            startServer(storage, modConfig, fut);
+        });
+    }
+
+    private void startServer(Storage storage, ModuleConfiguration modConfig, Future<Void> fut) {
         Handler<HttpServerRequest> handler = new RestStorageHandler(vertx, log, storage, modConfig);
 
         // in Vert.x 2x 100-continues was activated per default, in vert.x 3x it is off per default.
@@ -43,4 +66,13 @@ public class RestStorageMod extends AbstractVerticle {
             }
         });
     }
+
+    private Storage withNearCache(Storage storage, Consumer<Handler<String>> subscribeInvalidations, ModuleConfiguration modConfig) {
+        if (!modConfig.isNearCacheEnabled()) {
+            return storage;
+        }
+        NearCacheStorage nearCacheStorage = new NearCacheStorage(vertx, storage, modConfig);
+        subscribeInvalidations.accept(nearCacheStorage::invalidate);
+        return nearCacheStorage;
+    }
 }
@@ -0,0 +1,404 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.CompositeFuture;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.core.logging.Logger;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.redis.RedisOptions;
+import org.apache.commons.lang.StringUtils;
+import org.swisspush.reststorage.util.ConsistentHashRing;
+import org.swisspush.reststorage.util.LockMode;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Spreads the resources over several independent redis instances (shards), each of them used by its own
+ * {@link RedisStorage}.
+ *
+ * <p>The shard of a resource is selected by the first path segments up to the shard depth on a consistent hash ring.
+ * Collections above the shard depth exist in every shard holding resources below them. Their listings are merged
+ * from all shards and they are deleted in all shards. Resources cannot be stored above the shard depth.</p>
+ */
+public class ShardedRedisStorage implements Storage {
+
+    private Logger log = LoggerFactory.getLogger(ShardedRedisStorage.class);
+
+    private final Vertx vertx;
+    private final List<String> shardEndpoints;
+    private final List<RedisStorage> shards;
+    private final ConsistentHashRing<RedisStorage> ring;
+    private final int shardDepth;
+
+    public ShardedRedisStorage(Vertx vertx, ModuleConfiguration config) {
+        this(vertx, config.getRedisShards(), createShards(vertx, config), config.getRedisShardDepth());
+    }
+
+    ShardedRedisStorage(Vertx vertx, List<String> shardEndpoints, List<RedisStorage> shards, int shardDepth) {
+        if (shardDepth < 1) {
+            throw new IllegalArgumentException("The shard depth must be at least 1");
+        }
+        this.vertx = vertx;
+        this.shardEndpoints = shardEndpoints;
+        this.shards = shards;
+        this.ring = new ConsistentHashRing<>(shardEndpoints, shards, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        this.shardDepth = shardDepth;
+    }
+
+    private static List<RedisStorage> createShards(Vertx vertx, ModuleConfiguration config) {
+        List<RedisStorage> shards = new ArrayList<>();
+        for (String endpoint : config.getRedisShards()) {
+            // host:port or host:port/database
+            String address = endpoint;
+            Integer database = null;
+            int databaseSeparator = endpoint.indexOf('/');
+            if (databaseSeparator > 0) {
+                address = endpoint.substring(0, databaseSeparator);
+                database = Integer.parseInt(endpoint.substring(databaseSeparator + 1));
+            }
+            String host = address;
+            int port = config.getRedisPort();
+            int portSeparator = address.lastIndexOf(':');
+            if (portSeparator > 0) {
+                host = address.substring(0, portSeparator);
+                port = Integer.parseInt(address.substring(portSeparator + 1));
+            }
+            ModuleConfiguration shardConfig = ModuleConfiguration.fromJsonObject(config.asJsonObject())
+                    .redisHost(host)
+                    .redisPort(port)
+                    .redisShards(null)
+                    .redisReplicas(null);
+            RedisOptions options = new RedisOptions()
+                    .setHost(host)
+                    .setPort(port)
+                    .setAuth(config.getRedisAuth())
+                    .setSelect(database);
+            RedisClientPool pool = new RedisClientPool(vertx, options, config.getRedisReadConnections(),
+                    config.getRedisWriteConnections(), config.getRedisMaintenanceConnections());
+            shards.add(new RedisStorage(vertx, shardConfig, pool));
+        }
+        return shards;
+    }
+
+    /**
+     * @return the shard holding the resources of the path, or <code>null</code> when the path is above the shard depth
+     */
+    private RedisStorage shardOf(String path) {
+        String[] segments = StringUtils.split(path, '/');
+        if (segments.length < shardDepth) {
+            return null;
+        }
+        return ring.get(StringUtils.join(segments, '/', 0, shardDepth));
+    }
+
+    /**
+     * Loads the lua scripts into all shards.
+     *
+     * @see RedisStorage#loadScripts(Handler)
+     */
+    public void loadScripts(Handler<AsyncResult<Void>> handler) {
+        List<Future> loaded = new ArrayList<>();
+        for (RedisStorage shard : shards) {
+            Future<Void> future = Future.future();
+            shard.loadScripts(future.completer());
+            loaded.add(future);
+        }
+        CompositeFuture.all(loaded).setHandler(event -> handler.handle(event.mapEmpty()));
+    }
+
+    /**
+     * Subscribes to the invalidations of the near cache published on all shards.
+     *
+     * @see RedisStorage#subscribeInvalidations(Handler)
+     */
+    public void subscribeInvalidations(Handler<String> handler) {
+        for (RedisStorage shard : shards) {
+            shard.subscribeInvalidations(handler);
+        }
+    }
+
+    /**
+     * @return the memory usage of the shard using the most memory
+     */
+    @Override
+    public Optional<Float> getCurrentMemoryUsage() {
+        Optional<Float> worst = Optional.empty();
+        for (RedisStorage shard : shards) {
+            Optional<Float> memoryUsage = shard.getCurrentMemoryUsage();
+            if (memoryUsage.isPresent() && (!worst.isPresent() || memoryUsage.get() > worst.get())) {
+                worst = memoryUsage;
+            }
+        }
+        return worst;
+    }
+
+    @Override
+    public void get(String path, String etag, int offset, int count, Handler<Resource> handler) {
+        get(path, etag, offset, count, false, handler);
+    }
+
+    /**
+     * The paths above the shard depth are collections, only the documents of a shard are delivered gzip encoded.
+     */
+    @Override
+    public void get(String path, String etag, int offset, int count, boolean gzipAccepted, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard != null) {
+            shard.get(path, etag, offset, count, gzipAccepted, handler);
+            return;
+        }
+        MergedCollection merged = new MergedCollection();
+        int[] pending = {shards.size()};
+        for (RedisStorage each : shards) {
+            each.get(path, etag, 0, -1, resource -> {
+                merged.add(resource);
+                if (--pending[0] == 0) {
+                    handler.handle(merged.result(offset, count));
+                }
+            });
+        }
+    }
+
+    @Override
+    public void get(String path, String etag, String cursor, int count, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard != null) {
+            shard.get(path, etag, cursor, count, handler);
+            return;
+        }
+        if (!CollectionCursor.isValid(cursor)) {
+            invalid(handler, "Invalid cursor: " + cursor);
+            return;
+        }
+        MergedCollection merged = new MergedCollection();
+        int[] pending = {shards.size()};
+        for (RedisStorage each : shards) {
+            each.get(path, etag, 0, -1, resource -> {
+                merged.add(resource);
+                if (--pending[0] == 0) {
+                    handler.handle(merged.page(cursor, count));
+                }
+            });
+        }
+    }
+
+    /**
+     * Gets the resources of every shard with a single bulk at the same time.
+     */
+    @Override
+    public void getBulk(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        Resource[] resources = new Resource[paths.size()];
+        Map<RedisStorage, List<Integer>> indexesByShard = new LinkedHashMap<>();
+        List<Integer> acrossShards = new ArrayList<>();
+        for (int i = 0; i < paths.size(); i++) {
+            RedisStorage shard = shardOf(paths.get(i));
+            if (shard == null) {
+                acrossShards.add(i);
+            } else {
+                indexesByShard.computeIfAbsent(shard, each -> new ArrayList<>()).add(i);
+            }
+        }
+        int[] pending = {indexesByShard.size() + acrossShards.size()};
+        if (pending[0] == 0) {
+            handler.handle(new ArrayList<>());
+            return;
+        }
+        Runnable done = () -> {
+            if (--pending[0] == 0) {
+                handler.handle(Arrays.asList(resources));
+            }
+        };
+        indexesByShard.forEach((shard, indexes) -> {
+            List<String> shardPaths = new ArrayList<>();
+            List<String> shardEtags = new ArrayList<>();
+            for (int index : indexes) {
+                shardPaths.add(paths.get(index));
+                shardEtags.add(etags.get(index));
+            }
+            shard.getBulk(shardPaths, shardEtags, results -> {
+                for (int i = 0; i < indexes.size(); i++) {
+                    resources[indexes.get(i)] = results.get(i);
+                }
+                done.run();
+            });
+        });
+        for (int index : acrossShards) {
+            get(paths.get(index), etags.get(index), 0, -1, resource -> {
+                resources[index] = resource;
+                done.run();
+            });
+        }
+    }
+
+    @Override
+    public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard == null) {
+            error(handler, "Collections above the redis shard depth are not supported in storage expand");
+            return;
+        }
+        shard.storageExpand(path, etag, subResources, handler);
+    }
+
+    @Override
+    public void expand(String path, String etag, int depth, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard == null) {
+            error(handler, "Collections above the redis shard depth are not supported in expand");
+            return;
+        }
+        shard.expand(path, etag, depth, handler);
+    }
+
+    @Override
+    public void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler) {
+        put(path, etag, merge, expire, "", LockMode.SILENT, 0, handler);
+    }
+
+    @Override
+    public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, Handler<Resource> handler) {
+        put(path, etag, merge, expire, lockOwner, lockMode, lockExpire, false, handler);
+    }
+
+    @Override
+    public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, boolean storeCompressed, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard == null) {
+            error(handler, "Resources must be stored at least " + shardDepth + " levels deep when redis shards are used");
+            return;
+        }
+        shard.put(path, etag, merge, expire, lockOwner, lockMode, lockExpire, storeCompressed, handler);
+    }
+
+    /**
+     * Stores the documents of every shard at the same time. The batch is atomic per shard only.
+     */
+    @Override
+    public void putBatch(String path, List<BatchDocument> documents, Handler<Resource> handler) {
+        Map<RedisStorage, List<BatchDocument>> documentsByShard = new LinkedHashMap<>();
+        for (BatchDocument document : documents) {
+            RedisStorage shard = shardOf(document.path(path));
+            if (shard == null) {
+                error(handler, "Resources must be stored at least " + shardDepth + " levels deep when redis shards are used");
+                return;
+            }
+            documentsByShard.computeIfAbsent(shard, each -> new ArrayList<>()).add(document);
+        }
+        if (documentsByShard.isEmpty()) {
+            handler.handle(new Resource());
+            return;
+        }
+        List<Resource> results = new ArrayList<>();
+        documentsByShard.forEach((shard, batch) -> shard.putBatch(path, batch, resource -> {
+            results.add(resource);
+            if (results.size() == documentsByShard.size()) {
+                handler.handle(results.stream().filter(result -> result.error).findFirst().orElse(resource));
+            }
+        }));
+    }
+
+    @Override
+    public void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard != null) {
+            shard.delete(path, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+            return;
+        }
+        List<Resource> results = new ArrayList<>();
+        for (RedisStorage each : shards) {
+            each.delete(path, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, resource -> {
+                results.add(resource);
+                if (results.size() == shards.size()) {
+                    handler.handle(RedisStorage.mergeDeleteResults(results));
+                }
+            });
+        }
+    }
+
+    @Override
+    public void deleteAsync(String path, String jobId, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        RedisStorage shard = shardOf(path);
+        if (shard == null) {
+            error(handler, "Collections above the redis shard depth cannot be deleted asynchronously");
+            return;
+        }
+        shard.deleteAsync(path, jobId, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+    }
+
+    /**
+     * Asks the shards in turn, the job is kept by the shard of its collection.
+     */
+    @Override
+    public void getDeleteJob(String jobId, Handler<Resource> handler) {
+        getDeleteJob(jobId, shards.iterator(), handler);
+    }
+
+    private void getDeleteJob(String jobId, Iterator<RedisStorage> remaining, Handler<Resource> handler) {
+        remaining.next().getDeleteJob(jobId, resource -> {
+            if (resource.exists || !remaining.hasNext()) {
+                handler.handle(resource);
+            } else {
+                getDeleteJob(jobId, remaining, handler);
+            }
+        });
+    }
+
+    /**
+     * Cleans up the outdated resources of all shards at the same time. Every shard cleans up to the given amount.
+     */
+    @Override
+    public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount) {
+        long[] totals = {0, 0};
+        int[] pending = {shards.size()};
+        for (RedisStorage shard : shards) {
+            shard.cleanupResources(cleanupResourcesAmount, result -> {
+                totals[0] += result.getLong("cleanedResources");
+                totals[1] += result.getLong("expiredResourcesLeft");
+                if (--pending[0] == 0) {
+                    if (log.isTraceEnabled()) {
+                        log.trace("ShardedRedisStorage cleaned " + totals[0] + " resources on " + shards.size() + " shards");
+                    }
+                    handler.handle(RedisStorage.jsonDocument(vertx, new JsonObject()
+                            .put("cleanedResources", totals[0])
+                            .put("expiredResourcesLeft", totals[1])));
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the statistics of every shard by its endpoint
+     */
+    @Override
+    public JsonObject getStatistics() {
+        JsonObject statistics = new JsonObject();
+        for (int i = 0; i < shards.size(); i++) {
+            statistics.put(shardEndpoints.get(i), shards.get(i).getStatistics());
+        }
+        return new JsonObject().put("shards", statistics);
+    }
+
+    private void invalid(Handler<Resource> handler, String invalidMessage) {
+        Resource r = new Resource();
+        r.invalid = true;
+        r.invalidMessage = invalidMessage;
+        handler.handle(r);
+    }
+
+    private void error(Handler<Resource> handler, String errorMessage) {
+        Resource r = new Resource();
+        r.error = true;
+        r.errorMessage = errorMessage;
+        handler.handle(r);
+    }
+}
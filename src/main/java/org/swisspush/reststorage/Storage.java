@@ -1,11 +1,18 @@
 package org.swisspush.reststorage;
 
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
 import org.swisspush.reststorage.util.LockMode;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 
+/**
+ * The storage of the resources. The operations added after the first release have default implementations, so that
+ * storages implemented outside of this module keep working: they deliver uncompressed content, delete synchronously,
+ * and answer the other added operations with an error resource.
+ */
 public interface Storage {
 
     /**
@@ -17,16 +24,117 @@ public interface Storage {
 
     void get(String path, String etag, int offset, int count, Handler<Resource> handler);
 
+    /**
+     * Like {@link #get(String, String, int, int, Handler)}, for a client accepting gzip encoded content. A document
+     * stored compressed with gzip is then delivered as it is stored, with the {@link DocumentResource#contentEncoding}
+     * <code>gzip</code>. Storages not storing gzip compressed documents deliver the documents uncompressed.
+     *
+     * @param gzipAccepted whether the client accepts gzip encoded content
+     */
+    default void get(String path, String etag, int offset, int count, boolean gzipAccepted, Handler<Resource> handler) {
+        get(path, etag, offset, count, handler);
+    }
+
+    /**
+     * Gets a resource, or a page of a collection listed by cursor. The members of a collection are listed in a
+     * stable order, the collections first. The returned {@link CollectionResource#nextCursor} continues the listing
+     * when more members follow.
+     *
+     * @param cursor the cursor of the page, an empty string for the first page
+     * @param count the maximum amount of members of the page, -1 for all members following the cursor
+     */
+    default void get(String path, String etag, String cursor, int count, Handler<Resource> handler) {
+        Resource r = new Resource();
+        r.error = true;
+        r.errorMessage = "Listing by cursor is not supported by " + getClass().getSimpleName();
+        handler.handle(r);
+    }
+
+    /**
+     * Gets many resources at once, like a GET of every path without offset and limit.
+     *
+     * @param etags the etag of every path, or <code>null</code> for a path without etag
+     * @param handler the handler receiving the resources in the order of the paths
+     */
+    default void getBulk(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        List<Resource> resources = new ArrayList<>(paths.size());
+        for (String path : paths) {
+            Resource r = new Resource();
+            r.error = true;
+            r.errorMessage = "Bulk GET is not supported by " + getClass().getSimpleName();
+            resources.add(r);
+        }
+        handler.handle(resources);
+    }
+
     void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler);
 
+    /**
+     * Expands the subtree of a collection into a single json document, the collections of the subtree are nested
+     * objects down to the given depth and listed below it. A document is got as without expand.
+     *
+     * @param etag the etag of the previous expansion, derived from the members of the subtree
+     * @param depth the depth of the nested collections, 1 expands the members of the collection only
+     * @param handler the handler receiving the expanded document, or an invalid resource when the subtree exceeds
+     *                the limits of an expansion
+     */
+    default void expand(String path, String etag, int depth, Handler<Resource> handler) {
+        Resource r = new Resource();
+        r.invalid = true;
+        r.invalidMessage = "Expand is not supported by " + getClass().getSimpleName();
+        handler.handle(r);
+    }
+
     void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler);
 
     void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, Handler<Resource> handler);
 
     void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, boolean storeCompressed, Handler<Resource> handler);
 
+    /**
+     * Stores documents below the collection of the path at once. Every document is stored like by a single PUT, the
+     * storage sets its {@link BatchDocument#status}. The handler receives a resource with the error flag set when the
+     * batch could not be stored, and a resource without otherwise.
+     */
+    default void putBatch(String path, List<BatchDocument> documents, Handler<Resource> handler) {
+        Resource r = new Resource();
+        r.error = true;
+        r.errorMessage = "Batch PUT is not supported by " + getClass().getSimpleName();
+        handler.handle(r);
+    }
+
     void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler);
 
+    /**
+     * Deletes a resource or collection, a collection asynchronously when the storage supports it. The handler
+     * receives a {@link CollectionResource} when the collection was detached, so that it is not found anymore, and
+     * is deleted in the background by the delete job with the given id.
+     *
+     * @param jobId the id of the delete job, which can be polled with {@link #getDeleteJob(String, Handler)}
+     */
+    default void deleteAsync(String path, String jobId, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        delete(path, lockOwner, lockMode, lockExpire, confirmCollectionDelete, deleteRecursive, handler);
+    }
+
+    /**
+     * Gets the progress of a delete job as json document.
+     */
+    default void getDeleteJob(String jobId, Handler<Resource> handler) {
+        Resource r = new Resource();
+        r.exists = false;
+        handler.handle(r);
+    }
+
     void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount);
 
+    /**
+     * Gets the counters of the storage, like the statistics of its connections, caches and worker pools. The counters
+     * are collected since the start of the storage instance.
+     *
+     * @return the counters as json object, empty when the storage has no counters
+     */
+    default JsonObject getStatistics() {
+        return new JsonObject();
+    }
+
 }
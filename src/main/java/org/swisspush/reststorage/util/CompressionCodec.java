@@ -0,0 +1,114 @@
+package org.swisspush.reststorage.util;
+
+import java.io.IOException;
+
+/**
+ * A compression algorithm for the resources stored compressed (see the <code>x-stored-compressed</code> header).
+ *
+ * <p>The id of the codec is stored next to the compressed resource, so the resources compressed with different codecs
+ * can coexist. A resource is compressed with the configured codec when it is written the next time.</p>
+ *
+ * @see CompressionCodecs
+ */
+public interface CompressionCodec {
+
+    /**
+     * @return the id stored next to the compressed resource
+     */
+    String id();
+
+    /**
+     * @return the http content encoding of the compressed data, or <code>null</code> when the compressed data can not
+     * be delivered to http clients as it is
+     */
+    String contentEncoding();
+
+    /**
+     * @param data the data to compress
+     * @return the compressed data, from which the length of the uncompressed data can be read
+     */
+    byte[] compress(byte[] data) throws IOException;
+
+    /**
+     * @param compressedData the data compressed with this codec
+     * @param maxLength the maximum length of the decompressed data
+     * @return the decompressed data in an array of the stored uncompressed length
+     * @throws IOException when the data is corrupt or exceeds the maximum length
+     */
+    byte[] decompress(byte[] compressedData, long maxLength) throws IOException;
+
+    /**
+     * @param compressedData the data compressed with this codec
+     * @return the stored length of the decompressed data, read without decompressing the data
+     * @throws IOException when the data is corrupt
+     */
+    long decompressedLength(byte[] compressedData) throws IOException;
+
+    /**
+     * @return a compressor producing the data of {@link #compress(byte[])} chunk by chunk, or <code>null</code> when
+     * the codec compresses the whole data at once only
+     */
+    default Compressor compressor() {
+        return null;
+    }
+
+    /**
+     * @param compressedData the data compressed with this codec
+     * @param maxLength the maximum length of the decompressed data
+     * @return a decompressor delivering the data of {@link #decompress(byte[], long)} chunk by chunk, or
+     * <code>null</code> when the codec decompresses the whole data at once only
+     * @throws IOException when the data is corrupt or exceeds the maximum length
+     */
+    default Decompressor decompressor(byte[] compressedData, long maxLength) throws IOException {
+        return null;
+    }
+
+    /**
+     * Compresses the data chunk by chunk, so the uncompressed data has never to be held in memory as a whole. A
+     * compressor is used by one thread at a time.
+     */
+    interface Compressor extends AutoCloseable {
+
+        /**
+         * @param data the next chunk of the data to compress
+         */
+        void update(byte[] data) throws IOException;
+
+        /**
+         * @return the compressed data of all chunks
+         */
+        byte[] finish() throws IOException;
+
+        /**
+         * Releases the resources of the compressor, with or without it being finished.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Decompresses the data chunk by chunk, so the decompressed data has never to be held in memory as a whole. A
+     * decompressor is used by one thread at a time.
+     */
+    interface Decompressor extends AutoCloseable {
+
+        /**
+         * @return the stored length of the decompressed data
+         */
+        long length();
+
+        /**
+         * @param maxLength the maximum length of the chunk
+         * @return the next chunk of the decompressed data, or <code>null</code> when all data is delivered. The last
+         * chunk is only delivered when the data is complete.
+         * @throws IOException when the data is corrupt or does not have the stored length
+         */
+        byte[] read(int maxLength) throws IOException;
+
+        /**
+         * Releases the resources of the decompressor, with or without all data being read.
+         */
+        @Override
+        void close();
+    }
+}
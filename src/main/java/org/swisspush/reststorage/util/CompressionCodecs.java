@@ -0,0 +1,96 @@
+package org.swisspush.reststorage.util;
+
+import java.io.IOException;
+
+/**
+ * The available {@link CompressionCodec}s: <code>gzip</code>, <code>deflate</code>, <code>lz4</code> and
+ * <code>zstd</code>.
+ *
+ * <p>The gzip codec has the id <code>1</code>, the value of the former compressed flag, so the resources compressed
+ * before the codecs were introduced are still read with gzip.</p>
+ *
+ * <p>The libraries of lz4 and zstd are optional dependencies, these codecs are only available when their library is
+ * on the classpath.</p>
+ */
+public final class CompressionCodecs {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+    public static final String LZ4 = "lz4";
+    public static final String ZSTD = "zstd";
+
+    private static final String LZ4_CLASS = "net.jpountz.lz4.LZ4Factory";
+    private static final String LZ4_LIBRARY = "org.lz4:lz4-java";
+    private static final String ZSTD_CLASS = "com.github.luben.zstd.Zstd";
+    private static final String ZSTD_LIBRARY = "com.github.luben:zstd-jni";
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * @param name the name of the codec, as configured with <code>compressionCodec</code>
+     * @param level the compression level, or <code>-1</code> for the default level of the codec
+     * @return the codec to compress the resources with
+     * @throws IllegalArgumentException for an unknown name
+     * @throws IllegalStateException when the library of the codec is missing
+     */
+    public static CompressionCodec forName(String name, int level) {
+        if (GZIP.equals(name)) {
+            return new GzipCodec(level);
+        } else if (DEFLATE.equals(name)) {
+            return new DeflateCodec(level);
+        } else if (LZ4.equals(name)) {
+            checkLibrary(LZ4, LZ4_CLASS, LZ4_LIBRARY);
+            return new Lz4Codec(level);
+        } else if (ZSTD.equals(name)) {
+            checkLibrary(ZSTD, ZSTD_CLASS, ZSTD_LIBRARY);
+            return new ZstdCodec(level);
+        }
+        throw new IllegalArgumentException("Unknown compression codec '" + name + "'");
+    }
+
+    /**
+     * @param id the id stored next to a compressed resource
+     * @return the codec to decompress the resource with, the level does not matter for decompression
+     * @throws IOException for an unknown id, or when the library of the codec is missing
+     */
+    public static CompressionCodec forId(String id) throws IOException {
+        try {
+            if (GzipCodec.ID.equals(id)) {
+                return new GzipCodec(-1);
+            } else if (DeflateCodec.ID.equals(id)) {
+                return new DeflateCodec(-1);
+            } else if (Lz4Codec.ID.equals(id)) {
+                checkLibrary(LZ4, LZ4_CLASS, LZ4_LIBRARY);
+                return new Lz4Codec(-1);
+            } else if (ZstdCodec.ID.equals(id)) {
+                checkLibrary(ZSTD, ZSTD_CLASS, ZSTD_LIBRARY);
+                return new ZstdCodec(-1);
+            }
+        } catch (IllegalStateException ex) {
+            throw new IOException(ex.getMessage(), ex);
+        }
+        throw new IOException("Unknown compression codec id '" + id + "'");
+    }
+
+    /**
+     * @throws IllegalStateException when the class of the library can not be loaded
+     */
+    static void checkLibrary(String name, String className, String library) {
+        try {
+            Class.forName(className, true, CompressionCodecs.class.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError ex) {
+            throw new IllegalStateException("The compression codec '" + name + "' requires the library " + library
+                    + " on the classpath", ex);
+        }
+    }
+
+    static void checkLength(long length, long maxLength) throws IOException {
+        if (length < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Invalid length " + length + " of decompressed resource");
+        }
+        if (length > maxLength) {
+            throw new IOException("Decompressed resource exceeds " + maxLength + " bytes");
+        }
+    }
+}
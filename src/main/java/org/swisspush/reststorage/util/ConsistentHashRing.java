@@ -0,0 +1,72 @@
+package org.swisspush.reststorage.util;
+
+import org.apache.commons.codec.digest.DigestUtils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * Consistent hash ring assigning keys to nodes.
+ * </p>
+ *
+ * <p>
+ * Every node is placed on the ring several times (virtual nodes), so that the keys are spread evenly. A key belongs to
+ * the first node following the hash of the key on the ring. Adding or removing a node only moves the keys of the ring
+ * segments next to the virtual nodes of this node.
+ * </p>
+ *
+ * @param <T> the type of the nodes
+ */
+public class ConsistentHashRing<T> {
+
+    public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+    private final TreeMap<Long, T> ring = new TreeMap<>();
+    private final List<T> nodes = new ArrayList<>();
+
+    /**
+     * @param nodeIds the ids of the nodes, placed on the ring. The ids must stay the same when nodes are added or
+     *                removed, so that the keys of the other nodes keep their place
+     * @param nodes the nodes, in the same order as their ids
+     * @param virtualNodes how many times every node is placed on the ring
+     */
+    public ConsistentHashRing(List<String> nodeIds, List<T> nodes, int virtualNodes) {
+        if (nodeIds.isEmpty() || nodeIds.size() != nodes.size()) {
+            throw new IllegalArgumentException("One id per node is required");
+        }
+        for (int i = 0; i < nodeIds.size(); i++) {
+            for (int virtualNode = 0; virtualNode < virtualNodes; virtualNode++) {
+                ring.put(hash(nodeIds.get(i) + "#" + virtualNode), nodes.get(i));
+            }
+        }
+        this.nodes.addAll(nodes);
+    }
+
+    /**
+     * @return the node the key belongs to
+     */
+    public T get(String key) {
+        SortedMap<Long, T> tail = ring.tailMap(hash(key));
+        return tail.isEmpty() ? ring.firstEntry().getValue() : tail.get(tail.firstKey());
+    }
+
+    /**
+     * @return all nodes of the ring
+     */
+    public List<T> getNodes() {
+        return Collections.unmodifiableList(nodes);
+    }
+
+    private static long hash(String value) {
+        byte[] digest = DigestUtils.md5(value);
+        long hash = 0;
+        for (int i = 0; i < 8; i++) {
+            hash = (hash << 8) | (digest[i] & 0xFF);
+        }
+        return hash;
+    }
+}
@@ -0,0 +1,158 @@
+package org.swisspush.reststorage.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses with deflate (zlib format), preceded by the uncompressed length.
+ */
+class DeflateCodec implements CompressionCodec {
+
+    static final String ID = "deflate";
+    private final int level;
+
+    DeflateCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String contentEncoding() {
+        return null;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+        try (DeflateCompressor compressor = new DeflateCompressor(data.length / 4 + 64)) {
+            compressor.update(data);
+            return compressor.finish();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressedData, long maxLength) throws IOException {
+        try (DeflateDecompressor decompressor = new DeflateDecompressor(compressedData, maxLength)) {
+            byte[] result = decompressor.read(Integer.MAX_VALUE);
+            return result != null ? result : new byte[0];
+        }
+    }
+
+    @Override
+    public long decompressedLength(byte[] compressedData) throws IOException {
+        if (compressedData.length < 4) {
+            throw new IOException("Invalid deflate data");
+        }
+        return ByteBuffer.wrap(compressedData).getInt();
+    }
+
+    @Override
+    public Compressor compressor() {
+        return new DeflateCompressor(8192);
+    }
+
+    @Override
+    public Decompressor decompressor(byte[] compressedData, long maxLength) throws IOException {
+        return new DeflateDecompressor(compressedData, maxLength);
+    }
+
+    private class DeflateCompressor implements Compressor {
+        private final Deflater deflater = new Deflater(level);
+        private final ByteArrayOutputStream baos;
+        private final byte[] buffer = new byte[8192];
+        private int length = 0;
+
+        private DeflateCompressor(int initialSize) {
+            baos = new ByteArrayOutputStream(initialSize);
+            // the uncompressed length is known when the compression is finished
+            baos.write(buffer, 0, 4);
+        }
+
+        @Override
+        public void update(byte[] data) {
+            length += data.length;
+            deflater.setInput(data);
+            while (!deflater.needsInput()) {
+                baos.write(buffer, 0, deflater.deflate(buffer));
+            }
+        }
+
+        @Override
+        public byte[] finish() {
+            deflater.finish();
+            while (!deflater.finished()) {
+                baos.write(buffer, 0, deflater.deflate(buffer));
+            }
+            byte[] compressed = baos.toByteArray();
+            ByteBuffer.wrap(compressed).putInt(length);
+            return compressed;
+        }
+
+        @Override
+        public void close() {
+            deflater.end();
+        }
+    }
+
+    private static class DeflateDecompressor implements Decompressor {
+        private final Inflater inflater;
+        private final int length;
+        private int position = 0;
+        private boolean complete = false;
+
+        private DeflateDecompressor(byte[] compressedData, long maxLength) throws IOException {
+            if (compressedData.length < 4) {
+                throw new IOException("Invalid deflate data");
+            }
+            length = ByteBuffer.wrap(compressedData).getInt();
+            CompressionCodecs.checkLength(length, maxLength);
+            inflater = new Inflater();
+            inflater.setInput(compressedData, 4, compressedData.length - 4);
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public byte[] read(int maxLength) throws IOException {
+            if (complete) {
+                return null;
+            }
+            byte[] chunk = new byte[Math.min(maxLength, length - position)];
+            try {
+                int filled = 0;
+                while (filled < chunk.length) {
+                    int inflated = inflater.inflate(chunk, filled, chunk.length - filled);
+                    if (inflated == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    filled += inflated;
+                }
+                position += filled;
+                // once the data is complete, only the end of the stream may follow
+                if (filled != chunk.length || (position == length && !inflater.finished()
+                        && (inflater.inflate(new byte[1]) != 0 || !inflater.finished()))) {
+                    throw new IOException("Unexpected length of the decompressed resource");
+                }
+            } catch (DataFormatException ex) {
+                throw new IOException(ex);
+            }
+            complete = position == length;
+            return chunk;
+        }
+
+        @Override
+        public void close() {
+            inflater.end();
+        }
+    }
+}
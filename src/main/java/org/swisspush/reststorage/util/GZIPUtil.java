@@ -1,81 +1,127 @@
 package org.swisspush.reststorage.util;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
 import io.vertx.core.logging.Logger;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 
 /**
- * Util class to compress and decompress resources using the gzip algorithm
+ * Util class to compress and decompress resources on the worker threads, using the gzip algorithm or another
+ * {@link CompressionCodec}
  *
  * @author https://github.com/mcweba [Marc-Andre Weber]
  */
 public class GZIPUtil {
 
+    private static final CompressionCodec GZIP = CompressionCodecs.forName(CompressionCodecs.GZIP, -1);
+
     /**
      * Compress the uncompressed data with the gzip algorithm. When the compression is done, the resultHandler is called
      * with the compressed data as result.
      *
+     * <p>The data is compressed on the worker pool of vertx, not ordered with the other blocking code of the calling
+     * context. Prefer {@link #compressResource(WorkerPool, Logger, CompressionCodec, byte[], Handler)}.</p>
+     *
      * @param vertx vertx
      * @param log the logger
      * @param uncompressedData the data to compress
      * @param resultHandler the resultHandler is called when the compression is done
      */
     public static void compressResource(Vertx vertx, Logger log, byte[] uncompressedData, Handler<AsyncResult<byte[]>> resultHandler) {
-        vertx.executeBlocking(future -> {
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        vertx.executeBlocking(future -> compress(log, GZIP, uncompressedData, future), false, resultHandler);
+    }
 
-            try (GZIPOutputStream os = new GZIPOutputStream(baos)) {
-                os.write(uncompressedData);
-            } catch (IOException ioe) {
-                log.error("Unable to compress resource: " + ioe.getMessage());
-                future.fail(ioe);
-                // Error, exit
-                return;
-            }
-            // Success
-            future.complete(baos.toByteArray());
-        }, resultHandler);
+    /**
+     * Compress the uncompressed data with the codec on a worker thread of the pool. When the compression is done, the
+     * resultHandler is called with the compressed data as result.
+     *
+     * @param pool the worker pool to compress on
+     * @param log the logger
+     * @param codec the codec to compress with
+     * @param uncompressedData the data to compress
+     * @param resultHandler the resultHandler is called when the compression is done
+     */
+    public static void compressResource(WorkerPool pool, Logger log, CompressionCodec codec, byte[] uncompressedData, Handler<AsyncResult<byte[]>> resultHandler) {
+        pool.executeBlocking(future -> compress(log, codec, uncompressedData, future), resultHandler);
     }
 
     /**
      * Decompress the compressed (gzip) data. When the decompression is done, the resultHandler is called
      * with the decompressed data as result.
+     *
+     * <p>The data is decompressed on the worker pool of vertx, not ordered with the other blocking code of the calling
+     * context. Prefer {@link #decompressResource(WorkerPool, Logger, CompressionCodec, byte[], long, Handler)}.</p>
+     *
      * @param vertx vertx
      * @param log the logger
      * @param compressedData the data to decompress
      * @param resultHandler the resultHandler is called when the compression is done
      */
     public static void decompressResource(Vertx vertx, Logger log, byte[] compressedData, Handler<AsyncResult<byte[]>> resultHandler) {
-        vertx.executeBlocking(future -> {
-            byte[] buffer = new byte[1024];
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            try (ByteArrayInputStream bis = new ByteArrayInputStream(compressedData);
-                 GZIPInputStream gzipInputStream = new GZIPInputStream(bis)) {
+        vertx.executeBlocking(future -> decompress(log, GZIP, compressedData, Integer.MAX_VALUE, future), false, resultHandler);
+    }
 
-                int bytes_read;
+    /**
+     * Decompress the data compressed with the codec on a worker thread of the pool. When the decompression is done, the
+     * resultHandler is called with the decompressed data as result.
+     *
+     * @param pool the worker pool to decompress on
+     * @param log the logger
+     * @param codec the codec the data is compressed with
+     * @param compressedData the data to decompress
+     * @param resultHandler the resultHandler is called when the compression is done
+     */
+    public static void decompressResource(WorkerPool pool, Logger log, CompressionCodec codec, byte[] compressedData, Handler<AsyncResult<byte[]>> resultHandler) {
+        decompressResource(pool, log, codec, compressedData, Integer.MAX_VALUE, resultHandler);
+    }
+
+    /**
+     * Decompress the compressed (gzip) data on a worker thread of the pool. The decompression is aborted as soon as
+     * the decompressed data exceeds the maximum length.
+     *
+     * @param pool the worker pool to decompress on
+     * @param log the logger
+     * @param compressedData the data to decompress
+     * @param maxLength the maximum length of the decompressed data
+     * @param resultHandler the resultHandler is called when the decompression is done
+     */
+    public static void decompressResource(WorkerPool pool, Logger log, byte[] compressedData, long maxLength, Handler<AsyncResult<byte[]>> resultHandler) {
+        decompressResource(pool, log, GZIP, compressedData, maxLength, resultHandler);
+    }
 
-                while ((bytes_read = gzipInputStream.read(buffer)) > 0) {
-                    baos.write(buffer, 0, bytes_read);
-                }
+    /**
+     * Decompress the data compressed with the codec on a worker thread of the pool, so several resources can be
+     * decompressed in parallel. The decompression fails when the stored uncompressed length exceeds the maximum length.
+     *
+     * @param pool the worker pool to decompress on
+     * @param log the logger
+     * @param codec the codec the data is compressed with
+     * @param compressedData the data to decompress
+     * @param maxLength the maximum length of the decompressed data
+     * @param resultHandler the resultHandler is called when the decompression is done
+     */
+    public static void decompressResource(WorkerPool pool, Logger log, CompressionCodec codec, byte[] compressedData, long maxLength, Handler<AsyncResult<byte[]>> resultHandler) {
+        pool.executeBlocking(future -> decompress(log, codec, compressedData, maxLength, future), resultHandler);
+    }
 
-                gzipInputStream.close();
-                baos.close();
+    private static void compress(Logger log, CompressionCodec codec, byte[] uncompressedData, Future<byte[]> future) {
+        try {
+            future.complete(codec.compress(uncompressedData));
+        } catch (IOException ioe) {
+            log.error("Unable to compress resource: " + ioe.getMessage());
+            future.fail(ioe);
+        }
+    }
 
-            } catch (IOException ioe) {
-                log.error("Unable to decompress resource: " + ioe.getMessage());
-                future.fail(ioe);
-                // Error, exit
-                return;
-            }
-            // Success
-            future.complete(baos.toByteArray());
-        }, resultHandler);
+    private static void decompress(Logger log, CompressionCodec codec, byte[] compressedData, long maxLength, Future<byte[]> future) {
+        try {
+            future.complete(codec.decompress(compressedData, maxLength));
+        } catch (IOException ioe) {
+            log.error("Unable to decompress resource: " + ioe.getMessage());
+            future.fail(ioe);
+        }
     }
 }
@@ -0,0 +1,163 @@
+package org.swisspush.reststorage.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Compresses with gzip. The uncompressed length is read from the trailer of the gzip stream.
+ */
+class GzipCodec implements CompressionCodec {
+
+    static final String ID = "1";
+    private final int level;
+
+    GzipCodec(int level) {
+        this.level = level;
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String contentEncoding() {
+        return "gzip";
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+        try (GzipCompressor compressor = new GzipCompressor(data.length / 4 + 64)) {
+            compressor.update(data);
+            return compressor.finish();
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressedData, long maxLength) throws IOException {
+        try (GzipDecompressor decompressor = new GzipDecompressor(compressedData, maxLength)) {
+            byte[] result = decompressor.read(Integer.MAX_VALUE);
+            return result != null ? result : new byte[0];
+        }
+    }
+
+    @Override
+    public long decompressedLength(byte[] compressedData) throws IOException {
+        return trailerLength(compressedData);
+    }
+
+    private static long trailerLength(byte[] compressedData) throws IOException {
+        // at least the header of 10 bytes and the trailer of 8 bytes
+        if (compressedData.length < 18) {
+            throw new IOException("Invalid gzip data");
+        }
+        // the trailer ends with the uncompressed length in little endian byte order
+        int end = compressedData.length;
+        return (compressedData[end - 4] & 0xffL) | (compressedData[end - 3] & 0xffL) << 8
+                | (compressedData[end - 2] & 0xffL) << 16 | (compressedData[end - 1] & 0xffL) << 24;
+    }
+
+    @Override
+    public Compressor compressor() {
+        return new GzipCompressor(8192);
+    }
+
+    @Override
+    public Decompressor decompressor(byte[] compressedData, long maxLength) throws IOException {
+        return new GzipDecompressor(compressedData, maxLength);
+    }
+
+    private class GzipCompressor implements Compressor {
+        private final ByteArrayOutputStream baos;
+        private final GZIPOutputStream os;
+
+        private GzipCompressor(int initialSize) {
+            baos = new ByteArrayOutputStream(initialSize);
+            try {
+                os = new GZIPOutputStream(baos, 8192) {
+                    {
+                        def.setLevel(level);
+                    }
+                };
+            } catch (IOException ex) {
+                // writing the header to the memory does not fail
+                throw new IllegalStateException(ex);
+            }
+        }
+
+        @Override
+        public void update(byte[] data) throws IOException {
+            os.write(data);
+        }
+
+        @Override
+        public byte[] finish() throws IOException {
+            os.finish();
+            return baos.toByteArray();
+        }
+
+        @Override
+        public void close() {
+            try {
+                os.close();
+            } catch (IOException ex) {
+                // nothing to release in memory
+            }
+        }
+    }
+
+    private static class GzipDecompressor implements Decompressor {
+        private final GZIPInputStream is;
+        private final long length;
+        private long position = 0;
+        private boolean complete = false;
+
+        private GzipDecompressor(byte[] compressedData, long maxLength) throws IOException {
+            is = new GZIPInputStream(new ByteArrayInputStream(compressedData), 8192);
+            // the header is valid
+            try {
+                length = trailerLength(compressedData);
+                CompressionCodecs.checkLength(length, maxLength);
+            } catch (IOException ex) {
+                close();
+                throw ex;
+            }
+        }
+
+        @Override
+        public long length() {
+            return length;
+        }
+
+        @Override
+        public byte[] read(int maxLength) throws IOException {
+            if (complete) {
+                return null;
+            }
+            byte[] chunk = new byte[(int) Math.min(maxLength, length - position)];
+            int filled = 0;
+            int read;
+            while (filled < chunk.length && (read = is.read(chunk, filled, chunk.length - filled)) > 0) {
+                filled += read;
+            }
+            position += filled;
+            if (filled != chunk.length || (position == length && is.read() != -1)) {
+                throw new IOException("Unexpected length of the decompressed resource");
+            }
+            complete = position == length;
+            return chunk;
+        }
+
+        @Override
+        public void close() {
+            try {
+                is.close();
+            } catch (IOException ex) {
+                // nothing to release in memory
+            }
+        }
+    }
+}
@@ -18,7 +18,11 @@ public enum HttpRequestHeader {
     IMPORTANCE_LEVEL_HEADER("x-importance-level"),
     COMPRESS_HEADER("x-stored-compressed"),
     CONTENT_TYPE("Content-Type"),
-    CONTENT_LENGTH("Content-Length");
+    CONTENT_LENGTH("Content-Length"),
+    ACCEPT_ENCODING("Accept-Encoding"),
+    CONTENT_ENCODING("Content-Encoding"),
+    NEXT_CURSOR_HEADER("x-next-cursor"),
+    LOCATION_HEADER("Location");
 
     private final String name;
 
@@ -148,4 +152,47 @@ public enum HttpRequestHeader {
         }
         return headers.get(httpRequestHeader.getName());
     }
+
+    /**
+     * Tells whether the {@link #ACCEPT_ENCODING} header accepts the provided content encoding, explicitly or by the
+     * wildcard <code>*</code>. An encoding with the quality <code>q=0</code> is not accepted, an explicit entry takes
+     * precedence over the wildcard.
+     *
+     * @param headers the http request headers
+     * @param encoding the content encoding like <code>gzip</code>
+     * @return <code>true</code> when the content encoding is accepted
+     */
+    public static boolean acceptsEncoding(MultiMap headers, String encoding) {
+        if (headers == null || !headers.contains(ACCEPT_ENCODING.getName())) {
+            return false;
+        }
+        // several header fields are combined to a single list
+        String headerValue = String.join(",", headers.getAll(ACCEPT_ENCODING.getName()));
+        Boolean wildcard = null;
+        for (String element : headerValue.split(",")) {
+            String[] parts = element.split(";");
+            String coding = parts[0].trim();
+            if (coding.equalsIgnoreCase(encoding)) {
+                return hasQuality(parts);
+            }
+            if (coding.equals("*")) {
+                wildcard = hasQuality(parts);
+            }
+        }
+        return wildcard != null && wildcard;
+    }
+
+    private static boolean hasQuality(String[] parts) {
+        for (int i = 1; i < parts.length; i++) {
+            String parameter = parts[i].trim();
+            if (parameter.startsWith("q=") || parameter.startsWith("Q=")) {
+                try {
+                    return Double.parseDouble(parameter.substring(2).trim()) > 0;
+                } catch (NumberFormatException e) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
 }
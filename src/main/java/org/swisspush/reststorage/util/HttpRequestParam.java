@@ -12,7 +12,12 @@ public enum HttpRequestParam {
     RECURSIVE_PARAMETER("recursive"),
     STORAGE_EXPAND_PARAMETER("storageExpand"),
     LIMIT_PARAMETER("limit"),
-    OFFSET_PARAMETER("offset");
+    OFFSET_PARAMETER("offset"),
+    CURSOR_PARAMETER("cursor"),
+    ASYNC_PARAMETER("async"),
+    BATCH_PARAMETER("batch"),
+    BULK_GET_PARAMETER("bulkGet"),
+    EXPAND_PARAMETER("expand");
 
     private final String name;
 
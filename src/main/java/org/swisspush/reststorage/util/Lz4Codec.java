@@ -0,0 +1,67 @@
+package org.swisspush.reststorage.util;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Exception;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Compresses a single lz4 block, preceded by the uncompressed length. Levels above <code>0</code> use the slower
+ * high compression variant.
+ */
+class Lz4Codec implements CompressionCodec {
+
+    static final String ID = "lz4";
+    private static final LZ4Factory factory = LZ4Factory.fastestInstance();
+    private final LZ4Compressor compressor;
+
+    Lz4Codec(int level) {
+        compressor = level > 0 ? factory.highCompressor(level) : factory.fastCompressor();
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String contentEncoding() {
+        return null;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) {
+        byte[] compressed = new byte[4 + compressor.maxCompressedLength(data.length)];
+        ByteBuffer.wrap(compressed).putInt(data.length);
+        int compressedLength = compressor.compress(data, 0, data.length, compressed, 4);
+        byte[] result = new byte[4 + compressedLength];
+        System.arraycopy(compressed, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressedData, long maxLength) throws IOException {
+        int length = (int) decompressedLength(compressedData);
+        CompressionCodecs.checkLength(length, maxLength);
+        try {
+            byte[] result = new byte[length];
+            int read = factory.fastDecompressor().decompress(compressedData, 4, result, 0, length);
+            if (4 + read != compressedData.length) {
+                throw new IOException("Unexpected length of the compressed resource");
+            }
+            return result;
+        } catch (LZ4Exception ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public long decompressedLength(byte[] compressedData) throws IOException {
+        if (compressedData.length < 4) {
+            throw new IOException("Invalid lz4 data");
+        }
+        return ByteBuffer.wrap(compressedData).getInt();
+    }
+}
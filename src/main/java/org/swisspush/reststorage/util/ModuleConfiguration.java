@@ -2,6 +2,8 @@ package org.swisspush.reststorage.util;
 
 import io.vertx.core.json.JsonObject;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 /**
@@ -15,6 +17,10 @@ public class ModuleConfiguration {
         filesystem, redis
     }
 
+    public enum ReplicaRouting {
+        roundRobin, latency
+    }
+
     private String             root                          = "."                       ;
     private StorageType        storageType                   = StorageType.filesystem    ;
     private int                port                          = 8989                      ;
@@ -35,6 +41,50 @@ public class ModuleConfiguration {
     private boolean            rejectStorageWriteOnLowMemory = false                     ;
     private long               freeMemoryCheckIntervalMs     = 60_000L                   ;
     private boolean            return200onDeleteNonExisting  = false                     ;
+    private boolean            nearCacheEnabled              = false                     ;
+    private int                nearCacheMaxEntries           = 10_000                    ;
+    private long               nearCacheMaxBytes             = 33_554_432L               ;
+    private int                nearCacheMaxEntryBytes        = 65_536                    ;
+    private long               nearCacheTtlMs                = 60_000L                   ;
+    private String             nearCacheInvalidationChannel  = "rest-storage:invalidations";
+    private int                redisGetBatchSize             = 1                         ;
+    private long               redisGetBatchWindowMs         = 0                         ;
+    private int                largeObjectThreshold          = 0                         ;
+    private int                largeObjectChunkSize          = 1_048_576                 ;
+    private long               largeObjectGracePeriodMs      = 300_000                   ;
+    private String             chunksPrefix                  = "rest-storage:chunks"     ;
+    private int                redisReadConnections          = 1                         ;
+    private int                redisWriteConnections         = 0                         ;
+    private int                redisMaintenanceConnections   = 0                         ;
+    private List<String>       redisReplicas                 = null                      ;
+    private ReplicaRouting     redisReplicaRouting           = ReplicaRouting.roundRobin ;
+    private long               redisHedgedReadMs             = 0                         ;
+    private long               redisReplicaReadAfterWriteMs  = 0                         ;
+    private int                redisHashTagDepth             = 0                         ;
+    private String             hashTagsKey                   = "rest-storage:hashtags"   ;
+    private List<String>       redisShards                   = null                      ;
+    private int                redisShardDepth               = 1                         ;
+    private boolean            backgroundCleanupEnabled      = false                     ;
+    private long               backgroundCleanupIntervalMs   = 1_000L                    ;
+    private long               backgroundCleanupBudgetMs     = 20L                       ;
+    private long               backgroundCleanupMaxLatencyMs = 100L                      ;
+    private String             childCollectionsPrefix        = "rest-storage:childcollections";
+    private String             sortedCollectionsPrefix       = "rest-storage:sortedcollections";
+    private String             deleteJobsPrefix              = "rest-storage:deletejobs" ;
+    private int                deleteJobBulkSize             = 1000                      ;
+    private int                expandMaxItems                = 10000                     ;
+    private long               expandMaxBytes                = 10485760                  ;
+    private int                expandDecompressConcurrency   = 4                         ;
+    private String             compressionCodec              = "gzip"                    ;
+    private int                compressionLevel              = -1                        ;
+    private int                autoCompressionThreshold      = 0                         ;
+    private List<String>       autoCompressionMimeTypes      = Collections.singletonList("application/json");
+    private double             autoCompressionMinRatio       = 1.5                       ;
+    private int                autoCompressionPrefixDepth    = 2                         ;
+    private int                codecWorkerPoolSize           = 8                         ;
+    private int                listingWorkerPoolSize         = 4                         ;
+    private int                fsIoWorkerPoolSize            = 4                         ;
+    private int                workerPoolMaxQueueSize        = 1000                      ;
 
     public ModuleConfiguration root(String root) {
         this.root = root;
@@ -141,6 +191,231 @@ public class ModuleConfiguration {
         return this;
     }
 
+    public ModuleConfiguration nearCacheEnabled(boolean nearCacheEnabled) {
+        this.nearCacheEnabled = nearCacheEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheMaxEntries(int nearCacheMaxEntries) {
+        this.nearCacheMaxEntries = nearCacheMaxEntries;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheMaxBytes(long nearCacheMaxBytes) {
+        this.nearCacheMaxBytes = nearCacheMaxBytes;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheMaxEntryBytes(int nearCacheMaxEntryBytes) {
+        this.nearCacheMaxEntryBytes = nearCacheMaxEntryBytes;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheTtlMs(long nearCacheTtlMs) {
+        this.nearCacheTtlMs = nearCacheTtlMs;
+        return this;
+    }
+
+    public ModuleConfiguration nearCacheInvalidationChannel(String nearCacheInvalidationChannel) {
+        this.nearCacheInvalidationChannel = nearCacheInvalidationChannel;
+        return this;
+    }
+
+    public ModuleConfiguration redisGetBatchSize(int redisGetBatchSize) {
+        this.redisGetBatchSize = redisGetBatchSize;
+        return this;
+    }
+
+    public ModuleConfiguration redisGetBatchWindowMs(long redisGetBatchWindowMs) {
+        this.redisGetBatchWindowMs = redisGetBatchWindowMs;
+        return this;
+    }
+
+    public ModuleConfiguration largeObjectThreshold(int largeObjectThreshold) {
+        this.largeObjectThreshold = largeObjectThreshold;
+        return this;
+    }
+
+    public ModuleConfiguration largeObjectChunkSize(int largeObjectChunkSize) {
+        this.largeObjectChunkSize = largeObjectChunkSize;
+        return this;
+    }
+
+    public ModuleConfiguration largeObjectGracePeriodMs(long largeObjectGracePeriodMs) {
+        this.largeObjectGracePeriodMs = largeObjectGracePeriodMs;
+        return this;
+    }
+
+    public ModuleConfiguration chunksPrefix(String chunksPrefix) {
+        this.chunksPrefix = chunksPrefix;
+        return this;
+    }
+
+    public ModuleConfiguration redisReadConnections(int redisReadConnections) {
+        this.redisReadConnections = redisReadConnections;
+        return this;
+    }
+
+    public ModuleConfiguration redisWriteConnections(int redisWriteConnections) {
+        this.redisWriteConnections = redisWriteConnections;
+        return this;
+    }
+
+    public ModuleConfiguration redisMaintenanceConnections(int redisMaintenanceConnections) {
+        this.redisMaintenanceConnections = redisMaintenanceConnections;
+        return this;
+    }
+
+    public ModuleConfiguration redisReplicas(List<String> redisReplicas) {
+        this.redisReplicas = redisReplicas;
+        return this;
+    }
+
+    public ModuleConfiguration redisReplicaRouting(ReplicaRouting redisReplicaRouting) {
+        this.redisReplicaRouting = redisReplicaRouting;
+        return this;
+    }
+
+    public ModuleConfiguration redisReplicaRoutingFromString(String redisReplicaRouting) throws IllegalArgumentException {
+        this.redisReplicaRouting = ReplicaRouting.valueOf(redisReplicaRouting); // let it throw IAEx in case of unknown string value
+        return this;
+    }
+
+    public ModuleConfiguration redisHedgedReadMs(long redisHedgedReadMs) {
+        this.redisHedgedReadMs = redisHedgedReadMs;
+        return this;
+    }
+
+    public ModuleConfiguration redisReplicaReadAfterWriteMs(long redisReplicaReadAfterWriteMs) {
+        this.redisReplicaReadAfterWriteMs = redisReplicaReadAfterWriteMs;
+        return this;
+    }
+
+    public ModuleConfiguration redisHashTagDepth(int redisHashTagDepth) {
+        this.redisHashTagDepth = redisHashTagDepth;
+        return this;
+    }
+
+    public ModuleConfiguration hashTagsKey(String hashTagsKey) {
+        this.hashTagsKey = hashTagsKey;
+        return this;
+    }
+
+    public ModuleConfiguration redisShards(List<String> redisShards) {
+        this.redisShards = redisShards;
+        return this;
+    }
+
+    public ModuleConfiguration redisShardDepth(int redisShardDepth) {
+        this.redisShardDepth = redisShardDepth;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundCleanupEnabled(boolean backgroundCleanupEnabled) {
+        this.backgroundCleanupEnabled = backgroundCleanupEnabled;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundCleanupIntervalMs(long backgroundCleanupIntervalMs) {
+        this.backgroundCleanupIntervalMs = backgroundCleanupIntervalMs;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundCleanupBudgetMs(long backgroundCleanupBudgetMs) {
+        this.backgroundCleanupBudgetMs = backgroundCleanupBudgetMs;
+        return this;
+    }
+
+    public ModuleConfiguration backgroundCleanupMaxLatencyMs(long backgroundCleanupMaxLatencyMs) {
+        this.backgroundCleanupMaxLatencyMs = backgroundCleanupMaxLatencyMs;
+        return this;
+    }
+
+    public ModuleConfiguration childCollectionsPrefix(String childCollectionsPrefix) {
+        this.childCollectionsPrefix = childCollectionsPrefix;
+        return this;
+    }
+
+    public ModuleConfiguration sortedCollectionsPrefix(String sortedCollectionsPrefix) {
+        this.sortedCollectionsPrefix = sortedCollectionsPrefix;
+        return this;
+    }
+
+    public ModuleConfiguration deleteJobsPrefix(String deleteJobsPrefix) {
+        this.deleteJobsPrefix = deleteJobsPrefix;
+        return this;
+    }
+
+    public ModuleConfiguration deleteJobBulkSize(int deleteJobBulkSize) {
+        this.deleteJobBulkSize = deleteJobBulkSize;
+        return this;
+    }
+
+    public ModuleConfiguration expandMaxItems(int expandMaxItems) {
+        this.expandMaxItems = expandMaxItems;
+        return this;
+    }
+
+    public ModuleConfiguration expandMaxBytes(long expandMaxBytes) {
+        this.expandMaxBytes = expandMaxBytes;
+        return this;
+    }
+
+    public ModuleConfiguration expandDecompressConcurrency(int expandDecompressConcurrency) {
+        this.expandDecompressConcurrency = expandDecompressConcurrency;
+        return this;
+    }
+
+    public ModuleConfiguration compressionCodec(String compressionCodec) {
+        this.compressionCodec = compressionCodec;
+        return this;
+    }
+
+    public ModuleConfiguration compressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    public ModuleConfiguration autoCompressionThreshold(int autoCompressionThreshold) {
+        this.autoCompressionThreshold = autoCompressionThreshold;
+        return this;
+    }
+
+    public ModuleConfiguration autoCompressionMimeTypes(List<String> autoCompressionMimeTypes) {
+        this.autoCompressionMimeTypes = autoCompressionMimeTypes;
+        return this;
+    }
+
+    public ModuleConfiguration autoCompressionMinRatio(double autoCompressionMinRatio) {
+        this.autoCompressionMinRatio = autoCompressionMinRatio;
+        return this;
+    }
+
+    public ModuleConfiguration autoCompressionPrefixDepth(int autoCompressionPrefixDepth) {
+        this.autoCompressionPrefixDepth = autoCompressionPrefixDepth;
+        return this;
+    }
+
+    public ModuleConfiguration codecWorkerPoolSize(int codecWorkerPoolSize) {
+        this.codecWorkerPoolSize = codecWorkerPoolSize;
+        return this;
+    }
+
+    public ModuleConfiguration listingWorkerPoolSize(int listingWorkerPoolSize) {
+        this.listingWorkerPoolSize = listingWorkerPoolSize;
+        return this;
+    }
+
+    public ModuleConfiguration fsIoWorkerPoolSize(int fsIoWorkerPoolSize) {
+        this.fsIoWorkerPoolSize = fsIoWorkerPoolSize;
+        return this;
+    }
+
+    public ModuleConfiguration workerPoolMaxQueueSize(int workerPoolMaxQueueSize) {
+        this.workerPoolMaxQueueSize = workerPoolMaxQueueSize;
+        return this;
+    }
+
 
 
     public String getRoot() {
@@ -215,6 +490,94 @@ public class ModuleConfiguration {
         return return200onDeleteNonExisting;
     }
 
+    public boolean isNearCacheEnabled() { return nearCacheEnabled; }
+
+    public int getNearCacheMaxEntries() { return nearCacheMaxEntries; }
+
+    public long getNearCacheMaxBytes() { return nearCacheMaxBytes; }
+
+    public int getNearCacheMaxEntryBytes() { return nearCacheMaxEntryBytes; }
+
+    public long getNearCacheTtlMs() { return nearCacheTtlMs; }
+
+    public String getNearCacheInvalidationChannel() { return nearCacheInvalidationChannel; }
+
+    public int getRedisGetBatchSize() { return redisGetBatchSize; }
+
+    public long getRedisGetBatchWindowMs() { return redisGetBatchWindowMs; }
+
+    public int getLargeObjectThreshold() { return largeObjectThreshold; }
+
+    public int getLargeObjectChunkSize() { return largeObjectChunkSize; }
+
+    public long getLargeObjectGracePeriodMs() { return largeObjectGracePeriodMs; }
+
+    public String getChunksPrefix() { return chunksPrefix; }
+
+    public int getRedisReadConnections() { return redisReadConnections; }
+
+    public int getRedisWriteConnections() { return redisWriteConnections; }
+
+    public int getRedisMaintenanceConnections() { return redisMaintenanceConnections; }
+
+    public List<String> getRedisReplicas() { return redisReplicas; }
+
+    public ReplicaRouting getRedisReplicaRouting() { return redisReplicaRouting; }
+
+    public long getRedisHedgedReadMs() { return redisHedgedReadMs; }
+
+    public long getRedisReplicaReadAfterWriteMs() { return redisReplicaReadAfterWriteMs; }
+
+    public int getRedisHashTagDepth() { return redisHashTagDepth; }
+
+    public String getHashTagsKey() { return hashTagsKey; }
+
+    public List<String> getRedisShards() { return redisShards; }
+
+    public int getRedisShardDepth() { return redisShardDepth; }
+
+    public boolean isBackgroundCleanupEnabled() { return backgroundCleanupEnabled; }
+
+    public long getBackgroundCleanupIntervalMs() { return backgroundCleanupIntervalMs; }
+
+    public long getBackgroundCleanupBudgetMs() { return backgroundCleanupBudgetMs; }
+
+    public long getBackgroundCleanupMaxLatencyMs() { return backgroundCleanupMaxLatencyMs; }
+
+    public String getChildCollectionsPrefix() { return childCollectionsPrefix; }
+
+    public String getSortedCollectionsPrefix() { return sortedCollectionsPrefix; }
+
+    public String getDeleteJobsPrefix() { return deleteJobsPrefix; }
+
+    public int getDeleteJobBulkSize() { return deleteJobBulkSize; }
+
+    public int getExpandMaxItems() { return expandMaxItems; }
+
+    public long getExpandMaxBytes() { return expandMaxBytes; }
+
+    public int getExpandDecompressConcurrency() { return expandDecompressConcurrency; }
+
+    public String getCompressionCodec() { return compressionCodec; }
+
+    public int getCompressionLevel() { return compressionLevel; }
+
+    public int getAutoCompressionThreshold() { return autoCompressionThreshold; }
+
+    public List<String> getAutoCompressionMimeTypes() { return autoCompressionMimeTypes; }
+
+    public double getAutoCompressionMinRatio() { return autoCompressionMinRatio; }
+
+    public int getAutoCompressionPrefixDepth() { return autoCompressionPrefixDepth; }
+
+    public int getCodecWorkerPoolSize() { return codecWorkerPoolSize; }
+
+    public int getListingWorkerPoolSize() { return listingWorkerPoolSize; }
+
+    public int getFsIoWorkerPoolSize() { return fsIoWorkerPoolSize; }
+
+    public int getWorkerPoolMaxQueueSize() { return workerPoolMaxQueueSize; }
+
     public JsonObject asJsonObject(){
         return JsonObject.mapFrom(this);
     }
@@ -7,6 +7,7 @@ package org.swisspush.reststorage.util;
  */
 public enum StatusCode {
     OK(200, "OK"),
+    ACCEPTED(202, "Accepted"),
     FOUND(302, "Found"),
     NOT_MODIFIED(304, "Not Modified"),
     BAD_REQUEST(400, "Bad Request"),
@@ -0,0 +1,120 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.WorkerExecutor;
+import io.vertx.core.json.JsonObject;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A named pool of worker threads for one class of blocking tasks, like the compression or the directory listings.
+ *
+ * <p>The tasks are executed unordered, so the tasks of one eventloop context run in parallel and a slow task only
+ * delays the tasks queued behind it in the same pool. A task is rejected when more than the maximum queue size of
+ * tasks waits for a worker thread. The pools are shared by name within the vertx instance, the worker executor is
+ * created on the first task.</p>
+ */
+public class WorkerPool {
+
+    public static final String CODEC = "codec";
+    public static final String LISTING = "listing";
+    public static final String FS_IO = "fs-io";
+
+    private static final String NAME_PREFIX = "rest-storage-";
+
+    private final Vertx vertx;
+    private final String name;
+    private final int size;
+    private final int maxQueueSize;
+    private WorkerExecutor executor;
+
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong executed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong waitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+
+    public WorkerPool(Vertx vertx, String name, int size, int maxQueueSize) {
+        this.vertx = vertx;
+        this.name = name;
+        this.size = size;
+        this.maxQueueSize = maxQueueSize;
+    }
+
+    /**
+     * @return the pool of the codec tasks, sized by <code>codecWorkerPoolSize</code>
+     */
+    public static WorkerPool codec(Vertx vertx, ModuleConfiguration config) {
+        return new WorkerPool(vertx, CODEC, config.getCodecWorkerPoolSize(), config.getWorkerPoolMaxQueueSize());
+    }
+
+    /**
+     * @return the pool of the directory listings, sized by <code>listingWorkerPoolSize</code>
+     */
+    public static WorkerPool listing(Vertx vertx, ModuleConfiguration config) {
+        return new WorkerPool(vertx, LISTING, config.getListingWorkerPoolSize(), config.getWorkerPoolMaxQueueSize());
+    }
+
+    /**
+     * @return the pool of the other blocking file system tasks, sized by <code>fsIoWorkerPoolSize</code>
+     */
+    public static WorkerPool fsIo(Vertx vertx, ModuleConfiguration config) {
+        return new WorkerPool(vertx, FS_IO, config.getFsIoWorkerPoolSize(), config.getWorkerPoolMaxQueueSize());
+    }
+
+    /**
+     * Executes the blocking code on a worker thread of the pool, not ordered with the other tasks. When the queue is
+     * full, the resultHandler is called at once with a {@link RejectedExecutionException}.
+     *
+     * @param blockingCodeHandler the blocking code
+     * @param resultHandler called on the calling context when the blocking code is done
+     */
+    public <T> void executeBlocking(Handler<Future<T>> blockingCodeHandler, Handler<AsyncResult<T>> resultHandler) {
+        if (queued.incrementAndGet() > maxQueueSize) {
+            queued.decrementAndGet();
+            rejected.incrementAndGet();
+            resultHandler.handle(Future.failedFuture(new RejectedExecutionException("The worker pool " + name
+                    + " has more than " + maxQueueSize + " queued tasks")));
+            return;
+        }
+        final long submitted = System.nanoTime();
+        executor().executeBlocking(future -> {
+            queued.decrementAndGet();
+            executed.incrementAndGet();
+            long wait = System.nanoTime() - submitted;
+            waitNanos.addAndGet(wait);
+            maxWaitNanos.accumulateAndGet(wait, Math::max);
+            blockingCodeHandler.handle(future);
+        }, false, resultHandler);
+    }
+
+    private synchronized WorkerExecutor executor() {
+        if (executor == null) {
+            executor = vertx.createSharedWorkerExecutor(NAME_PREFIX + name, size);
+        }
+        return executor;
+    }
+
+    /**
+     * @return the queued, executed and rejected tasks and the time the tasks waited for a worker thread
+     */
+    public JsonObject getStatistics() {
+        long executedTasks = executed.get();
+        return new JsonObject()
+                .put("name", name)
+                .put("size", size)
+                .put("maxQueueSize", maxQueueSize)
+                .put("queued", queued.get())
+                .put("executed", executedTasks)
+                .put("rejected", rejected.get())
+                .put("averageWaitMs", executedTasks == 0 ? 0
+                        : Math.round(waitNanos.get() / (double) executedTasks / 100_000) / 10.0)
+                .put("maxWaitMs", TimeUnit.NANOSECONDS.toMillis(maxWaitNanos.get()));
+    }
+}
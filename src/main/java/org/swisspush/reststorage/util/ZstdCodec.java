@@ -0,0 +1,64 @@
+package org.swisspush.reststorage.util;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdException;
+
+import java.io.IOException;
+
+/**
+ * Compresses with Zstandard, the uncompressed length is read from the frame header.
+ */
+class ZstdCodec implements CompressionCodec {
+
+    static final String ID = "zstd";
+    private static final int DEFAULT_LEVEL = 3;
+    private final int level;
+
+    ZstdCodec(int level) {
+        this.level = level < 0 ? DEFAULT_LEVEL : level;
+    }
+
+    @Override
+    public String id() {
+        return ID;
+    }
+
+    @Override
+    public String contentEncoding() {
+        return null;
+    }
+
+    @Override
+    public byte[] compress(byte[] data) throws IOException {
+        try {
+            return Zstd.compress(data, level);
+        } catch (ZstdException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public byte[] decompress(byte[] compressedData, long maxLength) throws IOException {
+        try {
+            long length = Zstd.decompressedSize(compressedData);
+            CompressionCodecs.checkLength(length, maxLength);
+            byte[] result = new byte[(int) length];
+            long decompressed = Zstd.decompress(result, compressedData);
+            if (decompressed != length) {
+                throw new IOException("Unexpected length of the decompressed resource");
+            }
+            return result;
+        } catch (ZstdException ex) {
+            throw new IOException(ex);
+        }
+    }
+
+    @Override
+    public long decompressedLength(byte[] compressedData) throws IOException {
+        try {
+            return Zstd.decompressedSize(compressedData);
+        } catch (ZstdException ex) {
+            throw new IOException(ex);
+        }
+    }
+}
@@ -9,15 +9,23 @@ local confirmCollectionDelete = ARGV[8]
 local deleteRecursive = ARGV[9]
 local now = tonumber(ARGV[10])
 local bulksize = tonumber(ARGV[11])
+local childCollectionsPrefix = ARGV[12]
+local sortedCollectionsPrefix = ARGV[13]
+local deletedSubtreesKey = ARGV[14]
 
 -- Important: The ARGV-Array is used again in the included del.lua script
 -- (see this funny comment with the percent sign below and Java-Method
---      org.swisspush.reststorage.RedisStorage.LuaScriptState.composeLuaScript)
+--      org.swisspush.reststorage.LuaScriptRegistry.composeLuaScript)
 -- we need to initialize all parameters for del.lua here - otherwise we can have side effects
 ARGV[10] = ''
 ARGV[11] = ''
 ARGV[12] = ''
 ARGV[13] = ''
+ARGV[14] = childCollectionsPrefix
+ARGV[15] = sortedCollectionsPrefix
+ARGV[16] = deletedSubtreesKey
+ARGV[17] = ''
+ARGV[18] = ''
 
 local resourcePrefixLength = string.len(resourcesPrefix)
 local counter = 0
@@ -17,10 +17,32 @@ local lockPrefix = ARGV[10]
 local lockOwner = ARGV[11]
 local lockMode = ARGV[12]
 local lockExpire = ARGV[13]
+local childCollectionsPrefix = ARGV[14]
+local sortedCollectionsPrefix = ARGV[15]
+-- an asynchronous delete detaches a collection instead of deleting it: the collection is marked in the hash of the
+-- deleted subtrees and appended to the list of the collections left to delete by the delete job
+local deletedSubtreesKey = ARGV[16]
+local pendingCollectionsKey = ARGV[17]
+local deleteJobId = ARGV[18]
+
+local function removeFromIndexes(path, name)
+    if childCollectionsPrefix ~= nil and childCollectionsPrefix ~= '' then
+        redis.call('srem', childCollectionsPrefix..path, name)
+    end
+    if sortedCollectionsPrefix ~= nil and sortedCollectionsPrefix ~= '' then
+        redis.call('zrem', sortedCollectionsPrefix..path, "0"..name, "1"..name)
+    end
+end
 
 local function deleteChildrenAndItself(path)
     if redis.call('exists',resourcesPrefix..path) == 1 then
       redis.log(redis.LOG_NOTICE, "del: "..resourcesPrefix..path)
+      local chunked = redis.call('hmget', resourcesPrefix..path, 'chunkKey', 'chunks')
+      if chunked[1] then
+        for i = 0, tonumber(chunked[2]) - 1 do
+          redis.call('del', chunked[1]..sep..i)
+        end
+      end
       redis.call('zrem', expirableSet, resourcesPrefix..path)
       redis.call('del', resourcesPrefix..path)
       redis.call('del', deltaResourcesPrefix..path)
@@ -33,6 +55,12 @@ local function deleteChildrenAndItself(path)
         deleteChildrenAndItself(pathToDelete)
         redis.call('del', collectionsPrefix..path)
       end
+      if childCollectionsPrefix ~= nil and childCollectionsPrefix ~= '' then
+        redis.call('del', childCollectionsPrefix..path)
+      end
+      if sortedCollectionsPrefix ~= nil and sortedCollectionsPrefix ~= '' then
+        redis.call('del', sortedCollectionsPrefix..path)
+      end
     else
       redis.log(redis.LOG_WARNING, "can't delete resource from type: "..path)
     end
@@ -50,6 +78,34 @@ local scriptState = "notFound"
 local isResource = redis.call('exists',resourcesPrefix..toDelete)
 local isCollection = redis.call('exists',collectionsPrefix..toDelete)
 
+-- whether the path or one of its ancestors is a subtree detached by an asynchronous delete. This script is included
+-- in cleanup.lua with all returns commented out, so it is not checked in a function
+local isDeletedSubtree = false
+if deletedSubtreesKey ~= nil and deletedSubtreesKey ~= '' and redis.call('exists', deletedSubtreesKey) == 1 then
+    local paths = {}
+    local position = string.find(toDelete, sep, 2, true)
+    while position ~= nil do
+        table.insert(paths, string.sub(toDelete, 1, position - 1))
+        position = string.find(toDelete, sep, position + 1, true)
+    end
+    table.insert(paths, toDelete)
+    for _, jobId in ipairs(redis.call('hmget', deletedSubtreesKey, unpack(paths))) do
+        if jobId then
+            isDeletedSubtree = true
+        end
+    end
+end
+
+if isDeletedSubtree then
+    -- the subtree is removed by its delete job. A resource cleaned up meanwhile is removed without touching its
+    -- collections, they are left to the job
+    if isResource == 1 then
+        deleteChildrenAndItself(toDelete)
+    end
+    isResource = 0
+    isCollection = 0
+end
+
 if confirmCollectionDelete == "true" and deleteRecursive == "false" and isCollection == 1 then
     redis.log(redis.LOG_NOTICE, "delete on collection requires recursive=true parameter")
     return "notEmpty"
@@ -73,10 +129,19 @@ if isResource == 1 or isCollection == 1 then
   
   if expired == 0 then
   
-    -- REMOVE THE CHILDREN
-    deleteChildrenAndItself(toDelete)
+    local detached = isCollection == 1 and deleteJobId ~= nil and deleteJobId ~= ''
+    if detached then
+      -- DETACH THE SUBTREE, ITS KEYS ARE REMOVED IN BULKS BY THE DELETE JOB
+      redis.call('hset', deletedSubtreesKey, toDelete, deleteJobId)
+      redis.call('rpush', pendingCollectionsKey, toDelete)
+      scriptState = "detached"
+    else
+      -- REMOVE THE CHILDREN
+      deleteChildrenAndItself(toDelete)
+      scriptState = "deleted"
+    end
     
-    if redis.call('zcount', collectionsPrefix..toDelete,minscore,maxscore) == 0 then
+    if detached or redis.call('zcount', collectionsPrefix..toDelete,minscore,maxscore) == 0 then
       
       -- REMOVE THE ORPHAN PARENTS
       local path = toDelete..sep
@@ -100,7 +165,11 @@ if isResource == 1 or isCollection == 1 then
       table.remove(pathtable,pathDepth)
       
       local orphanParents = 1
-      local parentCount = redis.call('zcount', collectionsPrefix..pathtable[pathDepth-2],minscore,maxscore)
+      -- the root has no parent
+      local parentCount = 0
+      if pathDepth > 1 then
+        parentCount = redis.call('zcount', collectionsPrefix..pathtable[pathDepth-2],minscore,maxscore)
+      end
       redis.log(redis.LOG_NOTICE, "parentCount: "..parentCount)
       redis.log(redis.LOG_NOTICE, "pathDepth: "..pathDepth)
       if pathDepth > 1 and parentCount > 1 then
@@ -119,11 +188,13 @@ if isResource == 1 or isCollection == 1 then
             end
             redis.log(redis.LOG_NOTICE, "zrem: "..collectionsPrefix..pathtable[pathDepthState-2].." "..nodetable[pathDepthState-1])
             redis.call('zrem', collectionsPrefix..pathtable[pathDepthState-2], nodetable[pathDepthState-1])
+            removeFromIndexes(pathtable[pathDepthState-2], nodetable[pathDepthState-1])
         end
         if directParent == 1 then
           redis.log(redis.LOG_NOTICE, "remove direct parent")
           redis.log(redis.LOG_NOTICE, "zrem: "..collectionsPrefix..pathtable[pathDepth-2].." "..nodetable[pathDepthState-1])
           redis.call('zrem', collectionsPrefix..pathtable[pathDepthState-2], nodetable[pathDepthState-1])
+          removeFromIndexes(pathtable[pathDepthState-2], nodetable[pathDepthState-1])
           directParent = 0
         end
       end
@@ -132,8 +203,6 @@ if isResource == 1 or isCollection == 1 then
     if isResource then
         setLockIfClaimed()
     end
-
-    scriptState = "deleted"
   end
   
 end
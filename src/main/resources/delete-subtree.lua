@@ -0,0 +1,79 @@
+-- Deletes a bulk of a subtree detached by an asynchronous delete (see del.lua and RedisDeleteJobs).
+-- KEYS[1] is the list of the collections left to delete. The members of the collection at the head of the list are
+-- removed one by one, its child collections are pushed to the head of the list. So the subtree is deleted depth first
+-- without recursion, and a job interrupted between two calls continues where it stopped.
+local sep = ":"
+local pendingCollectionsKey = KEYS[1]
+local resourcesPrefix = ARGV[1]
+local collectionsPrefix = ARGV[2]
+local deltaResourcesPrefix = ARGV[3]
+local deltaEtagsPrefix = ARGV[4]
+local expirableSet = ARGV[5]
+local lockPrefix = ARGV[6]
+local childCollectionsPrefix = ARGV[7]
+local sortedCollectionsPrefix = ARGV[8]
+local deletedSubtreesKey = ARGV[9]
+local subtree = ARGV[10]
+-- the amount of keys removed by a call, about
+local bulkSize = tonumber(ARGV[11])
+
+local function string_not_empty(s)
+    return s ~= nil and s ~= ''
+end
+
+local resources = 0
+local collections = 0
+local removed = 0
+
+local function deleteResource(path)
+    redis.log(redis.LOG_NOTICE, "del: "..resourcesPrefix..path)
+    local chunked = redis.call('hmget', resourcesPrefix..path, 'chunkKey', 'chunks')
+    if chunked[1] then
+        for i = 0, tonumber(chunked[2]) - 1 do
+            redis.call('del', chunked[1]..sep..i)
+        end
+        removed = removed + tonumber(chunked[2])
+    end
+    redis.call('zrem', expirableSet, resourcesPrefix..path)
+    redis.call('del', resourcesPrefix..path, deltaResourcesPrefix..path, deltaEtagsPrefix..path, lockPrefix..path)
+end
+
+while removed < bulkSize do
+    local path = redis.call('lindex', pendingCollectionsKey, 0)
+    if not path then
+        break
+    end
+    local members = redis.call('zrange', collectionsPrefix..path, 0, bulkSize - removed - 1)
+    if #members == 0 then
+        redis.log(redis.LOG_NOTICE, "del: "..collectionsPrefix..path)
+        redis.call('lpop', pendingCollectionsKey)
+        redis.call('del', collectionsPrefix..path)
+        if string_not_empty(childCollectionsPrefix) then
+            redis.call('del', childCollectionsPrefix..path)
+        end
+        if string_not_empty(sortedCollectionsPrefix) then
+            redis.call('del', sortedCollectionsPrefix..path)
+        end
+        collections = collections + 1
+        removed = removed + 1
+    else
+        for _, member in ipairs(members) do
+            local child = path..sep..member
+            if redis.call('exists', resourcesPrefix..child) == 1 then
+                deleteResource(child)
+                resources = resources + 1
+            elseif redis.call('exists', collectionsPrefix..child) == 1 then
+                redis.call('lpush', pendingCollectionsKey, child)
+            end
+            redis.call('zrem', collectionsPrefix..path, member)
+            removed = removed + 1
+        end
+    end
+end
+
+local remaining = redis.call('llen', pendingCollectionsKey)
+if remaining == 0 then
+    -- the subtree is gone, it can be written again
+    redis.call('hdel', deletedSubtreesKey, subtree)
+end
+return {resources, collections, remaining}
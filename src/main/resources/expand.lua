@@ -0,0 +1,184 @@
+-- Expands the collection KEYS[1] recursively into a single json document in one traversal.
+-- The members of a collection are sorted by name. Documents are inlined as they are stored when they are valid json
+-- objects or arrays, as json string otherwise. Collections are expanded to nested objects down to the depth ARGV[6],
+-- below that depth they are listed like a collection GET.
+-- The etag of the expansion is derived from the depth, the paths and the etags of the members, so no content has to be
+-- hashed. The traversal stops as soon as more than ARGV[7] members or ARGV[8] bytes of content are expanded.
+-- Returns the etag and the expanded content, or one of "notModified", "notFound", "document", "tooManyItems",
+-- "tooLarge", "compressionNotSupported" and "chunkedNotSupported".
+local sep = ":"
+local path = KEYS[1]
+local resourcesPrefix = ARGV[1]
+local collectionsPrefix = ARGV[2]
+local expirableSet = ARGV[3]
+local timestamp = tonumber(ARGV[4])
+local maxtime = tonumber(ARGV[5])
+local depth = tonumber(ARGV[6])
+local maxItems = tonumber(ARGV[7])
+local maxBytes = tonumber(ARGV[8])
+-- see get.lua
+local childCollectionsPrefix = ARGV[9]
+-- see get.lua
+local deletedSubtreesKey = ARGV[10]
+local etag = ARGV[11]
+
+-- tells whether the path or one of its ancestors is a subtree detached by an asynchronous delete
+local function isDeletedSubtree(path)
+    if deletedSubtreesKey == nil or deletedSubtreesKey == '' or redis.call('exists', deletedSubtreesKey) == 0 then
+        return false
+    end
+    local paths = {}
+    local position = string.find(path, sep, 2, true)
+    while position ~= nil do
+        table.insert(paths, string.sub(path, 1, position - 1))
+        position = string.find(path, sep, position + 1, true)
+    end
+    table.insert(paths, path)
+    for _, jobId in ipairs(redis.call('hmget', deletedSubtreesKey, unpack(paths))) do
+        if jobId then
+            return true
+        end
+    end
+    return false
+end
+
+-- the names are stored with replaced colons and semicolons (see ResourceNameUtil)
+local function resourceName(name)
+    return (string.gsub(string.gsub(name, "\194\167", ":"), "\194\176", ";"))
+end
+
+-- the resources are stored with a character per byte (see RedisStorage.encodeBinary), the names are encoded alike to
+-- splice them into the same result
+local function binary(text)
+    return (string.gsub(text, "[\128-\255]", function(c)
+        local b = string.byte(c)
+        return string.char(192 + math.floor(b / 64), 128 + b % 64)
+    end))
+end
+
+-- the living members of a collection sorted by name, each with a flag telling whether it is a collection
+local function members(collectionPath)
+    local names = redis.call('zrangebyscore', collectionsPrefix..collectionPath, timestamp, maxtime)
+    table.sort(names)
+    local childCollections
+    if childCollectionsPrefix ~= nil and childCollectionsPrefix ~= '' then
+        childCollections = {}
+        for _, v in ipairs(redis.call('smembers', childCollectionsPrefix..collectionPath)) do
+            childCollections[v] = true
+        end
+    end
+    local result = {}
+    for _, name in ipairs(names) do
+        local isCollection
+        if childCollections then
+            isCollection = childCollections[name] == true
+        else
+            isCollection = redis.call('exists', collectionsPrefix..collectionPath..sep..name) == 1
+        end
+        table.insert(result, {name, isCollection})
+    end
+    return result
+end
+
+local items = 0
+local bytes = 0
+local digest = {depth}
+
+local function listing(collectionPath, relativePath)
+    local names = {}
+    for _, member in ipairs(members(collectionPath)) do
+        items = items + 1
+        if items > maxItems then
+            return nil, "tooManyItems"
+        end
+        local name = resourceName(member[1])
+        if member[2] then
+            name = name.."/"
+        end
+        table.insert(names, binary(cjson.encode(name)))
+        table.insert(digest, relativePath..name)
+    end
+    return "["..table.concat(names, ",").."]"
+end
+
+local function document(resourcePath, relativePath)
+    local score = tonumber(redis.call('zscore', expirableSet, resourcePath))
+    if score ~= nil and score <= timestamp then
+        return nil
+    end
+    local fields = redis.call('hmget', resourcePath, 'resource', 'etag', 'compressed', 'chunkKey')
+    if fields[3] then
+        return nil, "compressionNotSupported"
+    end
+    if fields[4] then
+        return nil, "chunkedNotSupported"
+    end
+    if not fields[1] then
+        return nil
+    end
+    table.insert(digest, relativePath.."="..(fields[2] or ""))
+    local first = string.match(fields[1], "^%s*(.)")
+    -- invalid stored json would break the whole result
+    if (first == "{" or first == "[") and pcall(cjson.decode, fields[1]) then
+        return fields[1]
+    end
+    return cjson.encode(fields[1])
+end
+
+local function expand(collectionPath, relativePath, level)
+    local parts = {}
+    for _, member in ipairs(members(collectionPath)) do
+        items = items + 1
+        if items > maxItems then
+            return nil, "tooManyItems"
+        end
+        local name = resourceName(member[1])
+        local memberPath = collectionPath..sep..member[1]
+        local value, failure
+        if member[2] and level < depth then
+            -- the content of the nested collection is already counted
+            value, failure = expand(memberPath, relativePath..name.."/", level + 1)
+        elseif member[2] then
+            value, failure = listing(memberPath, relativePath..name.."/")
+            bytes = bytes + string.len(value or "")
+        else
+            value, failure = document(resourcesPrefix..memberPath, relativePath..name)
+            bytes = bytes + string.len(value or "")
+        end
+        if failure then
+            return nil, failure
+        end
+        if value then
+            local part = binary(cjson.encode(name))..":"..value
+            bytes = bytes + string.len(part) - string.len(value)
+            if bytes > maxBytes then
+                return nil, "tooLarge"
+            end
+            table.insert(parts, part)
+        end
+    end
+    return "{"..table.concat(parts, ",").."}"
+end
+
+if isDeletedSubtree(path) then
+    return "notFound"
+end
+if redis.call('exists', collectionsPrefix..path) == 0 then
+    if redis.call('exists', resourcesPrefix..path) == 1 then
+        return "document"
+    end
+    return "notFound"
+end
+
+local content, failure = expand(path, "", 1)
+if failure then
+    return failure
+end
+if content == "{}" then
+    return "notFound"
+end
+local expandEtag = redis.sha1hex(table.concat(digest, "\n"))
+if expandEtag == etag then
+    return "notModified"
+end
+return {expandEtag, content}
@@ -9,6 +9,16 @@ local maxtime = tonumber(ARGV[5])
 local offset = tonumber(ARGV[6])
 local count = tonumber(ARGV[7])
 local etag = ARGV[8]
+-- the set of the child collections of every collection is used instead of checking the type of every member,
+-- unless the existing collections were not indexed yet (see RedisChildCollectionsMigration)
+local childCollectionsPrefix = ARGV[9]
+-- a page starting after a cursor is listed, when the start of the page is given as lexicographical range start:
+-- '-' for the first page, '(' followed by the sort key of the last listed member otherwise (see CollectionCursor)
+local pageStart = ARGV[10]
+-- the members of every collection sorted by their sort key, unless the collections were not indexed yet
+local sortedCollectionsPrefix = ARGV[11]
+-- the subtrees detached by an asynchronous delete, which are not found anymore (see RedisDeleteJobs)
+local deletedSubtreesKey = ARGV[12]
 
 local function not_empty(x)
     return (type(x) == "table") and (not x.err) and (#x ~= 0)
@@ -18,6 +28,99 @@ local function string_not_empty(s)
     return s ~= nil and s ~= ''
 end
 
+-- the sort key lists the collections first, ordered by name, followed by the resources ordered by name
+local function sortKey(name, isCollection)
+    if isCollection then
+        return "0"..name
+    end
+    return "1"..name
+end
+
+local function addSorted(page, entry)
+    if string.sub(entry, 1, 1) == "0" then
+        table.insert(page, string.sub(entry, 2)..sep)
+    else
+        table.insert(page, string.sub(entry, 2))
+    end
+end
+
+-- lists up to count members after pageStart, the second element tells whether more members follow
+local function listPage()
+    local page = {"TYPE_COLLECTION_PAGE", "0"}
+    local limit = -1
+    if count ~= nil and count > -1 then
+        limit = count
+    end
+    if string_not_empty(sortedCollectionsPrefix) then
+        local sortedKey = sortedCollectionsPrefix..path
+        local start = pageStart
+        local batchSize = 1000
+        if limit > -1 then
+            batchSize = limit + 1
+        end
+        while true do
+            local entries = redis.call('zrangebylex', sortedKey, start, '+', 'LIMIT', 0, batchSize)
+            for _, entry in ipairs(entries) do
+                -- the sorted members are not expired, the expiration is kept in the collection only
+                local score = tonumber(redis.call('zscore', collectionsPrefix..path, string.sub(entry, 2)))
+                if score ~= nil and score >= timestamp and score <= maxtime then
+                    if #page - 2 == limit then
+                        page[2] = "1"
+                        return page
+                    end
+                    addSorted(page, entry)
+                end
+                start = "("..entry
+            end
+            if #entries < batchSize then
+                return page
+            end
+        end
+    end
+    -- the collections were not indexed yet, all members are sorted
+    local entries = {}
+    local after = string.sub(pageStart, 2)
+    for _, name in ipairs(redis.call('zrangebyscore', collectionsPrefix..path, timestamp, maxtime)) do
+        local entry = sortKey(name, redis.call('type', collectionsPrefix..path..sep..name)["ok"] == "zset")
+        if pageStart == '-' or entry > after then
+            table.insert(entries, entry)
+        end
+    end
+    table.sort(entries)
+    for _, entry in ipairs(entries) do
+        if #page - 2 == limit then
+            page[2] = "1"
+            return page
+        end
+        addSorted(page, entry)
+    end
+    return page
+end
+
+-- tells whether the path or one of its ancestors is a subtree detached by an asynchronous delete
+local function isDeletedSubtree(path)
+    if deletedSubtreesKey == nil or deletedSubtreesKey == '' or redis.call('exists', deletedSubtreesKey) == 0 then
+        return false
+    end
+    local paths = {}
+    local position = string.find(path, sep, 2, true)
+    while position ~= nil do
+        table.insert(paths, string.sub(path, 1, position - 1))
+        position = string.find(path, sep, position + 1, true)
+    end
+    table.insert(paths, path)
+    for _, jobId in ipairs(redis.call('hmget', deletedSubtreesKey, unpack(paths))) do
+        if jobId then
+            return true
+        end
+    end
+    return false
+end
+
+if isDeletedSubtree(path) then
+    return "notFound"
+end
+
 if redis.call('exists',resourcesPrefix..path) == 1 then
     local score = tonumber(redis.call('zscore',expirableSet,resourcesPrefix..path))
     if score ~= nil and score < timestamp then
@@ -31,13 +134,29 @@ if redis.call('exists',resourcesPrefix..path) == 1 then
                     return "notModified"
                 end
             end
+            if not result[1] then
+                local chunked = redis.call('hmget',resourcesPrefix..path,'chunkKey','chunks','length')
+                if chunked[1] then
+                    local chunkedResult = {"TYPE_CHUNKED_RESOURCE", chunked[1], result[2], tonumber(chunked[2]), tonumber(chunked[3])}
+                    if score ~= nil then
+                        table.insert(chunkedResult, score)
+                    end
+                    return chunkedResult
+                end
+            end
             table.insert(result, 1, "TYPE_RESOURCE")
+            if score ~= nil then
+                table.insert(result, score)
+            end
             return result
         else
             return "notFound"
         end
     end
 elseif redis.call('exists',collectionsPrefix..path) == 1 then
+    if string_not_empty(pageStart) then
+        return listPage()
+    end
     local members = {}
     if offset ~= nil and count ~= nil and offset > -1 then
         members = redis.call('zrangebyscore',collectionsPrefix..path, timestamp, maxtime,'limit',offset, count)
@@ -46,6 +165,32 @@ elseif redis.call('exists',collectionsPrefix..path) == 1 then
     end
     local children = {}
     table.insert(children, 1, "TYPE_COLLECTION")
+    if string_not_empty(childCollectionsPrefix) then
+        local childCollectionsKey = childCollectionsPrefix..path
+        local childCollectionCount = redis.call('scard', childCollectionsKey)
+        local isChildCollection
+        if childCollectionCount == 0 then
+            isChildCollection = function(value) return false end
+        elseif childCollectionCount <= #members then
+            -- a single read of all child collections
+            local childCollections = {}
+            for _,value in ipairs(redis.call('smembers', childCollectionsKey)) do
+                childCollections[value] = true
+            end
+            isChildCollection = function(value) return childCollections[value] == true end
+        else
+            -- a page of a collection with more child collections than listed members
+            isChildCollection = function(value) return redis.call('sismember', childCollectionsKey, value) == 1 end
+        end
+        for key,value in ipairs(members) do
+            if isChildCollection(value) then
+                table.insert(children, value..sep)
+            else
+                table.insert(children, value)
+            end
+        end
+        return children
+    end
     for key,value in pairs(members) do
         local childPath = collectionsPrefix..path..sep..value
         if redis.call('type', childPath)["ok"] == "zset" then
@@ -0,0 +1,23 @@
+local sep = ":"
+local collectionsPrefix = ARGV[1]
+local childCollectionsPrefix = ARGV[2]
+local sortedCollectionsPrefix = ARGV[3]
+
+-- indexes the child collections and the sorted members of the collection KEYS[1], see put.lua and get.lua
+local collectionKey = KEYS[1]
+if redis.call('type', collectionKey)["ok"] ~= "zset" then
+    return 0
+end
+
+local path = string.sub(collectionKey, string.len(collectionsPrefix) + 1)
+local indexed = 0
+for _, member in ipairs(redis.call('zrange', collectionKey, 0, -1)) do
+    if redis.call('exists', collectionKey..sep..member) == 1 then
+        redis.call('sadd', childCollectionsPrefix..path, member)
+        redis.call('zadd', sortedCollectionsPrefix..path, 0, "0"..member)
+        indexed = indexed + 1
+    else
+        redis.call('zadd', sortedCollectionsPrefix..path, 0, "1"..member)
+    end
+end
+return indexed
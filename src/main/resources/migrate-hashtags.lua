@@ -0,0 +1,66 @@
+local sep = ":"
+local resourcesPrefix = ARGV[1]
+local collectionsPrefix = ARGV[2]
+local deltaResourcesPrefix = ARGV[3]
+local deltaEtagsPrefix = ARGV[4]
+local expirableSet = ARGV[5]
+local lockPrefix = ARGV[6]
+local chunksPrefix = ARGV[7]
+local hashTagsKey = ARGV[8]
+local maxexpiration = ARGV[9]
+local childCollectionsPrefix = ARGV[10]
+local sortedCollectionsPrefix = ARGV[11]
+
+-- KEYS contains the encoded paths of the resources to migrate, ARGV[11 + i] the hash tag of KEYS[i]
+
+local renameIfExists = function(from, to)
+    if redis.call('exists', from) == 1 then
+        redis.call('rename', from, to)
+    end
+end
+
+local migrated = 0
+for i, path in ipairs(KEYS) do
+    local hashTag = ARGV[11 + i]
+    local taggedPath = hashTag..path
+    if redis.call('exists', resourcesPrefix..path) == 1 then
+        local chunked = redis.call('hmget', resourcesPrefix..path, 'chunkKey', 'chunks')
+        if chunked[1] then
+            local chunkKey = chunksPrefix..hashTag..string.sub(chunked[1], string.len(chunksPrefix) + 1)
+            for chunk = 0, tonumber(chunked[2]) - 1 do
+                renameIfExists(chunked[1]..sep..chunk, chunkKey..sep..chunk)
+            end
+            redis.call('hset', resourcesPrefix..path, 'chunkKey', chunkKey)
+        end
+        redis.call('rename', resourcesPrefix..path, resourcesPrefix..taggedPath)
+        renameIfExists(lockPrefix..path, lockPrefix..taggedPath)
+        renameIfExists(deltaResourcesPrefix..path, deltaResourcesPrefix..taggedPath)
+        renameIfExists(deltaEtagsPrefix..path, deltaEtagsPrefix..taggedPath)
+
+        local score = redis.call('zscore', expirableSet, resourcesPrefix..path)
+        if score then
+            redis.call('zadd', expirableSet..hashTag, score, resourcesPrefix..taggedPath)
+            redis.call('zrem', expirableSet, resourcesPrefix..path)
+        end
+
+        -- copy the collections above the resource into the slot of the hash tag, keeping their expiration
+        local pathWithSep = path..sep
+        local nodes = {pathWithSep:match((pathWithSep:gsub("[^"..sep.."]*"..sep, "([^"..sep.."]*)"..sep)))}
+        local parent = nodes[1]
+        for node = 2, #nodes do
+            local expiration = redis.call('zscore', collectionsPrefix..parent, nodes[node]) or maxexpiration
+            redis.call('zadd', collectionsPrefix..hashTag..parent, expiration, nodes[node])
+            if node < #nodes then
+                redis.call('sadd', childCollectionsPrefix..hashTag..parent, nodes[node])
+                redis.call('zadd', sortedCollectionsPrefix..hashTag..parent, 0, "0"..nodes[node])
+            else
+                redis.call('zadd', sortedCollectionsPrefix..hashTag..parent, 0, "1"..nodes[node])
+            end
+            parent = parent..sep..nodes[node]
+        end
+
+        redis.call('sadd', hashTagsKey, hashTag)
+        migrated = migrated + 1
+    end
+end
+return migrated
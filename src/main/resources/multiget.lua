@@ -0,0 +1,21 @@
+-- Executes the get script for every key in KEYS and returns the results in the same order.
+-- ARGV[1] to ARGV[5] are shared by all keys (see get.lua), followed by the prefix of the child collections
+-- (ARGV[9] of get.lua) and the key of the deleted subtrees (ARGV[12] of get.lua), followed by offset, count and etag
+-- for every key.
+-- The get script is included below (see this funny comment with the percent sign and Java-Method
+--      org.swisspush.reststorage.LuaScriptRegistry.composeLuaScript)
+-- Wrapping it in a function with KEYS and ARGV as parameters keeps its semantics for every single key.
+local sharedArgCount = 7
+local argCountPerKey = 3
+
+local function get(KEYS, ARGV)
+--%(getscript)
+end
+
+local results = {}
+for i, key in ipairs(KEYS) do
+    local argIndex = sharedArgCount + (i - 1) * argCountPerKey
+    local getArgs = {ARGV[1], ARGV[2], ARGV[3], ARGV[4], ARGV[5], ARGV[argIndex + 1], ARGV[argIndex + 2], ARGV[argIndex + 3], ARGV[6], nil, nil, ARGV[7]}
+    results[i] = get({key}, getArgs)
+end
+return results
\ No newline at end of file
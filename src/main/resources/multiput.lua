@@ -0,0 +1,26 @@
+-- Executes the put script for every key in KEYS in a single atomic call and returns the results in the same order.
+-- ARGV[1] to ARGV[9] are shared by all keys: the prefixes of the resources and the collections, the expirable set,
+-- the max expiration, the lock prefix, the prefixes of the child and sorted collections, the key of the deleted
+-- subtrees and the grace period of the chunks of replaced resources (ARGV[1], [2], [3], [6], [9], [17], [18], [19]
+-- and [21] of put.lua), followed by expiration, resource, etag, lock owner, lock mode, lock expiration and
+-- compression for every key.
+-- The put script is included below (see this funny comment with the percent sign and Java-Method
+--      org.swisspush.reststorage.LuaScriptRegistry.composeLuaScript)
+-- The ancestors are shared by the batch: once the first document updated them, the ancestor walk of the put script
+-- stops at the parent collection for every further document with the same expiration.
+local sharedArgCount = 9
+local argCountPerKey = 7
+
+local function put(KEYS, ARGV)
+--%(putscript)
+end
+
+local results = {}
+for i, key in ipairs(KEYS) do
+    local argIndex = sharedArgCount + (i - 1) * argCountPerKey
+    local putArgs = {ARGV[1], ARGV[2], ARGV[3], "false", ARGV[argIndex + 1], ARGV[4], ARGV[argIndex + 2],
+        ARGV[argIndex + 3], ARGV[5], ARGV[argIndex + 4], ARGV[argIndex + 5], ARGV[argIndex + 6], ARGV[argIndex + 7],
+        '', '', '', ARGV[6], ARGV[7], ARGV[8], '', ARGV[9]}
+    results[i] = put({key}, putArgs)
+end
+return results
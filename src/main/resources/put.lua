@@ -12,7 +12,46 @@ local lockPrefix = ARGV[9]
 local lockOwner = ARGV[10]
 local lockMode = ARGV[11]
 local lockExpire = ARGV[12]
-local compress = tonumber(ARGV[13])
+-- the id of the codec the resource is compressed with, "0" when it is not compressed
+local compress = ARGV[13]
+if compress == nil or compress == '' then
+    compress = "0"
+end
+local chunkKey = ARGV[14]
+local chunkCount = tonumber(ARGV[15])
+local length = ARGV[16]
+local childCollectionsPrefix = ARGV[17]
+local sortedCollectionsPrefix = ARGV[18]
+-- the subtrees detached by an asynchronous delete, nothing is written below them until they are removed
+local deletedSubtreesKey = ARGV[19]
+-- the etag of the resource merged by the storage, the resource is only written when it still has this etag
+local expectedEtag = ARGV[20]
+-- the chunks of a replaced resource are kept this long for the GET requests still reading them, 0 deletes them at once
+local chunkGracePeriod = tonumber(ARGV[21]) or 0
+
+-- tells whether the path or one of its ancestors is a subtree detached by an asynchronous delete
+local function isDeletedSubtree(path)
+    if deletedSubtreesKey == nil or deletedSubtreesKey == '' or redis.call('exists', deletedSubtreesKey) == 0 then
+        return false
+    end
+    local paths = {}
+    local position = string.find(path, sep, 2, true)
+    while position ~= nil do
+        table.insert(paths, string.sub(path, 1, position - 1))
+        position = string.find(path, sep, position + 1, true)
+    end
+    table.insert(paths, path)
+    for _, jobId in ipairs(redis.call('hmget', deletedSubtreesKey, unpack(paths))) do
+        if jobId then
+            return true
+        end
+    end
+    return false
+end
+
+if isDeletedSubtree(KEYS[1]) then
+    return "deleting"
+end
 
 if redis.call('exists',collectionsPrefix..KEYS[1]) == 1 then
     return "existingCollection"
@@ -25,6 +64,19 @@ if redis.call('exists',lockPrefix..KEYS[1]) == 1 then
     end
 end
 
+if merge == "true" and redis.call('hexists',resourcesPrefix..KEYS[1],'chunkKey') == 1 then
+    return "mergeNotSupported"
+end
+
+-- a compressed resource cannot be decoded here, the storage merges it and writes it with the expected etag
+if merge == "true" and redis.call('hexists',resourcesPrefix..KEYS[1],'compressed') == 1 then
+    return "mergeCompressed"
+end
+
+if expectedEtag ~= nil and expectedEtag ~= '' and redis.call('hget',resourcesPrefix..KEYS[1],'etag') ~= expectedEtag then
+    return "mergeConflict"
+end
+
 local setLockIfClaimed = function()
     if lockOwner ~= nil and lockOwner ~= '' then
         redis.call('hmset', lockPrefix..KEYS[1], 'owner', lockOwner, 'mode', lockMode)
@@ -33,11 +85,12 @@ local setLockIfClaimed = function()
 end
 
 local compressionModeNotChanged = function(doCompress)
-    local isCompressed = redis.call('hexists',resourcesPrefix..KEYS[1],'compressed')
-    return doCompress == isCompressed
+    local codec = redis.call('hget',resourcesPrefix..KEYS[1],'compressed') or "0"
+    return doCompress == codec
 end
 
-if redis.call('exists',resourcesPrefix..KEYS[1]) == 1 then
+local resourceExists = redis.call('exists',resourcesPrefix..KEYS[1]) == 1
+if resourceExists then
     local etag = redis.call('hget',resourcesPrefix..KEYS[1],'etag')
     if etag == resourceHash and expiration == maxexpiration and compressionModeNotChanged(compress) then
         setLockIfClaimed()
@@ -49,35 +102,68 @@ local not_empty = function(x)
     return (type(x) == "table") and (not x.err) and (#x ~= 0)
 end
 
-local pathState
-local collections = {}
+-- nodes[i + 1] is a member of the collection parents[i], the last node is the resource
 local nodes = {path:match((path:gsub("[^"..sep.."]*"..sep, "([^"..sep.."]*)"..sep)))}
-
-for key,value in pairs(nodes) do
-    if pathState == nil then
-        pathState = value
+local parents = {}
+for i = 1, #nodes - 1 do
+    if i == 1 then
+        parents[i] = nodes[1]
     else
-        collections[pathState] = value
-        pathState = pathState..sep..value
+        parents[i] = parents[i - 1]..sep..nodes[i]
     end
-    redis.log(redis.LOG_NOTICE, "pathState: "..resourcesPrefix..pathState)
-    redis.log(redis.LOG_NOTICE, "path: "..resourcesPrefix..KEYS[1])
-    if redis.call('exists',resourcesPrefix..pathState) == 1 and resourcesPrefix..pathState ~= resourcesPrefix..KEYS[1] then
-        return "existingResource".." "..resourcesPrefix..pathState
+end
+
+-- the ancestors of an existing resource are collections. Otherwise the ancestors are checked from the resource
+-- upwards until the first existing collection, all ancestors above it are collections too
+if not resourceExists then
+    for i = #parents, 1, -1 do
+        if redis.call('exists',collectionsPrefix..parents[i]) == 1 then
+            break
+        end
+        if redis.call('exists',resourcesPrefix..parents[i]) == 1 then
+            return "existingResource".." "..resourcesPrefix..parents[i]
+        end
     end
 end
-for key,value in pairs(collections) do
-    local collectionKey = collectionsPrefix..key
-    local actualExpiration = expiration
-    local contentMax = redis.call('zrange',collectionKey..sep..value,-1,-1, "withscores")[2]
-    if contentMax ~= nil and contentMax ~= '' then
-        contentMax = tonumber(contentMax)
-        if contentMax > actualExpiration then
-            actualExpiration = contentMax
+
+-- The score of a member of a collection is the maximum expiration of the resources below it. The ancestors are
+-- updated from the resource upwards, as long as the score of a member changes: a resource rewritten with the same
+-- expiration leaves all ancestors unchanged. Only a lowered expiration reads the maximum of the collection below.
+local lowered = false
+if resourceExists then
+    local previous = tonumber(redis.call('zscore',collectionsPrefix..parents[#parents],nodes[#nodes]))
+    lowered = previous ~= nil and previous > expiration
+end
+local score = expiration
+for i = #parents, 1, -1 do
+    local collectionKey = collectionsPrefix..parents[i]
+    local member = nodes[i + 1]
+    local isResource = i == #parents
+    local current = tonumber(redis.call('zscore',collectionKey,member))
+    if not isResource and current ~= nil then
+        if lowered then
+            score = tonumber(redis.call('zrange',collectionKey..sep..member,-1,-1,"withscores")[2]) or score
+        elseif current > score then
+            score = current
+        end
+    end
+    if current == score then
+        break
+    end
+    redis.log(redis.LOG_NOTICE, "zadd: "..collectionKey.." "..score.." "..member)
+    redis.call('zadd',collectionKey,score,member)
+    if current == nil then
+        if childCollectionsPrefix ~= nil and childCollectionsPrefix ~= '' and not isResource then
+            redis.call('sadd',childCollectionsPrefix..parents[i],member)
+        end
+        if sortedCollectionsPrefix ~= nil and sortedCollectionsPrefix ~= '' then
+            if isResource then
+                redis.call('zadd',sortedCollectionsPrefix..parents[i],0,"1"..member)
+            else
+                redis.call('zadd',sortedCollectionsPrefix..parents[i],0,"0"..member)
+            end
         end
     end
-    redis.log(redis.LOG_NOTICE, "zadd: "..collectionKey.." "..actualExpiration.." "..value)
-    redis.call('zadd',collectionKey,actualExpiration,value)
 end
 redis.log(redis.LOG_NOTICE, "merge: "..merge)
 
@@ -93,12 +179,34 @@ if merge == "true" then
     end
 end
 
+local deleteChunks = function()
+    local chunked = redis.call('hmget',resourcesPrefix..KEYS[1],'chunkKey','chunks')
+    if chunked[1] and chunked[1] ~= chunkKey then
+        for i = 0, tonumber(chunked[2]) - 1 do
+            if chunkGracePeriod > 0 then
+                redis.call('pexpire',chunked[1]..sep..i,chunkGracePeriod)
+            else
+                redis.call('del',chunked[1]..sep..i)
+            end
+        end
+    end
+end
+
 redis.log(redis.LOG_NOTICE, "update: "..resourcesPrefix..KEYS[1])
-if compress == 1 then
-    redis.call('hmset',resourcesPrefix..KEYS[1],'resource',resourceValue,'etag',resourceHash,'compressed',1)
+deleteChunks()
+if chunkKey ~= nil and chunkKey ~= '' then
+    -- the chunks are uploaded with an expiration to get rid of aborted uploads
+    for i = 0, chunkCount - 1 do
+        redis.call('persist',chunkKey..sep..i)
+    end
+    redis.call('hmset',resourcesPrefix..KEYS[1],'chunkKey',chunkKey,'chunks',chunkCount,'length',length,'etag',resourceHash)
+    redis.call('hdel',resourcesPrefix..KEYS[1],'resource','compressed')
+elseif compress ~= "0" then
+    redis.call('hmset',resourcesPrefix..KEYS[1],'resource',resourceValue,'etag',resourceHash,'compressed',compress)
+    redis.call('hdel',resourcesPrefix..KEYS[1],'chunkKey','chunks','length')
 else
     redis.call('hmset',resourcesPrefix..KEYS[1],'resource',resourceValue,'etag',resourceHash)
-    redis.call('hdel',resourcesPrefix..KEYS[1],'compressed')
+    redis.call('hdel',resourcesPrefix..KEYS[1],'compressed','chunkKey','chunks','length')
 end
 
 if expiration ~= maxexpiration then
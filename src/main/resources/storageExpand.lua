@@ -14,6 +14,11 @@ local timestamp = tonumber(ARGV[4])
 local maxtime = tonumber(ARGV[5])
 local subResources = ARGV[6]
 local subResourcesCount = tonumber(ARGV[7])
+-- see get.lua
+local childCollectionsPrefix = ARGV[8]
+-- see get.lua
+local deletedSubtreesKey = ARGV[9]
+local etag = ARGV[10]
 
 local function splitToTable(divider,str)
     if (divider=='') then return false end
@@ -33,15 +38,34 @@ local function isCollection(resName)
     return false
 end
 
-local function isCompressed(resourcePath)
-    if redis.call('hexists',resourcePath,'compressed') == 1 then
-        return true
-    else
+-- tells whether the path or one of its ancestors is a subtree detached by an asynchronous delete
+local function isDeletedSubtree(path)
+    if deletedSubtreesKey == nil or deletedSubtreesKey == '' or redis.call('exists', deletedSubtreesKey) == 0 then
         return false
     end
+    local paths = {}
+    local position = string.find(path, sep, 2, true)
+    while position ~= nil do
+        table.insert(paths, string.sub(path, 1, position - 1))
+        position = string.find(path, sep, position + 1, true)
+    end
+    table.insert(paths, path)
+    for _, jobId in ipairs(redis.call('hmget', deletedSubtreesKey, unpack(paths))) do
+        if jobId then
+            return true
+        end
+    end
+    return false
 end
 
-local result = {}
+if isDeletedSubtree(path) then
+    return "notFound"
+end
+
+-- the etag of the expansion is derived from the requested names, the etags of the resources and the listings of the
+-- collections, so a not modified expansion is detected before any content is read
+local members = {}
+local digest = {}
 local subResourcesTable = splitToTable(";", subResources);
 
 for i=1,subResourcesCount do
@@ -51,34 +75,88 @@ for i=1,subResourcesCount do
         local colPath = collectionsPrefix..path..sep..subResName
         if redis.call('exists',colPath) == 1 then
             local colMembers = redis.call('zrangebyscore',colPath, timestamp, maxtime)
-            for k, v in ipairs(colMembers) do
-                if redis.call('exists',colPath..sep..v) == 1 then
-                    colMembers[k] = v.."/"
+            if childCollectionsPrefix ~= nil and childCollectionsPrefix ~= '' then
+                local childCollections = {}
+                for _, v in ipairs(redis.call('smembers', childCollectionsPrefix..path..sep..subResName)) do
+                    childCollections[v] = true
+                end
+                for k, v in ipairs(colMembers) do
+                    if childCollections[v] then
+                        colMembers[k] = v.."/"
+                    end
+                end
+            else
+                for k, v in ipairs(colMembers) do
+                    if redis.call('exists',colPath..sep..v) == 1 then
+                        colMembers[k] = v.."/"
+                    end
                 end
             end
-            table.insert(result, {subResName, cjson.encode(colMembers)})
+            -- listed like a collection GET: the collections ordered by name, followed by the resources
+            local collections, resources = {}, {}
+            for _, v in ipairs(colMembers) do
+                if isCollection(v) then
+                    table.insert(collections, v)
+                else
+                    table.insert(resources, v)
+                end
+            end
+            table.sort(collections)
+            for _, v in ipairs(resources) do
+                table.insert(collections, v)
+            end
+            local listing = "[]"
+            if #collections > 0 then
+                listing = cjson.encode(collections)
+            end
+            -- the trailing slash marks the collections for the caller
+            table.insert(members, {subResName.."/", listing})
+            table.insert(digest, subResName.."/="..listing)
         end
     else
         local resPath = resourcesPrefix..path..sep..subResName
         if redis.call('exists',resPath) == 1 then
-            if isCompressed(resPath) then
-                return "compressionNotSupported"
+            local fields = redis.call('hmget',resPath,'etag','compressed','chunkKey')
+            if fields[3] then
+                return "chunkedNotSupported"
             end
             local score = tonumber(redis.call('zscore',expirableSet,resPath))
             if score == nil or score > timestamp then
-                local res = (redis.call('hget',resPath,'resource'))
-                if(res) then
-                    table.insert(result, {subResName, res})
+                -- the names can not contain semicolons, the id of the codec marks the compressed resources for the caller
+                if fields[2] then
+                    table.insert(members, {subResName..";"..fields[2], nil, resPath})
+                else
+                    table.insert(members, {subResName, nil, resPath})
                 end
+                table.insert(digest, subResName.."="..(fields[1] or ""))
             end
         end
     end
 end
 
-local resEncoded = cjson.encode(result)
+if #members == 0 then
+    return "notFound"
+end
+local expandEtag = redis.sha1hex(table.concat(digest, "\n"))
+if expandEtag == etag then
+    return "notModified"
+end
 
-if (resEncoded=='{}') then
+-- the etag is followed by the names and the values, the caller splices the stored values into the expanded json
+-- without parsing them
+local result = {expandEtag}
+for _, member in ipairs(members) do
+    local value = member[2]
+    if member[3] then
+        value = redis.call('hget',member[3],'resource')
+    end
+    if value then
+        table.insert(result, member[1])
+        table.insert(result, value)
+    end
+end
+if #result == 1 then
     return "notFound"
 end
 
-return resEncoded
\ No newline at end of file
+return result
\ No newline at end of file
@@ -0,0 +1,111 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.Random;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+@RunWith(VertxUnitRunner.class)
+public class AutoCompressionIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.autoCompressionThreshold(500);
+    }
+
+    @Test
+    public void testLargeJsonIsCompressed(TestContext context) {
+        Async async = context.async();
+        String content = compressible();
+        with().body(content).put("auto/res").then().assertThat().statusCode(200);
+
+        context.assertEquals("1", jedis.hget("rest-storage:resources:auto:res", "compressed"));
+        context.assertEquals(content, get("auto/res").then().assertThat().statusCode(200).extract().asString());
+        async.complete();
+    }
+
+    @Test
+    public void testSmallOrOtherResourcesAreNotCompressed(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("auto/small").then().assertThat().statusCode(200);
+        with().body(compressible()).put("auto/res.png").then().assertThat().statusCode(200);
+
+        context.assertNull(jedis.hget("rest-storage:resources:auto:small", "compressed"));
+        context.assertNull(jedis.hget("rest-storage:resources:auto:res.png", "compressed"));
+        async.complete();
+    }
+
+    @Test
+    public void testIncompressibleJsonIsStoredUncompressed(TestContext context) {
+        Async async = context.async();
+        byte[] random = new byte[1000];
+        new Random(42).nextBytes(random);
+        String content = new JsonObject().put("random", random).encode();
+        with().body(content).put("auto/res").then().assertThat().statusCode(200);
+
+        context.assertNull(jedis.hget("rest-storage:resources:auto:res", "compressed"));
+        context.assertEquals(content, get("auto/res").then().assertThat().statusCode(200).extract().asString());
+        async.complete();
+    }
+
+    @Test
+    public void testMergeCompressedResource(TestContext context) {
+        Async async = context.async();
+        with().body(compressible()).put("auto/res").then().assertThat().statusCode(200);
+        context.assertEquals("1", jedis.hget("rest-storage:resources:auto:res", "compressed"));
+
+        given().param("merge", "true").body("{ \"foo\": \"bar\", \"items\": null }").put("auto/res")
+                .then().assertThat().statusCode(200);
+        get("auto/res").then().assertThat().statusCode(200)
+                .body("foo", equalTo("bar"))
+                .body("name", equalTo("compressible"))
+                .body("items", nullValue());
+        // the merged resource is small enough to be stored uncompressed
+        context.assertNull(jedis.hget("rest-storage:resources:auto:res", "compressed"));
+
+        given().param("merge", "true").body("{ \"items\": " + items() + " }").put("auto/res")
+                .then().assertThat().statusCode(200);
+        get("auto/res").then().assertThat().statusCode(200)
+                .body("foo", equalTo("bar"))
+                .body("items[99].index", equalTo(99));
+        async.complete();
+    }
+
+    @Test
+    public void testBatchIsCompressed(TestContext context) {
+        Async async = context.async();
+        JsonArray resources = new JsonArray()
+                .add(new JsonObject().put("name", "large").put("content", new JsonObject(compressible())))
+                .add(new JsonObject().put("name", "small").put("content", new JsonObject().put("foo", "bar")));
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("auto/batch/")
+                .then().assertThat().statusCode(200);
+
+        context.assertEquals("1", jedis.hget("rest-storage:resources:auto:batch:large", "compressed"));
+        context.assertNull(jedis.hget("rest-storage:resources:auto:batch:small", "compressed"));
+        get("auto/batch/large").then().assertThat().statusCode(200).body("items[99].index", equalTo(99));
+        async.complete();
+    }
+
+    private String compressible() {
+        return "{\"name\":\"compressible\",\"items\":" + items() + "}";
+    }
+
+    private String items() {
+        JsonArray items = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            items.add(new JsonObject().put("index", i).put("description", "an item of the list"));
+        }
+        return items.encode();
+    }
+}
@@ -0,0 +1,59 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.Arrays;
+
+/**
+ * Tests for the {@link AutoCompressionPolicy} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class AutoCompressionPolicyTest {
+
+    @Test
+    public void testDisabledByDefault(TestContext context) {
+        AutoCompressionPolicy policy = new AutoCompressionPolicy(new ModuleConfiguration());
+        context.assertFalse(policy.appliesTo("/server/tests/res", Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void testSizeAndMimeType(TestContext context) {
+        AutoCompressionPolicy policy = new AutoCompressionPolicy(new ModuleConfiguration()
+                .autoCompressionThreshold(1000)
+                .autoCompressionMimeTypes(Arrays.asList("application/json", "text/*")));
+
+        context.assertTrue(policy.appliesTo("/server/tests/res", 1000));
+        context.assertFalse(policy.appliesTo("/server/tests/res", 999));
+        context.assertTrue(policy.appliesTo("/server/tests/res.json", 1000));
+        context.assertTrue(policy.appliesTo("/server/tests/res.txt", 1000));
+        context.assertTrue(policy.appliesTo("/server/tests/res.HTML", 1000));
+        context.assertFalse(policy.appliesTo("/server/tests/res.png", 1000));
+    }
+
+    @Test
+    public void testRatioAndStatistics(TestContext context) {
+        AutoCompressionPolicy policy = new AutoCompressionPolicy(new ModuleConfiguration()
+                .autoCompressionThreshold(1000)
+                .autoCompressionMinRatio(2.0)
+                .autoCompressionPrefixDepth(2));
+
+        context.assertTrue(policy.keepCompressed("/server/tests/sub/res1", 1000, 200));
+        context.assertTrue(policy.keepCompressed("/server/tests/res2", 2000, 1000));
+        context.assertFalse(policy.keepCompressed("/server/tests/res3", 1000, 600));
+        context.assertTrue(policy.keepCompressed("/res4", 1000, 100));
+
+        JsonObject tests = policy.getStatistics().getJsonObject("prefixes").getJsonObject("/server/tests");
+        context.assertEquals(2L, tests.getLong("compressed"));
+        context.assertEquals(1L, tests.getLong("rejected"));
+        context.assertEquals(3000L, tests.getLong("bytes"));
+        context.assertEquals(1200L, tests.getLong("compressedBytes"));
+        context.assertEquals(1800L, tests.getLong("bytesSaved"));
+        context.assertEquals(2.5, tests.getDouble("ratio"));
+        context.assertEquals(1L, policy.getStatistics().getJsonObject("prefixes").getJsonObject("/").getLong("compressed"));
+    }
+}
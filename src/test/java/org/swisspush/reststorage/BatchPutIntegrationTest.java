@@ -0,0 +1,131 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+
+@RunWith(VertxUnitRunner.class)
+public class BatchPutIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Test
+    public void testPutBatch(TestContext context) {
+        Async async = context.async();
+        JsonArray resources = new JsonArray()
+                .add(document("res1", new JsonObject().put("foo", "bar1"), new JsonObject()))
+                .add(document("res2", new JsonObject().put("foo", "bar2"), new JsonObject().put("x-expire-after", 60)))
+                .add(document("res3", new JsonObject().put("foo", "bar3"), new JsonObject().put("x-stored-compressed", "true")))
+                .add(document("res.txt", "plain text", new JsonObject()));
+
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("batch/docs/")
+                .then().assertThat().statusCode(200)
+                .body("resources.name", equalTo(Arrays.asList("res1", "res2", "res3", "res.txt")))
+                .body("resources.status", equalTo(Arrays.asList(200, 200, 200, 200)));
+
+        get("batch/docs/res1").then().assertThat().statusCode(200).body("foo", equalTo("bar1"));
+        get("batch/docs/res2").then().assertThat().statusCode(200).body("foo", equalTo("bar2"));
+        get("batch/docs/res3").then().assertThat().statusCode(200).body("foo", equalTo("bar3"));
+        get("batch/docs/res.txt").then().assertThat().statusCode(200).body(equalTo("plain text"));
+        get("batch/docs/").then().assertThat().statusCode(200)
+                .body("docs", equalTo(Arrays.asList("res.txt", "res1", "res2", "res3")));
+        context.assertEquals(1L, jedis.zcard("rest-storage:expirable"));
+        context.assertTrue(jedis.zscore("rest-storage:expirable", "rest-storage:resources:batch:docs:res2") > System.currentTimeMillis());
+        async.complete();
+    }
+
+    @Test
+    public void testPutBatchStatusPerDocument(TestContext context) {
+        Async async = context.async();
+        given().header("x-lock", "owner1").header("x-lock-mode", "reject").body("{ \"foo\": \"locked\" }")
+                .put("batch/docs/locked").then().assertThat().statusCode(200);
+        given().header("if-none-match", "etag1").body("{ \"foo\": \"bar\" }")
+                .put("batch/docs/unchanged").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar\" }").put("batch/docs/collection/res").then().assertThat().statusCode(200);
+
+        JsonArray resources = new JsonArray()
+                .add(document("locked", new JsonObject().put("foo", "new"), new JsonObject()))
+                .add(document("unchanged", new JsonObject().put("foo", "new"), new JsonObject().put("if-none-match", "etag1")))
+                .add(document("collection", new JsonObject().put("foo", "new"), new JsonObject()))
+                .add(document("new", new JsonObject().put("foo", "new"), new JsonObject()));
+
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("batch/docs")
+                .then().assertThat().statusCode(200)
+                .body("resources.status", equalTo(Arrays.asList(409, 304, 405, 200)));
+
+        get("batch/docs/locked").then().assertThat().body("foo", equalTo("locked"));
+        get("batch/docs/unchanged").then().assertThat().body("foo", equalTo("bar"));
+        get("batch/docs/new").then().assertThat().body("foo", equalTo("new"));
+        async.complete();
+    }
+
+    @Test
+    public void testPutBatchWithLock(TestContext context) {
+        Async async = context.async();
+        JsonArray resources = new JsonArray().add(document("res", new JsonObject().put("foo", "bar"),
+                new JsonObject().put("x-lock", "owner1").put("x-lock-mode", "reject").put("x-lock-expire-after", 60)));
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("batch/docs").then().assertThat().statusCode(200);
+
+        given().header("x-lock", "owner2").body("{ \"foo\": \"other\" }").put("batch/docs/res")
+                .then().assertThat().statusCode(409);
+        context.assertTrue(jedis.pttl("rest-storage:locks:batch:docs:res") > 0);
+        async.complete();
+    }
+
+    @Test
+    public void testPutBatchInvalid(TestContext context) {
+        Async async = context.async();
+        given().queryParam("batch", "true").body("{ \"foo\": [] }").when().post("batch/docs")
+                .then().assertThat().statusCode(400).body(containsString("'resources'"));
+        given().queryParam("batch", "true").body("no json").when().post("batch/docs")
+                .then().assertThat().statusCode(400);
+
+        JsonArray resources = new JsonArray()
+                .add(document("res1", new JsonObject(), new JsonObject()))
+                .add(document("res2", new JsonObject(), new JsonObject().put("x-expire-after", "soon")));
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("batch/docs")
+                .then().assertThat().statusCode(400).body(containsString("x-expire-after"));
+        resources = new JsonArray().add(document("sub/res", new JsonObject(), new JsonObject()));
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("batch/docs")
+                .then().assertThat().statusCode(400);
+        get("batch/docs/res1").then().assertThat().statusCode(404);
+
+        // a POST without batch parameter is still a storageExpand
+        with().body("{}").post("batch/docs").then().assertThat().statusCode(405);
+        async.complete();
+    }
+
+    @Test
+    public void testPutBatchLargeAmount(TestContext context) {
+        Async async = context.async();
+        JsonArray resources = new JsonArray();
+        for (int i = 0; i < 500; i++) {
+            resources.add(document("res" + i, new JsonObject().put("index", i), new JsonObject()));
+        }
+        given().queryParam("batch", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("batch/a/b/c/docs").then().assertThat().statusCode(200);
+        get("batch/a/b/c/docs/res499").then().assertThat().statusCode(200).body("index", equalTo(499));
+        given().param("limit", 1000).when().get("batch/a/b/c/docs/").then().assertThat()
+                .body("docs.size()", equalTo(500));
+        get("batch/a/").then().assertThat().body("a.size()", greaterThan(0));
+        async.complete();
+    }
+
+    private JsonObject document(String name, Object content, JsonObject headers) {
+        return new JsonObject().put("name", name).put("content", content).put("headers", headers);
+    }
+}
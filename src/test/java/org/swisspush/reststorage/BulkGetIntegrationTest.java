@@ -0,0 +1,163 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+@RunWith(VertxUnitRunner.class)
+public class BulkGetIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Test
+    public void testGetBulk(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("bulk/a/res1").then().assertThat().statusCode(200);
+        given().header("if-none-match", "etag2").body("{ \"foo\": \"bar2\" }").put("bulk/b/res2").then().assertThat().statusCode(200);
+        given().header("x-stored-compressed", "true").body("{ \"foo\": \"bar3\" }").put("bulk/c/d/res3").then().assertThat().statusCode(200);
+        with().body("plain \"text\"").put("bulk/a/res.txt").then().assertThat().statusCode(200);
+
+        JsonArray resources = new JsonArray()
+                .add(new JsonObject().put("path", "/bulk/a/res1"))
+                .add(new JsonObject().put("path", "/bulk/b/res2"))
+                .add(new JsonObject().put("path", "/bulk/c/d/res3"))
+                .add(new JsonObject().put("path", "/bulk/a/res.txt"))
+                .add(new JsonObject().put("path", "/bulk/a/"))
+                .add(new JsonObject().put("path", "/bulk/a/missing"));
+
+        given().queryParam("bulkGet", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("bulk")
+                .then().assertThat().statusCode(200)
+                .body("resources.path", equalTo(Arrays.asList("/bulk/a/res1", "/bulk/b/res2", "/bulk/c/d/res3",
+                        "/bulk/a/res.txt", "/bulk/a/", "/bulk/a/missing")))
+                .body("resources.status", equalTo(Arrays.asList(200, 200, 200, 200, 200, 404)))
+                .body("resources[0].content.foo", equalTo("bar1"))
+                .body("resources[1].content.foo", equalTo("bar2"))
+                .body("resources[1].etag", equalTo("etag2"))
+                .body("resources[2].content.foo", equalTo("bar3"))
+                .body("resources[3].content", equalTo("plain \"text\""))
+                .body("resources[4].content", equalTo(Arrays.asList("res.txt", "res1")))
+                .body("resources[5].content", nullValue());
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkInvalidJson(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": ").put("bulk/broken").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar\" }").put("bulk/valid").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar\" } {}").put("bulk/trailing").then().assertThat().statusCode(200);
+
+        JsonArray resources = new JsonArray()
+                .add(new JsonObject().put("path", "/bulk/broken"))
+                .add(new JsonObject().put("path", "/bulk/valid"))
+                .add(new JsonObject().put("path", "/bulk/trailing"));
+
+        given().queryParam("bulkGet", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("bulk")
+                .then().assertThat().statusCode(200)
+                .body("resources.status", equalTo(Arrays.asList(200, 200, 200)))
+                .body("resources[0].content", equalTo("{ \"foo\": "))
+                .body("resources[1].content.foo", equalTo("bar"))
+                .body("resources[2].content", equalTo("{ \"foo\": \"bar\" } {}"));
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkManyLargeDocuments(TestContext context) {
+        Async async = context.async();
+        StringBuilder value = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            value.append('x');
+        }
+        String body = new JsonObject().put("value", value.toString()).encode();
+        JsonArray resources = new JsonArray();
+        for (int i = 0; i < 100; i++) {
+            with().body(body).put("bulk/res" + i).then().assertThat().statusCode(200);
+            resources.add(new JsonObject().put("path", "/bulk/res" + i));
+        }
+
+        given().queryParam("bulkGet", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("bulk")
+                .then().assertThat().statusCode(200)
+                .body("resources.size()", equalTo(100))
+                .body("resources[99].path", equalTo("/bulk/res99"))
+                .body("resources[99].content.value", equalTo(value.toString()));
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkNotModified(TestContext context) {
+        Async async = context.async();
+        given().header("if-none-match", "etag1").body("{ \"foo\": \"bar1\" }").put("bulk/res1").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar2\" }").put("bulk/res2").then().assertThat().statusCode(200);
+
+        JsonArray resources = new JsonArray()
+                .add(new JsonObject().put("path", "/bulk/res1").put("etag", "etag1"))
+                .add(new JsonObject().put("path", "/bulk/res2").put("etag", "etag1"));
+
+        given().queryParam("bulkGet", "true").body(new JsonObject().put("resources", resources).encode())
+                .when().post("bulk")
+                .then().assertThat().statusCode(200)
+                .body("resources.status", equalTo(Arrays.asList(304, 200)))
+                .body("resources[0].content", nullValue())
+                .body("resources[1].content.foo", equalTo("bar2"));
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkEmpty(TestContext context) {
+        Async async = context.async();
+        given().queryParam("bulkGet", "true").body("{ \"resources\": [] }")
+                .when().post("bulk")
+                .then().assertThat().statusCode(200)
+                .body("resources.size()", equalTo(0));
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkInvalid(TestContext context) {
+        Async async = context.async();
+        given().queryParam("bulkGet", "true").body("{ \"paths\": [] }").when().post("bulk")
+                .then().assertThat().statusCode(400).body(containsString("'resources'"));
+        given().queryParam("bulkGet", "true").body("no json").when().post("bulk")
+                .then().assertThat().statusCode(400);
+        given().queryParam("bulkGet", "true").body("{ \"resources\": [ { \"path\": \"bulk/res1\" } ] }").when().post("bulk")
+                .then().assertThat().statusCode(400).body(containsString("bulk/res1"));
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkOverEventBus(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("bulk/res1").then().assertThat().statusCode(200);
+
+        JsonObject header = new JsonObject().put("method", "POST").put("uri", "/bulk?bulkGet=true").put("headers", new JsonArray());
+        String body = new JsonObject().put("resources", new JsonArray()
+                .add(new JsonObject().put("path", "/bulk/res1"))
+                .add(new JsonObject().put("path", "/bulk/res2"))).encode();
+        Buffer request = Buffer.buffer().appendInt(header.encode().length()).appendString(header.encode()).appendString(body);
+
+        vertx.eventBus().<Buffer>send("rest-storage", request, context.asyncAssertSuccess(reply -> {
+            Buffer response = reply.body();
+            int headerLength = response.getInt(0);
+            JsonObject responseHeader = new JsonObject(response.getString(4, headerLength + 4));
+            context.assertEquals(200, responseHeader.getInteger("statusCode"));
+            JsonArray results = new JsonObject(response.getString(headerLength + 4, response.length())).getJsonArray("resources");
+            context.assertEquals(2, results.size());
+            context.assertEquals("bar1", results.getJsonObject(0).getJsonObject("content").getString("foo"));
+            context.assertEquals(404, results.getJsonObject(1).getInteger("status"));
+            async.complete();
+        }));
+    }
+}
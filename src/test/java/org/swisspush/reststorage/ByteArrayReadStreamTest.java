@@ -0,0 +1,88 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests for the {@link ByteArrayReadStream} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class ByteArrayReadStreamTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testReadContent(TestContext context) {
+        Async async = context.async();
+        byte[] content = content(20000);
+        vertx.runOnContext(v -> {
+            Buffer received = Buffer.buffer();
+            ByteArrayReadStream stream = new ByteArrayReadStream(vertx, content);
+            stream.handler(received::appendBuffer);
+            stream.endHandler(nothing -> {
+                context.assertEquals(Buffer.buffer(content), received);
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testReadEmptyContent(TestContext context) {
+        Async async = context.async();
+        vertx.runOnContext(v -> {
+            ByteArrayReadStream stream = new ByteArrayReadStream(vertx, new byte[0]);
+            stream.handler(data -> context.fail("no data expected"));
+            stream.endHandler(nothing -> async.complete());
+        });
+    }
+
+    @Test
+    public void testPauseAndResume(TestContext context) {
+        Async async = context.async();
+        byte[] content = content(20000);
+        vertx.runOnContext(v -> {
+            Buffer received = Buffer.buffer();
+            boolean[] paused = new boolean[1];
+            ByteArrayReadStream stream = new ByteArrayReadStream(vertx, content);
+            stream.handler(data -> {
+                context.assertFalse(paused[0], "no data expected while paused");
+                received.appendBuffer(data);
+                paused[0] = true;
+                stream.pause();
+                vertx.setTimer(10, timer -> {
+                    paused[0] = false;
+                    stream.resume();
+                });
+            });
+            stream.endHandler(nothing -> {
+                context.assertEquals(Buffer.buffer(content), received);
+                async.complete();
+            });
+        });
+    }
+
+    private byte[] content(int size) {
+        byte[] content = new byte[size];
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+}
@@ -42,6 +42,15 @@ public class CleanupIntegrationTest extends RedisStorageIntegrationTestCase {
         async.complete();
     }
 
+    @Test
+    public void testCleanupAfterScriptsWereLost(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        generateResourcesAndWaitUntilExpired(10);
+        jedis.scriptFlush();
+        validateCleanupResults(10,0);
+        async.complete();
+    }
+
     private void generateResourcesAndWaitUntilExpired(int amountOfResources){
         for (int i = 1; i <= amountOfResources; i++) {
             given().
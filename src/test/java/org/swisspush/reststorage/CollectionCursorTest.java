@@ -0,0 +1,81 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests for the {@link CollectionCursor} class.
+ */
+@RunWith(VertxUnitRunner.class)
+public class CollectionCursorTest {
+
+    @Test
+    public void testPages(TestContext context) {
+        List<Resource> items = Arrays.asList(document("b"), collection("z"), document("a"), collection("c"));
+
+        CollectionResource first = CollectionCursor.page(items, "", 3);
+        context.assertEquals("[c/, z/, a]", names(first).toString());
+        context.assertNotNull(first.nextCursor);
+
+        CollectionResource second = CollectionCursor.page(items, first.nextCursor, 3);
+        context.assertEquals("[b]", names(second).toString());
+        context.assertNull(second.nextCursor);
+    }
+
+    @Test
+    public void testCursorOfRemovedMember(TestContext context) {
+        String cursor = CollectionCursor.encode(document("b"));
+
+        CollectionResource page = CollectionCursor.page(Arrays.asList(document("a"), document("c")), cursor, -1);
+        context.assertEquals("[c]", names(page).toString());
+    }
+
+    @Test
+    public void testUtf8Order(TestContext context) {
+        // U+FF61 is before U+1F600 in UTF-8, its UTF-16 chars are after the surrogates of U+1F600
+        String halfwidth = "\uFF61";
+        String emoji = "\uD83D\uDE00";
+        List<Resource> items = Arrays.asList(document(emoji), document(halfwidth), document("a"), document("ab"));
+
+        CollectionResource first = CollectionCursor.page(items, "", 3);
+        context.assertEquals(Arrays.asList("a", "ab", halfwidth), names(first));
+
+        CollectionResource second = CollectionCursor.page(items, first.nextCursor, 3);
+        context.assertEquals(Arrays.asList(emoji), names(second));
+    }
+
+    @Test
+    public void testInvalidCursor(TestContext context) {
+        context.assertTrue(CollectionCursor.isValid(null));
+        context.assertTrue(CollectionCursor.isValid(""));
+        context.assertTrue(CollectionCursor.isValid(CollectionCursor.encode(collection("a"))));
+        context.assertFalse(CollectionCursor.isValid("not a cursor"));
+        context.assertFalse(CollectionCursor.isValid("eA"));
+    }
+
+    private static Resource document(String name) {
+        Resource r = new DocumentResource();
+        r.name = name;
+        return r;
+    }
+
+    private static Resource collection(String name) {
+        Resource r = new CollectionResource();
+        r.name = name;
+        return r;
+    }
+
+    private static List<String> names(CollectionResource collection) {
+        List<String> names = new ArrayList<>();
+        for (Resource item : collection.items) {
+            names.add(item instanceof CollectionResource ? item.name + "/" : item.name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,97 @@
+package org.swisspush.reststorage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the duration of the collection listing of the get script with the child collection sets and with the
+ * previous listing, which checked the type of every member. Every tenth member of the collection is a collection.
+ *
+ * <p>Requires a redis on localhost:6379, which is flushed. Run with <code>mvn test-compile exec:java
+ * -Dexec.mainClass=org.swisspush.reststorage.CollectionListingBenchmark -Dexec.classpathScope=test</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CollectionListingBenchmark {
+
+    private static final String PATH = ":bench";
+    private static final String MAX_EXPIRE = "9999999999999";
+
+    @Param({"100", "10000", "50000"})
+    public int size;
+
+    private final ModuleConfiguration config = new ModuleConfiguration();
+    private Jedis jedis;
+    private String sha;
+
+    @Setup
+    public void setUp() throws IOException {
+        jedis = JedisFactory.createJedis();
+        jedis.flushAll();
+        Pipeline pipeline = jedis.pipelined();
+        for (int i = 0; i < size; i++) {
+            String member = "member" + i;
+            pipeline.zadd(config.getCollectionsPrefix() + PATH, Double.parseDouble(MAX_EXPIRE), member);
+            if (i % 10 == 0) {
+                pipeline.zadd(config.getCollectionsPrefix() + PATH + ":" + member, Double.parseDouble(MAX_EXPIRE), "res");
+                pipeline.sadd(config.getChildCollectionsPrefix() + PATH, member);
+            } else {
+                pipeline.hset(config.getResourcesPrefix() + PATH + ":" + member, "resource", "{}");
+            }
+        }
+        pipeline.sync();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream("get.lua"), StandardCharsets.UTF_8))) {
+            sha = jedis.scriptLoad(in.lines().filter(line -> !line.contains("redis.LOG_NOTICE,"))
+                    .collect(Collectors.joining("\n")));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        jedis.flushAll();
+        jedis.close();
+    }
+
+    @Benchmark
+    public int listCheckingTypes() {
+        return list("");
+    }
+
+    @Benchmark
+    public int listWithChildCollections() {
+        return list(config.getChildCollectionsPrefix());
+    }
+
+    private int list(String childCollectionsPrefix) {
+        List<String> arguments = Arrays.asList(config.getResourcesPrefix(), config.getCollectionsPrefix(),
+                config.getExpirablePrefix(), String.valueOf(System.currentTimeMillis()), MAX_EXPIRE, "", "", "",
+                childCollectionsPrefix);
+        return ((List<?>) jedis.evalsha(sha, Collections.singletonList(PATH), arguments)).size();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CollectionListingBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,109 @@
+package org.swisspush.reststorage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.swisspush.reststorage.util.CompressionCodec;
+import org.swisspush.reststorage.util.CompressionCodecs;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Compares the compression ratio and the speed of the {@link CompressionCodec}s on json documents, and the gzip
+ * decompression into a pre-sized array with the previous decompression into a growing stream.
+ *
+ * <p>Run with <code>mvn test-compile exec:java -Dexec.mainClass=org.swisspush.reststorage.CompressionCodecBenchmark
+ * -Dexec.classpathScope=test</code>. The compressed size of every codec and level is printed in the setup.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionCodecBenchmark {
+
+    @Param({"gzip", "deflate", "lz4", "zstd"})
+    public String codecName;
+
+    @Param({"-1", "9"})
+    public int level;
+
+    @Param({"4096", "262144"})
+    public int size;
+
+    private CompressionCodec codec;
+    private byte[] document;
+    private byte[] compressed;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = CompressionCodecs.forName(codecName, level);
+        document = jsonDocument(size);
+        compressed = codec.compress(document);
+        System.out.println();
+        System.out.println(codecName + " level " + level + ": " + document.length + " -> " + compressed.length + " bytes");
+    }
+
+    /**
+     * @return a json document of about the size, with repeating keys and varying values like the stored resources
+     */
+    private static byte[] jsonDocument(int size) {
+        Random random = new Random(42);
+        StringBuilder json = new StringBuilder("{\"items\": [");
+        for (int i = 0; json.length() < size; i++) {
+            json.append(i == 0 ? "" : ",")
+                    .append("{\"id\": ").append(i)
+                    .append(", \"name\": \"item-").append(Long.toHexString(random.nextLong()))
+                    .append("\", \"active\": ").append(random.nextBoolean())
+                    .append(", \"amount\": ").append(random.nextInt(100000) / 100.0)
+                    .append(", \"tags\": [\"tag").append(random.nextInt(20)).append("\", \"tag").append(random.nextInt(20))
+                    .append("\"]}");
+        }
+        return json.append("]}").toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        return codec.compress(document);
+    }
+
+    @Benchmark
+    public byte[] decompress() throws IOException {
+        return codec.decompress(compressed, Integer.MAX_VALUE);
+    }
+
+    /**
+     * The previous gzip decompression, which copied through a 1KB buffer into a growing stream.
+     */
+    @Benchmark
+    public byte[] decompressGrowingStream() throws IOException {
+        if (!CompressionCodecs.GZIP.equals(codecName)) {
+            return compressed;
+        }
+        byte[] buffer = new byte[1024];
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (GZIPInputStream gzipInputStream = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+            int read;
+            while ((read = gzipInputStream.read(buffer)) > 0) {
+                baos.write(buffer, 0, read);
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(CompressionCodecBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,78 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.swisspush.reststorage.util.HttpRequestHeader.COMPRESS_HEADER;
+import static org.swisspush.reststorage.util.HttpRequestHeader.IF_NONE_MATCH_HEADER;
+
+@RunWith(VertxUnitRunner.class)
+public class CompressionCodecIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.compressionCodec("zstd");
+        modConfig.compressionLevel(5);
+    }
+
+    @Test
+    public void testPutGetWithConfiguredCodec(TestContext context) {
+        Async async = context.async();
+        given().header(COMPRESS_HEADER.getName(), "true").body("{ \"foo\": \"bar\" }").put("res")
+                .then().assertThat().statusCode(200);
+
+        context.assertEquals("zstd", jedis.hget("rest-storage:resources:res", "compressed"));
+        when().get("res").then().assertThat().statusCode(200).body("foo", equalTo("bar"));
+        async.complete();
+    }
+
+    @Test
+    public void testReadAndMigrateGzipCompressedResource(TestContext context) throws IOException {
+        Async async = context.async();
+        given().header(IF_NONE_MATCH_HEADER.getName(), "etag1").body("{ \"foo\": \"plain\" }").put("res")
+                .then().assertThat().statusCode(200);
+
+        // a resource compressed before the codecs were introduced
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream os = new GZIPOutputStream(compressed)) {
+            os.write("{ \"foo\": \"gzip\" }".getBytes(StandardCharsets.UTF_8));
+        }
+        jedis.hset("rest-storage:resources:res", "resource", new String(compressed.toByteArray(), StandardCharsets.ISO_8859_1));
+        jedis.hset("rest-storage:resources:res", "compressed", "1");
+
+        when().get("res").then().assertThat().statusCode(200).body("foo", equalTo("gzip"));
+
+        // the same etag is stored again with the configured codec
+        given().header(IF_NONE_MATCH_HEADER.getName(), "etag1").header(COMPRESS_HEADER.getName(), "true")
+                .body("{ \"foo\": \"zstd\" }").put("res")
+                .then().assertThat().statusCode(200);
+        context.assertEquals("zstd", jedis.hget("rest-storage:resources:res", "compressed"));
+        when().get("res").then().assertThat().statusCode(200).body("foo", equalTo("zstd"));
+        async.complete();
+    }
+
+    @Test
+    public void testStorageExpandWithConfiguredCodec(TestContext context) {
+        Async async = context.async();
+        given().header(COMPRESS_HEADER.getName(), "true").body("{ \"foo\": \"bar1\" }").put("col/res1")
+                .then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar2\" }").put("col/res2").then().assertThat().statusCode(200);
+
+        given().queryParam("storageExpand", "true").body("{ \"subResources\": [\"res1\", \"res2\"] }").post("col")
+                .then().assertThat().statusCode(200)
+                .body("res1.foo", equalTo("bar1"))
+                .body("res2.foo", equalTo("bar2"));
+        async.complete();
+    }
+}
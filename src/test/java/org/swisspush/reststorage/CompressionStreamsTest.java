@@ -0,0 +1,195 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.CompressionCodec;
+import org.swisspush.reststorage.util.CompressionCodecs;
+import org.swisspush.reststorage.util.WorkerPool;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests for the {@link DecompressingReadStream} and the {@link CompressingWriteStream} classes
+ */
+@RunWith(VertxUnitRunner.class)
+public class CompressionStreamsTest {
+
+    private final CompressionCodec codec = CompressionCodecs.forName(CompressionCodecs.GZIP, -1);
+    private Vertx vertx;
+    private WorkerPool pool;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        pool = new WorkerPool(vertx, WorkerPool.CODEC, 2, 100);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testReadContent(TestContext context) throws IOException {
+        Async async = context.async();
+        byte[] content = content(300000);
+        byte[] compressed = codec.compress(content);
+        vertx.runOnContext(v -> {
+            Buffer received = Buffer.buffer();
+            DecompressingReadStream stream = stream(context, compressed);
+            stream.handler(received::appendBuffer);
+            stream.endHandler(nothing -> {
+                context.assertEquals(Buffer.buffer(content), received);
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testPauseAndResume(TestContext context) throws IOException {
+        Async async = context.async();
+        byte[] content = content(300000);
+        byte[] compressed = codec.compress(content);
+        vertx.runOnContext(v -> {
+            Buffer received = Buffer.buffer();
+            boolean[] paused = new boolean[1];
+            DecompressingReadStream stream = stream(context, compressed);
+            stream.handler(data -> {
+                context.assertFalse(paused[0], "no data expected while paused");
+                received.appendBuffer(data);
+                paused[0] = true;
+                stream.pause();
+                vertx.setTimer(10, timer -> {
+                    paused[0] = false;
+                    stream.resume();
+                });
+            });
+            stream.endHandler(nothing -> {
+                context.assertEquals(Buffer.buffer(content), received);
+                async.complete();
+            });
+        });
+    }
+
+    @Test
+    public void testCorruptContent(TestContext context) throws IOException {
+        Async async = context.async();
+        byte[] compressed = codec.compress(content(300000));
+        // the header and the trailer are valid, the compressed data is not
+        Arrays.fill(compressed, 20, compressed.length - 20, (byte) 0x55);
+        vertx.runOnContext(v -> {
+            DecompressingReadStream stream;
+            try {
+                stream = new DecompressingReadStream(pool, codec.decompressor(compressed, Integer.MAX_VALUE));
+            } catch (IOException ex) {
+                context.fail(ex);
+                return;
+            }
+            stream.handler(data -> {
+                // the chunks before the corruption are delivered
+            });
+            stream.endHandler(nothing -> context.fail("the stream must not end"));
+            stream.exceptionHandler(exception -> async.complete());
+        });
+    }
+
+    @Test
+    public void testCompressWithBackpressure(TestContext context) {
+        Async async = context.async();
+        byte[] content = content(300000);
+        vertx.runOnContext(v -> {
+            CompressingWriteStream stream = new CompressingWriteStream(pool, codec.compressor());
+            stream.setWriteQueueMaxSize(20000);
+            write(context, stream, content, 0, () -> stream.end(compressed -> {
+                context.assertTrue(compressed.succeeded());
+                try {
+                    context.assertEquals(Buffer.buffer(content), Buffer.buffer(codec.decompress(compressed.result(), content.length)));
+                } catch (IOException ex) {
+                    context.fail(ex);
+                }
+                async.complete();
+            }));
+        });
+    }
+
+    @Test
+    public void testAbortClosesCompressor(TestContext context) {
+        Async async = context.async();
+        CompressionCodec.Compressor compressor = codec.compressor();
+        vertx.runOnContext(v -> {
+            CompressingWriteStream stream = new CompressingWriteStream(pool, new CompressionCodec.Compressor() {
+                @Override
+                public void update(byte[] data) throws IOException {
+                    compressor.update(data);
+                }
+
+                @Override
+                public byte[] finish() throws IOException {
+                    context.fail("an aborted stream must not be finished");
+                    return null;
+                }
+
+                @Override
+                public void close() {
+                    compressor.close();
+                    // called on the eventloop once the running compression is done
+                    vertx.runOnContext(nothing -> async.complete());
+                }
+            });
+            stream.write(Buffer.buffer(content(100000)));
+            stream.abort();
+            stream.abort();
+            stream.end(compressed -> context.fail("an aborted stream must not end"));
+        });
+    }
+
+    /**
+     * Writes the content in chunks like a pump, waiting for the drain while the write queue is full.
+     */
+    private void write(TestContext context, CompressingWriteStream stream, byte[] content, int position, Runnable ended) {
+        while (position < content.length) {
+            int end = Math.min(position + 8192, content.length);
+            stream.write(Buffer.buffer(Arrays.copyOfRange(content, position, end)));
+            position = end;
+            if (stream.writeQueueFull()) {
+                int next = position;
+                boolean[] drained = new boolean[1];
+                stream.drainHandler(nothing -> {
+                    context.assertFalse(drained[0], "a single drain expected");
+                    drained[0] = true;
+                    write(context, stream, content, next, ended);
+                });
+                return;
+            }
+        }
+        ended.run();
+    }
+
+    private DecompressingReadStream stream(TestContext context, byte[] compressed) {
+        try {
+            return new DecompressingReadStream(pool, codec.decompressor(compressed, Integer.MAX_VALUE));
+        } catch (IOException ex) {
+            context.fail(ex);
+            return null;
+        }
+    }
+
+    private byte[] content(int size) {
+        byte[] content = new byte[size];
+        // compressible, but not trivially
+        Random random = new Random(42);
+        for (int i = 0; i < size; i++) {
+            content[i] = (byte) ('a' + random.nextInt(8));
+        }
+        return content;
+    }
+}
@@ -0,0 +1,101 @@
+package org.swisspush.reststorage;
+
+import com.jayway.restassured.response.Response;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.jayway.restassured.RestAssured.delete;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.RestAssured.with;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+
+@RunWith(VertxUnitRunner.class)
+public class CursorIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Test
+    public void testPagesInCollectionsFirstOrder(TestContext context) {
+        Async async = context.async();
+        for (String name : Arrays.asList("res3", "res1", "res2", "res10")) {
+            with().body("{ \"foo\": \"bar\" }").put("resources/" + name);
+        }
+        with().body("{ \"foo\": \"bar\" }").put("resources/b/res");
+        with().body("{ \"foo\": \"bar\" }").put("resources/a/res");
+
+        context.assertEquals(Arrays.asList("a/", "b/", "res1", "res10", "res2", "res3"), listByPages("resources", 4));
+        context.assertEquals(Arrays.asList("a/", "b/", "res1", "res10", "res2", "res3"), listByPages("resources", 1));
+        async.complete();
+    }
+
+    @Test
+    public void testPageWithoutLimit(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("resources/res1");
+        with().body("{ \"foo\": \"bar\" }").put("resources/sub/res2");
+
+        given().param("cursor", "").when().get("resources/")
+                .then().assertThat()
+                .header("x-next-cursor", nullValue())
+                .body("resources", equalTo(Arrays.asList("sub/", "res1")));
+        async.complete();
+    }
+
+    @Test
+    public void testCursorKeepsItsPlace(TestContext context) {
+        Async async = context.async();
+        for (int i = 1; i <= 4; i++) {
+            with().body("{ \"foo\": \"bar\" }").put("resources/res" + i);
+        }
+        Response first = given().param("cursor", "").param("limit", 2).when().get("resources/");
+        context.assertEquals(Arrays.asList("res1", "res2"), first.jsonPath().getList("resources"));
+
+        // members removed and added in front of the cursor do not shift the next page
+        delete("resources/res1");
+        with().body("{ \"foo\": \"bar\" }").put("resources/res0");
+        given().param("cursor", first.header("x-next-cursor")).param("limit", 2).when().get("resources/")
+                .then().assertThat()
+                .header("x-next-cursor", nullValue())
+                .body("resources", equalTo(Arrays.asList("res3", "res4")));
+        async.complete();
+    }
+
+    @Test
+    public void testExpiredMembersAreSkipped(TestContext context) throws InterruptedException {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("resources/res1");
+        with().header("x-expire-after", "1").body("{ \"foo\": \"bar\" }").put("resources/res2");
+        with().body("{ \"foo\": \"bar\" }").put("resources/res3");
+        Thread.sleep(1100);
+
+        context.assertEquals(Arrays.asList("res1", "res3"), listByPages("resources", 1));
+        async.complete();
+    }
+
+    @Test
+    public void testInvalidCursor(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("resources/res1");
+
+        given().param("cursor", "not a cursor").when().get("resources/")
+                .then().assertThat().statusCode(400);
+        async.complete();
+    }
+
+    private List<String> listByPages(String collection, int limit) {
+        List<String> names = new ArrayList<>();
+        String cursor = "";
+        while (cursor != null) {
+            Response page = given().param("cursor", cursor).param("limit", limit).when().get(collection + "/");
+            names.addAll(page.jsonPath().getList(collection));
+            cursor = page.header("x-next-cursor");
+        }
+        return names;
+    }
+}
@@ -0,0 +1,113 @@
+package org.swisspush.reststorage;
+
+import com.jayway.restassured.response.Response;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.Arrays;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.get;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.RestAssured.with;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+@RunWith(VertxUnitRunner.class)
+public class DeleteJobIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    private final ModuleConfiguration config = new ModuleConfiguration();
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.deleteJobBulkSize(5);
+    }
+
+    @Test
+    public void testDeleteCollectionAsynchronously(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < 10; i++) {
+            with().body("{ \"foo\": \"bar\" }").put("tree/a/sub" + (i % 3) + "/res" + i);
+        }
+        with().body("{ \"foo\": \"bar\" }").put("tree/b/res");
+
+        Response response = given().param("recursive", "true").param("async", "true").when().delete("tree/a");
+        context.assertEquals(202, response.statusCode());
+        String location = response.header("Location");
+        context.assertTrue(location.startsWith("/_deletejobs/"));
+
+        // gone at once, whether the job completed or not
+        get("tree/a/sub1/res1").then().assertThat().statusCode(404);
+        get("tree/a/").then().assertThat().statusCode(404);
+        get("tree/").then().assertThat().body("tree", equalTo(Arrays.asList("b/")));
+
+        await().atMost(5, SECONDS).until(() -> get(location.substring(1)).jsonPath().getString("state"), equalTo("completed"));
+        get(location.substring(1)).then().assertThat()
+                .body("path", equalTo("/tree/a"))
+                .body("deletedResources", equalTo(10))
+                .body("deletedCollections", equalTo(4));
+        context.assertTrue(jedis.keys("*tree:a*").isEmpty());
+
+        with().body("{ \"foo\": \"bar\" }").put("tree/a/sub1/res1").then().assertThat().statusCode(200);
+        get("tree/b/res").then().assertThat().statusCode(200);
+        async.complete();
+    }
+
+    @Test
+    public void testDeleteResourceAsynchronously(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("tree/res");
+
+        given().param("async", "true").when().delete("tree/res").then().assertThat().statusCode(200);
+        get("tree/res").then().assertThat().statusCode(404);
+        await().atMost(5, SECONDS).until(() -> jedis.keys(config.getDeleteJobsPrefix() + "*").isEmpty());
+        async.complete();
+    }
+
+    @Test
+    public void testDeleteCollectionAsynchronouslyRequiresRecursive(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("tree/a/res");
+
+        given().param("async", "true").when().delete("tree/a").then().assertThat().statusCode(400);
+        get("tree/a/res").then().assertThat().statusCode(200);
+        get("_deletejobs/unknown").then().assertThat().statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testResumeInterruptedJob(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < 10; i++) {
+            with().body("{ \"foo\": \"bar\" }").put("tree/a/res" + i);
+        }
+        // the state of an instance stopped right after it detached the subtree
+        String prefix = config.getDeleteJobsPrefix();
+        jedis.hset(prefix + ":job1", "path", "/tree/a");
+        jedis.hset(prefix + ":job1", "hashTag", "");
+        jedis.hset(prefix + ":job1", "key", ":tree:a");
+        jedis.hset(prefix + ":job1", "state", "running");
+        jedis.hset(prefix + ":job1", "deletedResources", "0");
+        jedis.hset(prefix + ":job1", "deletedCollections", "0");
+        jedis.hset(prefix + ":job1", "created", "0");
+        jedis.sadd(prefix, "job1");
+        jedis.hset(prefix + ":subtrees", ":tree:a", "job1");
+        jedis.rpush(prefix + ":job1:collections", ":tree:a");
+        get("tree/a/res1").then().assertThat().statusCode(404);
+
+        RedisStorage storage = new RedisStorage(vertx, config, RedisClient.create(vertx, new RedisOptions()));
+        storage.loadScripts(context.asyncAssertSuccess());
+
+        await().atMost(5, SECONDS).until(() -> jedis.hget(prefix + ":job1", "state"), equalTo("completed"));
+        context.assertEquals("10", jedis.hget(prefix + ":job1", "deletedResources"));
+        context.assertFalse(jedis.sismember(prefix, "job1"));
+        context.assertTrue(jedis.keys("*tree:a*").isEmpty());
+        async.complete();
+    }
+}
@@ -0,0 +1,111 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+
+@RunWith(VertxUnitRunner.class)
+public class ExpandIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.expandMaxItems(50);
+        modConfig.expandMaxBytes(2000);
+    }
+
+    @Test
+    public void testExpandSubtree(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("config/res1").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar2\" }").put("config/sub/res2").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar3\" }").put("config/sub/deeper/res3").then().assertThat().statusCode(200);
+        with().body("plain text").put("config/res.txt").then().assertThat().statusCode(200);
+
+        given().param("expand", 1).when().get("config/").then().assertThat().statusCode(200)
+                .body("config.res1.foo", equalTo("bar1"))
+                .body("config.'res.txt'", equalTo("plain text"))
+                .body("config.sub", equalTo(Arrays.asList("deeper/", "res2")));
+        given().param("expand", 2).when().get("config").then().assertThat().statusCode(200)
+                .body("config.sub.res2.foo", equalTo("bar2"))
+                .body("config.sub.deeper", equalTo(Arrays.asList("res3")));
+        given().param("expand", 3).when().get("config").then().assertThat().statusCode(200)
+                .body("config.sub.deeper.res3.foo", equalTo("bar3"));
+        async.complete();
+    }
+
+    @Test
+    public void testExpandNonAsciiContent(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"caf\u00e9 \u20ac\" }".getBytes(StandardCharsets.UTF_8)).put("config/res1")
+                .then().assertThat().statusCode(200);
+        byte[] expanded = given().param("expand", 1).when().get("config").then().assertThat().statusCode(200)
+                .extract().asByteArray();
+        context.assertEquals("caf\u00e9 \u20ac", new JsonObject(new String(expanded, StandardCharsets.UTF_8))
+                .getJsonObject("config").getJsonObject("res1").getString("foo"));
+        async.complete();
+    }
+
+    @Test
+    public void testExpandEtag(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("config/res1").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar2\" }").put("config/sub/res2").then().assertThat().statusCode(200);
+        String etag = given().param("expand", 2).when().get("config").getHeader("Etag");
+
+        given().param("expand", 2).header("if-none-match", etag).when().get("config").then().assertThat()
+                .statusCode(304);
+        // another depth is another expansion
+        given().param("expand", 1).header("if-none-match", etag).when().get("config").then().assertThat()
+                .statusCode(200);
+
+        with().body("{ \"foo\": \"changed\" }").put("config/sub/res2").then().assertThat().statusCode(200);
+        given().param("expand", 2).header("if-none-match", etag).when().get("config").then().assertThat()
+                .statusCode(200)
+                .header("Etag", not(equalTo(etag)))
+                .body("config.sub.res2.foo", equalTo("changed"));
+        async.complete();
+    }
+
+    @Test
+    public void testExpandLimits(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < 60; i++) {
+            with().body("{}").put("many/res" + i).then().assertThat().statusCode(200);
+        }
+        given().param("expand", 1).when().get("many").then().assertThat().statusCode(400)
+                .body(containsString("50 members"));
+
+        for (int i = 0; i < 3; i++) {
+            with().body("{ \"content\": \"" + new String(new char[1000]).replace('\0', 'x') + "\" }")
+                    .put("large/res" + i).then().assertThat().statusCode(200);
+        }
+        given().param("expand", 1).when().get("large").then().assertThat().statusCode(400)
+                .body(containsString("2000 bytes"));
+        async.complete();
+    }
+
+    @Test
+    public void testExpandDocumentOrMissing(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("config/res1").then().assertThat().statusCode(200);
+
+        given().param("expand", 2).when().get("config/res1").then().assertThat().statusCode(200)
+                .body("foo", equalTo("bar1"));
+        given().param("expand", 2).when().get("config/missing").then().assertThat().statusCode(404);
+        given().param("expand", 0).when().get("config").then().assertThat().statusCode(400);
+        given().param("expand", "all").when().get("config").then().assertThat().statusCode(400);
+        async.complete();
+    }
+}
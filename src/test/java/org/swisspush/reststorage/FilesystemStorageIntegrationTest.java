@@ -7,9 +7,12 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
+
 import static com.jayway.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasItems;
+import static org.hamcrest.Matchers.nullValue;
 
 @RunWith(VertxUnitRunner.class)
 public class FilesystemStorageIntegrationTest extends FilesystemStorageTestCase {
@@ -26,6 +29,24 @@ public class FilesystemStorageIntegrationTest extends FilesystemStorageTestCase
         async.complete();
     }
 
+    @Test
+    public void testGetCollectionByCursor(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/sub/resources/";
+        with().body("<h1>nemo.html</h1>").put(path + "nemo.html");
+        with().body("<h1>index.html</h1>").put(path + "index.html");
+        with().body("<h1>index.html</h1>").put(path + "sub/index.html");
+        String cursor = given().param("cursor", "").param("limit", 2).when().get(path)
+                .then().assertThat().statusCode(200)
+                .body("resources", equalTo(Arrays.asList("sub/", "index.html")))
+                .extract().header("x-next-cursor");
+        given().param("cursor", cursor).param("limit", 2).when().get(path)
+                .then().assertThat().statusCode(200)
+                .header("x-next-cursor", nullValue())
+                .body("resources", equalTo(Arrays.asList("nemo.html")));
+        async.complete();
+    }
+
     @Test
     public void testDeleteCollectionWithRecursiveParameter(TestContext testContext) throws InterruptedException {
         Async async = testContext.async();
@@ -63,4 +84,59 @@ public class FilesystemStorageIntegrationTest extends FilesystemStorageTestCase
 
         async.complete();
     }
+
+    @Test
+    public void testPutBatch(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/batch/";
+        with().body("<h1>sub.html</h1>").put(path + "sub/sub.html");
+        given().queryParam("batch", "true")
+                .body("{\"resources\": [{\"name\": \"nemo.html\", \"content\": \"<h1>nemo.html</h1>\"}," +
+                        " {\"name\": \"sub\", \"content\": \"<h1>sub</h1>\"}," +
+                        " {\"name\": \"data.json\", \"content\": {\"foo\": \"bar\"}}]}")
+                .when().post(path)
+                .then().assertThat().statusCode(200)
+                .body("resources.status", equalTo(Arrays.asList(200, 405, 200)));
+        get(path + "nemo.html").then().assertThat().statusCode(200).body(equalTo("<h1>nemo.html</h1>"));
+        get(path + "data.json").then().assertThat().statusCode(200).body("foo", equalTo("bar"));
+        async.complete();
+    }
+
+    @Test
+    public void testExpand(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = TEST_FILES_PATH + "/collection/expand";
+        with().body("{\"foo\": \"bar\"}").put(path + "/data.json");
+        with().body("<h1>nemo.html</h1>").put(path + "/sub/nemo.html");
+        with().body("{\"foo\": \"deep\"}").put(path + "/sub/deeper/deep.json");
+
+        String etag = given().param("expand", 2).when().get(path).then().assertThat().statusCode(200)
+                .body("expand.'data.json'.foo", equalTo("bar"))
+                .body("expand.sub.'nemo.html'", equalTo("<h1>nemo.html</h1>"))
+                .body("expand.sub.deeper", equalTo(Arrays.asList("deep.json")))
+                .extract().header("Etag");
+        given().param("expand", 2).header("if-none-match", etag).when().get(path).then().assertThat().statusCode(304);
+        given().param("expand", 3).when().get(path).then().assertThat().statusCode(200)
+                .body("expand.sub.deeper.'deep.json'.foo", equalTo("deep"));
+        given().param("expand", 1).when().get(path + "/missing").then().assertThat().statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulk(TestContext testContext) throws InterruptedException {
+        Async async = testContext.async();
+        String path = "/" + TEST_FILES_PATH + "/collection/bulk/";
+        with().body("<h1>nemo.html</h1>").put(path + "nemo.html");
+        with().body("{\"foo\": \"bar\"}").put(path + "data.json");
+        given().queryParam("bulkGet", "true")
+                .body("{\"resources\": [{\"path\": \"" + path + "nemo.html\"}," +
+                        " {\"path\": \"" + path + "data.json\"}," +
+                        " {\"path\": \"" + path + "missing.json\"}]}")
+                .when().post(path)
+                .then().assertThat().statusCode(200)
+                .body("resources.status", equalTo(Arrays.asList(200, 200, 404)))
+                .body("resources[0].content", equalTo("<h1>nemo.html</h1>"))
+                .body("resources[1].content.foo", equalTo("bar"));
+        async.complete();
+    }
 }
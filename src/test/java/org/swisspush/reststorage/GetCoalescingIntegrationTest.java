@@ -0,0 +1,65 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.http.HttpClient;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import static com.jayway.restassured.RestAssured.get;
+import static com.jayway.restassured.RestAssured.with;
+
+/**
+ * Tests GET requests which are coalesced into a single call to redis
+ */
+@RunWith(VertxUnitRunner.class)
+public class GetCoalescingIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.redisGetBatchSize(4);
+        modConfig.redisGetBatchWindowMs(20);
+    }
+
+    @Test
+    public void testConcurrentGets(TestContext context) {
+        with().body("{ \"foo\": \"bar1\" }").put("coalescing/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("coalescing/res2");
+        with().body("{ \"foo\": \"bar3\" }").put("coalescing/sub/res3");
+        String etag = get("coalescing/res2").getHeader("Etag");
+
+        HttpClient client = vertx.createHttpClient();
+        Async async = context.async(5);
+        client.getNow(REST_STORAGE_PORT, "localhost", "/coalescing/res1", response -> {
+            context.assertEquals(200, response.statusCode());
+            response.bodyHandler(body -> {
+                context.assertEquals("{ \"foo\": \"bar1\" }", body.toString());
+                async.countDown();
+            });
+        });
+        client.get(REST_STORAGE_PORT, "localhost", "/coalescing/res2", response -> {
+            context.assertEquals(304, response.statusCode());
+            async.countDown();
+        }).putHeader("if-none-match", etag).end();
+        client.getNow(REST_STORAGE_PORT, "localhost", "/coalescing/", response -> {
+            context.assertEquals(200, response.statusCode());
+            response.bodyHandler(body -> {
+                context.assertEquals("{\"coalescing\":[\"sub/\",\"res1\",\"res2\"]}", body.toString());
+                async.countDown();
+            });
+        });
+        client.getNow(REST_STORAGE_PORT, "localhost", "/coalescing/notExisting", response -> {
+            context.assertEquals(404, response.statusCode());
+            async.countDown();
+        });
+        client.getNow(REST_STORAGE_PORT, "localhost", "/coalescing/sub/res3", response -> {
+            context.assertEquals(200, response.statusCode());
+            response.bodyHandler(body -> {
+                context.assertEquals("{ \"foo\": \"bar3\" }", body.toString());
+                async.countDown();
+            });
+        });
+    }
+}
@@ -0,0 +1,125 @@
+package org.swisspush.reststorage;
+
+import com.jayway.restassured.http.ContentType;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Tests for the hash tag key layout of the {@link RedisStorage}
+ */
+@RunWith(VertxUnitRunner.class)
+public class HashTagIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    private static final String HASH_TAGS_KEY = "rest-storage:hashtags";
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.redisHashTagDepth(2);
+    }
+
+    @Test
+    public void testKeysOfResourceShareHashTag(TestContext context) {
+        Async async = context.async();
+        with().header("x-expire-after", "100").body("{ \"foo\": \"bar\" }").put("tags/a/sub/res1")
+                .then().assertThat().statusCode(200);
+
+        context.assertTrue(jedis.exists("rest-storage:resources{tags/a}:tags:a:sub:res1"));
+        context.assertTrue(jedis.exists("rest-storage:collections{tags/a}:tags:a:sub"));
+        context.assertTrue(jedis.exists("rest-storage:collections{tags/a}"));
+        context.assertNotNull(jedis.zscore("rest-storage:expirable{tags/a}", "rest-storage:resources{tags/a}:tags:a:sub:res1"));
+        context.assertFalse(jedis.exists("rest-storage:expirable"));
+        context.assertTrue(jedis.sismember(HASH_TAGS_KEY, "{tags/a}"));
+
+        when().get("tags/a/sub/res1").then().assertThat().statusCode(200).body("foo", equalTo("bar"));
+        when().get("tags/a/sub/").then().assertThat().statusCode(200).body("sub", contains("res1"));
+        async.complete();
+    }
+
+    @Test
+    public void testListCollectionsAboveHashTagDepth(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("tags/b/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("tags/a/sub/res2");
+        with().body("{ \"foo\": \"bar3\" }").put("tags/a/res3");
+        with().body("{ \"foo\": \"bar4\" }").put("other/c/res4");
+
+        when().get("tags/").then().assertThat().statusCode(200).body("tags", contains("a/", "b/"));
+        when().get("tags/?offset=1&limit=1").then().assertThat().statusCode(200).body("tags", contains("b/"));
+        when().get("other/").then().assertThat().statusCode(200).body("other", contains("c/"));
+        when().get("notExisting/").then().assertThat().statusCode(404);
+        when().get("tags/a/").then().assertThat().statusCode(200).body("a", contains("sub/", "res3"));
+        async.complete();
+    }
+
+    @Test
+    public void testPutAboveHashTagDepthIsRejected(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("res1").then().assertThat()
+                .statusCode(500)
+                .body(containsString("at least 2 levels deep"));
+        when().get("res1").then().assertThat().statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testStorageExpandAboveHashTagDepthIsRejected(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("tags/a");
+        given().body("{ \"subResources\": [\"a\"] }").when().post("tags?storageExpand=true").then().assertThat()
+                .statusCode(409)
+                .body(containsString("hash tag depth"));
+        given().body("{ \"subResources\": [\"a\"] }").when().post("tags/a?storageExpand=true").then().assertThat()
+                .statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testDeleteAboveHashTagDepth(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("tags/a/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("tags/b/res2");
+        with().body("{ \"foo\": \"bar3\" }").put("other/c/res3");
+
+        delete("tags").then().assertThat().statusCode(400);
+        with().param("recursive", "true").delete("tags").then().assertThat().statusCode(200);
+
+        when().get("tags/a/res1").then().assertThat().statusCode(404);
+        when().get("tags/b/res2").then().assertThat().statusCode(404);
+        when().get("tags/").then().assertThat().statusCode(404);
+        when().get("other/c/res3").then().assertThat().statusCode(200);
+        with().param("recursive", "true").delete("tags").then().assertThat().statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testCleanupPrunesHashTags(TestContext context) {
+        Async async = context.async();
+        with().header("x-expire-after", "1").body("{ \"foo\": \"bar1\" }").put("tags/a/res1");
+        with().header("x-expire-after", "1").body("{ \"foo\": \"bar2\" }").put("tags/b/res2");
+        with().body("{ \"foo\": \"bar3\" }").put("tags/b/res3");
+        await().atMost(3, TimeUnit.SECONDS).until(() -> get("tags/b/res2").statusCode(), equalTo(404));
+
+        given().post("/server/_cleanup").then().assertThat()
+                .statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("cleanedResources", equalTo(2))
+                .body("expiredResourcesLeft", equalTo(0));
+
+        context.assertFalse(jedis.sismember(HASH_TAGS_KEY, "{tags/a}"));
+        context.assertTrue(jedis.sismember(HASH_TAGS_KEY, "{tags/b}"));
+        when().get("tags/").then().assertThat().statusCode(200).body("tags", contains("b/"));
+        async.complete();
+    }
+}
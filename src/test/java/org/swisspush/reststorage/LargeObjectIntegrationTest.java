@@ -0,0 +1,181 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+/**
+ * Tests for resources stored in chunks by the {@link RedisStorage}
+ */
+@RunWith(VertxUnitRunner.class)
+public class LargeObjectIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    private static final String RESOURCE_KEY = "rest-storage:resources:largeobjects:res1";
+    private static final String CHUNKS_PATTERN = "rest-storage:chunks:*";
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.largeObjectThreshold(1000);
+        modConfig.largeObjectChunkSize(256);
+        // chunks are spread over several connections
+        modConfig.redisReadConnections(2);
+        modConfig.redisWriteConnections(2);
+        modConfig.redisMaintenanceConnections(1);
+    }
+
+    @Test
+    public void testPutAndGetChunkedResource(TestContext context) {
+        Async async = context.async();
+        String content = largeContent(3000);
+        with().body(content).put("largeobjects/res1").then().assertThat().statusCode(200);
+
+        String chunkKey = jedis.hget(RESOURCE_KEY, "chunkKey");
+        context.assertNotNull(chunkKey);
+        context.assertFalse(jedis.hexists(RESOURCE_KEY, "resource"));
+        context.assertEquals(String.valueOf(content.length()), jedis.hget(RESOURCE_KEY, "length"));
+        int chunks = Integer.parseInt(jedis.hget(RESOURCE_KEY, "chunks"));
+        context.assertEquals(12, chunks);
+        for (int i = 0; i < chunks; i++) {
+            context.assertEquals(-1L, jedis.ttl(chunkKey + ":" + i), "chunks must not expire after the upload");
+        }
+
+        when().get("largeobjects/res1").then().assertThat()
+                .statusCode(200)
+                .header("Content-Length", equalTo(String.valueOf(content.length())))
+                .body(equalTo(content));
+        async.complete();
+    }
+
+    @Test
+    public void testSmallResourceIsNotChunked(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("largeobjects/res1").then().assertThat().statusCode(200);
+
+        context.assertTrue(jedis.hexists(RESOURCE_KEY, "resource"));
+        context.assertFalse(jedis.hexists(RESOURCE_KEY, "chunkKey"));
+        context.assertTrue(jedis.keys(CHUNKS_PATTERN).isEmpty());
+        when().get("largeobjects/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar\" }"));
+        async.complete();
+    }
+
+    @Test
+    public void testOverwriteChunkedResource(TestContext context) {
+        Async async = context.async();
+        with().body(largeContent(3000)).put("largeobjects/res1").then().assertThat().statusCode(200);
+        String content = largeContent(2000);
+        with().body(content).put("largeobjects/res1").then().assertThat().statusCode(200);
+
+        context.assertEquals(8, persistentChunks(), "only the chunks of the current content are kept");
+        context.assertEquals(20, jedis.keys(CHUNKS_PATTERN).size(), "chunks of the previous content expire after the grace period");
+        when().get("largeobjects/res1").then().assertThat().statusCode(200).body(equalTo(content));
+
+        with().body("{ \"foo\": \"bar\" }").put("largeobjects/res1").then().assertThat().statusCode(200);
+        context.assertEquals(0, persistentChunks());
+        context.assertFalse(jedis.hexists(RESOURCE_KEY, "chunkKey"));
+        when().get("largeobjects/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar\" }"));
+        async.complete();
+    }
+
+    @Test
+    public void testNotModifiedPutDiscardsChunks(TestContext context) {
+        Async async = context.async();
+        String content = largeContent(3000);
+        given().header("if-none-match", "etag1").body(content).put("largeobjects/res1").then().assertThat().statusCode(200);
+        given().header("if-none-match", "etag1").body(content).put("largeobjects/res1").then().assertThat().statusCode(304);
+
+        await().atMost(2, TimeUnit.SECONDS).until(() -> jedis.keys(CHUNKS_PATTERN).size(), equalTo(12));
+        async.complete();
+    }
+
+    @Test
+    public void testDeleteRemovesChunks(TestContext context) {
+        Async async = context.async();
+        with().body(largeContent(3000)).put("largeobjects/res1").then().assertThat().statusCode(200);
+        with().body(largeContent(3000)).put("largeobjects/sub/res2").then().assertThat().statusCode(200);
+        context.assertEquals(24, jedis.keys(CHUNKS_PATTERN).size());
+
+        when().delete("largeobjects/res1").then().assertThat().statusCode(200);
+        context.assertEquals(12, jedis.keys(CHUNKS_PATTERN).size());
+
+        when().delete("largeobjects?recursive=true").then().assertThat().statusCode(200);
+        context.assertTrue(jedis.keys(CHUNKS_PATTERN).isEmpty());
+        async.complete();
+    }
+
+    @Test
+    public void testCleanupRemovesChunks(TestContext context) {
+        Async async = context.async();
+        given().header("x-expire-after", "1").body(largeContent(3000)).put("largeobjects/res1").then().assertThat().statusCode(200);
+        await().atMost(3, TimeUnit.SECONDS).until(() -> get("largeobjects/res1").statusCode(), equalTo(404));
+
+        post("/server/_cleanup").then().assertThat().statusCode(200);
+        context.assertTrue(jedis.keys(CHUNKS_PATTERN).isEmpty());
+        context.assertFalse(jedis.exists(RESOURCE_KEY));
+        async.complete();
+    }
+
+    @Test
+    public void testMergeChunkedResourceIsRejected(TestContext context) {
+        Async async = context.async();
+        with().body(largeContent(3000)).put("largeobjects/res1").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar\" }").put("largeobjects/res1?merge=true").then().assertThat().statusCode(500);
+        context.assertEquals(12, jedis.keys(CHUNKS_PATTERN).size());
+        async.complete();
+    }
+
+    @Test
+    public void testOverwriteDuringRead(TestContext context) {
+        Async async = context.async();
+        String content = largeContent(3000);
+        with().body(content).put("largeobjects/res1").then().assertThat().statusCode(200);
+
+        ModuleConfiguration config = new ModuleConfiguration().largeObjectThreshold(1000).largeObjectChunkSize(256);
+        RedisStorage storage = new RedisStorage(vertx, config, RedisClient.create(vertx, new RedisOptions()));
+        storage.loadScripts(context.asyncAssertSuccess(loaded -> storage.get("/largeobjects/res1", null, 0, -1, resource -> {
+            @SuppressWarnings("unchecked")
+            ReadStream<Buffer> readStream = ((DocumentResource) resource).readStream;
+            Buffer read = Buffer.buffer();
+            readStream.exceptionHandler(context::fail);
+            readStream.endHandler(nothing -> {
+                context.assertEquals(content, read.toString());
+                async.complete();
+            });
+            readStream.handler(chunk -> {
+                read.appendBuffer(chunk);
+                if (read.length() == 256) {
+                    // the resource is replaced while the download is paused after its first chunk
+                    readStream.pause();
+                    vertx.executeBlocking(future -> {
+                        with().body(largeContent(2000)).put("largeobjects/res1").then().assertThat().statusCode(200);
+                        future.complete();
+                    }, replaced -> readStream.resume());
+                }
+            });
+        })));
+    }
+
+    private int persistentChunks() {
+        return (int) jedis.keys(CHUNKS_PATTERN).stream().filter(key -> jedis.ttl(key) == -1).count();
+    }
+
+    private String largeContent(int length) {
+        StringBuilder sb = new StringBuilder("{\"content\": \"");
+        while (sb.length() < length - 2) {
+            sb.append((char) ('a' + sb.length() % 26));
+        }
+        return sb.append("\"}").toString();
+    }
+}
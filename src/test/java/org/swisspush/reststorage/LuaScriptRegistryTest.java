@@ -0,0 +1,98 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.logging.LoggerFactory;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.LuaScriptRegistry.LuaScript;
+import redis.clients.jedis.Jedis;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests for the {@link LuaScriptRegistry} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class LuaScriptRegistryTest {
+
+    private Vertx vertx;
+    private Jedis jedis;
+    private LuaScriptRegistry registry;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+        jedis = JedisFactory.createJedis();
+        jedis.scriptFlush();
+        RedisClientPool pool = new RedisClientPool(RedisClient.create(vertx, new RedisOptions()));
+        registry = new LuaScriptRegistry(vertx, pool, LoggerFactory.getLogger(RedisStorage.class));
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        jedis.close();
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testLoadRegistersAllScripts(TestContext context) {
+        context.assertFalse(registry.isReady());
+        registry.load(context.asyncAssertSuccess(loaded -> {
+            context.assertTrue(registry.isReady());
+            for (LuaScript type : LuaScript.values()) {
+                context.assertTrue(jedis.scriptExists(registry.get(type).getSha()), type + " not loaded");
+            }
+        }));
+    }
+
+    @Test
+    public void testCommandsAreQueuedDuringLoad(TestContext context) {
+        Async async = context.async();
+        List<Integer> executions = new ArrayList<>();
+        // the registry is used from the event loop only, so the load cannot complete before the command is queued
+        vertx.runOnContext(v -> {
+            registry.load(context.asyncAssertSuccess(loaded -> {
+                context.assertEquals(1, executions.size());
+                async.complete();
+            }));
+            registry.execute(executions::add);
+            context.assertTrue(executions.isEmpty());
+        });
+    }
+
+    @Test
+    public void testReloadReplaysCommands(TestContext context) {
+        Async async = context.async();
+        registry.load(context.asyncAssertSuccess(loaded -> {
+            jedis.scriptFlush();
+            List<Integer> executions = new ArrayList<>();
+            context.assertTrue(registry.reload(executions::add, 1));
+            context.assertTrue(registry.reload(executions::add, 3));
+            context.assertFalse(registry.isReady());
+            registry.execute(executionCounter -> {
+                context.assertEquals(2, executions.size());
+                context.assertEquals(2, executions.get(0));
+                context.assertEquals(4, executions.get(1));
+                context.assertTrue(jedis.scriptExists(registry.get(LuaScript.GET).getSha()));
+                context.assertTrue(registry.isReady());
+                async.complete();
+            });
+        }));
+    }
+
+    @Test
+    public void testReplayIsLimited(TestContext context) {
+        List<Integer> executions = new ArrayList<>();
+        context.assertFalse(registry.reload(executions::add, 11));
+        context.assertTrue(executions.isEmpty());
+        context.assertFalse(registry.isReady());
+    }
+}
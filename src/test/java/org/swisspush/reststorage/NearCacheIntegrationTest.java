@@ -0,0 +1,117 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+
+/**
+ * Tests for the near-cache in front of the {@link RedisStorage}
+ */
+@RunWith(VertxUnitRunner.class)
+public class NearCacheIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    private static final String CHANNEL = "rest-storage:invalidations";
+    private static final String RESOURCE_KEY = "rest-storage:resources:nearcache:res1";
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.nearCacheEnabled(true);
+        modConfig.nearCacheInvalidationChannel(CHANNEL);
+    }
+
+    @Test
+    public void testCachedResourceIsServedFromMemory(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("nearcache/res1").then().assertThat().statusCode(200);
+        when().get("nearcache/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar\" }"));
+
+        // change the resource behind the back of the rest-storage without notification
+        jedis.hset(RESOURCE_KEY, "resource", "{ \"foo\": \"changed\" }");
+
+        when().get("nearcache/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar\" }"));
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkServesCachedResources(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("nearcache/res1").then().assertThat().statusCode(200);
+        with().body("{ \"foo\": \"bar2\" }").put("nearcache/res2").then().assertThat().statusCode(200);
+        when().get("nearcache/res1").then().assertThat().statusCode(200);
+
+        // change the resources behind the back of the rest-storage without notification
+        jedis.hset(RESOURCE_KEY, "resource", "{ \"foo\": \"changed\" }");
+        jedis.hset("rest-storage:resources:nearcache:res2", "resource", "{ \"foo\": \"changed2\" }");
+
+        given().queryParam("bulkGet", "true")
+                .body("{ \"resources\": [ { \"path\": \"/nearcache/res1\" }, { \"path\": \"/nearcache/res2\" } ] }")
+                .when().post("nearcache")
+                .then().assertThat().statusCode(200)
+                .body("resources[0].content.foo", equalTo("bar"))
+                .body("resources[1].content.foo", equalTo("changed2"));
+        // the missed resource is cached by the bulk
+        jedis.hset("rest-storage:resources:nearcache:res2", "resource", "{ \"foo\": \"changed3\" }");
+        when().get("nearcache/res2").then().assertThat().statusCode(200).body("foo", equalTo("changed2"));
+        async.complete();
+    }
+
+    @Test
+    public void testEtagOfCachedResource(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("nearcache/res1");
+        String etag = get("nearcache/res1").getHeader("Etag");
+
+        given().header("if-none-match", etag).when().get("nearcache/res1").then().assertThat().statusCode(304);
+        given().header("if-none-match", "other").when().get("nearcache/res1").then().assertThat()
+                .statusCode(200)
+                .header("Etag", equalTo(etag));
+        async.complete();
+    }
+
+    @Test
+    public void testPutInvalidatesCachedResource(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("nearcache/res1");
+        when().get("nearcache/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar\" }"));
+
+        with().body("{ \"foo\": \"bar2\" }").put("nearcache/res1");
+        when().get("nearcache/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar2\" }"));
+        async.complete();
+    }
+
+    @Test
+    public void testDeleteInvalidatesCachedSubtree(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("nearcache/res1");
+        when().get("nearcache/res1").then().assertThat().statusCode(200);
+
+        when().delete("nearcache?recursive=true").then().assertThat().statusCode(200);
+        when().get("nearcache/res1").then().assertThat().statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testPublishedInvalidationDropsCachedResource(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("nearcache/res1");
+        when().get("nearcache/res1").then().assertThat().statusCode(200).body(equalTo("{ \"foo\": \"bar\" }"));
+
+        // simulate a write of another rest-storage instance
+        jedis.hset(RESOURCE_KEY, "resource", "{ \"foo\": \"changed\" }");
+        jedis.publish(CHANNEL, "/nearcache/res1");
+
+        vertx.setTimer(200, timer -> {
+            vertx.executeBlocking(future -> {
+                when().get("nearcache/res1").then().assertThat().statusCode(200)
+                        .body(equalTo("{ \"foo\": \"changed\" }"));
+                future.complete();
+            }, context.asyncAssertSuccess(result -> async.complete()));
+        });
+    }
+}
@@ -0,0 +1,101 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.io.IOException;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link NearCacheStorage} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class NearCacheStorageTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    /**
+     * A read stream failing as soon as it is read.
+     */
+    private static class FailingReadStream implements ReadStream<Buffer> {
+
+        private Handler<Throwable> exceptionHandler;
+
+        @Override
+        public ReadStream<Buffer> exceptionHandler(Handler<Throwable> handler) {
+            exceptionHandler = handler;
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> handler(Handler<Buffer> handler) {
+            if (handler != null) {
+                exceptionHandler.handle(new IOException("connection lost"));
+            }
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> pause() {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> resume() {
+            return this;
+        }
+
+        @Override
+        public ReadStream<Buffer> endHandler(Handler<Void> endHandler) {
+            return this;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Test
+    public void testFailedLoadClosesTheDocument(TestContext context) {
+        Async closed = context.async();
+        Async answered = context.async();
+        Storage storage = mock(Storage.class);
+        doAnswer(invocation -> {
+            DocumentResource document = new DocumentResource();
+            document.length = 10;
+            document.readStream = new FailingReadStream();
+            document.closeHandler = nothing -> closed.complete();
+            ((Handler<Resource>) invocation.getArguments()[4]).handle(document);
+            return null;
+        }).when(storage).get(anyString(), any(), anyInt(), anyInt(), any(Handler.class));
+
+        NearCacheStorage nearCache = new NearCacheStorage(vertx, storage, new ModuleConfiguration());
+        nearCache.get("/res", null, 0, -1, resource -> {
+            context.assertTrue(resource.error);
+            context.assertEquals("connection lost", resource.errorMessage);
+            answered.complete();
+        });
+    }
+}
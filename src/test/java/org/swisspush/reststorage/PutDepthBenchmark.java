@@ -0,0 +1,97 @@
+package org.swisspush.reststorage;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.swisspush.reststorage.util.LockMode;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+import redis.clients.jedis.Jedis;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Compares the duration of the put script with the previous put script, which updated every ancestor collection
+ * of the resource, by the depth of the resource.
+ *
+ * <p>Requires a redis on localhost:6379, which is flushed. Run with <code>mvn test-compile exec:java
+ * -Dexec.mainClass=org.swisspush.reststorage.PutDepthBenchmark -Dexec.classpathScope=test</code>.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PutDepthBenchmark {
+
+    private static final String MAX_EXPIRE = "9999999999999";
+
+    @Param({"1", "4", "8", "12"})
+    public int depth;
+
+    @Param({"put-previous.lua", "put.lua"})
+    public String script;
+
+    private final ModuleConfiguration config = new ModuleConfiguration();
+    private Jedis jedis;
+    private String sha;
+    private String collection;
+    private long counter = 0;
+
+    @Setup
+    public void setUp() throws IOException {
+        jedis = JedisFactory.createJedis();
+        jedis.flushAll();
+        StringBuilder path = new StringBuilder(":bench");
+        for (int i = 1; i < depth; i++) {
+            path.append(":level").append(i);
+        }
+        collection = path.toString();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                getClass().getClassLoader().getResourceAsStream(script), StandardCharsets.UTF_8))) {
+            sha = jedis.scriptLoad(in.lines().filter(line -> !line.contains("redis.LOG_NOTICE,"))
+                    .collect(Collectors.joining("\n")));
+        }
+        put(collection + ":res");
+    }
+
+    @TearDown
+    public void tearDown() {
+        jedis.flushAll();
+        jedis.close();
+    }
+
+    @Benchmark
+    public String rewriteResource() {
+        return put(collection + ":res");
+    }
+
+    @Benchmark
+    public String putNewResource() {
+        return put(collection + ":res" + counter++);
+    }
+
+    private String put(String path) {
+        List<String> arguments = Arrays.asList(config.getResourcesPrefix(), config.getCollectionsPrefix(),
+                config.getExpirablePrefix(), "false", MAX_EXPIRE, MAX_EXPIRE, "{}", UUID.randomUUID().toString(),
+                config.getLockPrefix(), "", LockMode.SILENT.text(), "0", "0", "", "0", "",
+                config.getChildCollectionsPrefix(), config.getSortedCollectionsPrefix());
+        return (String) jedis.evalsha(sha, Collections.singletonList(path), arguments);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(PutDepthBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,84 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static com.jayway.restassured.RestAssured.delete;
+import static com.jayway.restassured.RestAssured.with;
+
+/**
+ * Tests for the {@link RedisChildCollectionsMigration} class. The data is written by a rest-storage maintaining the
+ * child collection sets, which are removed afterwards to get the data of a former rest-storage.
+ */
+@RunWith(VertxUnitRunner.class)
+public class RedisChildCollectionsMigrationTest extends RedisStorageIntegrationTestCase {
+
+    private final ModuleConfiguration config = new ModuleConfiguration();
+
+    @Test
+    public void testSetsMaintainedByPutAndDelete(TestContext context) {
+        with().body("{ \"foo\": \"bar1\" }").put("tags/a/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("tags/b/res2");
+
+        context.assertTrue(jedis.exists(RedisStorage.childCollectionsIndexedKey(config)));
+        context.assertEquals(new HashSet<>(Arrays.asList("tags")), jedis.smembers("rest-storage:childcollections"));
+        context.assertEquals(new HashSet<>(Arrays.asList("a", "b")), jedis.smembers("rest-storage:childcollections:tags"));
+        context.assertFalse(jedis.exists("rest-storage:childcollections:tags:a"));
+
+        delete("tags/a/res1");
+        context.assertEquals(new HashSet<>(Arrays.asList("b")), jedis.smembers("rest-storage:childcollections:tags"));
+
+        with().param("recursive", "true").delete("tags");
+        context.assertFalse(jedis.exists("rest-storage:childcollections:tags"));
+    }
+
+    @Test
+    public void testMigration(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("tags/a/sub/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("tags/b/res2");
+        with().body("{ \"foo\": \"bar3\" }").put("tags/res3");
+        for (String key : jedis.keys("rest-storage:childcollections*")) {
+            jedis.del(key);
+        }
+
+        RedisClient redisClient = RedisClient.create(vertx, new RedisOptions());
+        RedisStorage formerStorage = new RedisStorage(vertx, config, redisClient);
+        formerStorage.get("/tags", null, 0, -1, former -> {
+            context.assertEquals("[a/, b/, res3]", names(former).toString());
+
+            new RedisChildCollectionsMigration(redisClient, config).migrate(context.asyncAssertSuccess(result -> {
+                context.assertEquals(5L, result.getLong("indexedCollections"));
+                context.assertEquals(4L, result.getLong("childCollections"));
+                context.assertEquals(new HashSet<>(Arrays.asList("a", "b")), jedis.smembers("rest-storage:childcollections:tags"));
+                context.assertEquals(new HashSet<>(Arrays.asList("sub")), jedis.smembers("rest-storage:childcollections:tags:a"));
+                context.assertTrue(jedis.exists(RedisStorage.childCollectionsIndexedKey(config)));
+
+                RedisStorage storage = new RedisStorage(vertx, config, redisClient);
+                storage.loadScripts(context.asyncAssertSuccess(loaded -> storage.get("/tags", null, 0, -1, resource -> {
+                    context.assertEquals("[a/, b/, res3]", names(resource).toString());
+                    async.complete();
+                })));
+            }));
+        });
+    }
+
+    private static List<String> names(Resource resource) {
+        List<String> names = new ArrayList<>();
+        for (Resource item : ((CollectionResource) resource).items) {
+            names.add(item instanceof CollectionResource ? item.name + "/" : item.name);
+        }
+        return names;
+    }
+}
@@ -0,0 +1,60 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.given;
+import static com.jayway.restassured.RestAssured.when;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Tests for the {@link RedisCleanupScheduler} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class RedisCleanupSchedulerTest extends RedisStorageIntegrationTestCase {
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.backgroundCleanupEnabled(true).backgroundCleanupIntervalMs(100);
+    }
+
+    @Test
+    public void testExpiredResourcesAreRemovedInBackground(TestContext context) {
+        Async async = context.async();
+        for (int i = 1; i <= 300; i++) {
+            given().header("x-expire-after", "1").body("{ \"foo\": \"bar\" }").put("expiring/res" + i)
+                    .then().assertThat().statusCode(200);
+        }
+        given().body("{ \"foo\": \"bar\" }").put("keep/res").then().assertThat().statusCode(200);
+
+        await().atMost(5, TimeUnit.SECONDS).until(() -> jedis.zcard("rest-storage:expirable"), equalTo(0L));
+        context.assertFalse(jedis.exists("rest-storage:resources:expiring:res300"));
+        context.assertFalse(jedis.exists("rest-storage:collections:expiring"));
+        when().get("keep/res").then().assertThat().statusCode(200);
+
+        // the manual cleanup is still possible
+        given().post("/server/_cleanup").then().assertThat().statusCode(200);
+        async.complete();
+    }
+
+    @Test
+    public void testBulkSizeShrinksAboveBudget(TestContext context) {
+        context.assertEquals(100, RedisCleanupScheduler.nextBulkSize(200, 200, 40, 20));
+        context.assertEquals(RedisCleanupScheduler.MIN_BULK_SIZE, RedisCleanupScheduler.nextBulkSize(200, 200, 2000, 20));
+    }
+
+    @Test
+    public void testBulkSizeGrowsWithFullFastBulks(TestContext context) {
+        context.assertEquals(400, RedisCleanupScheduler.nextBulkSize(200, 200, 5, 20));
+        context.assertEquals(RedisCleanupScheduler.MAX_BULK_SIZE, RedisCleanupScheduler.nextBulkSize(4000, 4000, 5, 20));
+        // a bulk which was not full does not tell whether a larger bulk fits the budget
+        context.assertEquals(200, RedisCleanupScheduler.nextBulkSize(200, 50, 5, 20));
+    }
+}
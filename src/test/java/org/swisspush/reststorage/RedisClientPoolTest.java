@@ -0,0 +1,133 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.AsyncResult;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.RedisClientPool.Connection;
+import org.swisspush.reststorage.RedisClientPool.Lane;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.mockito.Mockito.mock;
+
+/**
+ * Tests for the {@link RedisClientPool} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class RedisClientPoolTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testSingleClientIsUsedForAllLanes(TestContext context) {
+        RedisClient client = mock(RedisClient.class);
+        RedisClientPool pool = new RedisClientPool(client);
+        for (Lane lane : Lane.values()) {
+            context.assertTrue(client == pool.client(lane));
+        }
+    }
+
+    @Test
+    public void testMaintenanceCommandsAreNotCountedAsReadLatency(TestContext context) throws InterruptedException {
+        RedisClientPool pool = new RedisClientPool(vertx, new RedisOptions(), 1, 0, 0);
+        context.assertTrue(pool.client(Lane.READ) == pool.client(Lane.MAINTENANCE));
+
+        Handler<AsyncResult<Object>> cleanup = pool.connection(Lane.MAINTENANCE).track(event -> {});
+        Thread.sleep(50);
+        cleanup.handle(null);
+
+        context.assertTrue(pool.getLatencyMs(Lane.MAINTENANCE) >= 40);
+        context.assertEquals(0.0, pool.getLatencyMs(Lane.READ));
+        context.assertEquals(0, pool.connection(Lane.READ).getInFlight());
+    }
+
+    @Test
+    public void testLatencyDecaysWhileIdle(TestContext context) throws InterruptedException {
+        Connection connection = new RedisClientPool(mock(RedisClient.class)).connection(Lane.READ);
+        Handler<AsyncResult<Object>> slow = connection.track(event -> {});
+        Thread.sleep(50);
+        slow.handle(null);
+
+        long now = System.currentTimeMillis();
+        double latencyMs = connection.latencyMs(now);
+        context.assertTrue(latencyMs >= 40);
+        double halved = connection.latencyMs(now + RedisClientPool.LATENCY_HALF_LIFE_MS);
+        context.assertTrue(halved <= latencyMs / 2 && halved > latencyMs / 2 * 0.9);
+        context.assertTrue(connection.latencyMs(now + 10 * RedisClientPool.LATENCY_HALF_LIFE_MS) < 1);
+    }
+
+    @Test
+    public void testLanesWithoutConnectionsShareReadConnections(TestContext context) {
+        RedisClientPool pool = new RedisClientPool(vertx, new RedisOptions(), 1, 0, 1);
+        context.assertTrue(pool.connection(Lane.READ) == pool.connection(Lane.WRITE));
+        context.assertFalse(pool.connection(Lane.READ) == pool.connection(Lane.MAINTENANCE));
+
+        JsonObject statistics = pool.getStatistics();
+        context.assertEquals(1, statistics.getJsonArray("read").size());
+        context.assertEquals(1, statistics.getJsonArray("write").size());
+        context.assertEquals("MAINTENANCE-0", statistics.getJsonArray("maintenance").getJsonObject(0).getString("name"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testReadConnectionRequired() {
+        new RedisClientPool(vertx, new RedisOptions(), 0, 1, 1);
+    }
+
+    @Test
+    public void testLeastOutstandingDispatch(TestContext context) {
+        RedisClientPool pool = new RedisClientPool(vertx, new RedisOptions(), 3, 0, 0);
+
+        // idle connections are used in turns
+        Set<Connection> used = new HashSet<>();
+        for (int i = 0; i < 3; i++) {
+            used.add(pool.connection(Lane.READ));
+        }
+        context.assertEquals(3, used.size());
+
+        Connection busy = pool.connection(Lane.READ);
+        Handler<AsyncResult<Object>> first = busy.track(event -> {});
+        Handler<AsyncResult<Object>> second = busy.track(event -> {});
+        Connection other = pool.connection(Lane.READ);
+        Handler<AsyncResult<Object>> third = other.track(event -> {});
+        context.assertFalse(busy == other);
+
+        // the remaining idle connection is the only one without outstanding commands
+        Connection idle = pool.connection(Lane.READ);
+        context.assertFalse(idle == busy);
+        context.assertFalse(idle == other);
+        idle.track(event -> {});
+
+        context.assertEquals(2, busy.getInFlight());
+        for (int i = 0; i < 5; i++) {
+            context.assertFalse(busy == pool.connection(Lane.READ));
+        }
+
+        first.handle(null);
+        second.handle(null);
+        third.handle(null);
+        context.assertEquals(0, busy.getInFlight());
+        context.assertEquals(2L, busy.getCommands());
+        context.assertEquals(0, other.getInFlight());
+        context.assertEquals(1, idle.getInFlight());
+    }
+}
@@ -0,0 +1,77 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jayway.restassured.RestAssured.with;
+
+/**
+ * Tests for the {@link RedisHashTagMigration} class. The data is written by a rest-storage without hash tags.
+ */
+@RunWith(VertxUnitRunner.class)
+public class RedisHashTagMigrationTest extends RedisStorageIntegrationTestCase {
+
+    private final ModuleConfiguration hashTagConfig = new ModuleConfiguration().redisHashTagDepth(2);
+
+    @Test
+    public void testMigration(TestContext context) {
+        Async async = context.async();
+        with().header("x-expire-after", "100").body("{ \"foo\": \"bar1\" }").put("tags/a/sub/res1");
+        with().header("x-lock", "owner").body("{ \"foo\": \"bar2\" }").put("tags/b/res2");
+        with().body("{ \"foo\": \"bar3\" }").put("other/c/res3");
+
+        RedisClient redisClient = RedisClient.create(vertx, new RedisOptions());
+        new RedisHashTagMigration(redisClient, hashTagConfig).migrate(context.asyncAssertSuccess(result -> {
+            context.assertEquals(3L, result.getLong("migratedResources"));
+
+            context.assertFalse(jedis.exists("rest-storage:resources:tags:a:sub:res1"));
+            context.assertTrue(jedis.exists("rest-storage:resources{tags/a}:tags:a:sub:res1"));
+            context.assertNotNull(jedis.zscore("rest-storage:expirable{tags/a}", "rest-storage:resources{tags/a}:tags:a:sub:res1"));
+            context.assertFalse(jedis.exists("rest-storage:expirable"));
+            context.assertTrue(jedis.exists("rest-storage:locks{tags/b}:tags:b:res2"));
+            context.assertFalse(jedis.exists("rest-storage:collections"));
+            context.assertFalse(jedis.exists("rest-storage:collections:tags"));
+            context.assertTrue(jedis.sismember("rest-storage:hashtags", "{other/c}"));
+
+            RedisStorage storage = new RedisStorage(vertx, hashTagConfig, redisClient);
+            storage.get("/tags", null, 0, -1, resource -> {
+                context.assertTrue(resource instanceof CollectionResource);
+                List<String> names = new ArrayList<>();
+                for (Resource item : ((CollectionResource) resource).items) {
+                    names.add(item.name);
+                }
+                context.assertEquals("[a, b]", names.toString());
+                storage.get("/tags/a/sub/res1", null, 0, -1, document -> {
+                    context.assertTrue(document instanceof DocumentResource);
+                    context.assertTrue(document.exists);
+                    async.complete();
+                });
+            });
+        }));
+    }
+
+    @Test
+    public void testResourcesAboveHashTagDepthPreventMigration(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar1\" }").put("tags/a/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("res2");
+
+        RedisClient redisClient = RedisClient.create(vertx, new RedisOptions());
+        new RedisHashTagMigration(redisClient, hashTagConfig).migrate(context.asyncAssertSuccess(result -> {
+            context.assertEquals(0L, result.getLong("migratedResources"));
+            context.assertEquals(1L, result.getLong("resourcesAboveHashTagDepth"));
+            context.assertEquals("rest-storage:resources:res2", result.getJsonArray("examples").getString(0));
+            context.assertTrue(jedis.exists("rest-storage:resources:tags:a:res1"));
+            async.complete();
+        }));
+    }
+}
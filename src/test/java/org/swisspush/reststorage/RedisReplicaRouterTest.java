@@ -0,0 +1,146 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import io.vertx.redis.RedisClient;
+import io.vertx.redis.RedisOptions;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration.ReplicaRouting;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Tests for the {@link RedisReplicaRouter} class. The local redis acts as primary and, where needed, as replica.
+ */
+@RunWith(VertxUnitRunner.class)
+public class RedisReplicaRouterTest {
+
+    private static final List<String> NO_KEYS = Collections.emptyList();
+
+    private Vertx vertx;
+    private RedisClientPool primary;
+    private String script;
+    private String sha;
+
+    @Before
+    public void setUp(TestContext context) {
+        vertx = Vertx.vertx();
+        primary = new RedisClientPool(RedisClient.create(vertx, new RedisOptions()));
+        script = "return {'" + UUID.randomUUID() + "'}";
+        sha = DigestUtils.sha1Hex(script);
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    private void loadScriptIntoPrimary(TestContext context, Runnable next) {
+        primary.client(RedisClientPool.Lane.MAINTENANCE).scriptLoad(script, context.asyncAssertSuccess(loaded -> next.run()));
+    }
+
+    @Test
+    public void testWithoutReplicasThePrimaryIsUsed(TestContext context) {
+        Async async = context.async();
+        RedisReplicaRouter router = new RedisReplicaRouter(vertx, primary);
+        loadScriptIntoPrimary(context, () -> router.evalsha(sha, script, NO_KEYS, NO_KEYS, event -> {
+            context.assertTrue(event.succeeded());
+            context.assertEquals(1L, primary.connection(RedisClientPool.Lane.READ).getCommands());
+            context.assertEquals(0, router.getStatistics().getJsonArray("replicas").size());
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testReadFromReplica(TestContext context) {
+        Async async = context.async();
+        RedisReplicaRouter router = new RedisReplicaRouter(vertx, primary, new RedisOptions(),
+                Collections.singletonList("localhost:6379"), ReplicaRouting.latency, 0, 0);
+        loadScriptIntoPrimary(context, () -> router.evalsha(sha, script, NO_KEYS, NO_KEYS, event -> {
+            context.assertTrue(event.succeeded());
+            JsonObject statistics = router.getStatistics();
+            JsonObject replica = statistics.getJsonArray("replicas").getJsonObject(0);
+            context.assertEquals("localhost:6379", replica.getString("endpoint"));
+            context.assertEquals(1L, replica.getLong("reads"));
+            context.assertEquals(0L, replica.getLong("failures"));
+            context.assertEquals(0L, statistics.getLong("fallbacks"));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testFallbackToPrimaryWhenReplicaIsDown(TestContext context) {
+        Async async = context.async();
+        RedisReplicaRouter router = new RedisReplicaRouter(vertx, primary, new RedisOptions(),
+                Collections.singletonList("localhost:6399"), ReplicaRouting.roundRobin, 0, 0);
+        loadScriptIntoPrimary(context, () -> router.evalsha(sha, script, NO_KEYS, NO_KEYS, event -> {
+            context.assertTrue(event.succeeded());
+            JsonObject statistics = router.getStatistics();
+            context.assertEquals(1L, statistics.getJsonArray("replicas").getJsonObject(0).getLong("failures"));
+            context.assertEquals(1L, statistics.getLong("fallbacks"));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testReadAfterWriteUsesPrimary(TestContext context) {
+        Async async = context.async();
+        RedisReplicaRouter router = new RedisReplicaRouter(vertx, primary, new RedisOptions(),
+                Collections.singletonList("localhost:6399"), ReplicaRouting.roundRobin, 0, 60000);
+        router.written();
+        loadScriptIntoPrimary(context, () -> router.evalsha(sha, script, NO_KEYS, NO_KEYS, event -> {
+            context.assertTrue(event.succeeded());
+            JsonObject statistics = router.getStatistics();
+            context.assertEquals(1L, statistics.getLong("readsAfterWrite"));
+            context.assertEquals(0L, statistics.getJsonArray("replicas").getJsonObject(0).getLong("reads"));
+            context.assertEquals(0L, statistics.getLong("fallbacks"));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testScriptIsLoadedIntoReplica(TestContext context) {
+        Async async = context.async();
+        RedisReplicaRouter router = new RedisReplicaRouter(vertx, primary, new RedisOptions(),
+                Collections.singletonList("localhost:6379"), ReplicaRouting.roundRobin, 0, 0);
+        // the replica does not know the script yet, the read falls back to the primary and the script is loaded
+        router.evalsha(sha, script, NO_KEYS, NO_KEYS, event -> {
+            context.assertEquals(1L, router.getStatistics().getLong("fallbacks"));
+            vertx.setTimer(100, timer -> router.evalsha(sha, script, NO_KEYS, NO_KEYS, event2 -> {
+                context.assertTrue(event2.succeeded());
+                JsonObject statistics = router.getStatistics();
+                context.assertEquals(1L, statistics.getLong("fallbacks"));
+                context.assertEquals(1L, statistics.getJsonArray("replicas").getJsonObject(0).getLong("failures"));
+                async.complete();
+            }));
+        });
+    }
+
+    @Test
+    public void testHedgedReadOnSlowReplica(TestContext context) {
+        Async async = context.async();
+        // a replica which accepts the connection but never replies
+        vertx.createNetServer().connectHandler(socket -> socket.handler(data -> {})).listen(6398, "localhost",
+                context.asyncAssertSuccess(server -> {
+                    RedisReplicaRouter router = new RedisReplicaRouter(vertx, primary, new RedisOptions(),
+                            Collections.singletonList("localhost:6398"), ReplicaRouting.roundRobin, 50, 0);
+                    loadScriptIntoPrimary(context, () -> router.evalsha(sha, script, NO_KEYS, NO_KEYS, event -> {
+                        context.assertTrue(event.succeeded());
+                        JsonObject statistics = router.getStatistics();
+                        context.assertEquals(1L, statistics.getLong("hedgedReads"));
+                        context.assertEquals(0L, statistics.getLong("fallbacks"));
+                        context.assertEquals(1, statistics.getJsonArray("replicas").getJsonObject(0).getInteger("inFlight"));
+                        async.complete();
+                    }));
+                }));
+    }
+}
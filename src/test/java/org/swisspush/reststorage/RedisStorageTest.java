@@ -1,8 +1,10 @@
 package org.swisspush.reststorage;
 
 import io.vertx.core.AsyncResult;
+import io.vertx.core.Future;
 import io.vertx.core.Handler;
 import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonArray;
 import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
@@ -10,10 +12,14 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import io.vertx.redis.RedisClient;
 import org.junit.Before;
 import org.junit.Test;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.junit.runner.RunWith;
 import org.mockito.Mockito;
+import org.swisspush.reststorage.util.LockMode;
 import org.swisspush.reststorage.util.ModuleConfiguration;
 
+import java.util.List;
+
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.mock;
@@ -272,6 +278,34 @@ public class RedisStorageTest {
         async.awaitSuccess();
     }
 
+    @Test
+    public void testFailedScriptsAreReportedToTheHandler(TestContext testContext) {
+        Async async = testContext.async(2);
+        when(redisClient.scriptLoad(any(String.class), any(Handler.class))).thenAnswer(invocation -> {
+            String script = (String) invocation.getArguments()[0];
+            ((Handler<AsyncResult<String>>) invocation.getArguments()[1]).handle(Future.succeededFuture(DigestUtils.sha1Hex(script)));
+            return null;
+        });
+        when(redisClient.evalsha(any(String.class), any(List.class), any(List.class), any(Handler.class))).thenAnswer(invocation -> {
+            List<String> keys = (List<String>) invocation.getArguments()[1];
+            // the scripts of a get are lost on every execution, the delete fails otherwise
+            String message = keys.get(0).contains("get") ? "NOSCRIPT No matching script" : "ERR Booom";
+            ((Handler<AsyncResult<JsonArray>>) invocation.getArguments()[3]).handle(Future.failedFuture(message));
+            return null;
+        });
+
+        storage.get("/server/tests/get", null, 0, -1, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertTrue(resource.errorMessage.startsWith("NOSCRIPT"));
+            async.countDown();
+        });
+        storage.delete("/server/tests/delete", null, LockMode.SILENT, 0, false, false, resource -> {
+            testContext.assertTrue(resource.error);
+            testContext.assertEquals("ERR Booom", resource.errorMessage);
+            async.countDown();
+        });
+    }
+
     private class SuccessAsyncResult implements AsyncResult<JsonObject> {
 
         @Override
@@ -1,18 +1,28 @@
 
 package org.swisspush.reststorage;
 
+import com.jayway.restassured.config.DecoderConfig;
+import com.jayway.restassured.config.RestAssuredConfig;
+import com.jayway.restassured.response.Response;
 import com.jayway.restassured.specification.RequestSpecification;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.CompressionCodecs;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 import static com.jayway.restassured.RestAssured.*;
 import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.equalTo;
-import static org.swisspush.reststorage.util.HttpRequestHeader.COMPRESS_HEADER;
-import static org.swisspush.reststorage.util.HttpRequestHeader.IF_NONE_MATCH_HEADER;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.swisspush.reststorage.util.HttpRequestHeader.*;
 
 @RunWith(VertxUnitRunner.class)
 public class ResourceCompressionIntegrationTest extends RedisStorageIntegrationTestCase {
@@ -81,8 +91,11 @@ public class ResourceCompressionIntegrationTest extends RedisStorageIntegrationT
         // cripple compressed data to make it impossible to decompress
         jedis.hset("rest-storage:resources:res", "resource", "xxx");
 
-        when()
-                .get("res")
+        // the client has to refuse the gzip encoding, otherwise the stored data is delivered as it is
+        given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "identity")
+                .when().get("res")
                 .then().assertThat()
                 .statusCode(500)
                 .body(containsString("Error during decompression of resource: Not in GZIP format"));
@@ -90,6 +103,141 @@ public class ResourceCompressionIntegrationTest extends RedisStorageIntegrationT
         async.complete();
     }
 
+    @Test
+    public void testGetFailHandlingOverEventBusForCorruptCompressedContent(TestContext context) {
+        Async async = context.async();
+        putResource("{ \"foo\": \"bar\" }", true, 200);
+
+        // keep the gzip header and trailer, so that the content fails only while it is read
+        String stored = jedis.hget("rest-storage:resources:res", "resource");
+        jedis.hset("rest-storage:resources:res", "resource", stored.substring(0, 10) + "\u00ff\u00ff\u00ff\u00ff"
+                + stored.substring(stored.length() - 8));
+
+        JsonObject header = new JsonObject().put("method", "GET").put("uri", "/res").put("headers", new JsonArray());
+        Buffer request = Buffer.buffer().appendInt(header.encode().length()).appendString(header.encode());
+        vertx.eventBus().<Buffer>send("rest-storage", request, context.asyncAssertSuccess(reply -> {
+            Buffer response = reply.body();
+            int headerLength = response.getInt(0);
+            JsonObject responseHeader = new JsonObject(response.getString(4, headerLength + 4));
+            context.assertEquals(500, responseHeader.getInteger("statusCode"));
+            async.complete();
+        }));
+    }
+
+    @Test
+    public void testGetGzipEncoded(TestContext context) throws IOException {
+        Async async = context.async();
+        putResource("{ \"foo\": \"bar\" }", true, 200);
+        String stored = jedis.hget("rest-storage:resources:res", "resource");
+
+        Response response = given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "gzip")
+                .when().get("res");
+        response.then().assertThat()
+                .statusCode(200)
+                .header(CONTENT_ENCODING.getName(), "gzip")
+                .header(CONTENT_LENGTH.getName(), String.valueOf(stored.length()));
+        byte[] body = response.asByteArray();
+        context.assertEquals(stored, new String(body, StandardCharsets.ISO_8859_1));
+        context.assertEquals("{ \"foo\": \"bar\" }", new String(CompressionCodecs.forId("1")
+                .decompress(body, Integer.MAX_VALUE), StandardCharsets.UTF_8));
+        async.complete();
+    }
+
+    @Test
+    public void testGetGzipNotAccepted(TestContext context) {
+        Async async = context.async();
+        putResource("{ \"foo\": \"bar\" }", true, 200);
+
+        given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "gzip;q=0, identity")
+                .when().get("res")
+                .then().assertThat()
+                .statusCode(200)
+                .header(CONTENT_ENCODING.getName(), nullValue())
+                .header("Vary", ACCEPT_ENCODING.getName())
+                .header(ETAG_HEADER.getName(), "etag1")
+                .body("foo", equalTo("bar"));
+        async.complete();
+    }
+
+    @Test
+    public void testGetGzipEncodedHasOwnEtag(TestContext context) {
+        Async async = context.async();
+        putResource("{ \"foo\": \"bar\" }", true, 200);
+
+        given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "gzip")
+                .when().get("res")
+                .then().assertThat()
+                .statusCode(200)
+                .header("Vary", ACCEPT_ENCODING.getName())
+                .header(ETAG_HEADER.getName(), "etag1-gzip");
+
+        given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "gzip")
+                .header(IF_NONE_MATCH_HEADER.getName(), "etag1-gzip")
+                .when().get("res")
+                .then().assertThat()
+                .statusCode(304)
+                .header(ETAG_HEADER.getName(), "etag1-gzip");
+
+        // the etag of the gzip encoded representation does not match the decompressed one
+        given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "identity")
+                .header(IF_NONE_MATCH_HEADER.getName(), "etag1-gzip")
+                .when().get("res")
+                .then().assertThat()
+                .statusCode(200)
+                .header(ETAG_HEADER.getName(), "etag1")
+                .body("foo", equalTo("bar"));
+        async.complete();
+    }
+
+    @Test
+    public void testGetUncompressedHasNoVary(TestContext context) {
+        Async async = context.async();
+        putResource("{ \"foo\": \"bar\" }", false, 200);
+
+        given()
+                .header(ACCEPT_ENCODING.getName(), "gzip")
+                .when().get("res")
+                .then().assertThat()
+                .statusCode(200)
+                .header("Vary", nullValue())
+                .header(ETAG_HEADER.getName(), "etag1");
+        async.complete();
+    }
+
+    @Test
+    public void testPutGetLargeResourceWithCompression(TestContext context) {
+        Async async = context.async();
+        // compressed and decompressed in many chunks
+        StringBuilder body = new StringBuilder("{ \"items\": [");
+        for (int i = 0; i < 20000; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"index\": ").append(i).append("}");
+        }
+        String content = body.append("] }").toString();
+        given().header(COMPRESS_HEADER.getName(), "true").body(content).put("res")
+                .then().assertThat().statusCode(200);
+
+        String received = given()
+                .config(RestAssuredConfig.config().decoderConfig(DecoderConfig.decoderConfig().noContentDecoders()))
+                .header(ACCEPT_ENCODING.getName(), "identity")
+                .when().get("res")
+                .then().assertThat()
+                .statusCode(200)
+                .header(CONTENT_LENGTH.getName(), String.valueOf(content.length()))
+                .extract().asString();
+        context.assertEquals(content, received);
+        async.complete();
+    }
+
     private void putResource(String body, boolean storeCompressed, int statusCode){
         RequestSpecification spec = given().header(IF_NONE_MATCH_HEADER.getName(), "etag1");
         if(storeCompressed){
@@ -0,0 +1,194 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Context;
+import io.vertx.core.Handler;
+import io.vertx.core.Vertx;
+import io.vertx.core.buffer.Buffer;
+import io.vertx.core.streams.ReadStream;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the allocations of the resource payload handling of the {@link RedisStorage} with the previous
+ * implementation, which copied the payload into byte arrays several times.
+ *
+ * <p>Run with <code>mvn test-compile exec:java -Dexec.mainClass=org.swisspush.reststorage.ResourcePayloadBenchmark
+ * -Dexec.classpathScope=test</code> and compare the <code>gc.alloc.rate.norm</code> values of the benchmarks.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResourcePayloadBenchmark {
+
+    @Param({"1024", "65536", "1048576"})
+    public int size;
+
+    private Vertx vertx;
+    private Context context;
+    private byte[] payload;
+    private Buffer[] requestBody;
+
+    @Setup
+    public void setUp() {
+        vertx = Vertx.vertx();
+        context = vertx.getOrCreateContext();
+        payload = new byte[size];
+        for (int i = 0; i < size; i++) {
+            payload[i] = (byte) i;
+        }
+        // the request body arrives in chunks of 8KB
+        int chunks = (size + 8191) / 8192;
+        requestBody = new Buffer[chunks];
+        for (int i = 0; i < chunks; i++) {
+            requestBody[i] = Buffer.buffer().appendBytes(payload, i * 8192, Math.min(8192, size - i * 8192));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        vertx.close();
+    }
+
+    @Benchmark
+    public String writeCopying() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        for (Buffer data : requestBody) {
+            bos.write(data.getBytes());
+        }
+        bos.close();
+        return new String(bos.toByteArray(), StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public String writeBuffers() {
+        List<Buffer> buffers = new ArrayList<>();
+        int length = 0;
+        for (Buffer data : requestBody) {
+            buffers.add(data);
+            length += data.length();
+        }
+        byte[] bytes = new byte[length];
+        int position = 0;
+        for (Buffer buffer : buffers) {
+            buffer.getBytes(bytes, position);
+            position += buffer.length();
+        }
+        return new String(bytes, StandardCharsets.ISO_8859_1);
+    }
+
+    @Benchmark
+    public long readCopying() throws Exception {
+        return consume(() -> new CopyingReadStream(vertx, payload));
+    }
+
+    @Benchmark
+    public long readSlices() throws Exception {
+        return consume(() -> new ByteArrayReadStream(vertx, payload));
+    }
+
+    private long consume(StreamFactory factory) throws Exception {
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        context.runOnContext(v -> {
+            long[] received = new long[1];
+            ReadStream<Buffer> stream = factory.create();
+            stream.handler(data -> received[0] += data.length());
+            stream.endHandler(nothing -> result.complete(received[0]));
+        });
+        return result.get();
+    }
+
+    private interface StreamFactory {
+        ReadStream<Buffer> create();
+    }
+
+    /**
+     * The previous read stream, which copied every chunk of 8KB into a new byte array and needed an event loop
+     * cycle per chunk.
+     */
+    private static class CopyingReadStream implements ReadStream<Buffer> {
+
+        private final Vertx vertx;
+        private final ByteArrayInputStream content;
+        private final int size;
+        private int position;
+        private boolean paused;
+        private Handler<Void> endHandler;
+        private Handler<Buffer> handler;
+
+        CopyingReadStream(Vertx vertx, byte[] byteArray) {
+            this.vertx = vertx;
+            size = byteArray.length;
+            content = new ByteArrayInputStream(byteArray);
+        }
+
+        private void doRead() {
+            vertx.runOnContext(v -> {
+                if (!paused) {
+                    if (position < size) {
+                        int toRead = Math.min(8192, size - position);
+                        byte[] bytes = new byte[toRead];
+                        content.read(bytes, 0, toRead);
+                        handler.handle(Buffer.buffer(bytes));
+                        position += toRead;
+                        doRead();
+                    } else {
+                        endHandler.handle(null);
+                    }
+                }
+            });
+        }
+
+        @Override
+        public CopyingReadStream resume() {
+            paused = false;
+            doRead();
+            return this;
+        }
+
+        @Override
+        public CopyingReadStream pause() {
+            paused = true;
+            return this;
+        }
+
+        @Override
+        public CopyingReadStream exceptionHandler(Handler<Throwable> handler) {
+            return this;
+        }
+
+        @Override
+        public CopyingReadStream handler(Handler<Buffer> handler) {
+            this.handler = handler;
+            doRead();
+            return this;
+        }
+
+        @Override
+        public CopyingReadStream endHandler(Handler<Void> endHandler) {
+            this.endHandler = endHandler;
+            return this;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ResourcePayloadBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
@@ -0,0 +1,137 @@
+package org.swisspush.reststorage;
+
+import com.jayway.restassured.http.ContentType;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static com.jayway.awaitility.Awaitility.await;
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.core.IsEqual.equalTo;
+
+/**
+ * Tests for the {@link ShardedRedisStorage}. The shards are separate databases of the local redis, separate redis
+ * instances behave the same.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ShardedRedisStorageIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    private static final int[] SHARD_DATABASES = {1, 2, 3};
+    private static final int COLLECTIONS = 20;
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.redisShards(Arrays.asList("localhost:6379/1", "localhost:6379/2", "localhost:6379/3"));
+        modConfig.redisShardDepth(2);
+    }
+
+    @Test
+    public void testResourcesAreSpreadOverShards(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < COLLECTIONS; i++) {
+            with().body("{ \"foo\": \"bar" + i + "\" }").put("tenants/t" + i + "/res").then().assertThat().statusCode(200);
+        }
+        for (int i = 0; i < COLLECTIONS; i++) {
+            when().get("tenants/t" + i + "/res").then().assertThat().statusCode(200).body("foo", equalTo("bar" + i));
+        }
+
+        int total = 0;
+        for (int database : SHARD_DATABASES) {
+            jedis.select(database);
+            int resources = jedis.keys("rest-storage:resources:*").size();
+            context.assertTrue(resources > 0, "shard " + database + " holds no resources");
+            total += resources;
+        }
+        jedis.select(0);
+        context.assertEquals(COLLECTIONS, total);
+        context.assertTrue(jedis.keys("rest-storage:*").isEmpty());
+        async.complete();
+    }
+
+    @Test
+    public void testListCollectionsAboveShardDepth(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < 10; i++) {
+            with().body("{ \"foo\": \"bar\" }").put("tenants/t" + i + "/res");
+        }
+        with().body("{ \"foo\": \"bar\" }").put("other/o1/res");
+
+        when().get("tenants/").then().assertThat().statusCode(200)
+                .body("tenants", hasSize(10))
+                .body("tenants[0]", equalTo("t0/"));
+        when().get("tenants/?offset=8&limit=5").then().assertThat().statusCode(200)
+                .body("tenants", contains("t8/", "t9/"));
+        when().get("tenants/t3/").then().assertThat().statusCode(200).body("t3", contains("res"));
+        when().get("notExisting/").then().assertThat().statusCode(404);
+        async.complete();
+    }
+
+    @Test
+    public void testGetBulkOfAllShards(TestContext context) {
+        Async async = context.async();
+        StringBuilder resources = new StringBuilder("{ \"resources\": [ { \"path\": \"/tenants/\" }");
+        for (int i = 0; i < COLLECTIONS; i++) {
+            with().body("{ \"foo\": \"bar" + i + "\" }").put("tenants/t" + i + "/res").then().assertThat().statusCode(200);
+            resources.append(", { \"path\": \"/tenants/t").append(i).append("/res\" }");
+        }
+        resources.append(" ] }");
+
+        given().queryParam("bulkGet", "true").body(resources.toString()).when().post("tenants")
+                .then().assertThat().statusCode(200)
+                .body("resources", hasSize(COLLECTIONS + 1))
+                .body("resources[0].content", hasSize(COLLECTIONS))
+                .body("resources[1].content.foo", equalTo("bar0"))
+                .body("resources[" + COLLECTIONS + "].content.foo", equalTo("bar" + (COLLECTIONS - 1)));
+        async.complete();
+    }
+
+    @Test
+    public void testPutAboveShardDepthIsRejected(TestContext context) {
+        Async async = context.async();
+        with().body("{ \"foo\": \"bar\" }").put("tenants").then().assertThat()
+                .statusCode(500)
+                .body(containsString("at least 2 levels deep"));
+        async.complete();
+    }
+
+    @Test
+    public void testDeleteAboveShardDepth(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < 10; i++) {
+            with().body("{ \"foo\": \"bar\" }").put("tenants/t" + i + "/res");
+        }
+        with().body("{ \"foo\": \"bar\" }").put("other/o1/res");
+
+        delete("tenants").then().assertThat().statusCode(400);
+        with().param("recursive", "true").delete("tenants").then().assertThat().statusCode(200);
+        when().get("tenants/").then().assertThat().statusCode(404);
+        when().get("tenants/t1/res").then().assertThat().statusCode(404);
+        when().get("other/o1/res").then().assertThat().statusCode(200);
+        async.complete();
+    }
+
+    @Test
+    public void testCleanupOfAllShards(TestContext context) {
+        Async async = context.async();
+        for (int i = 0; i < COLLECTIONS; i++) {
+            with().header("x-expire-after", "1").body("{ \"foo\": \"bar\" }").put("tenants/t" + i + "/res");
+        }
+        await().atMost(3, TimeUnit.SECONDS).until(() -> get("tenants/t" + (COLLECTIONS - 1) + "/res").statusCode(), equalTo(404));
+
+        given().post("/server/_cleanup").then().assertThat()
+                .statusCode(200)
+                .contentType(ContentType.JSON)
+                .body("cleanedResources", equalTo(COLLECTIONS))
+                .body("expiredResourcesLeft", equalTo(0));
+        async.complete();
+    }
+}
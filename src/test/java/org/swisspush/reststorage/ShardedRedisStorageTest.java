@@ -0,0 +1,79 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Vertx;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Tests for the {@link ShardedRedisStorage} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class ShardedRedisStorageTest {
+
+    private final RedisStorage shard1 = mock(RedisStorage.class);
+    private final RedisStorage shard2 = mock(RedisStorage.class);
+    private final ShardedRedisStorage storage = new ShardedRedisStorage(mock(Vertx.class),
+            Arrays.asList("shard1:6379", "shard2:6379"), Arrays.asList(shard1, shard2), 1);
+
+    @Test
+    public void testMemoryUsageOfWorstShard(TestContext context) {
+        when(shard1.getCurrentMemoryUsage()).thenReturn(Optional.of(40f));
+        when(shard2.getCurrentMemoryUsage()).thenReturn(Optional.of(75.5f));
+        context.assertEquals(Optional.of(75.5f), storage.getCurrentMemoryUsage());
+
+        when(shard2.getCurrentMemoryUsage()).thenReturn(Optional.empty());
+        context.assertEquals(Optional.of(40f), storage.getCurrentMemoryUsage());
+
+        when(shard1.getCurrentMemoryUsage()).thenReturn(Optional.empty());
+        context.assertFalse(storage.getCurrentMemoryUsage().isPresent());
+    }
+
+    @Test
+    public void testPathBelowShardDepthUsesSingleShard(TestContext context) {
+        int[] calls = {0, 0};
+        doAnswer(invocation -> calls[0]++).when(shard1).get(anyString(), anyString(), anyInt(), anyInt(), anyBoolean(), any());
+        doAnswer(invocation -> calls[1]++).when(shard2).get(anyString(), anyString(), anyInt(), anyInt(), anyBoolean(), any());
+        for (int i = 0; i < 20; i++) {
+            storage.get("/tenant" + i + "/res", null, 0, -1, resource -> {});
+        }
+        context.assertEquals(20, calls[0] + calls[1]);
+        context.assertTrue(calls[0] > 0 && calls[1] > 0, "the tenants must be spread over both shards");
+    }
+
+    @Test
+    public void testGzipAcceptedIsPassedToTheShard(TestContext context) {
+        int[] calls = {0};
+        doAnswer(invocation -> calls[0]++).when(shard1).get(anyString(), any(), anyInt(), anyInt(), eq(true), any());
+        doAnswer(invocation -> calls[0]++).when(shard2).get(anyString(), any(), anyInt(), anyInt(), eq(true), any());
+        storage.get("/tenant/res", null, 0, -1, true, resource -> {});
+        context.assertEquals(1, calls[0]);
+    }
+
+    @Test
+    public void testRootIsListedFromAllShards(TestContext context) {
+        storage.get("/", null, 5, 10, resource -> {});
+        // the offset and limit are applied to the merged listing
+        verify(shard1).get(eq("/"), anyString(), eq(0), eq(-1), any());
+        verify(shard2).get(eq("/"), anyString(), eq(0), eq(-1), any());
+    }
+
+    @Test
+    public void testPutAboveShardDepthIsRejected(TestContext context) {
+        storage.put("/", null, false, -1, resource -> context.assertTrue(resource.error));
+        verify(shard1, never()).put(anyString(), anyString(), anyBoolean(), anyLong(), anyString(), any(), anyLong(), anyBoolean(), any());
+        verify(shard2, never()).put(anyString(), anyString(), anyBoolean(), anyLong(), anyString(), any(), anyLong(), anyBoolean(), any());
+    }
+}
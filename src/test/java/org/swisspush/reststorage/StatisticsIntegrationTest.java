@@ -0,0 +1,47 @@
+package org.swisspush.reststorage;
+
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import static com.jayway.restassured.RestAssured.*;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.notNullValue;
+
+@RunWith(VertxUnitRunner.class)
+public class StatisticsIntegrationTest extends RedisStorageIntegrationTestCase {
+
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.nearCacheEnabled(true);
+        modConfig.backgroundCleanupEnabled(true);
+        modConfig.autoCompressionThreshold(100);
+    }
+
+    @Test
+    public void testGetStatistics(TestContext context) {
+        Async async = context.async();
+        StringBuilder content = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 50; i++) {
+            content.append(i == 0 ? "" : ",").append("{\"index\":").append(i).append("}");
+        }
+        with().body(content.append("]}").toString()).put("stats/res").then().assertThat().statusCode(200);
+        get("stats/res").then().assertThat().statusCode(200);
+        get("stats/res").then().assertThat().statusCode(200);
+
+        get("_statistics").then().assertThat().statusCode(200)
+                .header("Content-Type", "application/json; charset=utf-8")
+                .body("nearCache.misses", equalTo(1))
+                .body("nearCache.hits", equalTo(1))
+                .body("connections", notNullValue())
+                .body("replicas", notNullValue())
+                .body("cleanup", notNullValue())
+                .body("compression.prefixes.'/stats'.compressed", equalTo(1))
+                .body("workerPools.codec.name", equalTo("codec"))
+                .body("workerPools.codec.rejected", equalTo(0));
+        async.complete();
+    }
+}
@@ -11,12 +11,16 @@ package org.swisspush.reststorage;
 import com.jayway.restassured.RestAssured;
 import com.jayway.restassured.http.ContentType;
 import com.jayway.restassured.response.Response;
+import io.vertx.core.json.JsonObject;
 import io.vertx.ext.unit.Async;
 import io.vertx.ext.unit.TestContext;
 import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.ModuleConfiguration;
+
+import java.nio.charset.StandardCharsets;
 
 import static com.jayway.restassured.RestAssured.*;
 import static org.hamcrest.Matchers.*;
@@ -32,6 +36,12 @@ public class StorageExpandIntegrationTest extends RedisStorageIntegrationTestCas
     final String BAD_REQUEST_PARSE_MSG = "Bad Request: Unable to parse body of storageExpand POST request";
     final String COMPRESS_HEADER = "x-stored-compressed";
 
+    @Override
+    protected void updateModuleConfiguration(ModuleConfiguration modConfig) {
+        modConfig.expandMaxBytes(10000);
+        modConfig.expandDecompressConcurrency(2);
+    }
+
     @Before
     public void setPath() {
         RestAssured.basePath = "/server/resources";
@@ -161,6 +171,28 @@ public class StorageExpandIntegrationTest extends RedisStorageIntegrationTestCas
         async.complete();
     }
 
+    @Test
+    public void testSimpleWithNonAsciiContent(TestContext context) {
+        Async async = context.async();
+        delete("/server/resources");
+
+        with().body("{ \"foo\": \"caf\u00e9 \u20ac\" }".getBytes(StandardCharsets.UTF_8)).put("/server/resources/res1");
+        with().body("{ \"foo\": \"bar2\" }").put("/server/resources/res2");
+
+        byte[] expanded = given()
+                .body("{ \"subResources\": [\"res1\", \"res2\"] }")
+                .when()
+                .post(POST_STORAGE_EXP)
+                .then()
+                .assertThat().statusCode(200).contentType(ContentType.JSON).header(ETAG_HEADER, not(empty()))
+                .extract().asByteArray();
+        JsonObject result = new JsonObject(new String(expanded, StandardCharsets.UTF_8));
+        context.assertEquals("caf\u00e9 \u20ac", result.getJsonObject("res1").getString("foo"));
+        context.assertEquals("bar2", result.getJsonObject("res2").getString("foo"));
+
+        async.complete();
+    }
+
     @Test
     public void testDoubleSlashesHandlingForPOSTRequests(TestContext context) {
         Async async = context.async();
@@ -410,10 +442,11 @@ public class StorageExpandIntegrationTest extends RedisStorageIntegrationTestCas
                 .when()
                 .post(POST_STORAGE_EXP)
                 .then()
-                .assertThat()
-                .statusCode(409)
-                .body(containsString("Collections having compressed resources are not supported in storage expand"));
-
+                .assertThat().statusCode(200).contentType(ContentType.JSON).header(ETAG_HEADER, not(empty()))
+                .body("", allOf(hasKey("res1"), hasKey("res2"), hasKey("res3")))
+                .body("res1.foo", equalTo("bar1"))
+                .body("res2.foo", equalTo("bar2"))
+                .body("res3.foo", equalTo("bar3"));
 
         // make storage expand again without the compressed resource
         given()
@@ -458,9 +491,75 @@ public class StorageExpandIntegrationTest extends RedisStorageIntegrationTestCas
                 .when()
                 .post("/server/resources/sub?storageExpand=true")
                 .then()
+                .assertThat().statusCode(200).contentType(ContentType.JSON)
+                .body("sub1.foo", equalTo("sub1"))
+                .body("sub2.foo", equalTo("sub2"));
+
+        async.complete();
+    }
+
+    @Test
+    public void testManyCompressedResources(TestContext context) {
+        Async async = context.async();
+        delete("/server/resources");
+
+        StringBuilder subResources = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            with().header(COMPRESS_HEADER, "true").body("{ \"foo\": \"bar" + i + "\" }").put("/server/resources/res" + i);
+            subResources.append(i == 0 ? "" : ",").append("\"res").append(i).append("\"");
+        }
+
+        given()
+                .body("{ \"subResources\": [" + subResources + "] }")
+                .when()
+                .post(POST_STORAGE_EXP)
+                .then()
+                .assertThat().statusCode(200).contentType(ContentType.JSON)
+                .body("res0.foo", equalTo("bar0"))
+                .body("res19.foo", equalTo("bar19"));
+
+        async.complete();
+    }
+
+    @Test
+    public void testCompressedResourcesExceedingMaxBytes(TestContext context) {
+        Async async = context.async();
+        delete("/server/resources");
+
+        String large = new String(new char[20000]).replace('\0', 'x');
+        with().header(COMPRESS_HEADER, "true").body("{ \"foo\": \"" + large + "\" }").put("/server/resources/res1");
+
+        given()
+                .body("{ \"subResources\": [\"res1\"] }")
+                .when()
+                .post(POST_STORAGE_EXP)
+                .then()
+                .assertThat()
+                .statusCode(409)
+                .body(containsString("exceed"));
+
+        async.complete();
+    }
+
+    @Test
+    public void testCompressedResourcesExceedingMaxBytesTogether(TestContext context) {
+        Async async = context.async();
+        delete("/server/resources");
+
+        // every resource is below the limit, the three of them are not
+        String large = new String(new char[4000]).replace('\0', 'x');
+        for (int i = 0; i < 3; i++) {
+            with().header(COMPRESS_HEADER, "true").body("{ \"foo\": \"" + large + "\" }").put("/server/resources/res" + i);
+        }
+
+        given()
+                .body("{ \"subResources\": [\"res0\", \"res1\", \"res2\"] }")
+                .when()
+                .post(POST_STORAGE_EXP)
+                .then()
                 .assertThat()
                 .statusCode(409)
-                .body(containsString("Collections having compressed resources are not supported in storage expand"));;
+                .body(containsString("exceed"));
 
         async.complete();
     }
@@ -0,0 +1,95 @@
+package org.swisspush.reststorage;
+
+import io.vertx.core.Handler;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.swisspush.reststorage.util.LockMode;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Tests for the default implementations of the {@link Storage} interface
+ */
+@RunWith(VertxUnitRunner.class)
+public class StorageTest {
+
+    /**
+     * A storage implementing the operations of the first release only.
+     */
+    private static class MinimalStorage implements Storage {
+
+        private String deleted;
+
+        @Override
+        public Optional<Float> getCurrentMemoryUsage() {
+            return Optional.empty();
+        }
+
+        @Override
+        public void get(String path, String etag, int offset, int count, Handler<Resource> handler) {
+            Resource r = new Resource();
+            r.name = path;
+            handler.handle(r);
+        }
+
+        @Override
+        public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
+        }
+
+        @Override
+        public void put(String path, String etag, boolean merge, long expire, Handler<Resource> handler) {
+        }
+
+        @Override
+        public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, Handler<Resource> handler) {
+        }
+
+        @Override
+        public void put(String path, String etag, boolean merge, long expire, String lockOwner, LockMode lockMode, long lockExpire, boolean storeCompressed, Handler<Resource> handler) {
+        }
+
+        @Override
+        public void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+            deleted = path;
+            handler.handle(new Resource());
+        }
+
+        @Override
+        public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount) {
+        }
+    }
+
+    @Test
+    public void testGzipAcceptedGetsPlainResource(TestContext context) {
+        new MinimalStorage().get("/res", null, 0, -1, true, resource -> context.assertEquals("/res", resource.name));
+    }
+
+    @Test
+    public void testAddedOperationsAnswerWithError(TestContext context) {
+        Storage storage = new MinimalStorage();
+        storage.get("/col/", null, "", 10, resource -> context.assertTrue(resource.error));
+        storage.getBulk(Arrays.asList("/res1", "/res2"), Arrays.asList(null, null), resources -> {
+            context.assertEquals(2, resources.size());
+            context.assertTrue(resources.get(0).error);
+            context.assertTrue(resources.get(1).error);
+        });
+        storage.expand("/col/", null, 1, resource -> context.assertTrue(resource.invalid));
+        storage.putBatch("/col/", Collections.emptyList(), resource -> context.assertTrue(resource.error));
+        storage.getDeleteJob("job1", resource -> context.assertFalse(resource.exists));
+        context.assertEquals(0, storage.getStatistics().size());
+    }
+
+    @Test
+    public void testDeleteAsyncDeletesAtOnce(TestContext context) {
+        MinimalStorage storage = new MinimalStorage();
+        storage.deleteAsync("/col/", "job1", null, LockMode.SILENT, 0, false, true, resource -> {
+            context.assertFalse(resource.error);
+            context.assertEquals("/col/", storage.deleted);
+        });
+    }
+}
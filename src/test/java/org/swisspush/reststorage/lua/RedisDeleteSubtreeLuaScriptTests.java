@@ -0,0 +1,99 @@
+package org.swisspush.reststorage.lua;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+/**
+ * Tests the asynchronous delete of a collection: the collection is detached by the del script and removed in bulks
+ * by the delete-subtree script.
+ */
+public class RedisDeleteSubtreeLuaScriptTests extends AbstractLuaScriptTest {
+
+    private static final String SUBTREES = "rest-storage:deletejobs:subtrees";
+    private static final String PENDING = "rest-storage:deletejobs:job1:collections";
+
+    @Test
+    public void detachCollection() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}");
+        evalScriptPut(":project:server:other:res2", "{\"content\": \"res2\"}");
+
+        // ACT
+        Object result = evalScriptDetach(":project:server:test");
+
+        // ASSERT
+        assertThat(result, equalTo("detached"));
+        assertThat(jedis.hget(SUBTREES, ":project:server:test"), equalTo("job1"));
+        assertThat(jedis.lrange(PENDING, 0, -1), equalTo(Collections.singletonList(":project:server:test")));
+        assertThat(jedis.zrange("rest-storage:collections:project:server", 0, -1).contains("test"), equalTo(false));
+        // the keys are still there, but nothing is found or written below the collection anymore
+        assertThat(jedis.exists("rest-storage:resources:project:server:test:res1"), equalTo(true));
+        assertThat(evalScriptGetDeleted(":project:server:test:res1"), equalTo("notFound"));
+        assertThat(evalScriptGetDeleted(":project:server:test"), equalTo("notFound"));
+        assertThat(evalScriptPutDeleting(":project:server:test:res3"), equalTo("deleting"));
+        assertThat(evalScriptDetach(":project:server:test:res1"), equalTo("notFound"));
+        assertThat(evalScriptPutDeleting(":project:server:other:res3"), equalTo("OK"));
+    }
+
+    @Test
+    public void deleteSubtreeInBulks() {
+
+        // ARRANGE
+        for (int i = 0; i < 7; i++) {
+            evalScriptPut(":project:server:test:sub" + (i % 2) + ":res" + i, "{\"content\": \"res\"}");
+        }
+        evalScriptPut(":project:server:other:res", "{\"content\": \"res\"}");
+        evalScriptDetach(":project:server:test");
+
+        // ACT
+        long resources = 0;
+        long collections = 0;
+        int calls = 0;
+        List<Long> result;
+        do {
+            result = evalScriptDeleteSubtree(":project:server:test", 3);
+            resources += result.get(0);
+            collections += result.get(1);
+            calls++;
+        } while (result.get(2) > 0);
+
+        // ASSERT
+        assertThat(resources, equalTo(7L));
+        assertThat(collections, equalTo(3L));
+        assertThat(calls > 3, equalTo(true));
+        assertThat(jedis.keys("*test*").isEmpty(), equalTo(true));
+        assertThat(jedis.exists(SUBTREES), equalTo(false));
+        assertThat(evalScriptPutDeleting(":project:server:test:res1"), equalTo("OK"));
+    }
+
+    private Object evalScriptDetach(String path) {
+        return jedis.eval(readScript("del.lua"), Collections.singletonList(path), Arrays.asList(prefixResources,
+                prefixCollections, prefixDeltaResources, prefixDeltaEtags, expirableSet, "0", MAX_EXPIRE, "true", "true",
+                prefixLock, "", "silent", "0", "", "", SUBTREES, PENDING, "job1"));
+    }
+
+    private Object evalScriptGetDeleted(String path) {
+        return jedis.eval(readScript("get.lua"), Collections.singletonList(path), Arrays.asList(prefixResources,
+                prefixCollections, expirableSet, getNowAsString(), MAX_EXPIRE, "", "", "", "", "", "", SUBTREES));
+    }
+
+    private Object evalScriptPutDeleting(String path) {
+        return jedis.eval(readScript("put.lua"), Collections.singletonList(path), Arrays.asList(prefixResources,
+                prefixCollections, expirableSet, "false", MAX_EXPIRE, MAX_EXPIRE, "{}", "etag", prefixLock, "", "silent",
+                "0", "0", "", "0", "", "", "", SUBTREES));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Long> evalScriptDeleteSubtree(String path, int bulkSize) {
+        return (List<Long>) jedis.eval(readScript("delete-subtree.lua"), Collections.singletonList(PENDING),
+                Arrays.asList(prefixResources, prefixCollections, prefixDeltaResources, prefixDeltaEtags, expirableSet,
+                        prefixLock, "", "", SUBTREES, path, String.valueOf(bulkSize)));
+    }
+}
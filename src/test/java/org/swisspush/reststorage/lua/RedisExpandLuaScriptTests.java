@@ -0,0 +1,138 @@
+package org.swisspush.reststorage.lua;
+
+import io.vertx.core.json.JsonArray;
+import io.vertx.core.json.JsonObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertThat;
+
+public class RedisExpandLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void expandNestedCollections() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}");
+        evalScriptPut(":project:server:test:sub:res2", "[1, 2]");
+        evalScriptPut(":project:server:test:sub:deeper:res3", "{\"content\": \"res3\"}");
+        evalScriptPut(":project:server:test:text", "plain text");
+
+        // ACT
+        List<?> depth1 = (List<?>) evalScriptExpand(":project:server:test", 1, "");
+        List<?> depth3 = (List<?>) evalScriptExpand(":project:server:test", 3, "");
+
+        // ASSERT
+        JsonObject expanded = new JsonObject((String) depth1.get(1));
+        assertThat(expanded.getJsonObject("res1").getString("content"), equalTo("res1"));
+        assertThat(expanded.getString("text"), equalTo("plain text"));
+        assertThat(expanded.getJsonArray("sub"), equalTo(new JsonArray().add("deeper/").add("res2")));
+
+        expanded = new JsonObject((String) depth3.get(1));
+        assertThat(expanded.getJsonObject("sub").getJsonArray("res2"), equalTo(new JsonArray().add(1).add(2)));
+        assertThat(expanded.getJsonObject("sub").getJsonObject("deeper").getJsonObject("res3").getString("content"), equalTo("res3"));
+        assertThat(depth3.get(0), not(equalTo(depth1.get(0))));
+    }
+
+    @Test
+    public void expandEtagDerivedFromMembers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{}", MAX_EXPIRE, "etag1");
+        evalScriptPut(":project:server:test:sub:res2", "{}", MAX_EXPIRE, "etag2");
+        String etag = (String) ((List<?>) evalScriptExpand(":project:server:test", 2, "")).get(0);
+
+        // ACT / ASSERT
+        assertThat(evalScriptExpand(":project:server:test", 2, etag), equalTo("notModified"));
+        evalScriptPut(":project:server:test:sub:res2", "{}", MAX_EXPIRE, "etag3");
+        assertThat(evalScriptExpand(":project:server:test", 2, etag), not(equalTo("notModified")));
+        etag = (String) ((List<?>) evalScriptExpand(":project:server:test", 2, "")).get(0);
+        evalScriptPut(":project:server:test:sub:res4", "{}", MAX_EXPIRE, "etag4");
+        assertThat(evalScriptExpand(":project:server:test", 2, etag), not(equalTo("notModified")));
+    }
+
+    @Test
+    public void expandLimits() {
+
+        // ARRANGE
+        for (int i = 0; i < 5; i++) {
+            evalScriptPut(":project:server:test:sub:res" + i, "{\"content\": \"0123456789\"}");
+        }
+
+        // ACT / ASSERT
+        assertThat(evalScriptExpand(":project:server:test", 2, "", 5, 1000), equalTo("tooManyItems"));
+        assertThat(evalScriptExpand(":project:server:test", 2, "", 6, 100), equalTo("tooLarge"));
+        assertThat(evalScriptExpand(":project:server:test", 2, "", 6, 1000) instanceof List, equalTo(true));
+    }
+
+    @Test
+    public void expandDocumentOrMissing() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{}");
+
+        // ACT / ASSERT
+        assertThat(evalScriptExpand(":project:server:test:res1", 1, ""), equalTo("document"));
+        assertThat(evalScriptExpand(":project:server:missing", 1, ""), equalTo("notFound"));
+    }
+
+    @Test
+    public void expandCompressedNotSupported() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "compressed", MAX_EXPIRE, "etag1", true);
+
+        // ACT / ASSERT
+        assertThat(evalScriptExpand(":project:server:test", 1, ""), equalTo("compressionNotSupported"));
+    }
+
+    @Test
+    public void expandInvalidJsonAsString() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:broken", "{\"content\": ");
+        evalScriptPut(":project:server:test:trailing", "[1, 2] ]");
+        evalScriptPut(":project:server:test:valid", "{\"content\": \"valid\"}");
+
+        // ACT
+        List<?> result = (List<?>) evalScriptExpand(":project:server:test", 1, "");
+
+        // ASSERT
+        JsonObject expanded = new JsonObject((String) result.get(1));
+        assertThat(expanded.getString("broken"), equalTo("{\"content\": "));
+        assertThat(expanded.getString("trailing"), equalTo("[1, 2] ]"));
+        assertThat(expanded.getJsonObject("valid").getString("content"), equalTo("valid"));
+    }
+
+    @Test
+    public void expandExpiredCompressedIsMissing() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{}");
+        evalScriptPut(":project:server:test:res2", "compressed", MAX_EXPIRE, "etag1", true);
+        // expired, but not yet removed from its collection
+        jedis.zadd(expirableSet, 1, prefixResources + ":project:server:test:res2");
+
+        // ACT
+        List<?> result = (List<?>) evalScriptExpand(":project:server:test", 1, "");
+
+        // ASSERT
+        JsonObject expanded = new JsonObject((String) result.get(1));
+        assertThat(expanded.fieldNames(), equalTo(Collections.singleton("res1")));
+    }
+
+    private Object evalScriptExpand(String path, int depth, String etag) {
+        return evalScriptExpand(path, depth, etag, 10000, 1000000);
+    }
+
+    private Object evalScriptExpand(String path, int depth, String etag, int maxItems, long maxBytes) {
+        return jedis.eval(readScript("expand.lua"), Collections.singletonList(path), Arrays.asList(prefixResources,
+                prefixCollections, expirableSet, getNowAsString(), MAX_EXPIRE, String.valueOf(depth),
+                String.valueOf(maxItems), String.valueOf(maxBytes), "", "", etag));
+    }
+}
@@ -2,6 +2,7 @@ package org.swisspush.reststorage.lua;
 
 import org.junit.Test;
 
+import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.*;
@@ -11,6 +12,8 @@ public class RedisGetLuaScriptTests extends AbstractLuaScriptTest {
 
     private final static String TYPE_COLLECTION = "TYPE_COLLECTION";
     private final static String TYPE_RESOURCE = "TYPE_RESOURCE";
+    private final static String TYPE_COLLECTION_PAGE = "TYPE_COLLECTION_PAGE";
+    private final static String prefixSortedCollections = "rest-storage:sortedcollections";
 
     @Test
     public void getCompressedResource() {
@@ -269,4 +272,50 @@ public class RedisGetLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(valuesTest3.size(), equalTo(1));
         assertThat(valuesTest3.get(0), equalTo(TYPE_COLLECTION));
     }
+
+    @Test
+    public void getCollectionPageSortingAllMembers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1:res2", "{\"content\": \"res2\"}");
+        evalScriptPut(":project:server:test:test1:res1", "{\"content\": \"res1\"}");
+        evalScriptPut(":project:server:test:test1:sub:res3", "{\"content\": \"res3\"}");
+
+        // ACT
+        List<String> firstPage = (List<String>) evalScriptGetPage(":project:server:test:test1", "-", "2", "");
+        List<String> nextPage = (List<String>) evalScriptGetPage(":project:server:test:test1", "(1res1", "2", "");
+
+        // ASSERT
+        assertThat(firstPage, equalTo(Arrays.asList(TYPE_COLLECTION_PAGE, "1", "sub:", "res1")));
+        assertThat(nextPage, equalTo(Arrays.asList(TYPE_COLLECTION_PAGE, "0", "res2")));
+    }
+
+    @Test
+    public void getCollectionPageFromSortedMembers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:test1:res2", "{\"content\": \"res2\"}");
+        evalScriptPut(":project:server:test:test1:res1", "{\"content\": \"res1\"}");
+        evalScriptPut(":project:server:test:test1:sub:res3", "{\"content\": \"res3\"}");
+        jedis.zadd(prefixSortedCollections + ":project:server:test:test1", 0, "1res1");
+        jedis.zadd(prefixSortedCollections + ":project:server:test:test1", 0, "1res2");
+        jedis.zadd(prefixSortedCollections + ":project:server:test:test1", 0, "0sub");
+        // a member of the sorted members which is not in the collection anymore
+        jedis.zadd(prefixSortedCollections + ":project:server:test:test1", 0, "1res0");
+
+        // ACT
+        List<String> firstPage = (List<String>) evalScriptGetPage(":project:server:test:test1", "-", "2", prefixSortedCollections);
+        List<String> nextPage = (List<String>) evalScriptGetPage(":project:server:test:test1", "(1res1", "2", prefixSortedCollections);
+
+        // ASSERT
+        assertThat(firstPage, equalTo(Arrays.asList(TYPE_COLLECTION_PAGE, "1", "sub:", "res1")));
+        assertThat(nextPage, equalTo(Arrays.asList(TYPE_COLLECTION_PAGE, "0", "res2")));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked", "serial"})
+    private Object evalScriptGetPage(final String resourceName, final String pageStart, final String count, final String sortedCollectionsPrefix) {
+        return jedis.eval(readScript("get.lua"), Arrays.asList(resourceName), Arrays.asList(prefixResources,
+                prefixCollections, expirableSet, getNowAsString(), MAX_EXPIRE, "0", count, "", "", pageStart,
+                sortedCollectionsPrefix));
+    }
 }
@@ -0,0 +1,100 @@
+package org.swisspush.reststorage.lua;
+
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+public class RedisMultiGetLuaScriptTests extends AbstractLuaScriptTest {
+
+    private final static String TYPE_COLLECTION = "TYPE_COLLECTION";
+    private final static String TYPE_RESOURCE = "TYPE_RESOURCE";
+
+    @Test
+    public void getMultipleKeys() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}", MAX_EXPIRE, "etag1");
+        evalScriptPut(":project:server:test:res2", "{\"content\": \"res2\"}", MAX_EXPIRE, "etag2");
+        evalScriptPut(":project:server:test:sub:res3", "{\"content\": \"res3\"}");
+
+        // ACT
+        List<Object> results = evalScriptMultiGet(
+                Arrays.asList(":project:server:test:res1", ":project:server:test:res2", ":project:server:test",
+                        ":project:server:test:notExisting"),
+                Arrays.asList("", "", "", "", "", "etag2", "", "", "", "", "", ""));
+
+        // ASSERT
+        assertThat(results.size(), equalTo(4));
+
+        List<String> res1 = (List<String>) results.get(0);
+        assertThat(res1.get(0), equalTo(TYPE_RESOURCE));
+        assertThat(res1.get(1), equalTo("{\"content\": \"res1\"}"));
+        assertThat(res1.get(2), equalTo("etag1"));
+        assertThat(res1.get(3), nullValue());
+
+        assertThat(results.get(1), equalTo("notModified"));
+
+        List<String> collection = (List<String>) results.get(2);
+        assertThat(collection.get(0), equalTo(TYPE_COLLECTION));
+        assertThat(collection.subList(1, collection.size()), hasItems("res1", "res2", "sub:"));
+
+        assertThat(results.get(3), equalTo("notFound"));
+    }
+
+    @Test
+    public void getMultipleKeysMatchesSingleGet() {
+
+        // ARRANGE
+        for (int i = 0; i < 5; i++) {
+            evalScriptPut(":project:server:test:res" + i, "{\"content\": \"res" + i + "\"}");
+        }
+
+        // ACT
+        List<Object> results = evalScriptMultiGet(
+                Arrays.asList(":project:server:test", ":project:server:test:res3"),
+                Arrays.asList("1", "2", "", "", "", ""));
+
+        // ASSERT
+        assertThat(results.get(0), equalTo(evalScriptGetOffsetCount(":project:server:test", "1", "2")));
+        assertThat(results.get(1), equalTo(evalScriptGet(":project:server:test:res3")));
+    }
+
+    @Test
+    public void getMultipleKeysWithExpiredResource() throws InterruptedException {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}", getNowAsString());
+        evalScriptPut(":project:server:test:res2", "{\"content\": \"res2\"}");
+        Thread.sleep(10);
+
+        // ACT
+        List<Object> results = evalScriptMultiGet(
+                Arrays.asList(":project:server:test:res1", ":project:server:test:res2"),
+                Arrays.asList("", "", "", "", "", ""));
+
+        // ASSERT
+        assertThat(results.get(0), equalTo("notFound"));
+        assertThat(((List<String>) results.get(1)).get(1), equalTo("{\"content\": \"res2\"}"));
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private List<Object> evalScriptMultiGet(final List<String> resourceNames, final List<String> perKeyArguments) {
+        Map<String, String> values = new HashMap<>();
+        values.put("getscript", readScript("get.lua"));
+        StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+        String multiGetScript = sub.replace(readScript("multiget.lua"));
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(prefixResources, prefixCollections, expirableSet,
+                getNowAsString(), MAX_EXPIRE, "", ""));
+        arguments.addAll(perKeyArguments);
+        return (List<Object>) jedis.eval(multiGetScript, resourceNames, arguments);
+    }
+}
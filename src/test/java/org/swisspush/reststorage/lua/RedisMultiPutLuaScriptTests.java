@@ -0,0 +1,113 @@
+package org.swisspush.reststorage.lua;
+
+import org.apache.commons.lang.text.StrSubstitutor;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertThat;
+
+public class RedisMultiPutLuaScriptTests extends AbstractLuaScriptTest {
+
+    @Test
+    public void putMultipleKeys() {
+
+        // ACT
+        List<Object> results = evalScriptMultiPut(
+                Arrays.asList(":project:server:test:res1", ":project:server:test:res2"),
+                Arrays.asList(MAX_EXPIRE, "{\"content\": \"res1\"}", "etag1", "", "silent", "0", "0",
+                        MAX_EXPIRE, "{\"content\": \"res2\"}", "etag2", "", "silent", "0", "0"));
+
+        // ASSERT
+        assertThat(results, equalTo(Arrays.asList("OK", "OK")));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res1", "resource"), equalTo("{\"content\": \"res1\"}"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res2", "etag"), equalTo("etag2"));
+        assertThat(jedis.zcard("rest-storage:collections:project:server:test"), equalTo(2L));
+        assertThat(jedis.zcard("rest-storage:collections:project:server"), equalTo(1L));
+        assertThat(jedis.zcard(expirableSet), equalTo(0L));
+    }
+
+    @Test
+    public void putMultipleKeysUpdatesAncestorsWithMaxExpiration() {
+
+        // ACT
+        String now = getNowAsString();
+        String later = String.valueOf(Long.parseLong(now) + 60000);
+        List<Object> results = evalScriptMultiPut(
+                Arrays.asList(":project:server:test:res1", ":project:server:test:res2", ":project:server:test:res3"),
+                Arrays.asList(now, "{}", "etag1", "", "silent", "0", "0",
+                        later, "{}", "etag2", "", "silent", "0", "0",
+                        now, "{}", "etag3", "", "silent", "0", "0"));
+
+        // ASSERT
+        assertThat(results, equalTo(Arrays.asList("OK", "OK", "OK")));
+        assertThat(jedis.zscore("rest-storage:collections:project:server", "test"), equalTo(Double.parseDouble(later)));
+        assertThat(jedis.zscore("rest-storage:collections:project", "server"), equalTo(Double.parseDouble(later)));
+        assertThat(jedis.zscore("rest-storage:collections:project:server:test", "res3"), equalTo(Double.parseDouble(now)));
+        assertThat(jedis.zcard(expirableSet), equalTo(3L));
+    }
+
+    @Test
+    public void putMultipleKeysWithResultPerKey() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:sub:res", "{}");
+        evalScriptPut(":project:server:test:unchanged", "{}", MAX_EXPIRE, "etag1");
+
+        // ACT
+        List<Object> results = evalScriptMultiPut(
+                Arrays.asList(":project:server:test:sub", ":project:server:test:unchanged", ":project:server:test:compressed"),
+                Arrays.asList(MAX_EXPIRE, "{}", "etag2", "", "silent", "0", "0",
+                        MAX_EXPIRE, "{}", "etag1", "", "silent", "0", "0",
+                        MAX_EXPIRE, "compressed", "etag3", "", "silent", "0", "1"));
+
+        // ASSERT
+        assertThat(results, equalTo(Arrays.asList("existingCollection", "notModified", "OK")));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:compressed", "compressed"), equalTo("1"));
+    }
+
+    @Test
+    public void putMultipleKeysKeepsChunksOfReplacedResource() {
+
+        // ARRANGE
+        String resourceKey = "rest-storage:resources:project:server:test:large";
+        jedis.hmset(resourceKey, new HashMap<String, String>() {{
+            put("chunkKey", "rest-storage:chunks:abc");
+            put("chunks", "2");
+            put("length", "10");
+            put("etag", "etag1");
+        }});
+        jedis.set("rest-storage:chunks:abc:0", "01234");
+        jedis.set("rest-storage:chunks:abc:1", "56789");
+
+        // ACT
+        List<Object> results = evalScriptMultiPut(
+                Arrays.asList(":project:server:test:large"),
+                Arrays.asList(MAX_EXPIRE, "{}", "etag2", "", "silent", "0", "0"));
+
+        // ASSERT
+        assertThat(results, equalTo(Arrays.asList("OK")));
+        assertThat(jedis.hget(resourceKey, "chunkKey"), equalTo(null));
+        assertThat(jedis.get("rest-storage:chunks:abc:0"), equalTo("01234"));
+        assertThat(jedis.pttl("rest-storage:chunks:abc:0") > 0, equalTo(true));
+        assertThat(jedis.pttl("rest-storage:chunks:abc:1") > 0, equalTo(true));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object> evalScriptMultiPut(final List<String> resourceNames, final List<String> perKeyArguments) {
+        Map<String, String> values = new HashMap<>();
+        values.put("putscript", readScript("put.lua"));
+        StrSubstitutor sub = new StrSubstitutor(values, "--%(", ")");
+        String multiPutScript = sub.replace(readScript("multiput.lua"));
+
+        List<String> arguments = new ArrayList<>(Arrays.asList(prefixResources, prefixCollections, expirableSet,
+                MAX_EXPIRE, prefixLock, "", "", "", "60000"));
+        arguments.addAll(perKeyArguments);
+        return (List<Object>) jedis.eval(multiPutScript, resourceNames, arguments);
+    }
+}
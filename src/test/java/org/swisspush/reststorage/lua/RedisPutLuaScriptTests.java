@@ -5,6 +5,8 @@ import org.junit.Test;
 import org.swisspush.reststorage.util.LockMode;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -64,6 +66,47 @@ public class RedisPutLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(jedis.hget("rest-storage:resources:project:server:test:test1:test2", RESOURCE), equalTo("{\"content\": \"test/test1/test2\"}"));
     }
 
+    @Test
+    public void putResourceUpdatesExpirationOfAncestors() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}", "1000");
+        evalScriptPut(":project:server:other:res2", "{\"content\": \"res2\"}", "2000");
+
+        // ACT 1 - raise the expiration
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}", "3000");
+
+        // ASSERT 1
+        assertThat(jedis.zscore("rest-storage:collections:project:server:test", "res1"), equalTo(3000d));
+        assertThat(jedis.zscore("rest-storage:collections:project:server", "test"), equalTo(3000d));
+        assertThat(jedis.zscore("rest-storage:collections:project", "server"), equalTo(3000d));
+
+        // ACT 2 - lower the expiration, the sibling keeps the collections above alive
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}", "500");
+
+        // ASSERT 2
+        assertThat(jedis.zscore("rest-storage:collections:project:server:test", "res1"), equalTo(500d));
+        assertThat(jedis.zscore("rest-storage:collections:project:server", "test"), equalTo(500d));
+        assertThat(jedis.zscore("rest-storage:collections:project:server", "other"), equalTo(2000d));
+        assertThat(jedis.zscore("rest-storage:collections:project", "server"), equalTo(2000d));
+    }
+
+    @Test
+    public void putResourceWithSameExpirationStopsAtResource() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res1", "{\"content\": \"res1\"}", "1000");
+        jedis.zadd("rest-storage:collections:project", 1234d, "server");
+
+        // ACT
+        String result = evalScriptPut(":project:server:test:res1", "{\"content\": \"changed\"}", "1000");
+
+        // ASSERT - the ancestors are not walked again
+        assertThat(result, equalTo("OK"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res1", RESOURCE), equalTo("{\"content\": \"changed\"}"));
+        assertThat(jedis.zscore("rest-storage:collections:project", "server"), equalTo(1234d));
+    }
+
     @Test
     public void putResourceMergeOnEmpty() {
 
@@ -537,4 +580,39 @@ public class RedisPutLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(jedis.hget("rest-storage:resources" + lockedPath, RESOURCE), equalTo(newResource));
         assertThat(jedis.exists(prefixLock + lockedPath), equalTo(false));
     }
+
+    @Test
+    public void mergeOfCompressedResourceIsLeftToTheStorage() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res", "compressed", MAX_EXPIRE, "etag1", true);
+
+        // ACT
+        Object result = evalScriptPutMerge(":project:server:test:res", "{\"content\": \"merged\"}", "true", "");
+
+        // ASSERT
+        assertThat(result, equalTo("mergeCompressed"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res", RESOURCE), equalTo("compressed"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res", ETAG), equalTo("etag1"));
+    }
+
+    @Test
+    public void putWithExpectedEtag() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:res", "{\"content\": \"original\"}", MAX_EXPIRE, "etag1");
+
+        // ACT / ASSERT
+        assertThat(evalScriptPutMerge(":project:server:test:res", "{\"content\": \"merged\"}", "false", "etag2"), equalTo("mergeConflict"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res", RESOURCE), equalTo("{\"content\": \"original\"}"));
+        assertThat(evalScriptPutMerge(":project:server:test:res", "{\"content\": \"merged\"}", "false", "etag1"), equalTo("OK"));
+        assertThat(jedis.hget("rest-storage:resources:project:server:test:res", RESOURCE), equalTo("{\"content\": \"merged\"}"));
+        assertThat(evalScriptPutMerge(":project:server:test:missing", "{}", "false", "etag1"), equalTo("mergeConflict"));
+    }
+
+    private Object evalScriptPutMerge(String resourceName, String resourceValue, String merge, String expectedEtag) {
+        return jedis.eval(readScript("put.lua"), Collections.singletonList(resourceName), Arrays.asList(prefixResources,
+                prefixCollections, expirableSet, merge, MAX_EXPIRE, MAX_EXPIRE, resourceValue, UUID.randomUUID().toString(),
+                prefixLock, "", LockMode.SILENT.text(), "0", "0", "", "", "", "", "", "", expectedEtag));
+    }
 }
@@ -10,13 +10,13 @@ package org.swisspush.reststorage.lua;
 
 import org.apache.commons.lang3.StringUtils;
 import org.junit.Test;
-import io.vertx.core.json.JsonArray;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
 
@@ -280,10 +280,12 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
 
         // ACT
         List<String> subResources = Arrays.asList("item1");
-        String value = (String) evalScriptStorageExpand(":project:server:test", subResources);
+        List<List<String>> value = evalScriptStorageExpandAndExtract(":project:server:test", subResources);
 
         // ASSERT
-        assertThat(value, equalTo("compressionNotSupported"));
+        assertThat(value.size(), equalTo(1));
+        assertThat(value.get(0).get(0), equalTo("item1;1"));
+        assertThat(value.get(0).get(1), equalTo("{\"content\": \"content_1\"}"));
     }
 
     @Test
@@ -296,10 +298,13 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
 
         // ACT
         List<String> subResources = Arrays.asList("item2", "item1", "item3");
-        String value = (String) evalScriptStorageExpand(":project:server:test", subResources);
+        List<List<String>> value = evalScriptStorageExpandAndExtract(":project:server:test", subResources);
 
         // ASSERT
-        assertThat(value, equalTo("compressionNotSupported"));
+        assertThat(value.size(), equalTo(3));
+        assertThat(value.get(0).get(0), equalTo("item2;1"));
+        assertThat(value.get(1).get(0), equalTo("item1"));
+        assertThat(value.get(2).get(0), equalTo("item3"));
 
         // ACT
         List<String> subResources2 = Arrays.asList("item1", "item3");
@@ -313,6 +318,28 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
         assertThat(value2.get(1).get(1), equalTo("{\"content\": \"content_3\"}"));
     }
 
+    @Test
+    public void testStorageExpandEtagDerivedFromMembers() {
+
+        // ARRANGE
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}", AbstractLuaScriptTest.MAX_EXPIRE, "etag1");
+        evalScriptPut(":project:server:test:sub:sub1", "{\"content\": \"content_sub1\"}");
+        List<String> subResources = Arrays.asList("item1", "sub/");
+        String timestamp = String.valueOf(System.currentTimeMillis());
+        String etag = (String) ((List<?>) evalScriptStorageExpand(":project:server:test", subResources, timestamp)).get(0);
+
+        // ACT / ASSERT
+        assertThat(evalScriptStorageExpand(":project:server:test", subResources, timestamp, etag), equalTo("notModified"));
+        assertThat(evalScriptStorageExpand(":project:server:test", Arrays.asList("sub/", "item1"), timestamp, etag), not(equalTo("notModified")));
+
+        evalScriptPut(":project:server:test:item1", "{\"content\": \"content_1\"}", AbstractLuaScriptTest.MAX_EXPIRE, "etag2");
+        assertThat(evalScriptStorageExpand(":project:server:test", subResources, timestamp, etag), not(equalTo("notModified")));
+        etag = (String) ((List<?>) evalScriptStorageExpand(":project:server:test", subResources, timestamp)).get(0);
+
+        evalScriptPut(":project:server:test:sub:sub2", "{\"content\": \"content_sub2\"}");
+        assertThat(evalScriptStorageExpand(":project:server:test", subResources, timestamp, etag), not(equalTo("notModified")));
+    }
+
     @SuppressWarnings({"rawtypes", "unchecked", "serial"})
     private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources) {
         return evalScriptStorageExpand(resourceName1, subResources, String.valueOf(System.currentTimeMillis()));
@@ -320,6 +347,11 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
 
     @SuppressWarnings({"rawtypes", "unchecked", "serial"})
     private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources, final String timestamp) {
+        return evalScriptStorageExpand(resourceName1, subResources, timestamp, "");
+    }
+
+    @SuppressWarnings({"rawtypes", "unchecked", "serial"})
+    private Object evalScriptStorageExpand(final String resourceName1, final List<String> subResources, final String timestamp, final String etag) {
         String getScript = readScript("storageExpand.lua");
         return jedis.eval(getScript, new ArrayList() {
                     {
@@ -334,6 +366,9 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
                         add("9999999999999");
                         add(StringUtils.join(subResources, ";"));
                         add(String.valueOf(subResources.size()));
+                        add("");
+                        add("");
+                        add(etag);
                     }
                 }
         );
@@ -345,21 +380,22 @@ public class RedisStorageExpandLuaScriptTests extends AbstractLuaScriptTest {
 
     private List<List<String>> evalScriptStorageExpandAndExtract(String resourceName, List<String> subResources, String timestamp){
         List<List<String>> result = new ArrayList<>();
-        String valueStr;
+        Object value;
         if(timestamp != null){
-            valueStr = (String) evalScriptStorageExpand(resourceName, subResources, timestamp);
+            value = evalScriptStorageExpand(resourceName, subResources, timestamp);
         } else {
-            valueStr = (String) evalScriptStorageExpand(resourceName, subResources);
+            value = evalScriptStorageExpand(resourceName, subResources);
         }
 
-        if(valueStr.equals("notFound")){
+        if("notFound".equals(value)){
             return result;
         }
 
-        JsonArray jsonArray = new JsonArray(valueStr);
-        for (Object arr : jsonArray) {
-            JsonArray subArr = (JsonArray) arr;
-            result.add(Arrays.asList(subArr.getString(0), subArr.getString(1)));
+        // the etag is followed by the names and the values, the names of collections end with a slash
+        List<?> values = (List<?>) value;
+        for (int i = 1; i < values.size(); i += 2) {
+            String name = StringUtils.removeEnd((String) values.get(i), "/");
+            result.add(Arrays.asList(name, (String) values.get(i + 1)));
         }
         return result;
     }
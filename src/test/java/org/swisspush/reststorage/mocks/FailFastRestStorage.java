@@ -1,6 +1,8 @@
 package org.swisspush.reststorage.mocks;
 
 import io.vertx.core.Handler;
+import io.vertx.core.json.JsonObject;
+import org.swisspush.reststorage.BatchDocument;
 import org.swisspush.reststorage.DocumentResource;
 import org.swisspush.reststorage.Resource;
 import org.swisspush.reststorage.Storage;
@@ -31,6 +33,16 @@ public class FailFastRestStorage implements Storage {
         throw new UnsupportedOperationException(msg);
     }
 
+    @Override
+    public void get(String path, String etag, int offset, int count, boolean gzipAccepted, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void get(String path, String etag, String cursor, int count, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
     @Override
     public void storageExpand(String path, String etag, List<String> subResources, Handler<Resource> handler) {
         throw new UnsupportedOperationException(msg);
@@ -51,13 +63,43 @@ public class FailFastRestStorage implements Storage {
         throw new UnsupportedOperationException(msg);
     }
 
+    @Override
+    public void getBulk(List<String> paths, List<String> etags, Handler<List<Resource>> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void expand(String path, String etag, int depth, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void putBatch(String path, List<BatchDocument> documents, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
     @Override
     public void delete(String path, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
         throw new UnsupportedOperationException(msg);
     }
 
+    @Override
+    public void deleteAsync(String path, String jobId, String lockOwner, LockMode lockMode, long lockExpire, boolean confirmCollectionDelete, boolean deleteRecursive, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
+    @Override
+    public void getDeleteJob(String jobId, Handler<Resource> handler) {
+        throw new UnsupportedOperationException(msg);
+    }
+
     @Override
     public void cleanup(Handler<DocumentResource> handler, String cleanupResourcesAmount) {
         throw new UnsupportedOperationException(msg);
     }
+
+    @Override
+    public JsonObject getStatistics() {
+        throw new UnsupportedOperationException(msg);
+    }
 }
@@ -0,0 +1,149 @@
+package org.swisspush.reststorage.util;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for the {@link CompressionCodec}s.
+ */
+public class CompressionCodecsTest {
+
+    private static final byte[] CONTENT = ("{\"items\": [" + String.join(",", Collections.nCopies(200,
+            "{\"name\": \"café\", \"value\": 42}")) + "]}").getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        for (String name : Arrays.asList(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE, CompressionCodecs.LZ4, CompressionCodecs.ZSTD)) {
+            for (int level : new int[]{-1, 1, 9}) {
+                CompressionCodec codec = CompressionCodecs.forName(name, level);
+                byte[] compressed = codec.compress(CONTENT);
+                assertThat(name, compressed.length < CONTENT.length, equalTo(true));
+                assertArrayEquals(name, CONTENT, CompressionCodecs.forId(codec.id()).decompress(compressed, CONTENT.length));
+            }
+        }
+    }
+
+    @Test
+    public void testEmptyContent() throws IOException {
+        for (String name : Arrays.asList(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE, CompressionCodecs.LZ4, CompressionCodecs.ZSTD)) {
+            CompressionCodec codec = CompressionCodecs.forName(name, -1);
+            assertThat(name, codec.decompress(codec.compress(new byte[0]), 0).length, equalTo(0));
+        }
+    }
+
+    @Test
+    public void testMaxLength() throws IOException {
+        for (String name : Arrays.asList(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE, CompressionCodecs.LZ4, CompressionCodecs.ZSTD)) {
+            CompressionCodec codec = CompressionCodecs.forName(name, -1);
+            try {
+                codec.decompress(codec.compress(CONTENT), CONTENT.length - 1);
+                fail(name + " should fail");
+            } catch (IOException ex) {
+                assertThat(ex.getMessage(), containsString((CONTENT.length - 1) + " bytes"));
+            }
+        }
+    }
+
+    @Test
+    public void testMissingLibrary() {
+        try {
+            CompressionCodecs.checkLibrary("missing", "org.example.MissingCodec", "org.example:missing-codec");
+            fail("should fail");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage(), equalTo("The compression codec 'missing' requires the library org.example:missing-codec on the classpath"));
+        }
+    }
+
+    @Test
+    public void testDecompressedLength() throws IOException {
+        for (String name : Arrays.asList(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE, CompressionCodecs.LZ4, CompressionCodecs.ZSTD)) {
+            CompressionCodec codec = CompressionCodecs.forName(name, -1);
+            assertThat(name, codec.decompressedLength(codec.compress(CONTENT)), equalTo((long) CONTENT.length));
+        }
+    }
+
+    @Test
+    public void testChunkwise() throws IOException {
+        for (String name : Arrays.asList(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE)) {
+            CompressionCodec codec = CompressionCodecs.forName(name, -1);
+            byte[] compressed;
+            try (CompressionCodec.Compressor compressor = codec.compressor()) {
+                for (int position = 0; position < CONTENT.length; position += 1000) {
+                    compressor.update(Arrays.copyOfRange(CONTENT, position, Math.min(position + 1000, CONTENT.length)));
+                }
+                compressed = compressor.finish();
+            }
+            assertArrayEquals(name, CONTENT, codec.decompress(compressed, CONTENT.length));
+
+            ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+            try (CompressionCodec.Decompressor decompressor = codec.decompressor(codec.compress(CONTENT), CONTENT.length)) {
+                assertThat(name, decompressor.length(), equalTo((long) CONTENT.length));
+                byte[] chunk;
+                while ((chunk = decompressor.read(1000)) != null) {
+                    assertThat(name, chunk.length <= 1000, equalTo(true));
+                    decompressed.write(chunk);
+                }
+            }
+            assertArrayEquals(name, CONTENT, decompressed.toByteArray());
+        }
+        // these codecs compress and decompress the whole data at once
+        for (String name : Arrays.asList(CompressionCodecs.LZ4, CompressionCodecs.ZSTD)) {
+            CompressionCodec codec = CompressionCodecs.forName(name, -1);
+            assertThat(name, codec.compressor() == null, equalTo(true));
+            assertThat(name, codec.decompressor(codec.compress(CONTENT), CONTENT.length) == null, equalTo(true));
+        }
+    }
+
+    @Test
+    public void testChunkwiseTruncatedData() throws IOException {
+        for (String name : Arrays.asList(CompressionCodecs.GZIP, CompressionCodecs.DEFLATE)) {
+            CompressionCodec codec = CompressionCodecs.forName(name, -1);
+            byte[] compressed = codec.compress(CONTENT);
+            // the header with the stored length and the gzip trailer are kept, the compressed data is cut
+            byte[] truncated = new byte[compressed.length / 2 + 8];
+            System.arraycopy(compressed, 0, truncated, 0, compressed.length / 2);
+            System.arraycopy(compressed, compressed.length - 8, truncated, compressed.length / 2, 8);
+            try (CompressionCodec.Decompressor decompressor = codec.decompressor(truncated, CONTENT.length)) {
+                while (decompressor.read(1000) != null) {
+                    // read all chunks
+                }
+                fail(name + " should fail");
+            } catch (IOException ex) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testGzipKeepsIdOfFormerCompressedFlag() throws IOException {
+        assertThat(CompressionCodecs.forName(CompressionCodecs.GZIP, -1).id(), equalTo("1"));
+        assertThat(CompressionCodecs.forId("1").decompress(CompressionCodecs.forName("gzip", -1).compress(CONTENT), CONTENT.length), equalTo(CONTENT));
+    }
+
+    @Test
+    public void testUnknownCodec() {
+        try {
+            CompressionCodecs.forName("brotli", -1);
+            fail("unknown codec name");
+        } catch (IllegalArgumentException ex) {
+            assertThat(ex.getMessage(), containsString("brotli"));
+        }
+        try {
+            CompressionCodecs.forId("brotli");
+            fail("unknown codec id");
+        } catch (IOException ex) {
+            assertThat(ex.getMessage(), containsString("brotli"));
+        }
+    }
+}
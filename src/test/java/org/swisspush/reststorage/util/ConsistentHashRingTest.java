@@ -0,0 +1,70 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests for {@link ConsistentHashRing} class.
+ */
+@RunWith(VertxUnitRunner.class)
+public class ConsistentHashRingTest {
+
+    private static final int KEYS = 10_000;
+
+    @Test
+    public void testKeysAreSpreadOverAllNodes(TestContext testContext) {
+        List<String> nodes = Arrays.asList("shard-a", "shard-b", "shard-c");
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, nodes, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.get("tenant" + i + "/resources"), 1, Integer::sum);
+        }
+        for (String node : nodes) {
+            int count = counts.getOrDefault(node, 0);
+            testContext.assertTrue(count > KEYS / 5 && count < KEYS / 2, node + " got " + count + " keys");
+        }
+    }
+
+    @Test
+    public void testSameKeySameNode(TestContext testContext) {
+        List<String> nodes = Arrays.asList("shard-a", "shard-b");
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, nodes, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing<String> other = new ConsistentHashRing<>(nodes, nodes, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        for (int i = 0; i < 100; i++) {
+            testContext.assertEquals(ring.get("key" + i), other.get("key" + i));
+        }
+    }
+
+    @Test
+    public void testAddingNodeOnlyMovesKeysToNewNode(TestContext testContext) {
+        List<String> nodes = Arrays.asList("shard-a", "shard-b", "shard-c");
+        List<String> moreNodes = Arrays.asList("shard-a", "shard-b", "shard-c", "shard-d");
+        ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, nodes, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+        ConsistentHashRing<String> grown = new ConsistentHashRing<>(moreNodes, moreNodes, ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String before = ring.get("key" + i);
+            String after = grown.get("key" + i);
+            if (!before.equals(after)) {
+                testContext.assertEquals("shard-d", after);
+                moved++;
+            }
+        }
+        testContext.assertTrue(moved > KEYS / 8 && moved < KEYS / 3, moved + " keys moved");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNodesRequired() {
+        new ConsistentHashRing<>(Collections.emptyList(), Collections.emptyList(), ConsistentHashRing.DEFAULT_VIRTUAL_NODES);
+    }
+}
@@ -69,4 +69,21 @@ public class GZIPUtilTest {
             async.complete();
         });
     }
+
+    @Test
+    public void testDecompressResourceWithMaxLength(TestContext testContext) throws Exception {
+        Async async = testContext.async(2);
+        byte[] compressedData = IOUtils.toByteArray(this.getClass().getClassLoader().getResourceAsStream("testResource.gz"));
+        WorkerPool pool = new WorkerPool(Vertx.vertx(), WorkerPool.CODEC, 2, 10);
+        GZIPUtil.decompressResource(pool, Mockito.mock(Logger.class), compressedData, 48, decompressResourceResult -> {
+            testContext.assertTrue(decompressResourceResult.succeeded());
+            testContext.assertEquals(48, decompressResourceResult.result().length);
+            async.countDown();
+        });
+        GZIPUtil.decompressResource(pool, Mockito.mock(Logger.class), compressedData, 47, decompressResourceResult -> {
+            testContext.assertTrue(decompressResourceResult.failed());
+            testContext.assertTrue(decompressResourceResult.cause().getMessage().contains("47 bytes"));
+            async.countDown();
+        });
+    }
 }
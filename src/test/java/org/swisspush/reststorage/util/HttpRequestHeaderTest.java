@@ -184,4 +184,34 @@ public class HttpRequestHeaderTest {
 
         context.assertNull(getString(null, ETAG_HEADER));
     }
+
+    @Test
+    public void testAcceptsEncoding(TestContext context){
+        context.assertFalse(acceptsEncoding(null, "gzip"));
+        context.assertFalse(acceptsEncoding(headers, "gzip"));
+
+        headers.set("accept-encoding", "gzip");
+        context.assertTrue(acceptsEncoding(headers, "gzip"));
+
+        headers.set("Accept-Encoding", "deflate, GZIP;q=0.5, br");
+        context.assertTrue(acceptsEncoding(headers, "gzip"));
+
+        headers.set("Accept-Encoding", "deflate, br");
+        context.assertFalse(acceptsEncoding(headers, "gzip"));
+
+        headers.set("Accept-Encoding", "gzip;q=0");
+        context.assertFalse(acceptsEncoding(headers, "gzip"));
+
+        headers.set("Accept-Encoding", "gzip; q=0.0, *");
+        context.assertFalse(acceptsEncoding(headers, "gzip"));
+
+        headers.set("Accept-Encoding", "br, *");
+        context.assertTrue(acceptsEncoding(headers, "gzip"));
+
+        headers.set("Accept-Encoding", "identity");
+        context.assertFalse(acceptsEncoding(headers, "gzip"));
+
+        headers.add("Accept-Encoding", "gzip");
+        context.assertTrue(acceptsEncoding(headers, "gzip"));
+    }
 }
@@ -6,6 +6,7 @@ import io.vertx.ext.unit.junit.VertxUnitRunner;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.util.Arrays;
 import java.util.HashMap;
 
 import static org.swisspush.reststorage.util.ModuleConfiguration.StorageType;
@@ -38,6 +39,10 @@ public class ModuleConfigurationTest {
         testContext.assertEquals(config.getExpirablePrefix(), "rest-storage:expirable");
         testContext.assertEquals(config.getResourcesPrefix(), "rest-storage:resources");
         testContext.assertEquals(config.getCollectionsPrefix(), "rest-storage:collections");
+        testContext.assertEquals(config.getChildCollectionsPrefix(), "rest-storage:childcollections");
+        testContext.assertEquals(config.getSortedCollectionsPrefix(), "rest-storage:sortedcollections");
+        testContext.assertEquals(config.getDeleteJobsPrefix(), "rest-storage:deletejobs");
+        testContext.assertEquals(config.getDeleteJobBulkSize(), 1000);
         testContext.assertEquals(config.getDeltaResourcesPrefix(), "delta:resources");
         testContext.assertEquals(config.getDeltaEtagsPrefix(), "delta:etags");
         testContext.assertEquals(config.getResourceCleanupAmount(), 100000L);
@@ -46,6 +51,32 @@ public class ModuleConfigurationTest {
         testContext.assertFalse(config.isRejectStorageWriteOnLowMemory());
         testContext.assertEquals(config.getFreeMemoryCheckIntervalMs(), 60000L);
         testContext.assertFalse(config.isReturn200onDeleteNonExisting());
+        testContext.assertFalse(config.isNearCacheEnabled());
+        testContext.assertEquals(config.getNearCacheMaxEntries(), 10000);
+        testContext.assertEquals(config.getNearCacheMaxBytes(), 33554432L);
+        testContext.assertEquals(config.getNearCacheMaxEntryBytes(), 65536);
+        testContext.assertEquals(config.getNearCacheTtlMs(), 60000L);
+        testContext.assertEquals(config.getNearCacheInvalidationChannel(), "rest-storage:invalidations");
+        testContext.assertEquals(config.getRedisGetBatchSize(), 1);
+        testContext.assertEquals(config.getRedisGetBatchWindowMs(), 0L);
+        testContext.assertEquals(config.getLargeObjectThreshold(), 0);
+        testContext.assertEquals(config.getLargeObjectChunkSize(), 1048576);
+        testContext.assertEquals(config.getChunksPrefix(), "rest-storage:chunks");
+        testContext.assertEquals(config.getRedisReadConnections(), 1);
+        testContext.assertEquals(config.getRedisWriteConnections(), 0);
+        testContext.assertEquals(config.getRedisMaintenanceConnections(), 0);
+        testContext.assertNull(config.getRedisReplicas());
+        testContext.assertEquals(config.getRedisReplicaRouting(), ModuleConfiguration.ReplicaRouting.roundRobin);
+        testContext.assertEquals(config.getRedisHedgedReadMs(), 0L);
+        testContext.assertEquals(config.getRedisReplicaReadAfterWriteMs(), 0L);
+        testContext.assertEquals(config.getRedisHashTagDepth(), 0);
+        testContext.assertEquals(config.getHashTagsKey(), "rest-storage:hashtags");
+        testContext.assertNull(config.getRedisShards());
+        testContext.assertEquals(config.getRedisShardDepth(), 1);
+        testContext.assertFalse(config.isBackgroundCleanupEnabled());
+        testContext.assertEquals(config.getBackgroundCleanupIntervalMs(), 1000L);
+        testContext.assertEquals(config.getBackgroundCleanupBudgetMs(), 20L);
+        testContext.assertEquals(config.getBackgroundCleanupMaxLatencyMs(), 100L);
     }
 
     @Test
@@ -59,7 +90,27 @@ public class ModuleConfigurationTest {
                 .confirmCollectionDelete(true)
                 .rejectStorageWriteOnLowMemory(true)
                 .freeMemoryCheckIntervalMs(10000)
-                .return200onDeleteNonExisting(true);
+                .return200onDeleteNonExisting(true)
+                .nearCacheEnabled(true)
+                .nearCacheMaxEntries(50)
+                .nearCacheTtlMs(1000)
+                .redisGetBatchSize(50)
+                .redisGetBatchWindowMs(2)
+                .redisReadConnections(4)
+                .redisWriteConnections(2)
+                .redisMaintenanceConnections(1)
+                .redisReplicas(Arrays.asList("replica1:6379", "replica2:6380"))
+                .redisReplicaRoutingFromString("latency")
+                .redisHedgedReadMs(20)
+                .redisReplicaReadAfterWriteMs(500)
+                .redisHashTagDepth(2)
+                .hashTagsKey("my:hashtags")
+                .redisShards(Arrays.asList("shard1:6379", "shard2:6379/1"))
+                .redisShardDepth(2)
+                .backgroundCleanupEnabled(true)
+                .backgroundCleanupIntervalMs(500)
+                .backgroundCleanupBudgetMs(10)
+                .backgroundCleanupMaxLatencyMs(50);
 
         // go through JSON encode/decode
         String json = config.asJsonObject().encodePrettily();
@@ -89,6 +140,26 @@ public class ModuleConfigurationTest {
         testContext.assertTrue(config.isRejectStorageWriteOnLowMemory());
         testContext.assertEquals(config.getFreeMemoryCheckIntervalMs(), 10000L);
         testContext.assertTrue(config.isReturn200onDeleteNonExisting());
+        testContext.assertTrue(config.isNearCacheEnabled());
+        testContext.assertEquals(config.getNearCacheMaxEntries(), 50);
+        testContext.assertEquals(config.getNearCacheTtlMs(), 1000L);
+        testContext.assertEquals(config.getRedisGetBatchSize(), 50);
+        testContext.assertEquals(config.getRedisGetBatchWindowMs(), 2L);
+        testContext.assertEquals(config.getRedisReadConnections(), 4);
+        testContext.assertEquals(config.getRedisWriteConnections(), 2);
+        testContext.assertEquals(config.getRedisMaintenanceConnections(), 1);
+        testContext.assertEquals(config.getRedisReplicas(), Arrays.asList("replica1:6379", "replica2:6380"));
+        testContext.assertEquals(config.getRedisReplicaRouting(), ModuleConfiguration.ReplicaRouting.latency);
+        testContext.assertEquals(config.getRedisHedgedReadMs(), 20L);
+        testContext.assertEquals(config.getRedisReplicaReadAfterWriteMs(), 500L);
+        testContext.assertEquals(config.getRedisHashTagDepth(), 2);
+        testContext.assertEquals(config.getHashTagsKey(), "my:hashtags");
+        testContext.assertEquals(config.getRedisShards(), Arrays.asList("shard1:6379", "shard2:6379/1"));
+        testContext.assertEquals(config.getRedisShardDepth(), 2);
+        testContext.assertTrue(config.isBackgroundCleanupEnabled());
+        testContext.assertEquals(config.getBackgroundCleanupIntervalMs(), 500L);
+        testContext.assertEquals(config.getBackgroundCleanupBudgetMs(), 10L);
+        testContext.assertEquals(config.getBackgroundCleanupMaxLatencyMs(), 50L);
     }
 
     @Test
@@ -108,6 +179,10 @@ public class ModuleConfigurationTest {
         testContext.assertEquals(json.getString("expirablePrefix"), "rest-storage:expirable");
         testContext.assertEquals(json.getString("resourcesPrefix"), "rest-storage:resources");
         testContext.assertEquals(json.getString("collectionsPrefix"), "rest-storage:collections");
+        testContext.assertEquals(json.getString("childCollectionsPrefix"), "rest-storage:childcollections");
+        testContext.assertEquals(json.getString("sortedCollectionsPrefix"), "rest-storage:sortedcollections");
+        testContext.assertEquals(json.getString("deleteJobsPrefix"), "rest-storage:deletejobs");
+        testContext.assertEquals(json.getInteger("deleteJobBulkSize"), 1000);
         testContext.assertEquals(json.getString("deltaResourcesPrefix"), "delta:resources");
         testContext.assertEquals(json.getString("deltaEtagsPrefix"), "delta:etags");
         testContext.assertEquals(json.getLong("resourceCleanupAmount"), 100000L);
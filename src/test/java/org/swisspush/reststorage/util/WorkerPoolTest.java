@@ -0,0 +1,98 @@
+package org.swisspush.reststorage.util;
+
+import io.vertx.core.Vertx;
+import io.vertx.core.json.JsonObject;
+import io.vertx.ext.unit.Async;
+import io.vertx.ext.unit.TestContext;
+import io.vertx.ext.unit.junit.VertxUnitRunner;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests for the {@link WorkerPool} class
+ */
+@RunWith(VertxUnitRunner.class)
+public class WorkerPoolTest {
+
+    private Vertx vertx;
+
+    @Before
+    public void setUp() {
+        vertx = Vertx.vertx();
+    }
+
+    @After
+    public void tearDown(TestContext context) {
+        vertx.close(context.asyncAssertSuccess());
+    }
+
+    @Test
+    public void testTasksOfOneContextRunInParallel(TestContext context) {
+        Async async = context.async(2);
+        WorkerPool pool = new WorkerPool(vertx, "parallel", 2, 10);
+        CountDownLatch second = new CountDownLatch(1);
+        vertx.runOnContext(v -> {
+            // the first task only completes when the second one runs beside it
+            pool.<Boolean>executeBlocking(future -> {
+                try {
+                    future.complete(second.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException ex) {
+                    future.fail(ex);
+                }
+            }, event -> {
+                context.assertTrue(event.result());
+                async.countDown();
+            });
+            pool.executeBlocking(future -> {
+                second.countDown();
+                future.complete();
+            }, event -> {
+                context.assertTrue(event.succeeded());
+                async.countDown();
+            });
+        });
+    }
+
+    @Test
+    public void testRejectedWhenQueueIsFull(TestContext context) throws Exception {
+        Async async = context.async(2);
+        WorkerPool pool = new WorkerPool(vertx, "bounded", 1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        vertx.runOnContext(v -> pool.executeBlocking(future -> {
+            started.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                // completes anyway
+            }
+            future.complete();
+        }, event -> async.countDown()));
+        context.assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        vertx.runOnContext(v -> {
+            pool.executeBlocking(future -> future.complete(), event -> {
+                context.assertTrue(event.succeeded());
+                JsonObject statistics = pool.getStatistics();
+                context.assertEquals("bounded", statistics.getString("name"));
+                context.assertEquals(0, statistics.getInteger("queued"));
+                context.assertEquals(2L, statistics.getLong("executed"));
+                context.assertEquals(1L, statistics.getLong("rejected"));
+                context.assertTrue(statistics.getLong("maxWaitMs") >= 20);
+                async.countDown();
+            });
+            pool.executeBlocking(future -> context.fail("the task must be rejected"), event -> {
+                context.assertTrue(event.cause() instanceof RejectedExecutionException);
+                context.assertEquals(1, pool.getStatistics().getInteger("queued"));
+                // the queued task waits for the worker thread at least that long
+                vertx.setTimer(20, timer -> release.countDown());
+            });
+        });
+    }
+}